@@ -0,0 +1,95 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util.benchmark;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import tw.com.fstop.util.Zone;
+
+/**
+ * <pre>
+ * Input values shared by benchmarks.
+ * Values are generated once with a fixed seed, benchmarks cycle through them so the JIT can not fold a constant input.
+ * </pre>
+ *
+ * @since 1.0
+ */
+final class BenchmarkData
+{
+    static final int SIZE = 1024;
+    static final int MASK = SIZE - 1;
+    
+    static final String[] ZONES = {"UTC", "Asia/Taipei", "America/New_York", "Europe/London", "Pacific/Tarawa", "Australia/Sydney"};
+    static final Zone[] RESOLVED_ZONES = new Zone[ZONES.length];
+    
+    static
+    {
+        for (int i = 0; i < ZONES.length; i++)
+        {
+            RESOLVED_ZONES[i] = Zone.of(ZONES[i]);
+        }
+    }
+    
+    /** epoch milliseconds between 1990 and 2030 */
+    static final long[] EPOCHS = new long[SIZE];
+    /** epoch seconds of EPOCHS */
+    static final long[] EPOCH_SECONDS = new long[SIZE];
+    /** EPOCHS in yyyyMMddHHmmss UTC */
+    static final String[] COMPACT = new String[SIZE];
+    /** EPOCHS in yyyyMMddHHmmss UTC as ASCII bytes */
+    static final byte[][] COMPACT_BYTES = new byte[SIZE][];
+    /** EPOCHS in yyyy-MM-dd HH:mm:ss Asia/Taipei */
+    static final String[] FORMATTED = new String[SIZE];
+    /** EPOCHS in yyyyMMdd Asia/Taipei */
+    static final String[] DAYS = new String[SIZE];
+    /** EPOCHS in yyyy-MM-dd'T'HH:mm:ss.SSSXXX Asia/Taipei */
+    static final String[] ISO_8601 = new String[SIZE];
+    
+    static
+    {
+        Random random = new Random(1502114440291L);
+        long from = 631152000000L;      // 1990-01-01
+        long range = 1262304000000L;    // 40 years
+        for (int i = 0; i < SIZE; i++)
+        {
+            long epoch = from + (long) (random.nextDouble() * range);
+            EPOCHS[i] = epoch;
+            EPOCH_SECONDS[i] = epoch / 1000;
+            
+            SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddHHmmss");
+            sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+            COMPACT[i] = sdf.format(new Date(epoch));
+            COMPACT_BYTES[i] = COMPACT[i].getBytes();
+            
+            sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+            sdf.setTimeZone(TimeZone.getTimeZone("Asia/Taipei"));
+            FORMATTED[i] = sdf.format(new Date(epoch));
+            
+            sdf = new SimpleDateFormat("yyyyMMdd");
+            sdf.setTimeZone(TimeZone.getTimeZone("Asia/Taipei"));
+            DAYS[i] = sdf.format(new Date(epoch));
+            
+            sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+            sdf.setTimeZone(TimeZone.getTimeZone("Asia/Taipei"));
+            ISO_8601[i] = sdf.format(new Date(epoch));
+        }
+    }
+    
+    private BenchmarkData()
+    {
+    }
+}
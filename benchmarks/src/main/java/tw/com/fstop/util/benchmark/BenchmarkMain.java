@@ -0,0 +1,69 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <pre>
+ * Run benchmarks once per thread count with the gc profiler, so results show throughput scaling and bytes per operation.
+ *
+ * Usage:
+ *   java [-Dthreads=1,2,4,8] [-Dresult=result] -jar benchmarks.jar [include regex ...]
+ *
+ * Result of each thread count is written to ${result}-${threads}.json when -Dresult is set.
+ * Plain JMH options are still available through org.openjdk.jmh.Main, for example:
+ *   java -cp benchmarks.jar org.openjdk.jmh.Main -t 4 -prof gc FormatBenchmark
+ * </pre>
+ *
+ * @since 1.0
+ */
+public class BenchmarkMain
+{
+    static final String DEFAULT_THREADS = "1,2,4,8";
+    
+    public static void main(String[] args) throws RunnerException
+    {
+        String[] threads = System.getProperty("threads", DEFAULT_THREADS).split(",");
+        String result = System.getProperty("result");
+        
+        for (String t : threads)
+        {
+            int n = Integer.parseInt(t.trim());
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                .threads(n)
+                .addProfiler(GCProfiler.class);
+            
+            if (args.length == 0)
+            {
+                options.include(BenchmarkMain.class.getPackage().getName() + ".*");
+            }
+            for (String include : args)
+            {
+                options.include(include);
+            }
+            if (result != null)
+            {
+                options.result(result + "-" + n + ".json")
+                    .resultFormat(ResultFormatType.JSON);
+            }
+            new Runner(options.build()).run();
+        }
+    }
+}
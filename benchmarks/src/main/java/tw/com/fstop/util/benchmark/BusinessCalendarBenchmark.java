@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util.benchmark;
+
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tw.com.fstop.util.BusinessCalendar;
+import tw.com.fstop.util.Zone;
+
+/**
+ * Business days of a compiled calendar against a per day Calendar loop.
+ *
+ * @since 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BusinessCalendarBenchmark
+{
+    static final Zone TAIPEI = Zone.of("Asia/Taipei");
+    static final BusinessCalendar CALENDAR = BusinessCalendar.build(TAIPEI, 1989, 2031, BusinessCalendar.SATURDAY_SUNDAY, null, null);
+
+    int index;
+    Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("Asia/Taipei"));
+
+    int next()
+    {
+        return index++ & BenchmarkData.MASK;
+    }
+
+    @Benchmark
+    public int businessDaysBetweenLoop()
+    {
+        int i = next();
+        long from = Math.min(BenchmarkData.EPOCHS[i], BenchmarkData.EPOCHS[(i + 1) & BenchmarkData.MASK]);
+        long to = Math.max(BenchmarkData.EPOCHS[i], BenchmarkData.EPOCHS[(i + 1) & BenchmarkData.MASK]);
+        calendar.setTimeInMillis(to);
+        int toYear = calendar.get(Calendar.YEAR);
+        int toDay = calendar.get(Calendar.DAY_OF_YEAR);
+        calendar.setTimeInMillis(from);
+        int n = 0;
+        while (calendar.get(Calendar.YEAR) < toYear || calendar.get(Calendar.DAY_OF_YEAR) < toDay)
+        {
+            int dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
+            if (dayOfWeek != Calendar.SATURDAY && dayOfWeek != Calendar.SUNDAY)
+            {
+                n++;
+            }
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return n;
+    }
+
+    @Benchmark
+    public int businessDaysBetweenEpoch()
+    {
+        int i = next();
+        return CALENDAR.businessDaysBetween(BenchmarkData.EPOCHS[i], BenchmarkData.EPOCHS[(i + 1) & BenchmarkData.MASK]);
+    }
+
+    @Benchmark
+    public int businessDaysBetweenString() throws ParseException
+    {
+        int i = next();
+        return CALENDAR.businessDaysBetween(BenchmarkData.DAYS[i], BenchmarkData.DAYS[(i + 1) & BenchmarkData.MASK], "yyyyMMdd");
+    }
+
+    @Benchmark
+    public long addBusinessDays()
+    {
+        int i = next();
+        return CALENDAR.addBusinessDays(BenchmarkData.EPOCHS[i], (i & 63) - 32);
+    }
+}
@@ -0,0 +1,93 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util.benchmark;
+
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tw.com.fstop.util.DateTimeUtil;
+
+/**
+ * daysBetween variants.
+ *
+ * @since 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaysBetweenBenchmark
+{
+    int index;
+    Calendar[] calendars;
+    
+    @Setup
+    public void setup()
+    {
+        calendars = new Calendar[BenchmarkData.SIZE];
+        for (int i = 0; i < BenchmarkData.SIZE; i++)
+        {
+            calendars[i] = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+            calendars[i].setTimeInMillis(BenchmarkData.EPOCHS[i]);
+        }
+    }
+    
+    int next()
+    {
+        return index++ & BenchmarkData.MASK;
+    }
+    
+    @Benchmark
+    public int daysBetweenCalendar()
+    {
+        int i = next();
+        return DateTimeUtil.daysBetween(calendars[i], calendars[(i + 1) & BenchmarkData.MASK]);
+    }
+    
+    @Benchmark
+    public int daysBetweenEpoch() throws ParseException
+    {
+        int i = next();
+        return DateTimeUtil.daysBetween(BenchmarkData.EPOCHS[i], BenchmarkData.EPOCHS[(i + 1) & BenchmarkData.MASK]);
+    }
+    
+    @Benchmark
+    public int daysBetweenEpochSecond() throws ParseException
+    {
+        int i = next();
+        return DateTimeUtil.daysBetweenEpochSecond(BenchmarkData.EPOCH_SECONDS[i], BenchmarkData.EPOCH_SECONDS[(i + 1) & BenchmarkData.MASK]);
+    }
+    
+    @Benchmark
+    public int daysBetweenString() throws ParseException
+    {
+        int i = next();
+        return DateTimeUtil.daysBetween(BenchmarkData.DAYS[i], BenchmarkData.DAYS[(i + 1) & BenchmarkData.MASK], "yyyyMMdd");
+    }
+}
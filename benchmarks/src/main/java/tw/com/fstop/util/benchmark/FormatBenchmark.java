@@ -0,0 +1,102 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tw.com.fstop.util.DateTimeUtil;
+
+/**
+ * Format paths: all epochTo*DateString overloads and getCurrentDateString.
+ *
+ * @since 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark
+{
+    static final String PATTERN = "yyyy-MM-dd HH:mm:ss";
+    
+    int index;
+    
+    int next()
+    {
+        return index++ & BenchmarkData.MASK;
+    }
+    
+    @Benchmark
+    public String epochToDateString()
+    {
+        return DateTimeUtil.epochToDateString(BenchmarkData.EPOCHS[next()], PATTERN);
+    }
+    
+    @Benchmark
+    public String epochSecondToDateString()
+    {
+        return DateTimeUtil.epochSecondToDateString(BenchmarkData.EPOCH_SECONDS[next()], PATTERN);
+    }
+    
+    @Benchmark
+    public String epochToCurrentDateString()
+    {
+        return DateTimeUtil.epochToCurrentDateString(BenchmarkData.EPOCHS[next()], PATTERN);
+    }
+    
+    @Benchmark
+    public String epochSecondToCurrentDateString()
+    {
+        return DateTimeUtil.epochSecondToCurrentDateString(BenchmarkData.EPOCH_SECONDS[next()], PATTERN);
+    }
+    
+    @Benchmark
+    public String epochToLocalDateString()
+    {
+        int i = next();
+        return DateTimeUtil.epochToLocalDateString(BenchmarkData.EPOCHS[i], PATTERN, BenchmarkData.ZONES[i % BenchmarkData.ZONES.length]);
+    }
+    
+    @Benchmark
+    public String epochToLocalDateStringZone()
+    {
+        int i = next();
+        return DateTimeUtil.epochToLocalDateString(BenchmarkData.EPOCHS[i], PATTERN, BenchmarkData.RESOLVED_ZONES[i % BenchmarkData.ZONES.length]);
+    }
+    
+    @Benchmark
+    public String epochSecondToLocalDateString()
+    {
+        int i = next();
+        return DateTimeUtil.epochSecondToLocalDateString(BenchmarkData.EPOCH_SECONDS[i], PATTERN, BenchmarkData.ZONES[i % BenchmarkData.ZONES.length]);
+    }
+    
+    @Benchmark
+    public String getCurrentDateString()
+    {
+        return DateTimeUtil.getCurrentDateString(PATTERN);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util.benchmark;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tw.com.fstop.util.DateTimeUtil;
+import tw.com.fstop.util.Iso8601;
+import tw.com.fstop.util.Zone;
+
+/**
+ * RFC 3339 timestamps: Iso8601 codec against the yyyy-MM-dd'T'HH:mm:ss.SSSXXX pattern and a plain SimpleDateFormat.
+ *
+ * @since 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Iso8601Benchmark
+{
+    static final String PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX";
+    static final Zone TAIPEI = Zone.of("Asia/Taipei");
+    
+    int index;
+    SimpleDateFormat sdf;
+    char[] buf;
+    
+    @Setup
+    public void setup()
+    {
+        sdf = new SimpleDateFormat(PATTERN);
+        sdf.setTimeZone(TimeZone.getTimeZone("Asia/Taipei"));
+        buf = new char[Iso8601.MAX_LENGTH];
+    }
+    
+    int next()
+    {
+        return index++ & BenchmarkData.MASK;
+    }
+    
+    @Benchmark
+    public long parseIso8601()
+    {
+        return Iso8601.parseEpoch(BenchmarkData.ISO_8601[next()], Long.MIN_VALUE);
+    }
+    
+    @Benchmark
+    public long parsePattern() throws ParseException
+    {
+        return DateTimeUtil.dateStringToEpoch(BenchmarkData.ISO_8601[next()], PATTERN, "Asia/Taipei");
+    }
+    
+    @Benchmark
+    public long parseSimpleDateFormat() throws ParseException
+    {
+        return sdf.parse(BenchmarkData.ISO_8601[next()]).getTime();
+    }
+    
+    @Benchmark
+    public int formatIso8601()
+    {
+        return Iso8601.format(BenchmarkData.EPOCHS[next()], TAIPEI, Iso8601.MILLIS, buf, 0);
+    }
+    
+    @Benchmark
+    public String formatIso8601String()
+    {
+        return Iso8601.format(BenchmarkData.EPOCHS[next()], TAIPEI);
+    }
+    
+    @Benchmark
+    public String formatPattern()
+    {
+        return DateTimeUtil.epochToLocalDateString(BenchmarkData.EPOCHS[next()], PATTERN, TAIPEI);
+    }
+    
+    @Benchmark
+    public String formatSimpleDateFormat()
+    {
+        return sdf.format(new Date(BenchmarkData.EPOCHS[next()]));
+    }
+}
@@ -0,0 +1,87 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util.benchmark;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tw.com.fstop.util.DateTimeUtil;
+
+/**
+ * Parse paths: getEpochSecond and dateStringToEpoch family.
+ *
+ * @since 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark
+{
+    int index;
+    
+    int next()
+    {
+        return index++ & BenchmarkData.MASK;
+    }
+    
+    @Benchmark
+    public long getEpochSecondString()
+    {
+        return DateTimeUtil.getEpochSecond(BenchmarkData.COMPACT[next()]);
+    }
+    
+    @Benchmark
+    public long getEpochSecondBytes()
+    {
+        return DateTimeUtil.getEpochSecond(BenchmarkData.COMPACT_BYTES[next()], 0);
+    }
+    
+    @Benchmark
+    public long getEpochSecondFields()
+    {
+        int i = next();
+        return DateTimeUtil.getEpochSecond(1990 + (i & 31), 1 + (i % 12), 1 + (i % 28), i % 24, i % 60, i % 60);
+    }
+    
+    @Benchmark
+    public long dateStringToEpoch() throws ParseException
+    {
+        return DateTimeUtil.dateStringToEpoch(BenchmarkData.FORMATTED[next()], "yyyy-MM-dd HH:mm:ss", "UTC", "Asia/Taipei");
+    }
+    
+    @Benchmark
+    public long dateStringToEpochUTC() throws ParseException
+    {
+        return DateTimeUtil.dateStringToEpoch(BenchmarkData.FORMATTED[next()], "yyyy-MM-dd HH:mm:ss", "Asia/Taipei");
+    }
+    
+    @Benchmark
+    public long dateStringToEpochSecond() throws ParseException
+    {
+        return DateTimeUtil.dateStringToEpochSecond(BenchmarkData.DAYS[next()], "yyyyMMdd", "Asia/Taipei");
+    }
+}
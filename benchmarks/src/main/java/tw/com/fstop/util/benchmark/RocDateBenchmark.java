@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util.benchmark;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tw.com.fstop.util.DateTimeBatch;
+import tw.com.fstop.util.DateTimeUtil;
+import tw.com.fstop.util.RocDate;
+import tw.com.fstop.util.Zone;
+
+/**
+ * ROC date conversion by string surgery and DateTimeUtil against RocDate.
+ *
+ * @since 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RocDateBenchmark
+{
+    static final Zone TAIPEI = Zone.of("Asia/Taipei");
+
+    int index;
+    /** EPOCHS in yyyMMdd Asia/Taipei */
+    String[] roc;
+    long[] epochs = new long[BenchmarkData.SIZE];
+    char[] record = new char[BenchmarkData.SIZE * 7];
+    char[] buf = new char[RocDate.MAX_LENGTH];
+
+    @Setup
+    public void setup()
+    {
+        roc = new String[BenchmarkData.SIZE];
+        DateTimeBatch.epochToRocDateString(BenchmarkData.EPOCHS, 0, roc, 0, BenchmarkData.SIZE, RocDate.DATE, TAIPEI);
+    }
+
+    int next()
+    {
+        return index++ & BenchmarkData.MASK;
+    }
+
+    @Benchmark
+    public long parseStringSurgery() throws ParseException
+    {
+        String s = roc[next()];
+        int year = Integer.parseInt(s.substring(0, 3)) + RocDate.YEAR_OFFSET;
+        return DateTimeUtil.dateStringToEpoch(year + s.substring(3), "yyyyMMdd", TAIPEI);
+    }
+
+    @Benchmark
+    public long parseRocDate()
+    {
+        return RocDate.parseEpoch(roc[next()], TAIPEI, -1L);
+    }
+
+    @Benchmark
+    public String formatStringSurgery()
+    {
+        String s = DateTimeUtil.epochToLocalDateString(BenchmarkData.EPOCHS[next()], "yyyyMMdd", TAIPEI);
+        int year = Integer.parseInt(s.substring(0, 4)) - RocDate.YEAR_OFFSET;
+        return (year < 100 ? "0" : "") + year + s.substring(4);
+    }
+
+    @Benchmark
+    public int formatRocDate()
+    {
+        return RocDate.format(BenchmarkData.EPOCHS[next()], TAIPEI, RocDate.DATE, buf, 0);
+    }
+
+    @Benchmark
+    public int parseRocBatch()
+    {
+        return DateTimeBatch.parseRocEpoch(roc, 0, epochs, 0, BenchmarkData.SIZE, TAIPEI, false, -1L);
+    }
+
+    @Benchmark
+    public int formatRocBatch()
+    {
+        return DateTimeBatch.epochToRocDate(BenchmarkData.EPOCHS, 0, record, 0, BenchmarkData.SIZE, RocDate.DATE, TAIPEI);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tw.com.fstop.util.TimestampCodec;
+
+/**
+ * Packing and unpacking a column of BenchmarkData.SIZE sorted epoch seconds, per column.
+ *
+ * @since 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimestampCodecBenchmark
+{
+    final TimestampCodec codec = new TimestampCodec();
+    long[] sorted;
+    String[] compact;
+    ByteBuffer packed;
+    ByteBuffer out;
+    long[] values;
+    char[] chars;
+    
+    @Setup
+    public void setup()
+    {
+        sorted = BenchmarkData.EPOCH_SECONDS.clone();
+        Arrays.sort(sorted);
+        compact = BenchmarkData.COMPACT.clone();
+        Arrays.sort(compact);
+        out = ByteBuffer.allocate(BenchmarkData.SIZE * 10);
+        codec.encode(sorted, 0, sorted.length, out);
+        out.flip();
+        packed = out.duplicate();
+        values = new long[BenchmarkData.SIZE];
+        chars = new char[14];
+    }
+    
+    @Benchmark
+    public int encode()
+    {
+        out.clear();
+        codec.encode(sorted, 0, sorted.length, out);
+        return out.position();
+    }
+    
+    @Benchmark
+    public int parseAndEncode()
+    {
+        out.clear();
+        return codec.encoder(out).add(compact, 0, compact.length);
+    }
+    
+    @Benchmark
+    public long[] decode()
+    {
+        codec.decode(packed.duplicate(), values, 0, values.length);
+        return values;
+    }
+    
+    @Benchmark
+    public int decodeAndFormat()
+    {
+        TimestampCodec.Decoder decoder = codec.decoder(packed.duplicate());
+        int n = 0;
+        while (decoder.hasNext())
+        {
+            n += decoder.nextCompact(chars, 0);
+        }
+        return n;
+    }
+}
@@ -0,0 +1,115 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tw.com.fstop.util.DateTimeUtil;
+
+/**
+ * Zone offset getters of current and specified timezone.
+ *
+ * @since 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZoneOffsetBenchmark
+{
+    int index;
+    
+    String nextZone()
+    {
+        return BenchmarkData.ZONES[(index++ & Integer.MAX_VALUE) % BenchmarkData.ZONES.length];
+    }
+    
+    @Benchmark
+    public int getCurrentTimeZoneOffset()
+    {
+        return DateTimeUtil.getCurrentTimeZoneOffset();
+    }
+    
+    @Benchmark
+    public int getCurrentTimeZoneOffsetHour()
+    {
+        return DateTimeUtil.getCurrentTimeZoneOffsetHour();
+    }
+    
+    @Benchmark
+    public int getCurrentDaylightSavingOffset()
+    {
+        return DateTimeUtil.getCurrentDaylightSavingOffset();
+    }
+    
+    @Benchmark
+    public int getCurrentDaylightSavingOffsetHour()
+    {
+        return DateTimeUtil.getCurrentDaylightSavingOffsetHour();
+    }
+    
+    @Benchmark
+    public int getLocalTimeZoneOffset()
+    {
+        return DateTimeUtil.getLocalTimeZoneOffset(nextZone());
+    }
+    
+    @Benchmark
+    public int getLocalTimeZoneOffsetHour()
+    {
+        return DateTimeUtil.getLocalTimeZoneOffsetHour(nextZone());
+    }
+    
+    @Benchmark
+    public int getLocalDaylightSavingOffset()
+    {
+        return DateTimeUtil.getLocalDaylightSavingOffset(nextZone());
+    }
+    
+    @Benchmark
+    public int getLocalDaylightSavingOffsetHour()
+    {
+        return DateTimeUtil.getLocalDaylightSavingOffsetHour(nextZone());
+    }
+    
+    @Benchmark
+    public int getLocalDay()
+    {
+        return DateTimeUtil.getLocalDay(nextZone());
+    }
+    
+    @Benchmark
+    public int getLocalTimeZoneOffsetZone()
+    {
+        return DateTimeUtil.getLocalTimeZoneOffset(BenchmarkData.RESOLVED_ZONES[(index++ & Integer.MAX_VALUE) % BenchmarkData.ZONES.length]);
+    }
+    
+    @Benchmark
+    public int getLocalDayZone()
+    {
+        return DateTimeUtil.getLocalDay(BenchmarkData.RESOLVED_ZONES[(index++ & Integer.MAX_VALUE) % BenchmarkData.ZONES.length]);
+    }
+}
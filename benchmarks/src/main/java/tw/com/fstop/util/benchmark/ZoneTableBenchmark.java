@@ -0,0 +1,59 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util.benchmark;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tw.com.fstop.util.DateTimeUtil;
+
+/**
+ * <pre>
+ * First use of every timezone of the runtime, which builds the offset table of each zone.
+ *
+ * Every fork measures one cold run, compare the result of the same jar on Java 8 and on Java 9+,
+ * where the multi-release jar finds transitions with java.time ZoneRules instead of sampling every day.
+ * </pre>
+ *
+ * @since 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class ZoneTableBenchmark
+{
+    @Benchmark
+    public long firstUseOfAllZones()
+    {
+        long sum = 0;
+        for (String id : TimeZone.getAvailableIDs())
+        {
+            sum += DateTimeUtil.getLocalTimeZoneOffset(id);
+        }
+        return sum;
+    }
+}
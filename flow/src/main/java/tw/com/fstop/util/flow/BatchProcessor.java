@@ -0,0 +1,257 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util.flow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * <pre>
+ * Flow.Processor which converts items in batches on an executor.
+ *
+ * Items are collected into batches of at most batchSize, at most parallelism batches are converted at the same time.
+ * A batch is dispatched when it is full, or at once when a conversion slot is free,
+ * so light traffic is not delayed and heavy traffic is converted in full batches.
+ * Converted items are published in the order they were received.
+ *
+ * Backpressure: upstream is asked for batchSize * parallelism items once both upstream and a subscriber are subscribed,
+ * and for more only after converted items are handed to subscribers, onNext never blocks the upstream thread.
+ * Subscribers are served as a SubmissionPublisher, a slow subscriber holds the delivering executor thread
+ * (as a managed blocker in a ForkJoinPool) and so stops further requests to upstream.
+ *
+ * A conversion failure cancels upstream and closes subscribers exceptionally.
+ * </pre>
+ *
+ * @param <T>   type of received items
+ * @param <R>   type of published items
+ * @since 1.0
+ */
+public class BatchProcessor<T, R> extends SubmissionPublisher<R> implements Flow.Processor<T, R>
+{
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final Function<? super List<T>, ? extends List<? extends R>> function;
+    private final Executor executor;
+    private final int batchSize;
+    private final int parallelism;
+
+    private final Object lock = new Object();
+    private final AtomicBoolean failed = new AtomicBoolean();
+    private Flow.Subscription subscription;
+    private boolean started;
+    private List<T> pending;
+    /** number of batches being converted */
+    private int running;
+    /** completes when every dispatched batch is published */
+    private CompletableFuture<Void> published = CompletableFuture.completedFuture(null);
+
+    /**
+     * Create a processor.
+     *
+     * @param function          converts a batch, returns converted items in the same order
+     * @param executor          executor to convert batches and to deliver items to subscribers
+     * @param batchSize         maximum number of items in a batch
+     * @param parallelism       maximum number of batches converted at the same time
+     */
+    public BatchProcessor(Function<? super List<T>, ? extends List<? extends R>> function, Executor executor, int batchSize, int parallelism)
+    {
+        super(executor, Math.max(Flow.defaultBufferSize(), batchSize));
+        if (batchSize < 1)
+        {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        if (parallelism < 1)
+        {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.function = function;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.pending = new ArrayList<T>(batchSize);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription)
+    {
+        synchronized (lock)
+        {
+            if (this.subscription != null)
+            {
+                subscription.cancel();
+                return;
+            }
+            this.subscription = subscription;
+        }
+        start();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super R> subscriber)
+    {
+        super.subscribe(subscriber);
+        start();
+    }
+
+    /**
+     * Make the first request to upstream when there is a subscriber, items published before would be dropped.
+     */
+    private void start()
+    {
+        synchronized (lock)
+        {
+            if (started || subscription == null || !hasSubscribers())
+            {
+                return;
+            }
+            started = true;
+        }
+        subscription.request((long) batchSize * parallelism);
+    }
+
+    @Override
+    public void onNext(T item)
+    {
+        synchronized (lock)
+        {
+            if (failed.get())
+            {
+                return;
+            }
+            pending.add(item);
+            if (pending.size() >= batchSize || running < parallelism)
+            {
+                dispatch();
+            }
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable)
+    {
+        synchronized (lock)
+        {
+            flush();
+            published.whenComplete((v, e) -> closeExceptionally(e != null ? e : throwable));
+        }
+    }
+
+    @Override
+    public void onComplete()
+    {
+        synchronized (lock)
+        {
+            flush();
+            published.whenComplete((v, e) ->
+            {
+                if (e == null)
+                {
+                    close();
+                }
+            });
+        }
+    }
+
+    /**
+     * Dispatch pending items, caller holds the lock.
+     */
+    private void flush()
+    {
+        if (!pending.isEmpty())
+        {
+            dispatch();
+        }
+    }
+
+    /**
+     * Convert pending items as a batch and chain its publication after the previous batch, caller holds the lock.
+     */
+    private void dispatch()
+    {
+        final List<T> batch = pending;
+        pending = new ArrayList<T>(batchSize);
+        running++;
+
+        CompletableFuture<List<? extends R>> converted = CompletableFuture.supplyAsync(() -> function.apply(batch), executor);
+        converted.whenComplete((results, e) -> converted());
+        published = published.thenCombineAsync(converted, (v, results) ->
+        {
+            deliver(batch, results);
+            return null;
+        }, executor);
+        published.whenComplete((v, e) ->
+        {
+            if (e != null)
+            {
+                fail(e);
+            }
+        });
+    }
+
+    private void converted()
+    {
+        synchronized (lock)
+        {
+            running--;
+            if (!pending.isEmpty() && running < parallelism && !failed.get())
+            {
+                dispatch();
+            }
+        }
+    }
+
+    private void deliver(List<T> batch, List<? extends R> results)
+    {
+        if (results.size() != batch.size())
+        {
+            throw new IllegalStateException("batch of " + batch.size() + " items converted to " + results.size() + " items");
+        }
+        if (failed.get())
+        {
+            return;
+        }
+        for (R r : results)
+        {
+            submit(r);
+        }
+        subscription.request(batch.size());
+    }
+
+    private void fail(Throwable e)
+    {
+        if (failed.compareAndSet(false, true))
+        {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            subscription.cancel();
+            closeExceptionally(cause);
+        }
+    }
+
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+}
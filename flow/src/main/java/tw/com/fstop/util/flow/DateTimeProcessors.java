@@ -0,0 +1,204 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util.flow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import tw.com.fstop.util.DateTimeBatch;
+
+/**
+ * <pre>
+ * Flow processors which parse and format timestamp fields of records with DateTimeBatch.
+ *
+ * Each batch is converted by one bulk DateTimeBatch call, so per record cost is the same as the bulk API.
+ * Methods without executor use the common ForkJoinPool, DEFAULT_BATCH_SIZE and one batch per core.
+ *
+ * Example, parse a field of records and publish records with epoch:
+ *   BatchProcessor&lt;Row, Event&gt; p = DateTimeProcessors.parseEpoch(Row::getTime, "yyyy-MM-dd HH:mm:ss", "Asia/Taipei", false, -1L,
+ *       (row, epoch) -&gt; new Event(row, epoch), executor, 512, 4);
+ *   rows.subscribe(p);
+ *   p.subscribe(sink);
+ * </pre>
+ *
+ * @since 1.0
+ */
+public final class DateTimeProcessors
+{
+    private DateTimeProcessors()
+    {
+    }
+
+    /**
+     * Parse date strings to epoch milliseconds, malformed strings are published as invalidValue.
+     *
+     * @param dtFormat          format of date strings
+     * @param fmtTimeZoneID     timezone of date format, if null or empty then use current timezone
+     * @param strict            true to reject fields out of range
+     * @param invalidValue      value of malformed strings
+     * @return                  processor
+     */
+    public static BatchProcessor<CharSequence, Long> parseEpoch(String dtFormat, String fmtTimeZoneID, boolean strict, long invalidValue)
+    {
+        return parseEpoch(Function.identity(), dtFormat, fmtTimeZoneID, strict, invalidValue, (s, epoch) -> epoch,
+            ForkJoinPool.commonPool(), BatchProcessor.DEFAULT_BATCH_SIZE, defaultParallelism());
+    }
+
+    /**
+     * Parse date string field of records to epoch milliseconds.
+     *
+     * @param <T>               type of received records
+     * @param <R>               type of published records
+     * @param field             date string of a record
+     * @param dtFormat          format of date strings
+     * @param fmtTimeZoneID     timezone of date format, if null or empty then use current timezone
+     * @param strict            true to reject fields out of range
+     * @param invalidValue      epoch of malformed strings
+     * @param combiner          creates published record from received record and its epoch
+     * @param executor          executor to convert batches and to deliver records
+     * @param batchSize         maximum number of records in a batch
+     * @param parallelism       maximum number of batches converted at the same time
+     * @return                  processor
+     */
+    public static <T, R> BatchProcessor<T, R> parseEpoch(final Function<? super T, ? extends CharSequence> field, final String dtFormat,
+        final String fmtTimeZoneID, final boolean strict, final long invalidValue, final BiFunction<? super T, Long, ? extends R> combiner,
+        Executor executor, int batchSize, int parallelism)
+    {
+        return new BatchProcessor<T, R>(batch ->
+        {
+            int n = batch.size();
+            CharSequence[] src = new CharSequence[n];
+            for (int i = 0; i < n; i++)
+            {
+                src[i] = field.apply(batch.get(i));
+            }
+            long[] dest = new long[n];
+            DateTimeBatch.parseEpoch(src, 0, dest, 0, n, dtFormat, fmtTimeZoneID, strict, invalidValue);
+            return combine(batch, dest, combiner);
+        }, executor, batchSize, parallelism);
+    }
+
+    /**
+     * Parse yyyyMMddhhmiss strings to UTC epoch seconds, malformed strings are published as invalidValue.
+     *
+     * @param strict            true to reject fields out of range
+     * @param invalidValue      value of malformed strings
+     * @return                  processor
+     */
+    public static BatchProcessor<CharSequence, Long> parseEpochSecond(boolean strict, long invalidValue)
+    {
+        return parseEpochSecond(Function.identity(), strict, invalidValue, (s, epochSecond) -> epochSecond,
+            ForkJoinPool.commonPool(), BatchProcessor.DEFAULT_BATCH_SIZE, defaultParallelism());
+    }
+
+    /**
+     * Parse yyyyMMddhhmiss field of records to UTC epoch seconds.
+     *
+     * @param <T>               type of received records
+     * @param <R>               type of published records
+     * @param field             yyyyMMddhhmiss string of a record
+     * @param strict            true to reject fields out of range
+     * @param invalidValue      epoch second of malformed strings
+     * @param combiner          creates published record from received record and its epoch second
+     * @param executor          executor to convert batches and to deliver records
+     * @param batchSize         maximum number of records in a batch
+     * @param parallelism       maximum number of batches converted at the same time
+     * @return                  processor
+     */
+    public static <T, R> BatchProcessor<T, R> parseEpochSecond(final Function<? super T, ? extends CharSequence> field, final boolean strict,
+        final long invalidValue, final BiFunction<? super T, Long, ? extends R> combiner, Executor executor, int batchSize, int parallelism)
+    {
+        return new BatchProcessor<T, R>(batch ->
+        {
+            int n = batch.size();
+            CharSequence[] src = new CharSequence[n];
+            for (int i = 0; i < n; i++)
+            {
+                src[i] = field.apply(batch.get(i));
+            }
+            long[] dest = new long[n];
+            DateTimeBatch.parseEpochSecond(src, 0, dest, 0, n, strict, invalidValue);
+            return combine(batch, dest, combiner);
+        }, executor, batchSize, parallelism);
+    }
+
+    /**
+     * Format epoch milliseconds to date strings.
+     *
+     * @param dtFormat          datetime format
+     * @param timezoneID        timezone id of result strings, if null or empty then use current timezone
+     * @return                  processor
+     */
+    public static BatchProcessor<Long, String> formatEpoch(String dtFormat, String timezoneID)
+    {
+        return formatEpoch(Long::longValue, dtFormat, timezoneID, (epoch, s) -> s,
+            ForkJoinPool.commonPool(), BatchProcessor.DEFAULT_BATCH_SIZE, defaultParallelism());
+    }
+
+    /**
+     * Format epoch millisecond field of records to date strings.
+     *
+     * @param <T>               type of received records
+     * @param <R>               type of published records
+     * @param field             epoch millisecond of a record
+     * @param dtFormat          datetime format
+     * @param timezoneID        timezone id of result strings, if null or empty then use current timezone
+     * @param combiner          creates published record from received record and its date string
+     * @param executor          executor to convert batches and to deliver records
+     * @param batchSize         maximum number of records in a batch
+     * @param parallelism       maximum number of batches converted at the same time
+     * @return                  processor
+     */
+    public static <T, R> BatchProcessor<T, R> formatEpoch(final ToLongFunction<? super T> field, final String dtFormat, final String timezoneID,
+        final BiFunction<? super T, String, ? extends R> combiner, Executor executor, int batchSize, int parallelism)
+    {
+        return new BatchProcessor<T, R>(batch ->
+        {
+            int n = batch.size();
+            long[] src = new long[n];
+            for (int i = 0; i < n; i++)
+            {
+                src[i] = field.applyAsLong(batch.get(i));
+            }
+            String[] dest = new String[n];
+            DateTimeBatch.epochToDateString(src, 0, dest, 0, n, dtFormat, timezoneID);
+            List<R> results = new ArrayList<R>(n);
+            for (int i = 0; i < n; i++)
+            {
+                results.add(combiner.apply(batch.get(i), dest[i]));
+            }
+            return results;
+        }, executor, batchSize, parallelism);
+    }
+
+    private static <T, R> List<R> combine(List<T> batch, long[] values, BiFunction<? super T, Long, ? extends R> combiner)
+    {
+        List<R> results = new ArrayList<R>(values.length);
+        for (int i = 0; i < values.length; i++)
+        {
+            results.add(combiner.apply(batch.get(i), values[i]));
+        }
+        return results;
+    }
+
+    static int defaultParallelism()
+    {
+        return Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,232 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util.flow;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import tw.com.fstop.util.DateTimeUtil;
+
+public class DateTimeProcessorsTest
+{
+    static final int SIZE = 20000;
+
+    ExecutorService executor;
+
+    @Before
+    public void setup()
+    {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdown();
+    }
+
+    /**
+     * Publishes items as requested and records the largest outstanding demand.
+     */
+    static final class Source<T> implements Flow.Publisher<T>
+    {
+        final List<T> items;
+        final AtomicLong maxOutstanding = new AtomicLong();
+
+        Source(List<T> items)
+        {
+            this.items = items;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super T> subscriber)
+        {
+            subscriber.onSubscribe(new Flow.Subscription()
+            {
+                int next;
+                long demand;
+                boolean emitting;
+                boolean cancelled;
+                boolean completed;
+
+                @Override
+                public void request(long n)
+                {
+                    synchronized (this)
+                    {
+                        demand += n;
+                        maxOutstanding.accumulateAndGet(demand, Math::max);
+                        if (emitting)
+                        {
+                            return;
+                        }
+                        emitting = true;
+                    }
+                    while (true)
+                    {
+                        T item;
+                        synchronized (this)
+                        {
+                            if (cancelled || completed || demand == 0 || next == items.size())
+                            {
+                                emitting = false;
+                                if (!cancelled && !completed && next == items.size())
+                                {
+                                    completed = true;
+                                    subscriber.onComplete();
+                                }
+                                return;
+                            }
+                            demand--;
+                            item = items.get(next++);
+                        }
+                        subscriber.onNext(item);
+                    }
+                }
+
+                @Override
+                public synchronized void cancel()
+                {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    /**
+     * Requests one item at a time and collects them.
+     */
+    static final class Sink<T> implements Flow.Subscriber<T>
+    {
+        final List<T> items = new ArrayList<T>();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Throwable error;
+        Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription)
+        {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(T item)
+        {
+            items.add(item);
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable)
+        {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete()
+        {
+            done.countDown();
+        }
+
+        void await() throws InterruptedException
+        {
+            assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    @Test
+    public void testParseAndFormat() throws InterruptedException
+    {
+        Random random = new Random(19);
+        List<String> dates = new ArrayList<String>();
+        List<Long> epochs = new ArrayList<Long>();
+        for (int i = 0; i < SIZE; i++)
+        {
+            long epoch = 946684800000L + (long) (random.nextDouble() * 1262304000000L);
+            epoch -= epoch % 1000;
+            epochs.add(epoch);
+            dates.add(i % 1000 == 7 ? "bad" : DateTimeUtil.epochToLocalDateString(epoch, "yyyy-MM-dd HH:mm:ss", "Asia/Taipei"));
+        }
+
+        Source<String> source = new Source<String>(dates);
+        BatchProcessor<String, Long> parser = DateTimeProcessors.parseEpoch(s -> s, "yyyy-MM-dd HH:mm:ss", "Asia/Taipei", false, -1L,
+            (s, epoch) -> epoch, executor, 64, 3);
+        Sink<Long> parsed = new Sink<Long>();
+        source.subscribe(parser);
+        // nothing is requested until there is a subscriber to publish to
+        assertThat(source.maxOutstanding.get()).isZero();
+        parser.subscribe(parsed);
+        parsed.await();
+        assertThat(parsed.error).isNull();
+        assertThat(parsed.items).hasSize(SIZE);
+        for (int i = 0; i < SIZE; i++)
+        {
+            assertThat(parsed.items.get(i)).isEqualTo(i % 1000 == 7 ? -1L : epochs.get(i));
+        }
+        // upstream is never asked for more than the processor can hold
+        assertThat(source.maxOutstanding.get()).isLessThanOrEqualTo(64 * 3);
+
+        BatchProcessor<Long, String> formatter = DateTimeProcessors.formatEpoch(Long::longValue, "yyyyMMddHHmmss", "UTC",
+            (epoch, s) -> s, executor, 100, 2);
+        Sink<String> formatted = new Sink<String>();
+        new Source<Long>(epochs).subscribe(formatter);
+        formatter.subscribe(formatted);
+        formatted.await();
+        assertThat(formatted.items).hasSize(SIZE);
+
+        BatchProcessor<CharSequence, Long> seconds = DateTimeProcessors.parseEpochSecond(true, Long.MIN_VALUE);
+        Sink<Long> parsedSeconds = new Sink<Long>();
+        new Source<CharSequence>(new ArrayList<CharSequence>(formatted.items)).subscribe(seconds);
+        seconds.subscribe(parsedSeconds);
+        parsedSeconds.await();
+        for (int i = 0; i < SIZE; i++)
+        {
+            assertThat(parsedSeconds.items.get(i) * 1000).isEqualTo(epochs.get(i));
+        }
+    }
+
+    @Test
+    public void testFailure() throws InterruptedException
+    {
+        List<String> items = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++)
+        {
+            items.add(i == 500 ? null : "20170807220040");
+        }
+        BatchProcessor<String, Long> processor = DateTimeProcessors.parseEpochSecond(s -> s, false, -1L, (s, epochSecond) -> epochSecond,
+            executor, 10, 2);
+        Sink<Long> sink = new Sink<Long>();
+        new Source<String>(items).subscribe(processor);
+        processor.subscribe(sink);
+        sink.await();
+        assertThat(sink.error).isInstanceOf(NullPointerException.class);
+        assertThat(sink.items.size()).isLessThanOrEqualTo(500);
+        assertThat(sink.items).containsOnly(1502143240L);
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.text.ParseException;
+import java.util.Calendar;
+
+/**
+ * <pre>
+ * Compiled business day calendar of a zone, counts and adds business days without iterating over days.
+ *
+ * Weekend days, holidays and make up workdays of the covered years are compiled into a bitset,
+ * one bit per local day, with the number of business days before every 64 days word in a rank table.
+ * Business days between two dates are the difference of two ranks, constant time.
+ * Adding business days finds the word of the target rank by binary search, O(log n).
+ * Neither allocates, dates out of the covered years throw IllegalArgumentException.
+ *
+ * Taiwan calendar, Saturday and Sunday off, with national holidays and make up Saturdays:
+ *
+ *   static final BusinessCalendar TW = BusinessCalendar.build(Zone.of("Asia/Taipei"), 2017, 2017,
+ *       BusinessCalendar.SATURDAY_SUNDAY,
+ *       new int[] {20170101, 20170102, 20170127, 20170130, 20170131, 20170201, 20170227, 20170228, 20170403, 20170404,
+ *           20170501, 20170529, 20170530, 20171004, 20171009, 20171010},
+ *       new int[] {20170218, 20170603, 20170930});
+ *
+ *   int n = TW.businessDaysBetween("20170101", "20180101", "yyyyMMdd");   // 248
+ *
+ * Dates are yyyyMMdd numbers like ZoneDayIndex.localDate, epochs are mapped to local dates of the zone.
+ * </pre>
+ *
+ * @since 1.0
+ */
+public final class BusinessCalendar
+{
+    /** weekend days mask of Saturday and Sunday */
+    public static final int SATURDAY_SUNDAY = (1 << Calendar.SATURDAY) | (1 << Calendar.SUNDAY);
+    /** weekend days mask of Sunday only */
+    public static final int SUNDAY = 1 << Calendar.SUNDAY;
+
+    private final Zone zone;
+    private final int firstYear;
+    private final int lastYear;
+    /** day number of first covered day */
+    private final long firstDay;
+    /** number of covered days */
+    private final int dayCount;
+    /** bit i is set if day firstDay + i is a business day */
+    private final long[] words;
+    /** business days before word i, one more than words */
+    private final int[] ranks;
+
+    private BusinessCalendar(Zone zone, int firstYear, int lastYear, long firstDay, int dayCount, long[] words, int[] ranks)
+    {
+        this.zone = zone;
+        this.firstYear = firstYear;
+        this.lastYear = lastYear;
+        this.firstDay = firstDay;
+        this.dayCount = dayCount;
+        this.words = words;
+        this.ranks = ranks;
+    }
+
+    /**
+     * Compile a business day calendar of the zone for the years.
+     * Holidays and workdays out of the covered years are ignored, a date in both is a workday.
+     *
+     * @param zone              timezone of local dates
+     * @param firstYear         first covered year
+     * @param lastYear          last covered year, inclusive
+     * @param weekendDays       mask of weekend days, bit n set for Calendar day of week n, e.g. SATURDAY_SUNDAY
+     * @param holidays          non weekend days off as yyyyMMdd numbers, may be null
+     * @param workdays          weekend days to work as yyyyMMdd numbers, may be null
+     * @return                  calendar
+     * @throws IllegalArgumentException     if years are reversed or a date is not valid
+     */
+    public static BusinessCalendar build(Zone zone, int firstYear, int lastYear, int weekendDays, int[] holidays, int[] workdays)
+    {
+        if (zone == null)
+        {
+            throw new IllegalArgumentException("zone is null");
+        }
+        if (firstYear > lastYear)
+        {
+            throw new IllegalArgumentException("first year " + firstYear + " is after last year " + lastYear);
+        }
+        long firstDay = CivilCalendar.daysFromCivil(firstYear, 1, 1);
+        int dayCount = (int) (CivilCalendar.daysFromCivil(lastYear + 1L, 1, 1) - firstDay);
+        long[] words = new long[(dayCount + 63) >>> 6];
+        for (int i = 0; i < dayCount; i++)
+        {
+            // day 0 is Thursday, Calendar numbers days of week from Sunday = 1
+            int dayOfWeek = (int) CivilCalendar.floorMod(firstDay + i + 4, 7) + 1;
+            if ((weekendDays & (1 << dayOfWeek)) == 0)
+            {
+                words[i >>> 6] |= 1L << i;
+            }
+        }
+        if (holidays != null)
+        {
+            for (int date : holidays)
+            {
+                long i = dateToDay(date) - firstDay;
+                if (i >= 0 && i < dayCount)
+                {
+                    words[(int) (i >>> 6)] &= ~(1L << i);
+                }
+            }
+        }
+        if (workdays != null)
+        {
+            for (int date : workdays)
+            {
+                long i = dateToDay(date) - firstDay;
+                if (i >= 0 && i < dayCount)
+                {
+                    words[(int) (i >>> 6)] |= 1L << i;
+                }
+            }
+        }
+        int[] ranks = new int[words.length + 1];
+        for (int w = 0; w < words.length; w++)
+        {
+            ranks[w + 1] = ranks[w] + Long.bitCount(words[w]);
+        }
+        return new BusinessCalendar(zone, firstYear, lastYear, firstDay, dayCount, words, ranks);
+    }
+
+    /**
+     * Check whether the local date of epoch is a business day.
+     *
+     * @param epoch             epoch in millisecond
+     * @return                  true if business day
+     */
+    public boolean isBusinessDay(long epoch)
+    {
+        return isBusinessDayNumber(localDay(epoch));
+    }
+
+    /**
+     * Check whether the date is a business day.
+     *
+     * @param date              yyyyMMdd number, e.g. 20170807
+     * @return                  true if business day
+     */
+    public boolean isBusinessDate(int date)
+    {
+        return isBusinessDayNumber(dateToDay(date));
+    }
+
+    /**
+     * Count business days from the earlier local date of two epochs, inclusive, to the later one, exclusive.
+     *
+     * @param epoch1            epoch in millisecond
+     * @param epoch2            epoch in millisecond
+     * @return                  business days between two local dates
+     */
+    public int businessDaysBetween(long epoch1, long epoch2)
+    {
+        return countBetween(localDay(epoch1), localDay(epoch2));
+    }
+
+    /**
+     * Count business days from the earlier date, inclusive, to the later one, exclusive.
+     *
+     * @param day1              day to calculate
+     * @param day2              day to calculate
+     * @param dtFormat          datetime format
+     * @return                  business days between two dates
+     * @throws ParseException   date string parse error
+     */
+    public int businessDaysBetween(String day1, String day2, String dtFormat) throws ParseException
+    {
+        return businessDaysBetween(DateTimeUtil.dateStringToEpoch(day1, dtFormat, zone), DateTimeUtil.dateStringToEpoch(day2, dtFormat, zone));
+    }
+
+    /**
+     * Count business days from the earlier date, inclusive, to the later one, exclusive.
+     *
+     * @param date1             yyyyMMdd number
+     * @param date2             yyyyMMdd number
+     * @return                  business days between two dates
+     */
+    public int businessDaysBetweenDates(int date1, int date2)
+    {
+        return countBetween(dateToDay(date1), dateToDay(date2));
+    }
+
+    /**
+     * Add business days to the local date of epoch, the local time of day is kept.
+     * A positive count moves to the n-th business day after the date, a negative count to the n-th before,
+     * zero returns the epoch unchanged.
+     *
+     * @param epoch             epoch in millisecond
+     * @param days              business days to add
+     * @return                  epoch in millisecond
+     */
+    public long addBusinessDays(long epoch, int days)
+    {
+        int offset = zone.getOffset(epoch);
+        long day = CivilCalendar.epochToDays(epoch + offset);
+        long local = epoch + offset + (addDays(day, days) - day) * CivilCalendar.ONE_DAY_MILLIS;
+        return local - zone.getOffset(local - offset);
+    }
+
+    /**
+     * Add business days to the date.
+     *
+     * @param day               day to calculate
+     * @param dtFormat          datetime format
+     * @param days              business days to add
+     * @return                  date string of the result
+     * @throws ParseException   date string parse error
+     */
+    public String addBusinessDays(String day, String dtFormat, int days) throws ParseException
+    {
+        return DateTimeUtil.epochToLocalDateString(addBusinessDays(DateTimeUtil.dateStringToEpoch(day, dtFormat, zone), days), dtFormat, zone);
+    }
+
+    /**
+     * Add business days to the date.
+     *
+     * @param date              yyyyMMdd number
+     * @param days              business days to add
+     * @return                  yyyyMMdd number of the result
+     */
+    public int addBusinessDaysToDate(int date, int days)
+    {
+        long packed = CivilCalendar.civilFromDays(addDays(dateToDay(date), days));
+        return CivilCalendar.packedYear(packed) * 10000 + CivilCalendar.packedMonth(packed) * 100 + CivilCalendar.packedDay(packed);
+    }
+
+    /**
+     * @return      timezone of local dates
+     */
+    public Zone getZone()
+    {
+        return zone;
+    }
+
+    /**
+     * @return      first covered year
+     */
+    public int getFirstYear()
+    {
+        return firstYear;
+    }
+
+    /**
+     * @return      last covered year, inclusive
+     */
+    public int getLastYear()
+    {
+        return lastYear;
+    }
+
+    private long localDay(long epoch)
+    {
+        return CivilCalendar.epochToDays(epoch + zone.getOffset(epoch));
+    }
+
+    private static long dateToDay(int date)
+    {
+        int year = date / 10000;
+        int month = date / 100 % 100;
+        int day = date % 100;
+        if (date < 0 || month < 1 || month > 12 || day < 1 || day > CivilCalendar.daysInMonth(year, month))
+        {
+            throw new IllegalArgumentException("invalid date " + date);
+        }
+        return CivilCalendar.daysFromCivil(year, month, day);
+    }
+
+    private int index(long day, int limit)
+    {
+        long i = day - firstDay;
+        if (i < 0 || i > limit)
+        {
+            long packed = CivilCalendar.civilFromDays(day);
+            throw new IllegalArgumentException("date " + CivilCalendar.packedYear(packed) + "-" + CivilCalendar.packedMonth(packed) + "-"
+                + CivilCalendar.packedDay(packed) + " is out of calendar years " + firstYear + " to " + lastYear);
+        }
+        return (int) i;
+    }
+
+    private boolean isBusinessDayNumber(long day)
+    {
+        int i = index(day, dayCount - 1);
+        return (words[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Business days before day index i, i may be dayCount.
+     */
+    private int rank(int i)
+    {
+        int w = i >>> 6;
+        if ((i & 63) == 0)
+        {
+            return ranks[w];
+        }
+        return ranks[w] + Long.bitCount(words[w] & ((1L << i) - 1));
+    }
+
+    private int countBetween(long day1, long day2)
+    {
+        int r1 = rank(index(day1, dayCount));
+        int r2 = rank(index(day2, dayCount));
+        return Math.abs(r2 - r1);
+    }
+
+    private long addDays(long day, int days)
+    {
+        int i = index(day, dayCount - 1);
+        if (days == 0)
+        {
+            return day;
+        }
+        // rank of the target business day, counted from 0
+        long target = days > 0 ? (long) rank(i + 1) + days - 1 : (long) rank(i) + days;
+        if (target < 0 || target >= ranks[words.length])
+        {
+            throw new IllegalArgumentException(days + " business days from day " + day + " are out of calendar years " + firstYear + " to " + lastYear);
+        }
+        return firstDay + select((int) target);
+    }
+
+    /**
+     * Day index of the business day of rank r.
+     */
+    private int select(int r)
+    {
+        // last word with ranks[w] <= r, its business days cover r
+        int low = 0;
+        int high = words.length - 1;
+        while (low < high)
+        {
+            int mid = (low + high + 1) >>> 1;
+            if (ranks[mid] <= r)
+            {
+                low = mid;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        long bits = words[low];
+        for (int k = r - ranks[low]; k > 0; k--)
+        {
+            bits &= bits - 1;
+        }
+        return (low << 6) + Long.numberOfTrailingZeros(bits);
+    }
+}
@@ -0,0 +1,227 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+/**
+ * <pre>
+ * Integer arithmetic on proleptic Gregorian civil dates.
+ * Day numbers count days since epoch day 1970-01-01, which is day 0.
+ *
+ * Algorithm is based on Howard Hinnant's days_from_civil and civil_from_days,
+ * a year is split into 400 years eras of 146097 days, and a year is treated as starting from March 1st
+ * so that the leap day is the last day of the year.
+ *
+ * All routines are static, branch light and allocation free.
+ * A civil date is returned packed into a long, use packedYear, packedMonth and packedDay to read it.
+ *
+ * Note:
+ *   GregorianCalendar switches to Julian calendar before 1582-10-15, these routines do not.
+ * </pre>
+ *
+ * @since 1.0
+ */
+final class CivilCalendar
+{
+    static final long DAYS_PER_ERA = 146097;
+    static final long DAYS_0000_03_01_TO_1970_01_01 = 719468;
+    static final int ONE_DAY_SECONDS = 86400;
+    static final long ONE_DAY_MILLIS = 86400000L;
+
+    private CivilCalendar()
+    {
+    }
+
+    /**
+     * Convert civil date to day number.
+     * Month out of 1 to 12 is rolled into year, and day out of month is rolled into month, like a lenient Calendar.
+     *
+     * @param year      year
+     * @param month     month value from 1 to 12
+     * @param day       day of month
+     * @return          days since 1970-01-01
+     */
+    static long daysFromCivil(long year, int month, int day)
+    {
+        long y = year;
+        int m = month;
+        if (m < 1 || m > 12)
+        {
+            int m0 = m - 1;
+            int carry = m0 >= 0 ? m0 / 12 : (m0 - 11) / 12;
+            y += carry;
+            m = m0 - carry * 12 + 1;
+        }
+        if (m <= 2)
+        {
+            y--;
+        }
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yoe = y - era * 400;                                       // [0, 399]
+        long doy = (153 * (m > 2 ? m - 3 : m + 9) + 2) / 5 + day - 1;   // [0, 365]
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;               // [0, 146096]
+        return era * DAYS_PER_ERA + doe - DAYS_0000_03_01_TO_1970_01_01;
+    }
+
+    /**
+     * Convert civil date time to epoch second, fields are rolled like a lenient Calendar.
+     *
+     * @param year      year
+     * @param month     month value from 1 to 12
+     * @param day       day of month
+     * @param hour      hour in 24 hours
+     * @param minute    minute
+     * @param second    second
+     * @return          epoch seconds
+     */
+    static long epochSecond(int year, int month, int day, int hour, int minute, int second)
+    {
+        return daysFromCivil(year, month, day) * ONE_DAY_SECONDS + hour * 3600L + minute * 60L + second;
+    }
+
+    /**
+     * Get number of days of the month.
+     *
+     * @param year      year
+     * @param month     month value from 1 to 12
+     * @return          days of the month
+     */
+    static int daysInMonth(long year, int month)
+    {
+        if (month == 2)
+        {
+            return isLeapYear(year) ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * Convert day number to civil date.
+     *
+     * @param epochDay      days since 1970-01-01
+     * @return              packed civil date
+     */
+    static long civilFromDays(long epochDay)
+    {
+        long z = epochDay + DAYS_0000_03_01_TO_1970_01_01;
+        long era = (z >= 0 ? z : z - (DAYS_PER_ERA - 1)) / DAYS_PER_ERA;
+        long doe = z - era * DAYS_PER_ERA;                                  // [0, 146096]
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;   // [0, 399]
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);                 // [0, 365]
+        long mp = (5 * doy + 2) / 153;                                      // [0, 11]
+        long d = doy - (153 * mp + 2) / 5 + 1;                              // [1, 31]
+        long m = mp < 10 ? mp + 3 : mp - 9;                                 // [1, 12]
+        long y = yoe + era * 400 + (m <= 2 ? 1 : 0);
+        return (y << 9) | (m << 5) | d;
+    }
+
+    /**
+     * Get year of packed civil date.
+     *
+     * @param packed        packed civil date
+     * @return              year
+     */
+    static int packedYear(long packed)
+    {
+        return (int) (packed >> 9);
+    }
+
+    /**
+     * Get month of packed civil date.
+     *
+     * @param packed        packed civil date
+     * @return              month value from 1 to 12
+     */
+    static int packedMonth(long packed)
+    {
+        return (int) (packed >>> 5) & 0xF;
+    }
+
+    /**
+     * Get day of month of packed civil date.
+     *
+     * @param packed        packed civil date
+     * @return              day of month
+     */
+    static int packedDay(long packed)
+    {
+        return (int) packed & 0x1F;
+    }
+
+    /**
+     * Get day number of epoch second.
+     *
+     * @param epochSecond   epoch second
+     * @return              days since 1970-01-01
+     */
+    static long epochSecondToDays(long epochSecond)
+    {
+        return floorDiv(epochSecond, ONE_DAY_SECONDS);
+    }
+
+    /**
+     * Get day number of epoch millisecond.
+     *
+     * @param epoch         epoch in millisecond
+     * @return              days since 1970-01-01
+     */
+    static long epochToDays(long epoch)
+    {
+        return floorDiv(epoch, ONE_DAY_MILLIS);
+    }
+
+    /**
+     * Check leap year of proleptic Gregorian calendar.
+     *
+     * @param year          year
+     * @return              true if leap year
+     */
+    static boolean isLeapYear(long year)
+    {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /**
+     * Integer division rounded toward negative infinity.
+     *
+     * @param x             dividend
+     * @param y             positive divisor
+     * @return              floor of x / y
+     */
+    static long floorDiv(long x, long y)
+    {
+        long q = x / y;
+        if ((x % y) < 0)
+        {
+            q--;
+        }
+        return q;
+    }
+
+    /**
+     * Modulus of floorDiv.
+     *
+     * @param x             dividend
+     * @param y             positive divisor
+     * @return              x - floorDiv(x, y) * y
+     */
+    static long floorMod(long x, long y)
+    {
+        long r = x % y;
+        if (r < 0)
+        {
+            r += y;
+        }
+        return r;
+    }
+}
@@ -0,0 +1,65 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * <pre>
+ * Immutable fields of an instant in current system timezone.
+ * </pre>
+ *
+ * @since 1.0
+ */
+final class ClockSnapshot
+{
+    final long epoch;
+    final String timezoneID;
+    final int year;
+    final int month;
+    final int day;
+    final int zoneOffset;
+    final int dstOffset;
+
+    private ClockSnapshot(long epoch, String timezoneID, int year, int month, int day, int zoneOffset, int dstOffset)
+    {
+        this.epoch = epoch;
+        this.timezoneID = timezoneID;
+        this.year = year;
+        this.month = month;
+        this.day = day;
+        this.zoneOffset = zoneOffset;
+        this.dstOffset = dstOffset;
+    }
+
+    /**
+     * Compute fields of the instant with a Calendar of the zone.
+     *
+     * @param epoch             epoch in millisecond
+     * @param zone              timezone
+     * @return                  snapshot of the instant
+     */
+    static ClockSnapshot of(long epoch, TimeZone zone)
+    {
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(epoch);
+        return new ClockSnapshot(epoch, zone.getID(),
+            calendar.get(Calendar.YEAR),
+            1 + calendar.get(Calendar.MONTH),
+            calendar.get(Calendar.DAY_OF_MONTH),
+            calendar.get(Calendar.ZONE_OFFSET),
+            calendar.get(Calendar.DST_OFFSET));
+    }
+}
@@ -0,0 +1,137 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <pre>
+ * Last formatted current datetime string of each pattern.
+ *
+ * Formatted text of a pattern only changes once per second, or once per millisecond if the pattern has a
+ * millisecond field. A caller whose current time falls in the same second (millisecond) as the cached text,
+ * with the same default locale, gets the cached String, otherwise it formats and publishes its text.
+ * The default timezone is only read when text is formatted, TimeZone.getDefault() clones the zone,
+ * so a change of default timezone is seen from the next second (millisecond).
+ *
+ * Publishing is a plain volatile write of an immutable value, racing writers all hold correct text of their own time,
+ * a value older than the published one is never written back.
+ * </pre>
+ *
+ * @since 1.0
+ */
+final class CurrentDateStringCache
+{
+    static final int MAX_PATTERNS = 64;
+
+    private final DateFormatCache formatCache;
+    private final ConcurrentHashMap<String, Slot> slots = new ConcurrentHashMap<String, Slot>();
+
+    CurrentDateStringCache(DateFormatCache formatCache)
+    {
+        this.formatCache = formatCache;
+    }
+
+    /**
+     * Get datetime string of the epoch in current timezone.
+     *
+     * @param epoch             current epoch in millisecond
+     * @param dtFormat          datetime format
+     * @return                  formatted datetime string
+     */
+    String format(long epoch, String dtFormat)
+    {
+        Slot slot = slots.get(dtFormat);
+        if (slot == null)
+        {
+            if (slots.size() >= MAX_PATTERNS)
+            {
+                return formatCache.format(epoch, dtFormat, null);
+            }
+            slot = new Slot(hasMillisecondField(dtFormat) ? 1 : DateTimeUtil.ONE_SECOND_MILLIS);
+            Slot existing = slots.putIfAbsent(dtFormat, slot);
+            if (existing != null)
+            {
+                slot = existing;
+            }
+        }
+
+        long bucket = CivilCalendar.floorDiv(epoch, slot.granularity);
+        Locale locale = Locale.getDefault();
+        Text text = slot.text;
+        if (text != null && text.bucket == bucket && text.locale.equals(locale))
+        {
+            return text.value;
+        }
+
+        String value = formatCache.format(epoch, dtFormat, null);
+        if (text == null || text.bucket <= bucket)
+        {
+            slot.text = new Text(bucket, locale, value);
+        }
+        return value;
+    }
+
+    void clear()
+    {
+        slots.clear();
+    }
+
+    /**
+     * Check if pattern has a millisecond field 'S' outside of quoted text.
+     */
+    static boolean hasMillisecondField(String dtFormat)
+    {
+        boolean quoted = false;
+        for (int i = 0; i < dtFormat.length(); i++)
+        {
+            char c = dtFormat.charAt(i);
+            if (c == '\'')
+            {
+                quoted = !quoted;
+            }
+            else if (c == 'S' && !quoted)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Slot
+    {
+        final long granularity;
+        volatile Text text;
+
+        Slot(long granularity)
+        {
+            this.granularity = granularity;
+        }
+    }
+
+    private static final class Text
+    {
+        final long bucket;
+        final Locale locale;
+        final String value;
+
+        Text(long bucket, Locale locale, String value)
+        {
+            this.bucket = bucket;
+            this.locale = locale;
+            this.value = value;
+        }
+    }
+}
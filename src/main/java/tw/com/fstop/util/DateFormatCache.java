@@ -0,0 +1,330 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <pre>
+ * Bounded, thread safe cache of compiled date formats keyed by (pattern, timezone id).
+ *
+ * Each cache entry holds a prototype SimpleDateFormat which is configured once and never used directly.
+ * Every thread formats with its own clone of the prototype, so the cached entries are effectively immutable
+ * and the "DateFormat is not thread safe" rule still holds for the per thread instances.
+ *
+ * When the cache is full the least recently used entry is evicted.
+ * Recency is tracked with a tick which only advances when an entry is added,
+ * a hit stamps its entry with the current tick, so hits never write the tick
+ * and write their entry at most once between two additions.
+ * Lookups go through a reusable key of the calling thread and hits are counted by striped counters,
+ * so a hit with a timezone id allocates nothing and does not write memory shared with other threads.
+ * A lookup with a null or empty timezone id reads the default timezone through TimeZone.getDefault(),
+ * which returns a clone, so those hits allocate one TimeZone, pass the id to avoid it.
+ * </pre>
+ *
+ * @since 1.0
+ */
+final class DateFormatCache
+{
+    static final int DEFAULT_MAX_SIZE = 128;
+
+    private final int maxSize;
+    private final ConcurrentHashMap<Key, Entry> entries;
+    private final AtomicLong tick = new AtomicLong();
+    private final StripedCounter hitCount = new StripedCounter();
+    private final StripedCounter missCount = new StripedCounter();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final ThreadLocal<Key> lookupKey = new ThreadLocal<Key>()
+    {
+        @Override
+        protected Key initialValue()
+        {
+            return new Key();
+        }
+    };
+
+    /**
+     * Create a cache holds at most maxSize formats.
+     *
+     * @param maxSize       maximum number of cached formats
+     */
+    DateFormatCache(int maxSize)
+    {
+        if (maxSize < 1)
+        {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.entries = new ConcurrentHashMap<Key, Entry>(maxSize * 4 / 3 + 1);
+    }
+
+    /**
+     * Format epoch by specified format and timezone.
+     *
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param timezoneID        timezone id of result datetime string, if null or empty then use current timezone
+     * @return                  formatted datetime string
+     */
+    String format(long epoch, String dtFormat, String timezoneID)
+    {
+        return get(dtFormat, timezoneID).format(epoch);
+    }
+
+    /**
+     * Get the calling thread's format holder of specified format and timezone.
+     * Returned holder must not be shared with other threads.
+     *
+     * @param dtFormat          datetime format
+     * @param timezoneID        timezone id, if null or empty then use current timezone,
+     *                          which clones the default TimeZone on every call
+     * @return                  format holder of current thread
+     */
+    LocalFormat get(String dtFormat, String timezoneID)
+    {
+        Key key = lookupKey.get();
+        if (timezoneID != null && !timezoneID.isEmpty())
+        {
+            key.set(dtFormat, timezoneID, false, Locale.getDefault());
+        }
+        else
+        {
+            // TimeZone.getDefault() clones and there is no accessor of the default id without a clone,
+            // so a null or empty id allocates one TimeZone per lookup, read once for the whole lookup
+            key.set(dtFormat, TimeZone.getDefault().getID(), true, Locale.getDefault());
+        }
+
+        Entry entry = entries.get(key);
+        if (entry != null)
+        {
+            hitCount.increment();
+            long now = tick.get();
+            if (entry.lastAccess != now)
+            {
+                entry.lastAccess = now;
+            }
+            return entry.local.get();
+        }
+
+        missCount.increment();
+        key = key.copy();
+        // stamped before the tick advances, entries hit after this addition rank newer
+        entry = new Entry(createPrototype(key), tick.getAndIncrement());
+        Entry existing = entries.putIfAbsent(key, entry);
+        if (existing != null)
+        {
+            entry = existing;
+        }
+        else if (entries.size() > maxSize)
+        {
+            evict();
+        }
+        return entry.local.get();
+    }
+
+    private static SimpleDateFormat createPrototype(Key key)
+    {
+        SimpleDateFormat prototype = new SimpleDateFormat(key.pattern);
+        if (key.defaultZone)
+        {
+            prototype.setTimeZone(TimeZone.getDefault());
+        }
+        else
+        {
+            prototype.setTimeZone(TimeZone.getTimeZone(key.timezoneID));
+        }
+        return prototype;
+    }
+
+    /**
+     * Remove least recently used entries until size is back to maxSize.
+     * Only one thread evicts at a time, others just go on.
+     */
+    private void evict()
+    {
+        if (!evicting.compareAndSet(false, true))
+        {
+            return;
+        }
+        try
+        {
+            while (entries.size() > maxSize)
+            {
+                Key oldestKey = null;
+                long oldest = Long.MAX_VALUE;
+                for (Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator(); it.hasNext();)
+                {
+                    Map.Entry<Key, Entry> e = it.next();
+                    if (e.getValue().lastAccess < oldest)
+                    {
+                        oldest = e.getValue().lastAccess;
+                        oldestKey = e.getKey();
+                    }
+                }
+                if (oldestKey == null || entries.remove(oldestKey) == null)
+                {
+                    break;
+                }
+                evictionCount.incrementAndGet();
+            }
+        }
+        finally
+        {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Remove all cached formats, counters are not reset.
+     */
+    void clear()
+    {
+        entries.clear();
+    }
+
+    int size()
+    {
+        return entries.size();
+    }
+
+    int maxSize()
+    {
+        return maxSize;
+    }
+
+    long hitCount()
+    {
+        return hitCount.get();
+    }
+
+    long missCount()
+    {
+        return missCount.get();
+    }
+
+    long evictionCount()
+    {
+        return evictionCount.get();
+    }
+
+    /**
+     * Thread confined format and the Date instance it formats.
+     */
+    static final class LocalFormat
+    {
+        final DateFormat format;
+        private final Date date = new Date(0);
+
+        LocalFormat(DateFormat format)
+        {
+            this.format = format;
+        }
+
+        String format(long epoch)
+        {
+            date.setTime(epoch);
+            return format.format(date);
+        }
+    }
+
+    private static final class Entry
+    {
+        final ThreadLocal<LocalFormat> local;
+        volatile long lastAccess;
+
+        Entry(final SimpleDateFormat prototype, long lastAccess)
+        {
+            this.lastAccess = lastAccess;
+            this.local = new ThreadLocal<LocalFormat>()
+            {
+                @Override
+                protected LocalFormat initialValue()
+                {
+                    return new LocalFormat((DateFormat) prototype.clone());
+                }
+            };
+        }
+    }
+
+    /**
+     * Cache key, a lookup key of a thread is reused for every lookup and copied when an entry is added.
+     */
+    private static final class Key
+    {
+        String pattern;
+        String timezoneID;
+        boolean defaultZone;
+        Locale locale;
+        int hash;
+
+        void set(String pattern, String timezoneID, boolean defaultZone, Locale locale)
+        {
+            this.pattern = pattern;
+            this.timezoneID = timezoneID;
+            this.defaultZone = defaultZone;
+            this.locale = locale;
+            int h = pattern.hashCode();
+            h = 31 * h + timezoneID.hashCode();
+            h = 31 * h + (defaultZone ? 1 : 0);
+            h = 31 * h + locale.hashCode();
+            this.hash = h;
+        }
+
+        Key copy()
+        {
+            Key key = new Key();
+            key.pattern = pattern;
+            key.timezoneID = timezoneID;
+            key.defaultZone = defaultZone;
+            key.locale = locale;
+            key.hash = hash;
+            return key;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+            {
+                return true;
+            }
+            if (!(obj instanceof Key))
+            {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash
+                && defaultZone == other.defaultZone
+                && pattern.equals(other.pattern)
+                && timezoneID.equals(other.timezoneID)
+                && locale.equals(other.locale);
+        }
+    }
+}
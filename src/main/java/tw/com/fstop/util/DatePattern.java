@@ -0,0 +1,792 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <pre>
+ * Compiled plan of a datetime format.
+ *
+ * A format is analysed once into a sequence of fixed width numeric fields, literals and zone offset fields,
+ * the plan is immutable, apart from its last use in the plan cache, and shared by all threads.
+ * Supported fields:
+ *   yyyy MM dd HH mm ss SSS      numeric fields of exactly this width
+ *   XXX                          ISO 8601 offset, Z or +hh:mm
+ *   Z                            RFC 822 offset, +hhmm
+ *   quoted text and other non letter characters are literals
+ *
+ * Formats with other fields (yy, MMM, a, z, E ...) are not specialized, callers use SimpleDateFormat for them.
+ * A specialized plan also declines (format returns -1, parse returns NO_VALUE) when
+ *   - the local datetime is not in year 1583 to 9999, before it GregorianCalendar is Julian
+ *   - parsed text does not match the field widths exactly, or a field is out of its normal range
+ *   - parsed local datetime without offset field is within 2 days of a transition of the timezone
+ *   - timezone is current timezone and it is a custom zone not found by its id
+ *   - default locale does not format with Gregorian years and ASCII digits, e.g. th_TH or ar_SA
+ * so the result of a plan is always the same with SimpleDateFormat, and the declined cases take the general path
+ * which also produces the same ParseException.
+ *
+ * Parsing into a ParseResult requires text to match the plan field by field, malformed text is an error
+ * with error code and index instead of a declined case, fields out of range are errors in strict mode.
+ * </pre>
+ *
+ * @since 1.0
+ */
+final class DatePattern
+{
+    static final int MAX_CACHED_PATTERNS = 256;
+    /** parse result when the plan declines */
+    static final long NO_VALUE = Long.MIN_VALUE;
+    /** 1583-01-01T00:00:00Z, first whole year of Gregorian calendar in GregorianCalendar */
+    static final long MIN_EPOCH = -12212553600000L;
+    /** 10000-01-01T00:00:00Z */
+    static final long MAX_EPOCH = 253402300800000L;
+    static final long TRANSITION_MARGIN = 2 * CivilCalendar.ONE_DAY_MILLIS;
+
+    private static final int LITERAL = 0;
+    private static final int YEAR = 1;
+    private static final int MONTH = 2;
+    private static final int DAY = 3;
+    private static final int HOUR = 4;
+    private static final int MINUTE = 5;
+    private static final int SECOND = 6;
+    private static final int MILLISECOND = 7;
+    private static final int OFFSET_ISO = 8;
+    private static final int OFFSET_RFC = 9;
+    /** maximum width of each kind of field */
+    private static final int[] WIDTHS = {0, 4, 2, 2, 2, 2, 2, 3, 6, 5};
+
+    /** decline on anything SimpleDateFormat may parse differently */
+    private static final int EXACT = 0;
+    /** report malformed text, normalize fields out of range */
+    private static final int LENIENT = 1;
+    /** report malformed text and fields out of range */
+    private static final int STRICT = 2;
+
+    /** probe of the default locale, a plain locale formats PROBE_EPOCH as PROBE_TEXT */
+    private static final String PROBE_PATTERN = "yyyy-MM-dd HH:mm:ss.SSS Z";
+    private static final long PROBE_EPOCH = 1502114440291L;
+    private static final String PROBE_TEXT = "2017-08-07 14:00:40.291 +0000";
+
+    private static final ConcurrentHashMap<String, DatePattern> plans = new ConcurrentHashMap<String, DatePattern>();
+    /** advances when a plan is cached, see DateFormatCache */
+    private static final AtomicLong tick = new AtomicLong();
+    private static final AtomicBoolean evicting = new AtomicBoolean();
+    private static volatile LocaleCheck localeCheck;
+
+    private final String pattern;
+    /** kinds of fields, null if the format is not specialized */
+    private final int[] kinds;
+    /** text of LITERAL fields */
+    private final String[] literals;
+    private final int maxLength;
+    private final boolean hasOffset;
+    /** true if all literals are ASCII, formatted chars are then bytes of the text */
+    private final boolean ascii;
+    /** tick of last use of a cached plan */
+    private volatile long lastAccess;
+
+    private DatePattern(String pattern, int[] kinds, String[] literals)
+    {
+        this.pattern = pattern;
+        this.kinds = kinds;
+        this.literals = literals;
+        int length = 0;
+        boolean offset = false;
+        boolean ascii = true;
+        if (kinds != null)
+        {
+            for (int i = 0; i < kinds.length; i++)
+            {
+                length += kinds[i] == LITERAL ? literals[i].length() : WIDTHS[kinds[i]];
+                offset |= kinds[i] == OFFSET_ISO || kinds[i] == OFFSET_RFC;
+                if (kinds[i] == LITERAL)
+                {
+                    for (int j = 0; j < literals[i].length(); j++)
+                    {
+                        ascii &= literals[i].charAt(j) < 0x80;
+                    }
+                }
+            }
+        }
+        this.maxLength = length;
+        this.hasOffset = offset;
+        this.ascii = ascii;
+    }
+
+    /**
+     * Get cached plan of the format, the format is compiled on first use.
+     * At most MAX_CACHED_PATTERNS plans are cached, the least recently used plan is evicted when the cache is full.
+     *
+     * @param dtFormat          datetime format
+     * @return                  compiled plan
+     */
+    static DatePattern compile(String dtFormat)
+    {
+        DatePattern plan = plans.get(dtFormat);
+        if (plan != null)
+        {
+            if (DateTimeMetrics.ENABLED)
+            {
+                DateTimeMetrics.patternCacheHits.increment();
+            }
+            long now = tick.get();
+            if (plan.lastAccess != now)
+            {
+                plan.lastAccess = now;
+            }
+            return plan;
+        }
+        if (DateTimeMetrics.ENABLED)
+        {
+            DateTimeMetrics.patternCacheMisses.increment();
+        }
+        plan = analyse(dtFormat);
+        plan.lastAccess = tick.getAndIncrement();
+        DatePattern existing = plans.putIfAbsent(dtFormat, plan);
+        if (existing != null)
+        {
+            plan = existing;
+        }
+        else if (plans.size() > MAX_CACHED_PATTERNS)
+        {
+            evict();
+        }
+        return plan;
+    }
+
+    /**
+     * Remove least recently used plans until size is back to MAX_CACHED_PATTERNS.
+     * Only one thread evicts at a time, others just go on.
+     */
+    private static void evict()
+    {
+        if (!evicting.compareAndSet(false, true))
+        {
+            return;
+        }
+        try
+        {
+            while (plans.size() > MAX_CACHED_PATTERNS)
+            {
+                String oldestKey = null;
+                long oldest = Long.MAX_VALUE;
+                for (Iterator<Map.Entry<String, DatePattern>> it = plans.entrySet().iterator(); it.hasNext();)
+                {
+                    Map.Entry<String, DatePattern> e = it.next();
+                    if (e.getValue().lastAccess < oldest)
+                    {
+                        oldest = e.getValue().lastAccess;
+                        oldestKey = e.getKey();
+                    }
+                }
+                if (oldestKey == null || plans.remove(oldestKey) == null)
+                {
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * @return      number of cached plans
+     */
+    static int cachedCount()
+    {
+        return plans.size();
+    }
+
+    /**
+     * Analyse the format without cache.
+     *
+     * @param dtFormat          datetime format
+     * @return                  plan, not specialized if the format has unsupported fields
+     */
+    static DatePattern analyse(String dtFormat)
+    {
+        List<Integer> kinds = new ArrayList<Integer>();
+        List<String> literals = new ArrayList<String>();
+        StringBuilder literal = new StringBuilder();
+        int length = dtFormat.length();
+        int i = 0;
+        while (i < length)
+        {
+            char c = dtFormat.charAt(i);
+            if (c == '\'')
+            {
+                if (i + 1 < length && dtFormat.charAt(i + 1) == '\'')
+                {
+                    literal.append('\'');
+                    i += 2;
+                    continue;
+                }
+                // quoted text, '' inside it is a quote
+                boolean closed = false;
+                i++;
+                while (i < length)
+                {
+                    char q = dtFormat.charAt(i);
+                    if (q == '\'')
+                    {
+                        if (i + 1 < length && dtFormat.charAt(i + 1) == '\'')
+                        {
+                            literal.append('\'');
+                            i += 2;
+                            continue;
+                        }
+                        closed = true;
+                        i++;
+                        break;
+                    }
+                    literal.append(q);
+                    i++;
+                }
+                if (!closed)
+                {
+                    // unterminated quote, SimpleDateFormat rejects it
+                    return new DatePattern(dtFormat, null, null);
+                }
+                continue;
+            }
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')))
+            {
+                literal.append(c);
+                i++;
+                continue;
+            }
+
+            int count = 1;
+            while (i + count < length && dtFormat.charAt(i + count) == c)
+            {
+                count++;
+            }
+            int kind = kindOf(c, count);
+            if (kind < 0)
+            {
+                return new DatePattern(dtFormat, null, null);
+            }
+            if (literal.length() > 0)
+            {
+                kinds.add(LITERAL);
+                literals.add(literal.toString());
+                literal.setLength(0);
+            }
+            kinds.add(kind);
+            literals.add(null);
+            i += count;
+        }
+        if (literal.length() > 0)
+        {
+            kinds.add(LITERAL);
+            literals.add(literal.toString());
+        }
+
+        int[] kindArray = new int[kinds.size()];
+        for (int k = 0; k < kindArray.length; k++)
+        {
+            kindArray[k] = kinds.get(k);
+        }
+        return new DatePattern(dtFormat, kindArray, literals.toArray(new String[literals.size()]));
+    }
+
+    private static int kindOf(char c, int count)
+    {
+        switch (c)
+        {
+            case 'y':
+                return count == 4 ? YEAR : -1;
+            case 'M':
+                return count == 2 ? MONTH : -1;
+            case 'd':
+                return count == 2 ? DAY : -1;
+            case 'H':
+                return count == 2 ? HOUR : -1;
+            case 'm':
+                return count == 2 ? MINUTE : -1;
+            case 's':
+                return count == 2 ? SECOND : -1;
+            case 'S':
+                return count == 3 ? MILLISECOND : -1;
+            case 'X':
+                return count == 3 ? OFFSET_ISO : -1;
+            case 'Z':
+                return count == 1 ? OFFSET_RFC : -1;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Check whether SimpleDateFormat of the default locale writes the same text as the plans,
+     * the result is kept until the default locale changes.
+     *
+     * @return      true if the default locale formats with Gregorian years and ASCII digits
+     */
+    static boolean isPlainLocale()
+    {
+        Locale locale = Locale.getDefault();
+        LocaleCheck check = localeCheck;
+        if (check == null || check.locale != locale)
+        {
+            SimpleDateFormat probe = new SimpleDateFormat(PROBE_PATTERN);
+            probe.setTimeZone(TimeZone.getTimeZone(DateTimeUtil.TIMEZONE_ID_UTC));
+            check = new LocaleCheck(locale, PROBE_TEXT.equals(probe.format(new Date(PROBE_EPOCH))));
+            localeCheck = check;
+        }
+        return check.plain;
+    }
+
+    String getPattern()
+    {
+        return pattern;
+    }
+
+    /**
+     * @return      true if the format is compiled to fixed width fields
+     */
+    boolean isSpecialized()
+    {
+        return kinds != null;
+    }
+
+    /**
+     * @return      true if formatted text is always ASCII
+     */
+    boolean isAscii()
+    {
+        return ascii;
+    }
+
+    /**
+     * @return      maximum number of chars of formatted text
+     */
+    int maxLength()
+    {
+        return maxLength;
+    }
+
+    /**
+     * Format epoch into buf, does not allocate when timezone id is given.
+     *
+     * @param epoch             epoch in millisecond
+     * @param timezoneID        timezone id, if null or empty then use current timezone
+     * @param buf               target, must have maxLength() chars of room from offset
+     * @param offset            index of first char
+     * @return                  number of chars written, -1 if the plan declines
+     */
+    int format(long epoch, String timezoneID, char[] buf, int offset)
+    {
+        if (kinds == null || epoch < MIN_EPOCH || epoch >= MAX_EPOCH)
+        {
+            return -1;
+        }
+        return format(epoch, ZoneOffsetTable.forIDOrDefault(timezoneID), buf, offset);
+    }
+
+    /**
+     * Format epoch into buf in a resolved zone, does not allocate.
+     *
+     * @param epoch             epoch in millisecond
+     * @param zone              timezone
+     * @param buf               target, must have maxLength() chars of room from offset
+     * @param offset            index of first char
+     * @return                  number of chars written, -1 if the plan declines
+     */
+    int format(long epoch, Zone zone, char[] buf, int offset)
+    {
+        return format(epoch, zone.table, buf, offset);
+    }
+
+    private int format(long epoch, ZoneOffsetTable table, char[] buf, int offset)
+    {
+        if (kinds == null || epoch < MIN_EPOCH || epoch >= MAX_EPOCH || table == null || !isPlainLocale())
+        {
+            return -1;
+        }
+        int zoneOffset = table.getOffset(epoch);
+        long local = epoch + zoneOffset;
+        if (local < MIN_EPOCH || local >= MAX_EPOCH)
+        {
+            return -1;
+        }
+        long date = CivilCalendar.civilFromDays(CivilCalendar.epochToDays(local));
+        int millisOfDay = (int) CivilCalendar.floorMod(local, CivilCalendar.ONE_DAY_MILLIS);
+
+        int i = offset;
+        for (int k = 0; k < kinds.length; k++)
+        {
+            switch (kinds[k])
+            {
+                case LITERAL:
+                    String text = literals[k];
+                    text.getChars(0, text.length(), buf, i);
+                    i += text.length();
+                    break;
+                case YEAR:
+                    Digits.write4(buf, i, CivilCalendar.packedYear(date));
+                    i += 4;
+                    break;
+                case MONTH:
+                    Digits.write2(buf, i, CivilCalendar.packedMonth(date));
+                    i += 2;
+                    break;
+                case DAY:
+                    Digits.write2(buf, i, CivilCalendar.packedDay(date));
+                    i += 2;
+                    break;
+                case HOUR:
+                    Digits.write2(buf, i, millisOfDay / 3600000);
+                    i += 2;
+                    break;
+                case MINUTE:
+                    Digits.write2(buf, i, millisOfDay / 60000 % 60);
+                    i += 2;
+                    break;
+                case SECOND:
+                    Digits.write2(buf, i, millisOfDay / 1000 % 60);
+                    i += 2;
+                    break;
+                case MILLISECOND:
+                    Digits.write3(buf, i, millisOfDay % 1000);
+                    i += 3;
+                    break;
+                case OFFSET_ISO:
+                    i += writeIsoOffset(buf, i, zoneOffset);
+                    break;
+                default:
+                    i += writeRfcOffset(buf, i, zoneOffset);
+                    break;
+            }
+        }
+        return i - offset;
+    }
+
+    /**
+     * Write offset like SimpleDateFormat XXX, Z for zero or +hh:mm, return number of chars written.
+     */
+    static int writeIsoOffset(char[] buf, int i, int zoneOffset)
+    {
+        int minutes = zoneOffset / 60000;
+        if (minutes == 0)
+        {
+            buf[i] = 'Z';
+            return 1;
+        }
+        buf[i] = minutes < 0 ? '-' : '+';
+        minutes = Math.abs(minutes);
+        Digits.write2(buf, i + 1, minutes / 60);
+        buf[i + 3] = ':';
+        Digits.write2(buf, i + 4, minutes % 60);
+        return 6;
+    }
+
+    /**
+     * Write offset like SimpleDateFormat Z, +hhmm, return number of chars written.
+     */
+    static int writeRfcOffset(char[] buf, int i, int zoneOffset)
+    {
+        int minutes = zoneOffset / 60000;
+        buf[i] = minutes < 0 ? '-' : '+';
+        minutes = Math.abs(minutes);
+        Digits.write2(buf, i + 1, minutes / 60);
+        Digits.write2(buf, i + 3, minutes % 60);
+        return 5;
+    }
+
+    /**
+     * Parse text which exactly matches the plan, same result with SimpleDateFormat.
+     *
+     * @param s                 text to parse
+     * @param timezoneID        timezone of text without offset field, if null or empty then use current timezone
+     * @return                  epoch in millisecond, NO_VALUE if the plan declines
+     */
+    long parse(CharSequence s, String timezoneID)
+    {
+        return parse(s, timezoneID, null, EXACT, null);
+    }
+
+    /**
+     * Parse text which exactly matches the plan in a resolved zone, same result with SimpleDateFormat.
+     *
+     * @param s                 text to parse
+     * @param zone              timezone of text without offset field
+     * @return                  epoch in millisecond, NO_VALUE if the plan declines
+     */
+    long parse(CharSequence s, Zone zone)
+    {
+        return parse(s, null, zone, EXACT, null);
+    }
+
+    /**
+     * Parse text which must match the plan field by field, errors are recorded in result.
+     * Result code is DECLINED if the plan can not decide, caller takes the general path then.
+     *
+     * @param s                 text to parse
+     * @param timezoneID        timezone of text without offset field, if null or empty then use current timezone
+     * @param result            result holder, its strict flag selects range check
+     * @return                  true if parsed
+     */
+    boolean parse(CharSequence s, String timezoneID, ParseResult result)
+    {
+        long value = parse(s, timezoneID, null, result.isStrict() ? STRICT : LENIENT, result);
+        return value != NO_VALUE && result.success(value);
+    }
+
+    /**
+     * Parse text which must match the plan field by field in a resolved zone, errors are recorded in result.
+     *
+     * @param s                 text to parse
+     * @param zone              timezone of text without offset field
+     * @param result            result holder, its strict flag selects range check
+     * @return                  true if parsed
+     */
+    boolean parse(CharSequence s, Zone zone, ParseResult result)
+    {
+        long value = parse(s, null, zone, result.isStrict() ? STRICT : LENIENT, result);
+        return value != NO_VALUE && result.success(value);
+    }
+
+    private static long fail(ParseResult result, int errorCode, int errorIndex)
+    {
+        if (result != null)
+        {
+            result.fail(errorCode, errorIndex);
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Parse text, zone is used if not null, otherwise timezone id is looked up.
+     */
+    private long parse(CharSequence s, String timezoneID, Zone zone, int mode, ParseResult result)
+    {
+        if (kinds == null || !isPlainLocale())
+        {
+            return fail(result, ParseResult.DECLINED, -1);
+        }
+        int year = 1970;
+        int month = 1;
+        int day = 1;
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int millisecond = 0;
+        int zoneOffset = 0;
+        int dayIndex = -1;
+        boolean outOfRange = false;
+
+        int length = s.length();
+        int i = 0;
+        for (int k = 0; k < kinds.length; k++)
+        {
+            int kind = kinds[k];
+            if (kind == LITERAL)
+            {
+                String text = literals[k];
+                for (int j = 0, n = text.length(); j < n; j++)
+                {
+                    if (i + j >= length)
+                    {
+                        return fail(result, ParseResult.TOO_SHORT, length);
+                    }
+                    if (s.charAt(i + j) != text.charAt(j))
+                    {
+                        return fail(result, ParseResult.LITERAL_MISMATCH, i + j);
+                    }
+                }
+                i += text.length();
+                continue;
+            }
+            if (kind == OFFSET_ISO || kind == OFFSET_RFC)
+            {
+                if (i >= length)
+                {
+                    return fail(result, ParseResult.TOO_SHORT, length);
+                }
+                char sign = s.charAt(i);
+                if (kind == OFFSET_ISO && sign == 'Z')
+                {
+                    zoneOffset = 0;
+                    i++;
+                    continue;
+                }
+                if (sign != '+' && sign != '-')
+                {
+                    return fail(result, ParseResult.LITERAL_MISMATCH, i);
+                }
+                int width = kind == OFFSET_ISO ? 6 : 5;
+                if (i + width > length)
+                {
+                    return fail(result, ParseResult.TOO_SHORT, length);
+                }
+                if (kind == OFFSET_ISO && s.charAt(i + 3) != ':')
+                {
+                    return fail(result, ParseResult.LITERAL_MISMATCH, i + 3);
+                }
+                int hours = parseDigits(s, i + 1, 2, result);
+                int minutes = parseDigits(s, i + width - 2, 2, result);
+                if (hours < 0 || minutes < 0)
+                {
+                    return NO_VALUE;
+                }
+                if (hours > 23 || minutes > 59)
+                {
+                    return mode == STRICT ? fail(result, ParseResult.FIELD_RANGE, i) : fail(result, ParseResult.DECLINED, i);
+                }
+                zoneOffset = (hours * 60 + minutes) * 60000;
+                if (sign == '-')
+                {
+                    zoneOffset = -zoneOffset;
+                }
+                i += width;
+                continue;
+            }
+
+            int width = WIDTHS[kind];
+            if (i + width > length)
+            {
+                return fail(result, ParseResult.TOO_SHORT, length);
+            }
+            int value = parseDigits(s, i, width, result);
+            if (value < 0)
+            {
+                return NO_VALUE;
+            }
+            boolean inRange;
+            switch (kind)
+            {
+                case YEAR:
+                    year = value;
+                    inRange = true;
+                    break;
+                case MONTH:
+                    month = value;
+                    inRange = value >= 1 && value <= 12;
+                    break;
+                case DAY:
+                    day = value;
+                    dayIndex = i;
+                    inRange = value >= 1;
+                    break;
+                case HOUR:
+                    hour = value;
+                    inRange = value <= 23;
+                    break;
+                case MINUTE:
+                    minute = value;
+                    inRange = value <= 59;
+                    break;
+                case SECOND:
+                    second = value;
+                    inRange = value <= 59;
+                    break;
+                default:
+                    millisecond = value;
+                    inRange = true;
+                    break;
+            }
+            if (!inRange)
+            {
+                if (mode == STRICT)
+                {
+                    return fail(result, ParseResult.FIELD_RANGE, i);
+                }
+                outOfRange = true;
+            }
+            i += width;
+        }
+
+        if (i != length)
+        {
+            return fail(result, ParseResult.TRAILING_TEXT, i);
+        }
+        if (month >= 1 && month <= 12 && day > CivilCalendar.daysInMonth(year, month))
+        {
+            if (mode == STRICT)
+            {
+                return fail(result, ParseResult.FIELD_RANGE, dayIndex);
+            }
+            outOfRange = true;
+        }
+        if (outOfRange && mode == EXACT)
+        {
+            return NO_VALUE;
+        }
+        if (year < 1583)
+        {
+            return fail(result, ParseResult.DECLINED, -1);
+        }
+        // lenient fields are normalized by the day number arithmetic like a lenient Calendar
+        long local = CivilCalendar.epochSecond(year, month, day, hour, minute, second) * 1000 + millisecond;
+        if (local < MIN_EPOCH || local >= MAX_EPOCH)
+        {
+            return fail(result, ParseResult.DECLINED, -1);
+        }
+        if (hasOffset)
+        {
+            return local - zoneOffset;
+        }
+        ZoneOffsetTable table = zone != null ? zone.table : ZoneOffsetTable.forIDOrDefault(timezoneID);
+        if (table == null || table.hasTransition(local - TRANSITION_MARGIN, local + TRANSITION_MARGIN))
+        {
+            return fail(result, ParseResult.DECLINED, -1);
+        }
+        return local - table.getOffset(local);
+    }
+
+    /**
+     * Parse digits, return -1 and record NOT_DIGIT if a char is not a digit.
+     */
+    private static int parseDigits(CharSequence s, int offset, int width, ParseResult result)
+    {
+        int value = 0;
+        for (int i = offset; i < offset + width; i++)
+        {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9)
+            {
+                fail(result, ParseResult.NOT_DIGIT, i);
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    private static final class LocaleCheck
+    {
+        final Locale locale;
+        final boolean plain;
+
+        LocaleCheck(Locale locale, boolean plain)
+        {
+            this.locale = locale;
+            this.plain = plain;
+        }
+    }
+}
@@ -0,0 +1,374 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * <pre>
+ * Format epoch into caller supplied StringBuilder, Appendable, char[] or ByteBuffer.
+ *
+ * Patterns compiled by DatePattern, e.g.
+ *   yyyyMMddHHmmss
+ *   yyyyMMdd
+ *   yyyy-MM-dd
+ *   yyyy-MM-dd HH:mm:ss
+ *   yyyy-MM-dd'T'HH:mm:ss.SSSXXX      (ISO 8601 with millisecond and offset)
+ * are emitted from CivilCalendar fields and the zone offset table, they do not allocate any object
+ * when timezone id is given.
+ *
+ * Other patterns and instants which the compiled plan declines are formatted by the cached SimpleDateFormat,
+ * result is the same but a String is created.
+ * </pre>
+ *
+ * @since 1.0
+ */
+final class DateTimeAppender
+{
+    static final String COMPACT = "yyyyMMddHHmmss";
+    static final String COMPACT_DATE = "yyyyMMdd";
+    static final String DATE = "yyyy-MM-dd";
+    static final String DATE_TIME = "yyyy-MM-dd HH:mm:ss";
+    static final String ISO_8601 = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX";
+
+    static final int DEFAULT_SCRATCH_LENGTH = 64;
+
+    private static final ThreadLocal<char[]> scratch = new ThreadLocal<char[]>()
+    {
+        @Override
+        protected char[] initialValue()
+        {
+            return new char[DEFAULT_SCRATCH_LENGTH];
+        }
+    };
+
+    private DateTimeAppender()
+    {
+    }
+
+    /**
+     * Format epoch to a new String, only the String is allocated for specialized patterns.
+     *
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param timezoneID        timezone id, if null or empty then use current timezone
+     * @return                  formatted datetime string
+     */
+    static String format(long epoch, String dtFormat, String timezoneID)
+    {
+        return format(epoch, dtFormat, timezoneID, null);
+    }
+
+    /**
+     * Format epoch to a new String in a resolved zone.
+     *
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param zone              timezone
+     * @return                  formatted datetime string
+     */
+    static String format(long epoch, String dtFormat, Zone zone)
+    {
+        return format(epoch, dtFormat, zone.getID(), zone);
+    }
+
+    private static String format(long epoch, String dtFormat, String timezoneID, Zone zone)
+    {
+        DatePattern plan = DatePattern.compile(dtFormat);
+        char[] buf = scratch(plan);
+        int n = format(plan, epoch, timezoneID, zone, buf);
+        if (n < 0)
+        {
+            return DateTimeUtil.formatCache.format(epoch, dtFormat, timezoneID);
+        }
+        return new String(buf, 0, n);
+    }
+
+    /**
+     * Append formatted epoch to StringBuilder.
+     *
+     * @param sb                target
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param timezoneID        timezone id, if null or empty then use current timezone
+     * @return                  the StringBuilder
+     */
+    static StringBuilder append(StringBuilder sb, long epoch, String dtFormat, String timezoneID)
+    {
+        long start = DateTimeMetrics.ENABLED ? DateTimeMetrics.start(DateTimeMetrics.Operation.APPEND) : 0L;
+        appendTo(sb, epoch, dtFormat, timezoneID, null);
+        if (DateTimeMetrics.ENABLED)
+        {
+            DateTimeMetrics.end(DateTimeMetrics.Operation.APPEND, start);
+        }
+        return sb;
+    }
+
+    /**
+     * Append formatted epoch in a resolved zone to StringBuilder.
+     *
+     * @param sb                target
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param zone              timezone
+     * @return                  the StringBuilder
+     */
+    static StringBuilder append(StringBuilder sb, long epoch, String dtFormat, Zone zone)
+    {
+        long start = DateTimeMetrics.ENABLED ? DateTimeMetrics.start(DateTimeMetrics.Operation.APPEND) : 0L;
+        appendTo(sb, epoch, dtFormat, zone.getID(), zone);
+        if (DateTimeMetrics.ENABLED)
+        {
+            DateTimeMetrics.end(DateTimeMetrics.Operation.APPEND, start);
+        }
+        return sb;
+    }
+
+    private static StringBuilder appendTo(StringBuilder sb, long epoch, String dtFormat, String timezoneID, Zone zone)
+    {
+        DatePattern plan = DatePattern.compile(dtFormat);
+        char[] buf = scratch(plan);
+        int n = format(plan, epoch, timezoneID, zone, buf);
+        if (n < 0)
+        {
+            return sb.append(DateTimeUtil.formatCache.format(epoch, dtFormat, timezoneID));
+        }
+        return sb.append(buf, 0, n);
+    }
+
+    /**
+     * Append formatted epoch to Appendable.
+     *
+     * @param out               target
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param timezoneID        timezone id, if null or empty then use current timezone
+     * @throws IOException      if the Appendable throws
+     */
+    static void append(Appendable out, long epoch, String dtFormat, String timezoneID) throws IOException
+    {
+        long start = DateTimeMetrics.ENABLED ? DateTimeMetrics.start(DateTimeMetrics.Operation.APPEND) : 0L;
+        appendTo(out, epoch, dtFormat, timezoneID, null);
+        if (DateTimeMetrics.ENABLED)
+        {
+            DateTimeMetrics.end(DateTimeMetrics.Operation.APPEND, start);
+        }
+    }
+
+    /**
+     * Append formatted epoch in a resolved zone to Appendable.
+     *
+     * @param out               target
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param zone              timezone
+     * @throws IOException      if the Appendable throws
+     */
+    static void append(Appendable out, long epoch, String dtFormat, Zone zone) throws IOException
+    {
+        long start = DateTimeMetrics.ENABLED ? DateTimeMetrics.start(DateTimeMetrics.Operation.APPEND) : 0L;
+        appendTo(out, epoch, dtFormat, zone.getID(), zone);
+        if (DateTimeMetrics.ENABLED)
+        {
+            DateTimeMetrics.end(DateTimeMetrics.Operation.APPEND, start);
+        }
+    }
+
+    private static void appendTo(Appendable out, long epoch, String dtFormat, String timezoneID, Zone zone) throws IOException
+    {
+        DatePattern plan = DatePattern.compile(dtFormat);
+        char[] buf = scratch(plan);
+        int n = format(plan, epoch, timezoneID, zone, buf);
+        if (n < 0)
+        {
+            out.append(DateTimeUtil.formatCache.format(epoch, dtFormat, timezoneID));
+            return;
+        }
+        for (int i = 0; i < n; i++)
+        {
+            out.append(buf[i]);
+        }
+    }
+
+    /**
+     * Write formatted epoch into char array.
+     *
+     * @param buf               target
+     * @param offset            index of first char
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param timezoneID        timezone id, if null or empty then use current timezone
+     * @return                  number of chars written
+     * @throws ArrayIndexOutOfBoundsException   if buf has not enough room, nothing is written
+     */
+    static int write(char[] buf, int offset, long epoch, String dtFormat, String timezoneID)
+    {
+        long start = DateTimeMetrics.ENABLED ? DateTimeMetrics.start(DateTimeMetrics.Operation.APPEND) : 0L;
+        int n = writeTo(buf, offset, epoch, dtFormat, timezoneID, null);
+        if (DateTimeMetrics.ENABLED)
+        {
+            DateTimeMetrics.end(DateTimeMetrics.Operation.APPEND, start);
+        }
+        return n;
+    }
+
+    /**
+     * Write formatted epoch in a resolved zone into char array.
+     *
+     * @param buf               target
+     * @param offset            index of first char
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param zone              timezone
+     * @return                  number of chars written
+     * @throws ArrayIndexOutOfBoundsException   if buf has not enough room, nothing is written
+     */
+    static int write(char[] buf, int offset, long epoch, String dtFormat, Zone zone)
+    {
+        long start = DateTimeMetrics.ENABLED ? DateTimeMetrics.start(DateTimeMetrics.Operation.APPEND) : 0L;
+        int n = writeTo(buf, offset, epoch, dtFormat, zone.getID(), zone);
+        if (DateTimeMetrics.ENABLED)
+        {
+            DateTimeMetrics.end(DateTimeMetrics.Operation.APPEND, start);
+        }
+        return n;
+    }
+
+    private static int writeTo(char[] buf, int offset, long epoch, String dtFormat, String timezoneID, Zone zone)
+    {
+        DatePattern plan = DatePattern.compile(dtFormat);
+        char[] tmp = scratch(plan);
+        int n = format(plan, epoch, timezoneID, zone, tmp);
+        if (n < 0)
+        {
+            String s = DateTimeUtil.formatCache.format(epoch, dtFormat, timezoneID);
+            n = s.length();
+            checkRoom(buf.length - offset, n);
+            s.getChars(0, n, buf, offset);
+            return n;
+        }
+        checkRoom(buf.length - offset, n);
+        System.arraycopy(tmp, 0, buf, offset, n);
+        return n;
+    }
+
+    /**
+     * Put formatted epoch into buffer as UTF-8 bytes, from the buffer's position.
+     *
+     * @param buf               target
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param timezoneID        timezone id, if null or empty then use current timezone
+     * @return                  number of bytes put
+     * @throws java.nio.BufferOverflowException     if buf has not enough room, nothing is put
+     */
+    static int put(ByteBuffer buf, long epoch, String dtFormat, String timezoneID)
+    {
+        long start = DateTimeMetrics.ENABLED ? DateTimeMetrics.start(DateTimeMetrics.Operation.APPEND) : 0L;
+        int n = putTo(buf, epoch, dtFormat, timezoneID, null);
+        if (DateTimeMetrics.ENABLED)
+        {
+            DateTimeMetrics.end(DateTimeMetrics.Operation.APPEND, start);
+        }
+        return n;
+    }
+
+    /**
+     * Put formatted epoch in a resolved zone into buffer as UTF-8 bytes, from the buffer's position.
+     *
+     * @param buf               target
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param zone              timezone
+     * @return                  number of bytes put
+     * @throws java.nio.BufferOverflowException     if buf has not enough room, nothing is put
+     */
+    static int put(ByteBuffer buf, long epoch, String dtFormat, Zone zone)
+    {
+        long start = DateTimeMetrics.ENABLED ? DateTimeMetrics.start(DateTimeMetrics.Operation.APPEND) : 0L;
+        int n = putTo(buf, epoch, dtFormat, zone.getID(), zone);
+        if (DateTimeMetrics.ENABLED)
+        {
+            DateTimeMetrics.end(DateTimeMetrics.Operation.APPEND, start);
+        }
+        return n;
+    }
+
+    private static int putTo(ByteBuffer buf, long epoch, String dtFormat, String timezoneID, Zone zone)
+    {
+        DatePattern plan = DatePattern.compile(dtFormat);
+        char[] tmp = scratch(plan);
+        // chars of a plan with non ASCII literals are not bytes, the format is encoded in UTF-8
+        int n = plan.isAscii() ? format(plan, epoch, timezoneID, zone, tmp) : -1;
+        if (n < 0)
+        {
+            String s = DateTimeUtil.formatCache.format(epoch, dtFormat, timezoneID);
+            byte[] bytes = toBytes(s);
+            buf.put(bytes);
+            return bytes.length;
+        }
+        if (buf.remaining() < n)
+        {
+            throw new java.nio.BufferOverflowException();
+        }
+        for (int i = 0; i < n; i++)
+        {
+            buf.put((byte) tmp[i]);
+        }
+        return n;
+    }
+
+    /**
+     * Format by the plan in zone if resolved, otherwise in timezone id, return -1 if the plan declines.
+     */
+    private static int format(DatePattern plan, long epoch, String timezoneID, Zone zone, char[] buf)
+    {
+        return zone != null ? plan.format(epoch, zone, buf, 0) : plan.format(epoch, timezoneID, buf, 0);
+    }
+
+    private static byte[] toBytes(String s)
+    {
+        try
+        {
+            return s.getBytes("UTF-8");
+        }
+        catch (java.io.UnsupportedEncodingException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void checkRoom(int room, int length)
+    {
+        if (room < length)
+        {
+            throw new ArrayIndexOutOfBoundsException("need " + length + " chars, " + room + " available");
+        }
+    }
+
+    /**
+     * Get the calling thread's scratch buffer which has room for the plan.
+     */
+    private static char[] scratch(DatePattern plan)
+    {
+        char[] buf = scratch.get();
+        if (buf.length < plan.maxLength())
+        {
+            buf = new char[plan.maxLength()];
+            scratch.set(buf);
+        }
+        return buf;
+    }
+}
@@ -0,0 +1,576 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * <pre>
+ * Bulk conversion of timestamp columns.
+ * Arguments follow System.arraycopy, (src, srcPos, dest, destPos, length).
+ *
+ * Format and timezone are resolved once per call (once per chunk for parallel calls),
+ * not once per element like calling DateTimeUtil in a loop.
+ * Datetime strings are formatted and parsed by the compiled DatePattern,
+ * SimpleDateFormat is only used for formats and elements which the pattern declines.
+ *
+ * Parallel variants split arrays longer than PARALLEL_THRESHOLD into chunks and run them on the given executor,
+ * the calling thread waits for all chunks to finish.
+ * </pre>
+ *
+ * @since 1.0
+ */
+public final class DateTimeBatch
+{
+    /** minimum number of elements of a parallel chunk */
+    public static final int PARALLEL_THRESHOLD = 8192;
+
+    private DateTimeBatch()
+    {
+    }
+
+    /**
+     * Convert epoch milliseconds to datetime strings.
+     *
+     * @param src               epoch in milliseconds
+     * @param srcPos            start position of src
+     * @param dest              formatted datetime strings
+     * @param destPos           start position of dest
+     * @param length            number of elements to convert
+     * @param dtFormat          datetime format
+     * @param timezoneID        timezone id of result strings, if null or empty then use current timezone
+     */
+    public static void epochToDateString(long[] src, int srcPos, String[] dest, int destPos, int length, String dtFormat, String timezoneID)
+    {
+        checkRange(src.length, srcPos, dest.length, destPos, length);
+        format(src, srcPos, dest, destPos, length, 1L, dtFormat, timezoneID);
+    }
+
+    /**
+     * Convert epoch seconds to datetime strings.
+     *
+     * @param src               epoch seconds
+     * @param srcPos            start position of src
+     * @param dest              formatted datetime strings
+     * @param destPos           start position of dest
+     * @param length            number of elements to convert
+     * @param dtFormat          datetime format
+     * @param timezoneID        timezone id of result strings, if null or empty then use current timezone
+     */
+    public static void epochSecondToDateString(long[] src, int srcPos, String[] dest, int destPos, int length, String dtFormat, String timezoneID)
+    {
+        checkRange(src.length, srcPos, dest.length, destPos, length);
+        format(src, srcPos, dest, destPos, length, DateTimeUtil.ONE_SECOND_MILLIS, dtFormat, timezoneID);
+    }
+
+    /**
+     * Format src[i] * unit by the compiled plan, SimpleDateFormat is only used for elements which the plan declines.
+     */
+    private static void format(long[] src, int srcPos, String[] dest, int destPos, int length, long unit, String dtFormat, String timezoneID)
+    {
+        DatePattern plan = DatePattern.compile(dtFormat);
+        // null id is the current timezone, which is looked up by the plan as it may be a custom zone
+        Zone zone = timezoneID == null || timezoneID.isEmpty() ? null : Zone.of(timezoneID);
+        char[] buf = new char[plan.maxLength()];
+        DateFormatCache.LocalFormat format = null;
+        for (int i = 0; i < length; i++)
+        {
+            long epoch = src[srcPos + i] * unit;
+            int n = zone != null ? plan.format(epoch, zone, buf, 0) : plan.format(epoch, timezoneID, buf, 0);
+            if (n >= 0)
+            {
+                dest[destPos + i] = new String(buf, 0, n);
+                continue;
+            }
+            if (format == null)
+            {
+                format = DateTimeUtil.formatCache.get(dtFormat, timezoneID);
+            }
+            dest[destPos + i] = format.format(epoch);
+        }
+    }
+
+    /**
+     * Convert yyyyMMddhhmiss datetime strings to UTC epoch seconds.
+     *
+     * @param src               datetime strings in yyyyMMddhhmiss formate
+     * @param srcPos            start position of src
+     * @param dest              epoch seconds
+     * @param destPos           start position of dest
+     * @param length            number of elements to convert
+     * @throws NumberFormatException    if a non digit character is found
+     */
+    public static void getEpochSecond(CharSequence[] src, int srcPos, long[] dest, int destPos, int length)
+    {
+        checkRange(src.length, srcPos, dest.length, destPos, length);
+        for (int i = 0; i < length; i++)
+        {
+            dest[destPos + i] = DateTimeUtil.getEpochSecond(src[srcPos + i], 0);
+        }
+    }
+
+    /**
+     * Convert date strings to epoch milliseconds.
+     *
+     * @param src               date strings to convert
+     * @param srcPos            start position of src
+     * @param dest              epoch milliseconds
+     * @param destPos           start position of dest
+     * @param length            number of elements to convert
+     * @param dtFormat          format of date strings
+     * @param fmtTimeZoneID     timezone of date format, if null or empty then use current timezone
+     * @throws ParseException   date string parse error, error offset is the index of failed element in src
+     */
+    public static void dateStringToEpoch(String[] src, int srcPos, long[] dest, int destPos, int length, String dtFormat, String fmtTimeZoneID) throws ParseException
+    {
+        checkRange(src.length, srcPos, dest.length, destPos, length);
+        DatePattern plan = DatePattern.compile(dtFormat);
+        DateFormatCache.LocalFormat format = DateTimeUtil.formatCache.get(dtFormat, fmtTimeZoneID);
+        ParsePosition position = new ParsePosition(0);
+        for (int i = 0; i < length; i++)
+        {
+            String date = src[srcPos + i];
+            long epoch = plan.parse(date, fmtTimeZoneID);
+            if (epoch != DatePattern.NO_VALUE)
+            {
+                dest[destPos + i] = epoch;
+                continue;
+            }
+            position.setIndex(0);
+            position.setErrorIndex(-1);
+            Date parsed = format.format.parse(date, position);
+            if (parsed == null)
+            {
+                throw new ParseException("Unparseable date: \"" + date + "\"", srcPos + i);
+            }
+            dest[destPos + i] = parsed.getTime();
+        }
+    }
+
+    /**
+     * Convert yyyyMMddhhmiss datetime strings to UTC epoch seconds without throwing.
+     * Malformed elements are set to invalidValue, does not allocate.
+     *
+     * @param src               datetime strings in yyyyMMddhhmiss formate
+     * @param srcPos            start position of src
+     * @param dest              epoch seconds
+     * @param destPos           start position of dest
+     * @param length            number of elements to convert
+     * @param strict            true to reject fields out of range
+     * @param invalidValue      value of malformed elements
+     * @return                  number of malformed elements
+     */
+    public static int parseEpochSecond(CharSequence[] src, int srcPos, long[] dest, int destPos, int length, boolean strict, long invalidValue)
+    {
+        checkRange(src.length, srcPos, dest.length, destPos, length);
+        ParseResult result = new ParseResult(strict);
+        int invalid = 0;
+        for (int i = 0; i < length; i++)
+        {
+            if (DateTimeUtil.parseEpochSecond(src[srcPos + i], 0, result))
+            {
+                dest[destPos + i] = result.getValue();
+            }
+            else
+            {
+                dest[destPos + i] = invalidValue;
+                invalid++;
+            }
+        }
+        return invalid;
+    }
+
+    /**
+     * Convert date strings to epoch milliseconds without throwing.
+     * Malformed elements are set to invalidValue.
+     *
+     * @param src               date strings to convert
+     * @param srcPos            start position of src
+     * @param dest              epoch milliseconds
+     * @param destPos           start position of dest
+     * @param length            number of elements to convert
+     * @param dtFormat          format of date strings
+     * @param fmtTimeZoneID     timezone of date format, if null or empty then use current timezone
+     * @param strict            true to reject fields out of range
+     * @param invalidValue      value of malformed elements
+     * @return                  number of malformed elements
+     */
+    public static int parseEpoch(CharSequence[] src, int srcPos, long[] dest, int destPos, int length, String dtFormat, String fmtTimeZoneID,
+        boolean strict, long invalidValue)
+    {
+        checkRange(src.length, srcPos, dest.length, destPos, length);
+        ParseResult result = new ParseResult(strict);
+        int invalid = 0;
+        for (int i = 0; i < length; i++)
+        {
+            if (DateTimeUtil.parseEpoch(src[srcPos + i], dtFormat, fmtTimeZoneID, result))
+            {
+                dest[destPos + i] = result.getValue();
+            }
+            else
+            {
+                dest[destPos + i] = invalidValue;
+                invalid++;
+            }
+        }
+        return invalid;
+    }
+
+    /**
+     * Convert ROC date strings of any RocDate layout to epoch milliseconds without throwing.
+     * Malformed elements are set to invalidValue, does not allocate.
+     *
+     * @param src               ROC date strings to convert
+     * @param srcPos            start position of src
+     * @param dest              epoch milliseconds
+     * @param destPos           start position of dest
+     * @param length            number of elements to convert
+     * @param zone              timezone of dates
+     * @param strict            true to reject fields out of range
+     * @param invalidValue      value of malformed elements
+     * @return                  number of malformed elements
+     */
+    public static int parseRocEpoch(CharSequence[] src, int srcPos, long[] dest, int destPos, int length, Zone zone, boolean strict, long invalidValue)
+    {
+        return parseRoc(src, srcPos, dest, destPos, length, zone, strict, invalidValue, false);
+    }
+
+    /**
+     * Convert ROC date strings of any RocDate layout to epoch seconds without throwing.
+     * Malformed elements are set to invalidValue, does not allocate.
+     *
+     * @param src               ROC date strings to convert
+     * @param srcPos            start position of src
+     * @param dest              epoch seconds
+     * @param destPos           start position of dest
+     * @param length            number of elements to convert
+     * @param zone              timezone of dates
+     * @param strict            true to reject fields out of range
+     * @param invalidValue      value of malformed elements
+     * @return                  number of malformed elements
+     */
+    public static int parseRocEpochSecond(CharSequence[] src, int srcPos, long[] dest, int destPos, int length, Zone zone, boolean strict,
+        long invalidValue)
+    {
+        return parseRoc(src, srcPos, dest, destPos, length, zone, strict, invalidValue, true);
+    }
+
+    private static int parseRoc(CharSequence[] src, int srcPos, long[] dest, int destPos, int length, Zone zone, boolean strict, long invalidValue,
+        boolean seconds)
+    {
+        checkRange(src.length, srcPos, dest.length, destPos, length);
+        ParseResult result = new ParseResult(strict);
+        int invalid = 0;
+        for (int i = 0; i < length; i++)
+        {
+            CharSequence s = src[srcPos + i];
+            if (seconds ? RocDate.parseEpochSecond(s, 0, zone, result) : RocDate.parseEpoch(s, 0, zone, result))
+            {
+                dest[destPos + i] = result.getValue();
+            }
+            else
+            {
+                dest[destPos + i] = invalidValue;
+                invalid++;
+            }
+        }
+        return invalid;
+    }
+
+    /**
+     * Convert epoch milliseconds to ROC date strings.
+     *
+     * @param src               epoch in milliseconds
+     * @param srcPos            start position of src
+     * @param dest              ROC date strings
+     * @param destPos           start position of dest
+     * @param length            number of elements to convert
+     * @param layout            RocDate.DATE, DATE_TIME, SLASH_DATE or SLASH_DATE_TIME
+     * @param zone              timezone of result strings
+     */
+    public static void epochToRocDateString(long[] src, int srcPos, String[] dest, int destPos, int length, int layout, Zone zone)
+    {
+        checkRange(src.length, srcPos, dest.length, destPos, length);
+        char[] buf = new char[RocDate.MAX_LENGTH];
+        for (int i = 0; i < length; i++)
+        {
+            dest[destPos + i] = new String(buf, 0, RocDate.format(src[srcPos + i], zone, layout, buf, 0));
+        }
+    }
+
+    /**
+     * Write epoch milliseconds as consecutive fixed width ROC dates into a char array, e.g. a record buffer.
+     * Does not allocate.
+     *
+     * @param src               epoch in milliseconds
+     * @param srcPos            start position of src
+     * @param dest              target chars
+     * @param destPos           index of first char of dest
+     * @param length            number of elements to convert
+     * @param layout            RocDate.DATE, DATE_TIME, SLASH_DATE or SLASH_DATE_TIME
+     * @param zone              timezone of dates
+     * @return                  number of chars written
+     * @throws ArrayIndexOutOfBoundsException   if dest has not enough room
+     */
+    public static int epochToRocDate(long[] src, int srcPos, char[] dest, int destPos, int length, int layout, Zone zone)
+    {
+        int width = RocDate.length(layout);
+        if (length < 0 || srcPos < 0 || destPos < 0 || srcPos > src.length - length || destPos > dest.length - (long) length * width)
+        {
+            throw new ArrayIndexOutOfBoundsException("srcPos=" + srcPos + ", destPos=" + destPos + ", length=" + length);
+        }
+        int i = destPos;
+        for (int k = 0; k < length; k++)
+        {
+            i += RocDate.format(src[srcPos + k], zone, layout, dest, i);
+        }
+        return i - destPos;
+    }
+
+    /**
+     * Parallel version of epochToDateString.
+     *
+     * @param src               epoch in milliseconds
+     * @param srcPos            start position of src
+     * @param dest              formatted datetime strings
+     * @param destPos           start position of dest
+     * @param length            number of elements to convert
+     * @param dtFormat          datetime format
+     * @param timezoneID        timezone id of result strings, if null or empty then use current timezone
+     * @param executor          executor to run chunks
+     */
+    public static void epochToDateString(final long[] src, final int srcPos, final String[] dest, final int destPos, int length,
+        final String dtFormat, final String timezoneID, ExecutorService executor)
+    {
+        checkRange(src.length, srcPos, dest.length, destPos, length);
+        runUnchecked(executor, length, new Chunk()
+        {
+            @Override
+            void run(int from, int count)
+            {
+                epochToDateString(src, srcPos + from, dest, destPos + from, count, dtFormat, timezoneID);
+            }
+        });
+    }
+
+    /**
+     * Parallel version of epochSecondToDateString.
+     *
+     * @param src               epoch seconds
+     * @param srcPos            start position of src
+     * @param dest              formatted datetime strings
+     * @param destPos           start position of dest
+     * @param length            number of elements to convert
+     * @param dtFormat          datetime format
+     * @param timezoneID        timezone id of result strings, if null or empty then use current timezone
+     * @param executor          executor to run chunks
+     */
+    public static void epochSecondToDateString(final long[] src, final int srcPos, final String[] dest, final int destPos, int length,
+        final String dtFormat, final String timezoneID, ExecutorService executor)
+    {
+        checkRange(src.length, srcPos, dest.length, destPos, length);
+        runUnchecked(executor, length, new Chunk()
+        {
+            @Override
+            void run(int from, int count)
+            {
+                epochSecondToDateString(src, srcPos + from, dest, destPos + from, count, dtFormat, timezoneID);
+            }
+        });
+    }
+
+    /**
+     * Parallel version of getEpochSecond.
+     *
+     * @param src               datetime strings in yyyyMMddhhmiss formate
+     * @param srcPos            start position of src
+     * @param dest              epoch seconds
+     * @param destPos           start position of dest
+     * @param length            number of elements to convert
+     * @param executor          executor to run chunks
+     * @throws NumberFormatException    if a non digit character is found
+     */
+    public static void getEpochSecond(final CharSequence[] src, final int srcPos, final long[] dest, final int destPos, int length, ExecutorService executor)
+    {
+        checkRange(src.length, srcPos, dest.length, destPos, length);
+        runUnchecked(executor, length, new Chunk()
+        {
+            @Override
+            void run(int from, int count)
+            {
+                getEpochSecond(src, srcPos + from, dest, destPos + from, count);
+            }
+        });
+    }
+
+    /**
+     * Parallel version of dateStringToEpoch.
+     *
+     * @param src               date strings to convert
+     * @param srcPos            start position of src
+     * @param dest              epoch milliseconds
+     * @param destPos           start position of dest
+     * @param length            number of elements to convert
+     * @param dtFormat          format of date strings
+     * @param fmtTimeZoneID     timezone of date format, if null or empty then use current timezone
+     * @param executor          executor to run chunks
+     * @throws ParseException   date string parse error, error offset is the index of first failed chunk's failed element in src
+     */
+    public static void dateStringToEpoch(final String[] src, final int srcPos, final long[] dest, final int destPos, int length,
+        final String dtFormat, final String fmtTimeZoneID, ExecutorService executor) throws ParseException
+    {
+        checkRange(src.length, srcPos, dest.length, destPos, length);
+        try
+        {
+            run(executor, length, new Chunk()
+            {
+                @Override
+                void run(int from, int count) throws ParseException
+                {
+                    dateStringToEpoch(src, srcPos + from, dest, destPos + from, count, dtFormat, fmtTimeZoneID);
+                }
+            });
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof ParseException)
+            {
+                throw (ParseException) e.getCause();
+            }
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * A range of elements to convert.
+     */
+    abstract static class Chunk
+    {
+        abstract void run(int from, int count) throws Exception;
+    }
+
+    static void runUnchecked(ExecutorService executor, int length, Chunk chunk)
+    {
+        try
+        {
+            run(executor, length, chunk);
+        }
+        catch (ExecutionException e)
+        {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Split length elements into chunks, run them on executor and wait for all of them.
+     * Short arrays are converted on the calling thread.
+     */
+    static void run(ExecutorService executor, int length, final Chunk chunk) throws ExecutionException
+    {
+        int chunks = Math.min(Runtime.getRuntime().availableProcessors(), length / PARALLEL_THRESHOLD);
+        if (chunks <= 1)
+        {
+            try
+            {
+                chunk.run(0, length);
+            }
+            catch (Exception e)
+            {
+                throw new ExecutionException(e);
+            }
+            return;
+        }
+
+        int size = (length + chunks - 1) / chunks;
+        List<Future<Void>> futures = new ArrayList<Future<Void>>(chunks);
+        for (int from = 0; from < length; from += size)
+        {
+            final int start = from;
+            final int count = Math.min(size, length - from);
+            futures.add(executor.submit(new Callable<Void>()
+            {
+                @Override
+                public Void call() throws Exception
+                {
+                    chunk.run(start, count);
+                    return null;
+                }
+            }));
+        }
+
+        ExecutionException failure = null;
+        boolean interrupted = false;
+        for (Future<Void> future : futures)
+        {
+            while (true)
+            {
+                try
+                {
+                    future.get();
+                    break;
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+                catch (ExecutionException e)
+                {
+                    if (failure == null)
+                    {
+                        failure = e;
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    private static RuntimeException unwrap(ExecutionException e)
+    {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException)
+        {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error)
+        {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    static void checkRange(int srcLength, int srcPos, int destLength, int destPos, int length)
+    {
+        if (length < 0 || srcPos < 0 || destPos < 0 || srcPos > srcLength - length || destPos > destLength - length)
+        {
+            throw new ArrayIndexOutOfBoundsException("srcPos=" + srcPos + ", destPos=" + destPos + ", length=" + length);
+        }
+    }
+}
@@ -0,0 +1,462 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * <pre>
+ * Optional metrics of DateTimeUtil: call counts, failure counts, cache hit ratios and sampled latency histograms.
+ *
+ * Metrics are disabled by default, enable them with system property
+ *   -Dtw.com.fstop.util.datetime.metrics=true
+ * ENABLED is a static final flag, call sites test it first so the JIT removes all instrumentation when disabled.
+ *
+ * One call of every SAMPLE_INTERVAL calls of a thread stripe is timed, set the interval (a power of 2) with
+ *   -Dtw.com.fstop.util.datetime.metrics.sampleInterval=64
+ *
+ * Metrics are exported by
+ *   - static getters of this class
+ *   - JMX MBean tw.com.fstop.util:type=DateTimeMetrics
+ *   - DateTimeMetricsListener implementations found by ServiceLoader
+ * </pre>
+ *
+ * @since 1.0
+ */
+public final class DateTimeMetrics
+{
+    public static final String ENABLED_PROPERTY = "tw.com.fstop.util.datetime.metrics";
+    public static final String SAMPLE_INTERVAL_PROPERTY = "tw.com.fstop.util.datetime.metrics.sampleInterval";
+    public static final String OBJECT_NAME = "tw.com.fstop.util:type=DateTimeMetrics";
+
+    /** true if metrics are recorded */
+    public static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+    static final int DEFAULT_SAMPLE_INTERVAL = 64;
+    static final int SAMPLE_INTERVAL = sampleInterval(Integer.getInteger(SAMPLE_INTERVAL_PROPERTY, DEFAULT_SAMPLE_INTERVAL));
+    /** start time of a call which is not sampled */
+    static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    /**
+     * Measured operations.
+     */
+    public enum Operation
+    {
+        /** epoch to datetime string */
+        FORMAT,
+        /** epoch into caller supplied buffer */
+        APPEND,
+        /** datetime string to epoch */
+        PARSE,
+        /** yyyyMMddhhmiss to epoch second */
+        PARSE_EPOCH_SECOND,
+        /** current datetime string */
+        CURRENT_DATE_STRING
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final StripedCounter[] calls = new StripedCounter[OPERATIONS.length];
+    private static final StripedCounter[] failures = new StripedCounter[OPERATIONS.length];
+    private static final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    static final StripedCounter zoneCacheHits = new StripedCounter();
+    static final StripedCounter zoneCacheMisses = new StripedCounter();
+    static final StripedCounter patternCacheHits = new StripedCounter();
+    static final StripedCounter patternCacheMisses = new StripedCounter();
+    private static volatile DateTimeMetricsListener[] listeners = new DateTimeMetricsListener[0];
+
+    static
+    {
+        for (int i = 0; i < OPERATIONS.length; i++)
+        {
+            calls[i] = new StripedCounter();
+            failures[i] = new StripedCounter();
+            latencies[i] = new LatencyHistogram();
+        }
+        if (ENABLED)
+        {
+            loadListeners(Thread.currentThread().getContextClassLoader());
+            registerMBean();
+        }
+    }
+
+    private DateTimeMetrics()
+    {
+    }
+
+    private static int sampleInterval(int interval)
+    {
+        if (interval < 1)
+        {
+            return 1;
+        }
+        return Integer.highestOneBit(interval);
+    }
+
+    /**
+     * Count a call and get its start time if it is sampled.
+     * Call sites test ENABLED before calling.
+     *
+     * @param operation         operation
+     * @return                  start time in nanosecond, or NOT_SAMPLED
+     */
+    static long start(Operation operation)
+    {
+        long count = calls[operation.ordinal()].increment();
+        if ((count & (SAMPLE_INTERVAL - 1)) != 0)
+        {
+            return NOT_SAMPLED;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Record latency of a sampled call.
+     *
+     * @param operation         operation
+     * @param start             value returned by start
+     */
+    static void end(Operation operation, long start)
+    {
+        if (start == NOT_SAMPLED)
+        {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        latencies[operation.ordinal()].record(nanos);
+        DateTimeMetricsListener[] current = listeners;
+        for (int i = 0; i < current.length; i++)
+        {
+            try
+            {
+                current[i].sampled(operation, nanos);
+            }
+            catch (RuntimeException e)
+            {
+                // a broken listener must not break the measured call
+            }
+        }
+    }
+
+    /**
+     * Count a failed call.
+     *
+     * @param operation         operation
+     */
+    static void failed(Operation operation)
+    {
+        failures[operation.ordinal()].increment();
+        DateTimeMetricsListener[] current = listeners;
+        for (int i = 0; i < current.length; i++)
+        {
+            try
+            {
+                current[i].failed(operation);
+            }
+            catch (RuntimeException e)
+            {
+                // a broken listener must not break the measured call
+            }
+        }
+    }
+
+    public static boolean isEnabled()
+    {
+        return ENABLED;
+    }
+
+    public static long getCallCount(Operation operation)
+    {
+        return calls[operation.ordinal()].get();
+    }
+
+    public static long getFailureCount(Operation operation)
+    {
+        return failures[operation.ordinal()].get();
+    }
+
+    /**
+     * Get latency histogram of sampled calls.
+     *
+     * @param operation         operation
+     * @return                  live histogram
+     */
+    public static LatencyHistogram getLatency(Operation operation)
+    {
+        return latencies[operation.ordinal()];
+    }
+
+    /**
+     * @return      hit ratio of cached date formats, NaN if the cache is not used yet
+     */
+    public static double getFormatCacheHitRatio()
+    {
+        return ratio(DateTimeUtil.formatCache.hitCount(), DateTimeUtil.formatCache.missCount());
+    }
+
+    /**
+     * @return      hit ratio of cached zone offset tables, NaN if not used yet
+     */
+    public static double getZoneCacheHitRatio()
+    {
+        return ratio(zoneCacheHits.get(), zoneCacheMisses.get());
+    }
+
+    /**
+     * @return      hit ratio of compiled date patterns, NaN if not used yet
+     */
+    public static double getPatternCacheHitRatio()
+    {
+        return ratio(patternCacheHits.get(), patternCacheMisses.get());
+    }
+
+    private static double ratio(long hits, long misses)
+    {
+        long total = hits + misses;
+        return total == 0 ? Double.NaN : (double) hits / total;
+    }
+
+    /**
+     * Clear counters and histograms, format cache counters are not reset.
+     */
+    public static void reset()
+    {
+        for (int i = 0; i < OPERATIONS.length; i++)
+        {
+            calls[i].reset();
+            failures[i].reset();
+            latencies[i].reset();
+        }
+        zoneCacheHits.reset();
+        zoneCacheMisses.reset();
+        patternCacheHits.reset();
+        patternCacheMisses.reset();
+    }
+
+    /**
+     * Add a listener, listeners found by ServiceLoader are added when metrics are enabled.
+     *
+     * @param listener          listener
+     */
+    public static synchronized void addListener(DateTimeMetricsListener listener)
+    {
+        DateTimeMetricsListener[] current = listeners;
+        DateTimeMetricsListener[] next = new DateTimeMetricsListener[current.length + 1];
+        System.arraycopy(current, 0, next, 0, current.length);
+        next[current.length] = listener;
+        listeners = next;
+    }
+
+    /**
+     * Remove a listener.
+     *
+     * @param listener          listener
+     */
+    public static synchronized void removeListener(DateTimeMetricsListener listener)
+    {
+        DateTimeMetricsListener[] current = listeners;
+        for (int i = 0; i < current.length; i++)
+        {
+            if (current[i] == listener)
+            {
+                DateTimeMetricsListener[] next = new DateTimeMetricsListener[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                listeners = next;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Add listeners found by ServiceLoader, loading stops at the first broken provider
+     * since the iterator may fail on the same provider again.
+     *
+     * @param loader            class loader of provider configuration files and classes
+     * @return                  number of listeners added
+     */
+    static int loadListeners(ClassLoader loader)
+    {
+        int count = 0;
+        try
+        {
+            Iterator<DateTimeMetricsListener> it = ServiceLoader.load(DateTimeMetricsListener.class, loader).iterator();
+            while (it.hasNext())
+            {
+                addListener(it.next());
+                count++;
+            }
+        }
+        catch (ServiceConfigurationError e)
+        {
+            // a broken provider must not break date time functions
+        }
+        return count;
+    }
+
+    /**
+     * Register the MBean to platform MBean server, does nothing if it is registered already.
+     *
+     * @return          true if registered by this call
+     */
+    static boolean registerMBean()
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name))
+            {
+                return false;
+            }
+            server.registerMBean(new MXBean(), name);
+            return true;
+        }
+        catch (JMException e)
+        {
+            return false;
+        }
+        catch (SecurityException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * JMX view of the static metrics.
+     */
+    static final class MXBean implements DateTimeMetricsMXBean
+    {
+        private interface Value
+        {
+            long of(Operation operation);
+        }
+
+        private static Map<String, Long> byOperation(Value value)
+        {
+            Map<String, Long> map = new LinkedHashMap<String, Long>();
+            for (Operation operation : OPERATIONS)
+            {
+                map.put(operation.name(), value.of(operation));
+            }
+            return map;
+        }
+
+        @Override
+        public Map<String, Long> getCallCounts()
+        {
+            return byOperation(new Value()
+            {
+                @Override
+                public long of(Operation operation)
+                {
+                    return getCallCount(operation);
+                }
+            });
+        }
+
+        @Override
+        public Map<String, Long> getFailureCounts()
+        {
+            return byOperation(new Value()
+            {
+                @Override
+                public long of(Operation operation)
+                {
+                    return getFailureCount(operation);
+                }
+            });
+        }
+
+        @Override
+        public Map<String, Long> getLatencyMedianNanos()
+        {
+            return percentile(50);
+        }
+
+        @Override
+        public Map<String, Long> getLatency99thPercentileNanos()
+        {
+            return percentile(99);
+        }
+
+        @Override
+        public Map<String, Long> getLatency999thPercentileNanos()
+        {
+            return percentile(99.9);
+        }
+
+        private static Map<String, Long> percentile(final double percentile)
+        {
+            return byOperation(new Value()
+            {
+                @Override
+                public long of(Operation operation)
+                {
+                    return getLatency(operation).getValueAtPercentile(percentile);
+                }
+            });
+        }
+
+        @Override
+        public Map<String, Long> getLatencyMaxNanos()
+        {
+            return byOperation(new Value()
+            {
+                @Override
+                public long of(Operation operation)
+                {
+                    return getLatency(operation).getMax();
+                }
+            });
+        }
+
+        @Override
+        public double getFormatCacheHitRatio()
+        {
+            return DateTimeMetrics.getFormatCacheHitRatio();
+        }
+
+        @Override
+        public double getZoneCacheHitRatio()
+        {
+            return DateTimeMetrics.getZoneCacheHitRatio();
+        }
+
+        @Override
+        public double getPatternCacheHitRatio()
+        {
+            return DateTimeMetrics.getPatternCacheHitRatio();
+        }
+
+        @Override
+        public int getSampleInterval()
+        {
+            return SAMPLE_INTERVAL;
+        }
+
+        @Override
+        public void reset()
+        {
+            DateTimeMetrics.reset();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+/**
+ * <pre>
+ * Service provider interface to export DateTimeUtil metrics to a monitoring library.
+ *
+ * Implementations are loaded with java.util.ServiceLoader when metrics are enabled, register them in
+ *   META-INF/services/tw.com.fstop.util.DateTimeMetricsListener
+ * Listeners are called on the calling thread of DateTimeUtil, they must be thread safe and return quickly.
+ * </pre>
+ *
+ * @since 1.0
+ */
+public interface DateTimeMetricsListener
+{
+    /**
+     * Called for each sampled call.
+     *
+     * @param operation         measured operation
+     * @param nanos             latency in nanosecond
+     */
+    void sampled(DateTimeMetrics.Operation operation, long nanos);
+
+    /**
+     * Called for each failed call, failures are not sampled.
+     *
+     * @param operation         failed operation
+     */
+    void failed(DateTimeMetrics.Operation operation);
+}
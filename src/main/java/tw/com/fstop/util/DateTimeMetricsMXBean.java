@@ -0,0 +1,52 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.util.Map;
+
+/**
+ * <pre>
+ * JMX view of DateTimeMetrics, registered as tw.com.fstop.util:type=DateTimeMetrics when metrics are enabled.
+ * Maps are keyed by operation name.
+ * </pre>
+ *
+ * @since 1.0
+ */
+public interface DateTimeMetricsMXBean
+{
+    Map<String, Long> getCallCounts();
+
+    Map<String, Long> getFailureCounts();
+
+    Map<String, Long> getLatencyMedianNanos();
+
+    Map<String, Long> getLatency99thPercentileNanos();
+
+    Map<String, Long> getLatency999thPercentileNanos();
+
+    Map<String, Long> getLatencyMaxNanos();
+
+    double getFormatCacheHitRatio();
+
+    double getZoneCacheHitRatio();
+
+    double getPatternCacheHitRatio();
+
+    int getSampleInterval();
+
+    /**
+     * Clear counters and histograms, format cache counters are not reset.
+     */
+    void reset();
+}
@@ -13,10 +13,13 @@
 
 package tw.com.fstop.util;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.text.ParsePosition;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.TimeZone;
 
 /**
@@ -56,6 +59,7 @@ import java.util.TimeZone;
  * 
  * Note:
  *   DateFormat implementation is not thread safe!
+ *   Formats are cached by (pattern, timezone id), every thread formats with its own copy of the cached format.
  * 
  * </pre>
  * 
@@ -68,6 +72,83 @@ public class DateTimeUtil
     static int ONE_HOUR_SECONDS = 3600;
     static int ONE_SECOND_MILLIS = 1000;
     
+    static final DateFormatCache formatCache = new DateFormatCache(DateFormatCache.DEFAULT_MAX_SIZE);
+    
+    static final CurrentDateStringCache currentDateStringCache = new CurrentDateStringCache(formatCache);
+    static volatile boolean currentDateStringCaching = true;
+    
+    static final int COMPACT_DATE_TIME_LENGTH = 14;
+    
+    static volatile TimeSource timeSource = TimeSource.SYSTEM;
+    static volatile TickingClock tickingClock;
+    
+    /**
+     * Replace source of current time, for example a fixed time source in tests.
+     * 
+     * @param source        time source, null to restore system clock
+     */
+    public static synchronized void setTimeSource(TimeSource source)
+    {
+        timeSource = source != null ? source : TimeSource.SYSTEM;
+        TickingClock clock = tickingClock;
+        if (clock != null)
+        {
+            clock.setSource(timeSource);
+        }
+    }
+    
+    /**
+     * Start ticking clock mode.
+     * A background thread publishes current time once per resolution, getCurrentEpoch, getCurrentYear, getCurrentMonth,
+     * getCurrentDay, getCurrentTimeZoneOffset and getCurrentDaylightSavingOffset then read the published value
+     * instead of computing it, so the value returned is at most one resolution old.
+     * 
+     * @param resolutionMillis      tick interval in millisecond
+     */
+    public static synchronized void startTickingClock(long resolutionMillis)
+    {
+        stopTickingClock();
+        TickingClock clock = new TickingClock(timeSource, resolutionMillis);
+        clock.start();
+        tickingClock = clock;
+    }
+    
+    /**
+     * Stop ticking clock mode, current time is read from time source on each call again.
+     */
+    public static synchronized void stopTickingClock()
+    {
+        TickingClock clock = tickingClock;
+        if (clock != null)
+        {
+            tickingClock = null;
+            clock.stop();
+        }
+    }
+    
+    /**
+     * Check if ticking clock mode is on.
+     * 
+     * @return      true if ticking clock is running
+     */
+    public static boolean isTickingClock()
+    {
+        return tickingClock != null;
+    }
+    
+    /**
+     * Get fields of current time, published snapshot in ticking clock mode.
+     */
+    static ClockSnapshot currentSnapshot()
+    {
+        TickingClock clock = tickingClock;
+        if (clock != null)
+        {
+            return clock.snapshot();
+        }
+        return ClockSnapshot.of(timeSource.currentTimeMillis(), TimeZone.getDefault());
+    }
+    
     
     /**
      * Get current system timezone id.
@@ -86,9 +167,7 @@ public class DateTimeUtil
      */
     public static int getCurrentTimeZoneOffset()
     {
-        Calendar calendar = Calendar.getInstance();
-        int zoneOffset = calendar.get(Calendar.ZONE_OFFSET);
-        return zoneOffset;
+        return currentSnapshot().zoneOffset;
     }
     
     /**
@@ -109,7 +188,12 @@ public class DateTimeUtil
      */
     public static long getCurrentEpoch()
     {
-        return System.currentTimeMillis();
+        TickingClock clock = tickingClock;
+        if (clock != null)
+        {
+            return clock.snapshot().epoch;
+        }
+        return timeSource.currentTimeMillis();
     }
     
     /**
@@ -131,24 +215,50 @@ public class DateTimeUtil
      */
     public static long getEpochSecond()
     {
-        TimeZone timeZone = TimeZone.getTimeZone(TIMEZONE_ID_UTC);
-        Calendar calendar = Calendar.getInstance(timeZone);
-        long secondsSinceEpoch = calendar.getTimeInMillis()/ONE_SECOND_MILLIS;
-        return secondsSinceEpoch;
+        //UTC calendar time in millis is the same with system time
+        return getCurrentEpoch()/ONE_SECOND_MILLIS;
     }          
     
     /**
      * Get specified datetime string.
+     * When current datetime string caching is on, a pattern is formatted at most once per second 
+     * (once per millisecond if the pattern has millisecond field), other callers get the cached string.
+     * A change of default timezone is then seen from the next second (millisecond).
      * 
      * @param dtFormat      datetime format
      * @return              formatted datetime string
      */
     public static String getCurrentDateString(String dtFormat)
     {
-        DateFormat format = new SimpleDateFormat(dtFormat);
-        Calendar calendar = Calendar.getInstance();       
-        String formatted = format.format(calendar.getTime());        
-        return formatted;
+        long start = DateTimeMetrics.ENABLED ? DateTimeMetrics.start(DateTimeMetrics.Operation.CURRENT_DATE_STRING) : 0L;
+        String value;
+        if (currentDateStringCaching)
+        {
+            value = currentDateStringCache.format(getCurrentEpoch(), dtFormat);
+        }
+        else
+        {
+            value = formatCache.format(getCurrentEpoch(), dtFormat, null);
+        }
+        if (DateTimeMetrics.ENABLED)
+        {
+            DateTimeMetrics.end(DateTimeMetrics.Operation.CURRENT_DATE_STRING, start);
+        }
+        return value;
+    }
+    
+    /**
+     * Turn on or off caching of getCurrentDateString, it is on by default.
+     * 
+     * @param caching       true to cache current datetime strings
+     */
+    public static void setCurrentDateStringCaching(boolean caching)
+    {
+        currentDateStringCaching = caching;
+        if (!caching)
+        {
+            currentDateStringCache.clear();
+        }
     }
     
     
@@ -158,9 +268,7 @@ public class DateTimeUtil
      */
     public static int getCurrentYear()
     {
-        Calendar  calendar = null;
-        calendar = Calendar.getInstance();
-        return calendar.get(Calendar.YEAR);     
+        return currentSnapshot().year;     
     }
     
     /**
@@ -169,9 +277,7 @@ public class DateTimeUtil
      */
     public static int getCurrentMonth()
     {
-        Calendar  calendar = null;
-        calendar = Calendar.getInstance();
-        return 1 + calendar.get(Calendar.MONTH);
+        return currentSnapshot().month;
     }
 
     /**
@@ -180,9 +286,7 @@ public class DateTimeUtil
      */
     public static int getCurrentDay()
     {
-        Calendar  calendar = null;
-        calendar = Calendar.getInstance();
-        return calendar.get(Calendar.DAY_OF_MONTH);
+        return currentSnapshot().day;
     }
 
     /**
@@ -192,10 +296,45 @@ public class DateTimeUtil
      */
     public static int getLocalDay(String timezoneID)
     {
-        TimeZone timeZone = TimeZone.getTimeZone(timezoneID);
-        Calendar  calendar = null;
-        calendar = Calendar.getInstance(timeZone);
-        return calendar.get(Calendar.DAY_OF_MONTH);
+        return getLocalDay(timezoneID, getCurrentEpoch());
+    }
+    
+    /**
+     * Get local day of month at the specified epoch.
+     * @param timezoneID    timezone id
+     * @param epoch         epoch in millisecond
+     * @return              day of month
+     */
+    public static int getLocalDay(String timezoneID, long epoch)
+    {
+        return localDay(ZoneOffsetTable.forID(timezoneID), epoch);
+    }
+    
+    /**
+     * Get local day of month.
+     * @param zone      timezone
+     * @return          day of month
+     */
+    public static int getLocalDay(Zone zone)
+    {
+        return getLocalDay(zone, getCurrentEpoch());
+    }
+    
+    /**
+     * Get local day of month at the specified epoch.
+     * @param zone          timezone
+     * @param epoch         epoch in millisecond
+     * @return              day of month
+     */
+    public static int getLocalDay(Zone zone, long epoch)
+    {
+        return localDay(zone.table, epoch);
+    }
+    
+    private static int localDay(ZoneOffsetTable table, long epoch)
+    {
+        long localDay = CivilCalendar.epochToDays(epoch + table.getOffset(epoch));
+        return CivilCalendar.packedDay(CivilCalendar.civilFromDays(localDay));
     }
     
     /**
@@ -205,10 +344,18 @@ public class DateTimeUtil
      */
     public static int getLocalTimeZoneOffset(String timezoneID)
     {
-        TimeZone timeZone = TimeZone.getTimeZone(timezoneID);
-        Calendar calendar = Calendar.getInstance(timeZone);
-        int zoneOffset = calendar.get(Calendar.ZONE_OFFSET);
-        return zoneOffset;
+        return getLocalTimeZoneOffset(timezoneID, getCurrentEpoch());
+    }
+
+    /**
+     * Get timezone offset value at the specified epoch.
+     * @param timezoneID    timezone id
+     * @param epoch         epoch in millisecond
+     * @return              timezone offset value in milliseconds
+     */
+    public static int getLocalTimeZoneOffset(String timezoneID, long epoch)
+    {
+        return ZoneOffsetTable.forID(timezoneID).getRawOffset(epoch);
     }
 
     /**
@@ -223,15 +370,45 @@ public class DateTimeUtil
         return getLocalTimeZoneOffset(timezoneID) / ONE_SECOND_MILLIS / ONE_HOUR_SECONDS;
     }
     
+    /**
+     * Get current timezone offset value of the zone.
+     * @param zone          timezone
+     * @return              timezone offset value in milliseconds
+     */
+    public static int getLocalTimeZoneOffset(Zone zone)
+    {
+        return getLocalTimeZoneOffset(zone, getCurrentEpoch());
+    }
+
+    /**
+     * Get timezone offset value of the zone at the specified epoch.
+     * @param zone          timezone
+     * @param epoch         epoch in millisecond
+     * @return              timezone offset value in milliseconds
+     */
+    public static int getLocalTimeZoneOffset(Zone zone, long epoch)
+    {
+        return zone.getRawOffset(epoch);
+    }
+
+    /**
+     * Get current timezone offset value of the zone in hour.
+     * @param zone          timezone
+     * @return              timezone offset value in hour
+     */
+    public static int getLocalTimeZoneOffsetHour(Zone zone)
+    {
+        //milliseconds -> seconds -> hour
+        return getLocalTimeZoneOffset(zone) / ONE_SECOND_MILLIS / ONE_HOUR_SECONDS;
+    }
+    
     /**
      * Get current system daylight saving offset value.
      * @return      daylight saving offset value
      */
     public static int getCurrentDaylightSavingOffset()
     {
-        Calendar calendar = Calendar.getInstance();
-        int dlsOffset = calendar.get(Calendar.DST_OFFSET);
-        return dlsOffset;
+        return currentSnapshot().dstOffset;
     }
     
     /**
@@ -251,10 +428,18 @@ public class DateTimeUtil
      */
     public static int getLocalDaylightSavingOffset(String timezoneID)
     {
-        TimeZone timeZone = TimeZone.getTimeZone(timezoneID);
-        Calendar calendar = Calendar.getInstance(timeZone);
-        int dlsOffset = calendar.get(Calendar.DST_OFFSET);
-        return dlsOffset;
+        return getLocalDaylightSavingOffset(timezoneID, getCurrentEpoch());
+    }
+    
+    /**
+     * Input timezone id and returns daylight saving offset value at the specified epoch.
+     * @param timezoneID    timezone id
+     * @param epoch         epoch in millisecond
+     * @return              daylight saving offset value in millisecond
+     */
+    public static int getLocalDaylightSavingOffset(String timezoneID, long epoch)
+    {
+        return ZoneOffsetTable.forID(timezoneID).getDaylightSavingOffset(epoch);
     }
     
     /**
@@ -268,9 +453,42 @@ public class DateTimeUtil
         return getLocalDaylightSavingOffset(timezoneID) / ONE_SECOND_MILLIS / ONE_HOUR_SECONDS;
     }
     
+    /**
+     * Get current daylight saving offset value of the zone.
+     * @param zone          timezone
+     * @return              daylight saving offset value in millisecond
+     */
+    public static int getLocalDaylightSavingOffset(Zone zone)
+    {
+        return getLocalDaylightSavingOffset(zone, getCurrentEpoch());
+    }
+    
+    /**
+     * Get daylight saving offset value of the zone at the specified epoch.
+     * @param zone          timezone
+     * @param epoch         epoch in millisecond
+     * @return              daylight saving offset value in millisecond
+     */
+    public static int getLocalDaylightSavingOffset(Zone zone, long epoch)
+    {
+        return zone.getDaylightSavingOffset(epoch);
+    }
+    
+    /**
+     * Get current daylight saving offset value of the zone in hour.
+     * @param zone          timezone
+     * @return              daylight saving offset value in hour
+     */
+    public static int getLocalDaylightSavingOffsetHour(Zone zone)
+    {
+        //milliseconds -> seconds -> hour
+        return getLocalDaylightSavingOffset(zone) / ONE_SECOND_MILLIS / ONE_HOUR_SECONDS;
+    }
+    
     
     /**
      * Input year, month, day, hour, minute, second and return UTC epoch seconds.
+     * Date is calculated in proleptic Gregorian calendar, field values out of range are rolled like a lenient Calendar.
      * 
      * @param year      year
      * @param month     month value from 1 to 12
@@ -282,13 +500,7 @@ public class DateTimeUtil
      */
     public static long getEpochSecond(int year, int month, int day, int hour, int minute, int second)
     {
-        TimeZone timeZone = TimeZone.getTimeZone(TIMEZONE_ID_UTC);
-        Calendar calendar = Calendar.getInstance(timeZone);
-        calendar.clear();   //clears unused field values
-        int m = month - 1;  //adjust month value from one base to zero base
-        calendar.set(year, m, day, hour, minute , second);
-        long secondsSinceEpoch = calendar.getTimeInMillis()/ONE_SECOND_MILLIS;
-        return secondsSinceEpoch;
+        return CivilCalendar.epochSecond(year, month, day, hour, minute, second);
     }          
 
     /**
@@ -299,17 +511,266 @@ public class DateTimeUtil
      */
     public static long getEpochSecond(String yyyyMMddhhmiss)
     {
-        long ret = 0;
-        int yyyy = Integer.parseInt(yyyyMMddhhmiss.substring(0, 4));
-        int mm = Integer.parseInt(yyyyMMddhhmiss.substring(4, 6));
-        int dd = Integer.parseInt(yyyyMMddhhmiss.substring(6, 8));
-        int hh = Integer.parseInt(yyyyMMddhhmiss.substring(8, 10));
-        int mi = Integer.parseInt(yyyyMMddhhmiss.substring(10, 12));
-        int ss = Integer.parseInt(yyyyMMddhhmiss.substring(12, 14));
-        ret = getEpochSecond(yyyy, mm, dd, hh, mi, ss);       
-        return ret;
+        return getEpochSecond(yyyyMMddhhmiss, 0);
+    }
+
+    /**
+     * Input datetime characters and return UTC epoch seconds.
+     * 
+     * @param yyyyMMddhhmiss    characters in yyyyMMddhhmiss formate
+     * @return          epoch seconds
+     */
+    public static long getEpochSecond(CharSequence yyyyMMddhhmiss)
+    {
+        return getEpochSecond(yyyyMMddhhmiss, 0);
+    }
+
+    /**
+     * Read yyyyMMddhhmiss datetime at offset of the characters and return UTC epoch seconds.
+     * Digits are scanned in place, no substring is created.
+     * Date is calculated in proleptic Gregorian calendar.
+     * 
+     * @param s             characters contain yyyyMMddhhmiss datetime
+     * @param offset        index of first digit
+     * @return              epoch seconds
+     * @throws NumberFormatException    if a non digit character is found
+     */
+    public static long getEpochSecond(CharSequence s, int offset)
+    {
+        long start = DateTimeMetrics.ENABLED ? DateTimeMetrics.start(DateTimeMetrics.Operation.PARSE_EPOCH_SECOND) : 0L;
+        int yyyy, mm, dd, hh, mi, ss;
+        try
+        {
+            yyyy = Digits.parse(s, offset, 4);
+            mm = Digits.parse(s, offset + 4, 2);
+            dd = Digits.parse(s, offset + 6, 2);
+            hh = Digits.parse(s, offset + 8, 2);
+            mi = Digits.parse(s, offset + 10, 2);
+            ss = Digits.parse(s, offset + 12, 2);
+        }
+        catch (RuntimeException e)
+        {
+            if (DateTimeMetrics.ENABLED)
+            {
+                DateTimeMetrics.failed(DateTimeMetrics.Operation.PARSE_EPOCH_SECOND);
+            }
+            throw e;
+        }
+        long epochSecond = CivilCalendar.epochSecond(yyyy, mm, dd, hh, mi, ss);
+        if (DateTimeMetrics.ENABLED)
+        {
+            DateTimeMetrics.end(DateTimeMetrics.Operation.PARSE_EPOCH_SECOND, start);
+        }
+        return epochSecond;
+    }
+
+    /**
+     * Read yyyyMMddhhmiss datetime at offset of the char array and return UTC epoch seconds.
+     * 
+     * @param buf           char array contains yyyyMMddhhmiss datetime
+     * @param offset        index of first digit
+     * @return              epoch seconds
+     * @throws NumberFormatException    if a non digit character is found
+     */
+    public static long getEpochSecond(char[] buf, int offset)
+    {
+        long start = DateTimeMetrics.ENABLED ? DateTimeMetrics.start(DateTimeMetrics.Operation.PARSE_EPOCH_SECOND) : 0L;
+        int yyyy, mm, dd, hh, mi, ss;
+        try
+        {
+            yyyy = Digits.parse(buf, offset, 4);
+            mm = Digits.parse(buf, offset + 4, 2);
+            dd = Digits.parse(buf, offset + 6, 2);
+            hh = Digits.parse(buf, offset + 8, 2);
+            mi = Digits.parse(buf, offset + 10, 2);
+            ss = Digits.parse(buf, offset + 12, 2);
+        }
+        catch (RuntimeException e)
+        {
+            if (DateTimeMetrics.ENABLED)
+            {
+                DateTimeMetrics.failed(DateTimeMetrics.Operation.PARSE_EPOCH_SECOND);
+            }
+            throw e;
+        }
+        long epochSecond = CivilCalendar.epochSecond(yyyy, mm, dd, hh, mi, ss);
+        if (DateTimeMetrics.ENABLED)
+        {
+            DateTimeMetrics.end(DateTimeMetrics.Operation.PARSE_EPOCH_SECOND, start);
+        }
+        return epochSecond;
+    }
+
+    /**
+     * Read ASCII yyyyMMddhhmiss datetime at offset of the byte array and return UTC epoch seconds.
+     * 
+     * @param buf           byte array contains yyyyMMddhhmiss datetime
+     * @param offset        index of first digit
+     * @return              epoch seconds
+     * @throws NumberFormatException    if a non digit byte is found
+     */
+    public static long getEpochSecond(byte[] buf, int offset)
+    {
+        long start = DateTimeMetrics.ENABLED ? DateTimeMetrics.start(DateTimeMetrics.Operation.PARSE_EPOCH_SECOND) : 0L;
+        int yyyy, mm, dd, hh, mi, ss;
+        try
+        {
+            yyyy = Digits.parse(buf, offset, 4);
+            mm = Digits.parse(buf, offset + 4, 2);
+            dd = Digits.parse(buf, offset + 6, 2);
+            hh = Digits.parse(buf, offset + 8, 2);
+            mi = Digits.parse(buf, offset + 10, 2);
+            ss = Digits.parse(buf, offset + 12, 2);
+        }
+        catch (RuntimeException e)
+        {
+            if (DateTimeMetrics.ENABLED)
+            {
+                DateTimeMetrics.failed(DateTimeMetrics.Operation.PARSE_EPOCH_SECOND);
+            }
+            throw e;
+        }
+        long epochSecond = CivilCalendar.epochSecond(yyyy, mm, dd, hh, mi, ss);
+        if (DateTimeMetrics.ENABLED)
+        {
+            DateTimeMetrics.end(DateTimeMetrics.Operation.PARSE_EPOCH_SECOND, start);
+        }
+        return epochSecond;
+    }
+    
+    /**
+     * Read ASCII yyyyMMddhhmiss datetime at absolute index of the buffer and return UTC epoch seconds.
+     * Position of the buffer is not changed, so it works on direct and memory mapped buffers in place.
+     * 
+     * @param buf           buffer contains yyyyMMddhhmiss datetime
+     * @param index         index of first digit
+     * @return              epoch seconds
+     * @throws NumberFormatException    if a non digit byte is found
+     */
+    public static long getEpochSecond(ByteBuffer buf, int index)
+    {
+        long start = DateTimeMetrics.ENABLED ? DateTimeMetrics.start(DateTimeMetrics.Operation.PARSE_EPOCH_SECOND) : 0L;
+        int yyyy, mm, dd, hh, mi, ss;
+        try
+        {
+            yyyy = Digits.parse(buf, index, 4);
+            mm = Digits.parse(buf, index + 4, 2);
+            dd = Digits.parse(buf, index + 6, 2);
+            hh = Digits.parse(buf, index + 8, 2);
+            mi = Digits.parse(buf, index + 10, 2);
+            ss = Digits.parse(buf, index + 12, 2);
+        }
+        catch (RuntimeException e)
+        {
+            if (DateTimeMetrics.ENABLED)
+            {
+                DateTimeMetrics.failed(DateTimeMetrics.Operation.PARSE_EPOCH_SECOND);
+            }
+            throw e;
+        }
+        long epochSecond = CivilCalendar.epochSecond(yyyy, mm, dd, hh, mi, ss);
+        if (DateTimeMetrics.ENABLED)
+        {
+            DateTimeMetrics.end(DateTimeMetrics.Operation.PARSE_EPOCH_SECOND, start);
+        }
+        return epochSecond;
     }
     
+    /**
+     * Convert yyyyMMddhhmiss datetime at offset to UTC epoch second without throwing.
+     * Errors are recorded in result, strict result also rejects fields out of range.
+     * Does not allocate.
+     * 
+     * @param s                 text contains yyyyMMddhhmiss
+     * @param offset            index of first digit
+     * @param result            result holder, value is epoch second
+     * @return                  true if parsed
+     */
+    public static boolean parseEpochSecond(CharSequence s, int offset, ParseResult result)
+    {
+        if (!DateTimeMetrics.ENABLED)
+        {
+            return parseCompact(s, offset, result);
+        }
+        long start = DateTimeMetrics.start(DateTimeMetrics.Operation.PARSE_EPOCH_SECOND);
+        boolean parsed = parseCompact(s, offset, result);
+        if (parsed)
+        {
+            DateTimeMetrics.end(DateTimeMetrics.Operation.PARSE_EPOCH_SECOND, start);
+        }
+        else
+        {
+            DateTimeMetrics.failed(DateTimeMetrics.Operation.PARSE_EPOCH_SECOND);
+        }
+        return parsed;
+    }
+
+    private static boolean parseCompact(CharSequence s, int offset, ParseResult result)
+    {
+        int length = s.length();
+        if (offset < 0 || offset > length)
+        {
+            return result.fail(ParseResult.TOO_SHORT, offset);
+        }
+        for (int i = offset, end = offset + COMPACT_DATE_TIME_LENGTH; i < end; i++)
+        {
+            if (i >= length)
+            {
+                return result.fail(ParseResult.TOO_SHORT, length);
+            }
+            char c = s.charAt(i);
+            if (c < '0' || c > '9')
+            {
+                return result.fail(ParseResult.NOT_DIGIT, i);
+            }
+        }
+        int yyyy = Digits.parse(s, offset, 4);
+        int mm = Digits.parse(s, offset + 4, 2);
+        int dd = Digits.parse(s, offset + 6, 2);
+        int hh = Digits.parse(s, offset + 8, 2);
+        int mi = Digits.parse(s, offset + 10, 2);
+        int ss = Digits.parse(s, offset + 12, 2);
+        if (result.isStrict())
+        {
+            if (mm < 1 || mm > 12)
+            {
+                return result.fail(ParseResult.FIELD_RANGE, offset + 4);
+            }
+            if (dd < 1 || dd > CivilCalendar.daysInMonth(yyyy, mm))
+            {
+                return result.fail(ParseResult.FIELD_RANGE, offset + 6);
+            }
+            if (hh > 23)
+            {
+                return result.fail(ParseResult.FIELD_RANGE, offset + 8);
+            }
+            if (mi > 59)
+            {
+                return result.fail(ParseResult.FIELD_RANGE, offset + 10);
+            }
+            if (ss > 59)
+            {
+                return result.fail(ParseResult.FIELD_RANGE, offset + 12);
+            }
+        }
+        return result.success(CivilCalendar.epochSecond(yyyy, mm, dd, hh, mi, ss));
+    }
+
+    /**
+     * Convert yyyyMMddhhmiss datetime at offset to UTC epoch second, fields out of range are normalized.
+     * Does not throw and does not allocate.
+     * 
+     * @param s                 text contains yyyyMMddhhmiss
+     * @param offset            index of first digit
+     * @param invalidValue      value returned for malformed text
+     * @return                  epoch second, or invalidValue
+     */
+    public static long parseEpochSecond(CharSequence s, int offset, long invalidValue)
+    {
+        ParseResult result = ThreadScratch.parseResult(false);
+        return parseEpochSecond(s, offset, result) ? result.getValue() : invalidValue;
+    }
+
     /**
      * Normalize UTC epoch second by input value.
      * For example : 
@@ -338,19 +799,14 @@ public class DateTimeUtil
      */
     static String epochToDateString(long epoch, String dtFormat, String dtTimeZoneID, String fmtTimeZoneID)
     {
-        TimeZone dtTimeZone = TimeZone.getTimeZone(dtTimeZoneID);
-        DateFormat format = new SimpleDateFormat(dtFormat);
-
-        if (fmtTimeZoneID != null && !fmtTimeZoneID.isEmpty())
+        //epoch is UTC based, timezone of input epoch does not change the instant to format
+        long start = DateTimeMetrics.ENABLED ? DateTimeMetrics.start(DateTimeMetrics.Operation.FORMAT) : 0L;
+        String value = DateTimeAppender.format(epoch, dtFormat, fmtTimeZoneID);
+        if (DateTimeMetrics.ENABLED)
         {
-            TimeZone fmtTimeZone = TimeZone.getTimeZone(fmtTimeZoneID);
-            format.setTimeZone(fmtTimeZone);            
+            DateTimeMetrics.end(DateTimeMetrics.Operation.FORMAT, start);
         }
-        
-        Calendar calendar = Calendar.getInstance(dtTimeZone);
-        calendar.setTimeInMillis(epoch);        
-        String formatted = format.format(calendar.getTime());        
-        return formatted;
+        return value;
     }
 
     
@@ -367,43 +823,97 @@ public class DateTimeUtil
     }
     
     /**
-     * Convert epoch second to specified datetime string.
+     * Append utc datetime string of epoch to StringBuilder.
+     * yyyyMMddHHmmss, yyyyMMdd, yyyy-MM-dd, yyyy-MM-dd HH:mm:ss and yyyy-MM-dd'T'HH:mm:ss.SSSXXX do not allocate.
      * 
-     * @param epochSecond       epoch second
-     * @param dtFormat          datetime format 
-     * @return                  formatted datetime string
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param sb                target
+     * @return                  the StringBuilder
      */
-    public static String epochSecondToDateString(long epochSecond, String dtFormat)
+    public static StringBuilder epochToDateString(long epoch, String dtFormat, StringBuilder sb)
     {
-        long epoch = epochSecond * ONE_SECOND_MILLIS;
-        return epochToDateString(epoch, dtFormat);
+        return DateTimeAppender.append(sb, epoch, dtFormat, TIMEZONE_ID_UTC);
     }
 
     /**
-     * Convert utc epoch to current datetime string by specified format.
+     * Append utc datetime string of epoch to Appendable.
      * 
-     * @param epoch         epoch in milliseconds
-     * @param dtFormat      datetime format
-     * @return              formatted datetime string
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param out               target
+     * @throws IOException      if the Appendable throws
      */
-    public static String epochToCurrentDateString(long epoch, String dtFormat)
+    public static void epochToDateString(long epoch, String dtFormat, Appendable out) throws IOException
     {
-        return epochToDateString(epoch, dtFormat, TIMEZONE_ID_UTC, null);
+        DateTimeAppender.append(out, epoch, dtFormat, TIMEZONE_ID_UTC);
     }
 
     /**
-     * Convert utc epoch second to current datetime string by specified format.
+     * Write utc datetime string of epoch into char array.
      * 
-     * @param epochSecond       epoch second
+     * @param epoch             epoch in millisecond
      * @param dtFormat          datetime format
-     * @return                  formatted datetime string
+     * @param buf               target
+     * @param offset            index of first char
+     * @return                  number of chars written
      */
-    public static String epochSecondToCurrentDateString(long epochSecond, String dtFormat)
+    public static int epochToDateString(long epoch, String dtFormat, char[] buf, int offset)
     {
-        long epoch = epochSecond * ONE_SECOND_MILLIS;
-        return epochToCurrentDateString(epoch, dtFormat);
+        return DateTimeAppender.write(buf, offset, epoch, dtFormat, TIMEZONE_ID_UTC);
     }
-    
+
+    /**
+     * Put utc datetime string of epoch into buffer as UTF-8 bytes, from the buffer's position.
+     * 
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param buf               target
+     * @return                  number of bytes put
+     */
+    public static int epochToDateString(long epoch, String dtFormat, ByteBuffer buf)
+    {
+        return DateTimeAppender.put(buf, epoch, dtFormat, TIMEZONE_ID_UTC);
+    }
+    
+    /**
+     * Convert epoch second to specified datetime string.
+     * 
+     * @param epochSecond       epoch second
+     * @param dtFormat          datetime format 
+     * @return                  formatted datetime string
+     */
+    public static String epochSecondToDateString(long epochSecond, String dtFormat)
+    {
+        long epoch = epochSecond * ONE_SECOND_MILLIS;
+        return epochToDateString(epoch, dtFormat);
+    }
+
+    /**
+     * Convert utc epoch to current datetime string by specified format.
+     * 
+     * @param epoch         epoch in milliseconds
+     * @param dtFormat      datetime format
+     * @return              formatted datetime string
+     */
+    public static String epochToCurrentDateString(long epoch, String dtFormat)
+    {
+        return epochToDateString(epoch, dtFormat, TIMEZONE_ID_UTC, null);
+    }
+
+    /**
+     * Convert utc epoch second to current datetime string by specified format.
+     * 
+     * @param epochSecond       epoch second
+     * @param dtFormat          datetime format
+     * @return                  formatted datetime string
+     */
+    public static String epochSecondToCurrentDateString(long epochSecond, String dtFormat)
+    {
+        long epoch = epochSecond * ONE_SECOND_MILLIS;
+        return epochToCurrentDateString(epoch, dtFormat);
+    }
+    
     /**
      * Convert utc epoch to local datetime string by specified format.
      * 
@@ -417,6 +927,64 @@ public class DateTimeUtil
         return epochToDateString(epoch, dtFormat, timezoneID, timezoneID);
     }
 
+    /**
+     * Append local datetime string of epoch to StringBuilder.
+     * yyyyMMddHHmmss, yyyyMMdd, yyyy-MM-dd, yyyy-MM-dd HH:mm:ss and yyyy-MM-dd'T'HH:mm:ss.SSSXXX do not allocate.
+     * 
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param timezoneID        timezone id
+     * @param sb                target
+     * @return                  the StringBuilder
+     */
+    public static StringBuilder epochToLocalDateString(long epoch, String dtFormat, String timezoneID, StringBuilder sb)
+    {
+        return DateTimeAppender.append(sb, epoch, dtFormat, timezoneID);
+    }
+
+    /**
+     * Append local datetime string of epoch to Appendable.
+     * 
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param timezoneID        timezone id
+     * @param out               target
+     * @throws IOException      if the Appendable throws
+     */
+    public static void epochToLocalDateString(long epoch, String dtFormat, String timezoneID, Appendable out) throws IOException
+    {
+        DateTimeAppender.append(out, epoch, dtFormat, timezoneID);
+    }
+
+    /**
+     * Write local datetime string of epoch into char array.
+     * 
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param timezoneID        timezone id
+     * @param buf               target
+     * @param offset            index of first char
+     * @return                  number of chars written
+     */
+    public static int epochToLocalDateString(long epoch, String dtFormat, String timezoneID, char[] buf, int offset)
+    {
+        return DateTimeAppender.write(buf, offset, epoch, dtFormat, timezoneID);
+    }
+
+    /**
+     * Put local datetime string of epoch into buffer as UTF-8 bytes, from the buffer's position.
+     * 
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param timezoneID        timezone id
+     * @param buf               target
+     * @return                  number of bytes put
+     */
+    public static int epochToLocalDateString(long epoch, String dtFormat, String timezoneID, ByteBuffer buf)
+    {
+        return DateTimeAppender.put(buf, epoch, dtFormat, timezoneID);
+    }
+
     /**
      * Convert utc epoch to local datetime string by specified format.
      * 
@@ -431,6 +999,95 @@ public class DateTimeUtil
         return epochToDateString(epoch, dtFormat, timezoneID, timezoneID);
     }
     
+    /**
+     * Convert utc epoch to local datetime string of the zone by specified format.
+     * 
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param zone              timezone
+     * @return                  formatted datetime string
+     */
+    public static String epochToLocalDateString(long epoch, String dtFormat, Zone zone)
+    {
+        long start = DateTimeMetrics.ENABLED ? DateTimeMetrics.start(DateTimeMetrics.Operation.FORMAT) : 0L;
+        String value = DateTimeAppender.format(epoch, dtFormat, zone);
+        if (DateTimeMetrics.ENABLED)
+        {
+            DateTimeMetrics.end(DateTimeMetrics.Operation.FORMAT, start);
+        }
+        return value;
+    }
+
+    /**
+     * Append local datetime string of epoch in the zone to StringBuilder.
+     * 
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param zone              timezone
+     * @param sb                target
+     * @return                  the StringBuilder
+     */
+    public static StringBuilder epochToLocalDateString(long epoch, String dtFormat, Zone zone, StringBuilder sb)
+    {
+        return DateTimeAppender.append(sb, epoch, dtFormat, zone);
+    }
+
+    /**
+     * Append local datetime string of epoch in the zone to Appendable.
+     * 
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param zone              timezone
+     * @param out               target
+     * @throws IOException      if the Appendable throws
+     */
+    public static void epochToLocalDateString(long epoch, String dtFormat, Zone zone, Appendable out) throws IOException
+    {
+        DateTimeAppender.append(out, epoch, dtFormat, zone);
+    }
+
+    /**
+     * Write local datetime string of epoch in the zone into char array.
+     * 
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param zone              timezone
+     * @param buf               target
+     * @param offset            index of first char
+     * @return                  number of chars written
+     */
+    public static int epochToLocalDateString(long epoch, String dtFormat, Zone zone, char[] buf, int offset)
+    {
+        return DateTimeAppender.write(buf, offset, epoch, dtFormat, zone);
+    }
+
+    /**
+     * Put local datetime string of epoch in the zone into buffer as UTF-8 bytes, from the buffer's position.
+     * 
+     * @param epoch             epoch in millisecond
+     * @param dtFormat          datetime format
+     * @param zone              timezone
+     * @param buf               target
+     * @return                  number of bytes put
+     */
+    public static int epochToLocalDateString(long epoch, String dtFormat, Zone zone, ByteBuffer buf)
+    {
+        return DateTimeAppender.put(buf, epoch, dtFormat, zone);
+    }
+
+    /**
+     * Convert utc epoch second to local datetime string of the zone by specified format.
+     * 
+     * @param epochSecond           epoch in second
+     * @param dtFormat              datetime format
+     * @param zone                  timezone
+     * @return                      formatted datetime string
+     */
+    public static String epochSecondToLocalDateString(long epochSecond, String dtFormat, Zone zone)
+    {
+        return epochToLocalDateString(epochSecond * ONE_SECOND_MILLIS, dtFormat, zone);
+    }
+    
     /**
      * Convert date string to epoch.
      * 
@@ -443,21 +1100,156 @@ public class DateTimeUtil
      */
     public static long dateStringToEpoch(String date, String dtFormat, String dtTimeZoneID, String fmtTimeZoneID) throws ParseException
     {
-        TimeZone dtTimeZone = TimeZone.getTimeZone(dtTimeZoneID);
-        Calendar calendar = Calendar.getInstance(dtTimeZone);
-        
-        SimpleDateFormat sdf = new SimpleDateFormat(dtFormat);
-        
-        if (fmtTimeZoneID != null && !fmtTimeZoneID.isEmpty())
+        //epoch is UTC based, timezone of date does not change the parsed instant
+        return toEpoch(date, dtFormat, fmtTimeZoneID, null);
+    }
+    
+    /**
+     * Convert date string to epoch, zone is used if not null, otherwise timezone id is looked up.
+     */
+    private static long toEpoch(String date, String dtFormat, String fmtTimeZoneID, Zone zone) throws ParseException
+    {
+        long start = DateTimeMetrics.ENABLED ? DateTimeMetrics.start(DateTimeMetrics.Operation.PARSE) : 0L;
+        DatePattern plan = DatePattern.compile(dtFormat);
+        long epoch = zone != null ? plan.parse(date, zone) : plan.parse(date, fmtTimeZoneID);
+        if (epoch == DatePattern.NO_VALUE)
+        {
+            try
+            {
+                epoch = formatCache.get(dtFormat, fmtTimeZoneID).format.parse(date).getTime();
+            }
+            catch (ParseException e)
+            {
+                if (DateTimeMetrics.ENABLED)
+                {
+                    DateTimeMetrics.failed(DateTimeMetrics.Operation.PARSE);
+                }
+                throw e;
+            }
+        }
+        if (DateTimeMetrics.ENABLED)
         {
-            TimeZone fmtTimeZone = TimeZone.getTimeZone(fmtTimeZoneID);        
-            sdf.setTimeZone(fmtTimeZone);                    
+            DateTimeMetrics.end(DateTimeMetrics.Operation.PARSE, start);
         }
-        
-        calendar.setTime(sdf.parse(date));
-        return calendar.getTimeInMillis();
+        return epoch;
     }
     
+    /**
+     * Convert date string to epoch without throwing, date string must match the format field by field.
+     * Errors are recorded in result, strict result also rejects fields out of range.
+     * Formats compiled by DatePattern do not allocate on both success and failure, 
+     * other formats and dates the compiled format can not decide are parsed by the cached date format.
+     * 
+     * @param date                  date string to convert
+     * @param dtFormat              format of date string
+     * @param fmtTimeZoneID         timezone of date format, if null or empty then use current timezone
+     * @param result                result holder, value is epoch millisecond
+     * @return                      true if parsed
+     */
+    public static boolean parseEpoch(CharSequence date, String dtFormat, String fmtTimeZoneID, ParseResult result)
+    {
+        return parseEpoch(date, dtFormat, fmtTimeZoneID, null, result);
+    }
+
+    /**
+     * Convert date string of the zone to epoch without throwing, same as parseEpoch with timezone id.
+     * 
+     * @param date                  date string to convert
+     * @param dtFormat              format of date string
+     * @param zone                  timezone of date format
+     * @param result                result holder, value is epoch millisecond
+     * @return                      true if parsed
+     */
+    public static boolean parseEpoch(CharSequence date, String dtFormat, Zone zone, ParseResult result)
+    {
+        return parseEpoch(date, dtFormat, zone.getID(), zone, result);
+    }
+
+    private static boolean parseEpoch(CharSequence date, String dtFormat, String fmtTimeZoneID, Zone zone, ParseResult result)
+    {
+        if (!DateTimeMetrics.ENABLED)
+        {
+            return parse(date, dtFormat, fmtTimeZoneID, zone, result);
+        }
+        long start = DateTimeMetrics.start(DateTimeMetrics.Operation.PARSE);
+        boolean parsed = parse(date, dtFormat, fmtTimeZoneID, zone, result);
+        if (parsed)
+        {
+            DateTimeMetrics.end(DateTimeMetrics.Operation.PARSE, start);
+        }
+        else
+        {
+            DateTimeMetrics.failed(DateTimeMetrics.Operation.PARSE);
+        }
+        return parsed;
+    }
+
+    private static boolean parse(CharSequence date, String dtFormat, String fmtTimeZoneID, Zone zone, ParseResult result)
+    {
+        DatePattern plan = DatePattern.compile(dtFormat);
+        if (zone != null ? plan.parse(date, zone, result) : plan.parse(date, fmtTimeZoneID, result))
+        {
+            return true;
+        }
+        if (result.getErrorCode() != ParseResult.DECLINED)
+        {
+            return false;
+        }
+
+        String text = date.toString();
+        DateFormat format = formatCache.get(dtFormat, fmtTimeZoneID).format;
+        ParsePosition position = new ParsePosition(0);
+        Date parsed;
+        format.setLenient(!result.isStrict());
+        try
+        {
+            parsed = format.parse(text, position);
+        }
+        finally
+        {
+            format.setLenient(true);
+        }
+        if (parsed == null)
+        {
+            return result.fail(ParseResult.UNPARSEABLE, position.getErrorIndex());
+        }
+        if (position.getIndex() != text.length())
+        {
+            return result.fail(ParseResult.TRAILING_TEXT, position.getIndex());
+        }
+        return result.success(parsed.getTime());
+    }
+
+    /**
+     * Convert date string to epoch without throwing, fields out of range are normalized.
+     * 
+     * @param date                  date string to convert
+     * @param dtFormat              format of date string
+     * @param fmtTimeZoneID         timezone of date format, if null or empty then use current timezone
+     * @param invalidValue          value returned for malformed date string
+     * @return                      epoch millisecond, or invalidValue
+     */
+    public static long parseEpoch(CharSequence date, String dtFormat, String fmtTimeZoneID, long invalidValue)
+    {
+        ParseResult result = ThreadScratch.parseResult(false);
+        return parseEpoch(date, dtFormat, fmtTimeZoneID, result) ? result.getValue() : invalidValue;
+    }
+
+    /**
+     * Convert date string of the zone to epoch without throwing, fields out of range are normalized.
+     * 
+     * @param date                  date string to convert
+     * @param dtFormat              format of date string
+     * @param zone                  timezone of date format
+     * @param invalidValue          value returned for malformed date string
+     * @return                      epoch millisecond, or invalidValue
+     */
+    public static long parseEpoch(CharSequence date, String dtFormat, Zone zone, long invalidValue)
+    {
+        ParseResult result = ThreadScratch.parseResult(false);
+        return parseEpoch(date, dtFormat, zone, result) ? result.getValue() : invalidValue;
+    }
+
     /**
      * Convert date string to epoch based on utc time.
      * 
@@ -487,6 +1279,174 @@ public class DateTimeUtil
         return epoch / ONE_SECOND_MILLIS;
     }
     
+    /**
+     * Convert date string of the zone to epoch.
+     * 
+     * @param date              date string to convert
+     * @param dtFormat          format of date string
+     * @param zone              timezone of date format
+     * @return                  epoch millisecond
+     * @throws ParseException   date string parse error
+     */
+    public static long dateStringToEpoch(String date, String dtFormat, Zone zone) throws ParseException
+    {
+        return toEpoch(date, dtFormat, zone.getID(), zone);
+    }
+    
+    /**
+     * Convert date string of the zone to epoch second.
+     * 
+     * @param date                  date string to convert
+     * @param dtFormat              format of date string
+     * @param zone                  timezone of date format
+     * @return                      epoch second
+     * @throws ParseException       date string parse error
+     */
+    public static long dateStringToEpochSecond(String date, String dtFormat, Zone zone) throws ParseException
+    {
+        return dateStringToEpoch(date, dtFormat, zone) / ONE_SECOND_MILLIS;
+    }
+
+    /**
+     * Convert ROC date string of the zone to epoch, e.g. 1060807 or 106/08/07 22:00:40.
+     * Layouts are listed in RocDate.
+     *
+     * @param date                  ROC date string to convert
+     * @param zone                  timezone of date
+     * @return                      epoch millisecond
+     * @throws ParseException       date string parse error
+     */
+    public static long rocDateStringToEpoch(String date, Zone zone) throws ParseException
+    {
+        return toRocEpoch(date, zone, false);
+    }
+
+    /**
+     * Convert ROC date string of the zone to epoch second, e.g. 1060807 or 106/08/07 22:00:40.
+     *
+     * @param date                  ROC date string to convert
+     * @param zone                  timezone of date
+     * @return                      epoch second
+     * @throws ParseException       date string parse error
+     */
+    public static long rocDateStringToEpochSecond(String date, Zone zone) throws ParseException
+    {
+        return toRocEpoch(date, zone, true);
+    }
+
+    /**
+     * Convert ROC date string to epoch, e.g. 1060807 or 106/08/07 22:00:40.
+     *
+     * @param date                  ROC date string to convert
+     * @param timezoneID            timezone of date, if null or empty then use current timezone
+     * @return                      epoch millisecond
+     * @throws ParseException       date string parse error
+     */
+    public static long rocDateStringToEpoch(String date, String timezoneID) throws ParseException
+    {
+        return toRocEpoch(date, zoneOrCurrent(timezoneID), false);
+    }
+
+    /**
+     * Convert ROC date string to epoch second, e.g. 1060807 or 106/08/07 22:00:40.
+     *
+     * @param date                  ROC date string to convert
+     * @param timezoneID            timezone of date, if null or empty then use current timezone
+     * @return                      epoch second
+     * @throws ParseException       date string parse error
+     */
+    public static long rocDateStringToEpochSecond(String date, String timezoneID) throws ParseException
+    {
+        return toRocEpoch(date, zoneOrCurrent(timezoneID), true);
+    }
+
+    private static long toRocEpoch(String date, Zone zone, boolean seconds) throws ParseException
+    {
+        long start = DateTimeMetrics.ENABLED ? DateTimeMetrics.start(DateTimeMetrics.Operation.PARSE) : 0L;
+        ParseResult result = ThreadScratch.parseResult(false);
+        boolean parsed = seconds ? RocDate.parseEpochSecond(date, 0, zone, result) : RocDate.parseEpoch(date, 0, zone, result);
+        if (!parsed)
+        {
+            if (DateTimeMetrics.ENABLED)
+            {
+                DateTimeMetrics.failed(DateTimeMetrics.Operation.PARSE);
+            }
+            throw new ParseException("Unparseable date: \"" + date + "\"", result.getErrorIndex());
+        }
+        if (DateTimeMetrics.ENABLED)
+        {
+            DateTimeMetrics.end(DateTimeMetrics.Operation.PARSE, start);
+        }
+        return result.getValue();
+    }
+
+    /**
+     * Convert utc epoch to ROC date string of the zone.
+     *
+     * @param epoch                 epoch in millisecond
+     * @param layout                RocDate.DATE, DATE_TIME, SLASH_DATE or SLASH_DATE_TIME
+     * @param zone                  timezone
+     * @return                      ROC date string
+     * @throws IllegalArgumentException     if the layout is unknown or the ROC year is out of 1 to 999
+     */
+    public static String epochToRocDateString(long epoch, int layout, Zone zone)
+    {
+        long start = DateTimeMetrics.ENABLED ? DateTimeMetrics.start(DateTimeMetrics.Operation.FORMAT) : 0L;
+        String s = RocDate.format(epoch, zone, layout);
+        if (DateTimeMetrics.ENABLED)
+        {
+            DateTimeMetrics.end(DateTimeMetrics.Operation.FORMAT, start);
+        }
+        return s;
+    }
+
+    /**
+     * Convert utc epoch second to ROC date string of the zone.
+     *
+     * @param epochSecond           epoch in second
+     * @param layout                RocDate.DATE, DATE_TIME, SLASH_DATE or SLASH_DATE_TIME
+     * @param zone                  timezone
+     * @return                      ROC date string
+     * @throws IllegalArgumentException     if the layout is unknown or the ROC year is out of 1 to 999
+     */
+    public static String epochSecondToRocDateString(long epochSecond, int layout, Zone zone)
+    {
+        return epochToRocDateString(epochSecond * ONE_SECOND_MILLIS, layout, zone);
+    }
+
+    /**
+     * Convert utc epoch to ROC date string.
+     *
+     * @param epoch                 epoch in millisecond
+     * @param layout                RocDate.DATE, DATE_TIME, SLASH_DATE or SLASH_DATE_TIME
+     * @param timezoneID            timezone, if null or empty then use current timezone
+     * @return                      ROC date string
+     * @throws IllegalArgumentException     if the layout is unknown or the ROC year is out of 1 to 999
+     */
+    public static String epochToRocDateString(long epoch, int layout, String timezoneID)
+    {
+        return epochToRocDateString(epoch, layout, zoneOrCurrent(timezoneID));
+    }
+
+    /**
+     * Convert utc epoch second to ROC date string.
+     *
+     * @param epochSecond           epoch in second
+     * @param layout                RocDate.DATE, DATE_TIME, SLASH_DATE or SLASH_DATE_TIME
+     * @param timezoneID            timezone, if null or empty then use current timezone
+     * @return                      ROC date string
+     * @throws IllegalArgumentException     if the layout is unknown or the ROC year is out of 1 to 999
+     */
+    public static String epochSecondToRocDateString(long epochSecond, int layout, String timezoneID)
+    {
+        return epochToRocDateString(epochSecond * ONE_SECOND_MILLIS, layout, zoneOrCurrent(timezoneID));
+    }
+
+    private static Zone zoneOrCurrent(String timezoneID)
+    {
+        return timezoneID == null || timezoneID.isEmpty() ? Zone.current() : Zone.of(timezoneID);
+    }
+
     /**
      * Calculate days between two dates.
      * Input sequence of the two dates is not important. 
@@ -542,12 +1502,7 @@ public class DateTimeUtil
     {
         long epoch1 = dateStringToEpoch(day1, dtFormat, fmtTimeZoneID1);
         long epoch2 = dateStringToEpoch(day2, dtFormat, fmtTimeZoneID2);
-        TimeZone dtTimeZone = TimeZone.getTimeZone(TIMEZONE_ID_UTC);
-        Calendar calendar1 = Calendar.getInstance(dtTimeZone);
-        calendar1.setTimeInMillis(epoch1);        
-        Calendar calendar2 = Calendar.getInstance(dtTimeZone);
-        calendar2.setTimeInMillis(epoch2);   
-        return daysBetween(calendar1, calendar2);        
+        return daysBetween(epoch1, epoch2);        
     }
 
     /**
@@ -564,16 +1519,29 @@ public class DateTimeUtil
         String timezoneID = getCurrentTimeZoneID();
         long epoch1 = dateStringToEpoch(day1, dtFormat, timezoneID);
         long epoch2 = dateStringToEpoch(day2, dtFormat, timezoneID);
-        TimeZone dtTimeZone = TimeZone.getTimeZone(TIMEZONE_ID_UTC);
-        Calendar calendar1 = Calendar.getInstance(dtTimeZone);
-        calendar1.setTimeInMillis(epoch1);        
-        Calendar calendar2 = Calendar.getInstance(dtTimeZone);
-        calendar2.setTimeInMillis(epoch2);   
-        return daysBetween(calendar1, calendar2);        
+        return daysBetween(epoch1, epoch2);        
+    }
+
+    /**
+     * Calculate days between two dates of the zone.
+     * 
+     * @param day1              day to calculate
+     * @param day2              day to calculate
+     * @param dtFormat          datetime format
+     * @param zone              timezone of dates
+     * @return                  days between two dates
+     * @throws ParseException   date string parse error
+     */
+    public static int daysBetween(String day1, String day2, String dtFormat, Zone zone) throws ParseException
+    {
+        long epoch1 = dateStringToEpoch(day1, dtFormat, zone);
+        long epoch2 = dateStringToEpoch(day2, dtFormat, zone);
+        return daysBetween(epoch1, epoch2);        
     }
 
     /**
      * Calculate days between two epoch dates.
+     * Dates are UTC dates, days are counted by day number difference in constant time.
      * 
      * @param epoch1            epoch to calculate
      * @param epoch2            epoch to calculate
@@ -582,12 +1550,8 @@ public class DateTimeUtil
      */
     public static int daysBetween(long epoch1, long epoch2) throws ParseException
     {
-        TimeZone dtTimeZone = TimeZone.getTimeZone(TIMEZONE_ID_UTC);
-        Calendar calendar1 = Calendar.getInstance(dtTimeZone);
-        calendar1.setTimeInMillis(epoch1);        
-        Calendar calendar2 = Calendar.getInstance(dtTimeZone);
-        calendar2.setTimeInMillis(epoch2);   
-        return daysBetween(calendar1, calendar2);        
+        long days = CivilCalendar.epochToDays(epoch1) - CivilCalendar.epochToDays(epoch2);
+        return (int) Math.abs(days);        
     }
     
     /**
@@ -600,9 +1564,22 @@ public class DateTimeUtil
      */
     public static int daysBetweenEpochSecond(long epochSecond1, long epochSecond2) throws ParseException
     {
-        long epoch1 = epochSecond1 * ONE_SECOND_MILLIS;
-        long epoch2 = epochSecond2 * ONE_SECOND_MILLIS;
-        return daysBetween(epoch1, epoch2);        
+        long days = CivilCalendar.epochSecondToDays(epochSecond1) - CivilCalendar.epochSecondToDays(epochSecond2);
+        return (int) Math.abs(days);        
+    }
+    
+    /**
+     * Calculate days between local dates of two epochs in the zone.
+     * 
+     * @param epoch1            epoch to calculate
+     * @param epoch2            epoch to calculate
+     * @param zone              timezone of local dates
+     * @return                  days between two local dates
+     */
+    public static int daysBetween(long epoch1, long epoch2, Zone zone)
+    {
+        long days = CivilCalendar.epochToDays(epoch1 + zone.getOffset(epoch1)) - CivilCalendar.epochToDays(epoch2 + zone.getOffset(epoch2));
+        return (int) Math.abs(days);        
     }
     
 }
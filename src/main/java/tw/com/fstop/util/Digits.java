@@ -0,0 +1,268 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <pre>
+ * Fixed width decimal digit scanner.
+ * Reads unsigned ASCII digits in place from String, char[], byte[] or ByteBuffer without substring or boxing,
+ * and writes zero padded digits into char[].
+ * </pre>
+ *
+ * @since 1.0
+ */
+final class Digits
+{
+    private Digits()
+    {
+    }
+
+    /**
+     * Parse fixed width unsigned decimal number.
+     *
+     * @param s         characters to parse
+     * @param offset    index of first digit
+     * @param length    number of digits, at most 9
+     * @return          parsed value
+     * @throws NumberFormatException    if a non digit character is found
+     */
+    static int parse(CharSequence s, int offset, int length)
+    {
+        int value = 0;
+        for (int i = offset, end = offset + length; i < end; i++)
+        {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9)
+            {
+                throw notDigit(s.charAt(i), i);
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    /**
+     * Parse fixed width unsigned decimal number.
+     *
+     * @param buf       characters to parse
+     * @param offset    index of first digit
+     * @param length    number of digits, at most 9
+     * @return          parsed value
+     * @throws NumberFormatException    if a non digit character is found
+     */
+    static int parse(char[] buf, int offset, int length)
+    {
+        int value = 0;
+        for (int i = offset, end = offset + length; i < end; i++)
+        {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9)
+            {
+                throw notDigit(buf[i], i);
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    /**
+     * Parse fixed width unsigned decimal number from ASCII bytes.
+     *
+     * @param buf       bytes to parse
+     * @param offset    index of first digit
+     * @param length    number of digits, at most 9
+     * @return          parsed value
+     * @throws NumberFormatException    if a non digit byte is found
+     */
+    static int parse(byte[] buf, int offset, int length)
+    {
+        int value = 0;
+        for (int i = offset, end = offset + length; i < end; i++)
+        {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9)
+            {
+                throw notDigit((char) (buf[i] & 0xff), i);
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    /**
+     * Parse fixed width unsigned decimal number from ASCII bytes at absolute index of the buffer.
+     * Position of the buffer is not changed.
+     *
+     * @param buf       bytes to parse
+     * @param index     index of first digit
+     * @param length    number of digits, at most 9
+     * @return          parsed value
+     * @throws NumberFormatException    if a non digit byte is found
+     */
+    static int parse(ByteBuffer buf, int index, int length)
+    {
+        int value = 0;
+        for (int i = index, end = index + length; i < end; i++)
+        {
+            int d = buf.get(i) - '0';
+            if (d < 0 || d > 9)
+            {
+                throw notDigit((char) (buf.get(i) & 0xff), i);
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    /**
+     * Parse fixed width unsigned decimal number, recording the error in the result instead of throwing.
+     *
+     * @param s         characters to parse
+     * @param offset    index of first digit
+     * @param length    number of digits, at most 9
+     * @param result    result holder, TOO_SHORT or NOT_DIGIT is recorded on failure
+     * @return          parsed value, or -1 if the text is short or a char is not a digit
+     */
+    static int parse(CharSequence s, int offset, int length, ParseResult result)
+    {
+        int textLength = s.length();
+        int value = 0;
+        for (int i = offset, end = offset + length; i < end; i++)
+        {
+            if (i >= textLength)
+            {
+                result.fail(ParseResult.TOO_SHORT, textLength);
+                return -1;
+            }
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9)
+            {
+                result.fail(ParseResult.NOT_DIGIT, i);
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    /**
+     * Check the char at index is the literal, recording the error in the result.
+     *
+     * @param s         characters to check
+     * @param index     index of the literal
+     * @param c         expected literal
+     * @param result    result holder, TOO_SHORT or LITERAL_MISMATCH is recorded on failure
+     * @return          true if the char is the literal
+     */
+    static boolean literal(CharSequence s, int index, char c, ParseResult result)
+    {
+        if (index >= s.length())
+        {
+            return result.fail(ParseResult.TOO_SHORT, s.length());
+        }
+        if (s.charAt(index) != c)
+        {
+            return result.fail(ParseResult.LITERAL_MISMATCH, index);
+        }
+        return true;
+    }
+
+    /**
+     * Check all chars are ASCII digits.
+     *
+     * @param s         source
+     * @param offset    index of first digit
+     * @param length    number of digits
+     * @return          true if all chars are digits
+     */
+    static boolean isDigits(CharSequence s, int offset, int length)
+    {
+        for (int i = offset, end = offset + length; i < end; i++)
+        {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if all bytes of the range are ASCII digits.
+     *
+     * @param buf       bytes to check
+     * @param index     index of first byte
+     * @param length    number of bytes
+     * @return          true if all bytes are digits
+     */
+    static boolean isDigits(ByteBuffer buf, int index, int length)
+    {
+        for (int i = index, end = index + length; i < end; i++)
+        {
+            int d = buf.get(i) - '0';
+            if (d < 0 || d > 9)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write 2 digits zero padded value.
+     *
+     * @param buf       target
+     * @param offset    index of first digit
+     * @param value     value from 0 to 99
+     */
+    static void write2(char[] buf, int offset, int value)
+    {
+        buf[offset] = (char) ('0' + value / 10);
+        buf[offset + 1] = (char) ('0' + value % 10);
+    }
+
+    /**
+     * Write 3 digits zero padded value.
+     *
+     * @param buf       target
+     * @param offset    index of first digit
+     * @param value     value from 0 to 999
+     */
+    static void write3(char[] buf, int offset, int value)
+    {
+        buf[offset] = (char) ('0' + value / 100);
+        write2(buf, offset + 1, value % 100);
+    }
+
+    /**
+     * Write 4 digits zero padded value.
+     *
+     * @param buf       target
+     * @param offset    index of first digit
+     * @param value     value from 0 to 9999
+     */
+    static void write4(char[] buf, int offset, int value)
+    {
+        write2(buf, offset, value / 100);
+        write2(buf, offset + 2, value % 100);
+    }
+
+    private static NumberFormatException notDigit(char c, int index)
+    {
+        return new NumberFormatException("Not a digit '" + c + "' at index " + index);
+    }
+}
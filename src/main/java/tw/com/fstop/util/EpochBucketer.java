@@ -0,0 +1,306 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * <pre>
+ * Floor epochs to the start of their bucket, for time series rollups.
+ *
+ * Fixed buckets (1m, 5m, 1h ...) are aligned to UTC epoch, flooring is one division.
+ * Calendar buckets (day, ISO week starting on Monday, month, year) follow local midnights of a timezone,
+ * a day is 23 or 25 hours long on daylight saving changes.
+ * Local midnights come from the ZoneDayIndex of the timezone, flooring is day number arithmetic,
+ * epochs out of the covered years fall back like ZoneDayIndex.
+ *
+ * Bulk methods follow System.arraycopy, parallel variants split large arrays like DateTimeBatch.
+ * A Cursor remembers the last bucket, sorted or clustered streams of epochs are floored without searching.
+ * </pre>
+ *
+ * @since 1.0
+ */
+public final class EpochBucketer
+{
+    /**
+     * Calendar bucket units.
+     */
+    public enum Unit
+    {
+        DAY, WEEK, MONTH, YEAR
+    }
+
+    public static final long ONE_MINUTE_MILLIS = 60000L;
+    public static final long ONE_HOUR_MILLIS = 3600000L;
+    /** 1970-01-01 is Thursday, day number plus this is a multiple of 7 on Mondays */
+    private static final int MONDAY_SHIFT = 3;
+
+    /** bucket size of fixed buckets, 0 for calendar buckets */
+    private final long size;
+    private final Unit unit;
+    /** local midnights of calendar buckets */
+    private final ZoneDayIndex days;
+
+    private EpochBucketer(long size, Unit unit, ZoneDayIndex days)
+    {
+        this.size = size;
+        this.unit = unit;
+        this.days = days;
+    }
+
+    /**
+     * Get fixed size buckets aligned to UTC epoch.
+     *
+     * @param sizeMillis        bucket size in millisecond
+     * @return                  bucketer
+     */
+    public static EpochBucketer ofMillis(long sizeMillis)
+    {
+        if (sizeMillis < 1)
+        {
+            throw new IllegalArgumentException("sizeMillis must be positive: " + sizeMillis);
+        }
+        return new EpochBucketer(sizeMillis, null, null);
+    }
+
+    /**
+     * Get calendar buckets of timezone.
+     *
+     * @param unit              calendar unit
+     * @param timezoneID        timezone id
+     * @return                  bucketer
+     */
+    public static EpochBucketer of(Unit unit, String timezoneID)
+    {
+        return of(unit, ZoneDayIndex.forID(timezoneID));
+    }
+
+    /**
+     * Get calendar buckets of the local days of an index.
+     *
+     * @param unit              calendar unit
+     * @param days              local day index
+     * @return                  bucketer
+     */
+    public static EpochBucketer of(Unit unit, ZoneDayIndex days)
+    {
+        if (unit == null)
+        {
+            throw new IllegalArgumentException("unit is null");
+        }
+        if (days == null)
+        {
+            throw new IllegalArgumentException("days is null");
+        }
+        return new EpochBucketer(0, unit, days);
+    }
+
+    /**
+     * Get first day number of the bucket of a day.
+     */
+    private long firstDay(long day)
+    {
+        long date;
+        switch (unit)
+        {
+            case DAY:
+                return day;
+            case WEEK:
+                return day - CivilCalendar.floorMod(day + MONDAY_SHIFT, 7);
+            case MONTH:
+                date = CivilCalendar.civilFromDays(day);
+                return CivilCalendar.daysFromCivil(CivilCalendar.packedYear(date), CivilCalendar.packedMonth(date), 1);
+            default:
+                date = CivilCalendar.civilFromDays(day);
+                return CivilCalendar.daysFromCivil(CivilCalendar.packedYear(date), 1, 1);
+        }
+    }
+
+    /**
+     * Get first day number of the next bucket.
+     */
+    private long nextFirstDay(long firstDay)
+    {
+        long date;
+        switch (unit)
+        {
+            case DAY:
+                return firstDay + 1;
+            case WEEK:
+                return firstDay + 7;
+            case MONTH:
+                date = CivilCalendar.civilFromDays(firstDay);
+                return CivilCalendar.daysFromCivil(CivilCalendar.packedYear(date), CivilCalendar.packedMonth(date) + 1, 1);
+            default:
+                date = CivilCalendar.civilFromDays(firstDay);
+                return CivilCalendar.daysFromCivil(CivilCalendar.packedYear(date) + 1, 1, 1);
+        }
+    }
+
+    /**
+     * Get start of the bucket of epoch.
+     *
+     * @param epoch             epoch in millisecond
+     * @return                  start of bucket in millisecond
+     */
+    public long floor(long epoch)
+    {
+        if (days == null)
+        {
+            return CivilCalendar.floorDiv(epoch, size) * size;
+        }
+        return days.dayStart(firstDay(days.dayNumber(epoch)));
+    }
+
+    /**
+     * Floor epochs to bucket starts.
+     *
+     * @param src               epochs in millisecond
+     * @param srcPos            start position of src
+     * @param dest              bucket starts, may be src
+     * @param destPos           start position of dest
+     * @param length            number of elements
+     */
+    public void floor(long[] src, int srcPos, long[] dest, int destPos, int length)
+    {
+        DateTimeBatch.checkRange(src.length, srcPos, dest.length, destPos, length);
+        if (days == null)
+        {
+            for (int i = 0; i < length; i++)
+            {
+                dest[destPos + i] = CivilCalendar.floorDiv(src[srcPos + i], size) * size;
+            }
+            return;
+        }
+        Cursor cursor = cursor();
+        for (int i = 0; i < length; i++)
+        {
+            dest[destPos + i] = cursor.floor(src[srcPos + i]);
+        }
+    }
+
+    /**
+     * Parallel version of floor.
+     *
+     * @param src               epochs in millisecond
+     * @param srcPos            start position of src
+     * @param dest              bucket starts, may be src
+     * @param destPos           start position of dest
+     * @param length            number of elements
+     * @param executor          executor to run chunks
+     */
+    public void floor(final long[] src, final int srcPos, final long[] dest, final int destPos, int length, ExecutorService executor)
+    {
+        DateTimeBatch.checkRange(src.length, srcPos, dest.length, destPos, length);
+        DateTimeBatch.runUnchecked(executor, length, new DateTimeBatch.Chunk()
+        {
+            @Override
+            void run(int from, int count)
+            {
+                floor(src, srcPos + from, dest, destPos + from, count);
+            }
+        });
+    }
+
+    /**
+     * Create a cursor for incremental flooring of a stream, a cursor is used by one thread.
+     *
+     * @return                  new cursor
+     */
+    public Cursor cursor()
+    {
+        return new Cursor();
+    }
+
+    /**
+     * Calendar unit, null for fixed buckets.
+     */
+    public Unit getUnit()
+    {
+        return unit;
+    }
+
+    /**
+     * Bucket size in millisecond, 0 for calendar buckets.
+     */
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Timezone id of calendar buckets, null for fixed buckets.
+     */
+    public String getTimeZoneID()
+    {
+        return days == null ? null : days.getID();
+    }
+
+    /**
+     * <pre>
+     * Incremental flooring for streams, remembers the bucket of last epoch.
+     * An epoch in the same bucket with the last one costs two comparisons.
+     * Not thread safe.
+     * </pre>
+     */
+    public final class Cursor
+    {
+        private long start = 1;
+        private long end = 0;
+
+        private Cursor()
+        {
+        }
+
+        /**
+         * Get start of the bucket of epoch.
+         *
+         * @param epoch         epoch in millisecond
+         * @return              start of bucket in millisecond
+         */
+        public long floor(long epoch)
+        {
+            if (epoch >= start && epoch < end)
+            {
+                return start;
+            }
+            if (days == null)
+            {
+                start = CivilCalendar.floorDiv(epoch, size) * size;
+                end = start + size;
+                return start;
+            }
+            long first = firstDay(days.dayNumber(epoch));
+            start = days.dayStart(first);
+            end = days.dayStart(nextFirstDay(first));
+            return start;
+        }
+
+        /**
+         * @return          start of current bucket
+         */
+        public long getStart()
+        {
+            return start;
+        }
+
+        /**
+         * @return          end of current bucket, exclusive
+         */
+        public long getEnd()
+        {
+            return end;
+        }
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+/**
+ * <pre>
+ * Hand written codec of RFC 3339 timestamps, the ISO 8601 profile used by JSON APIs.
+ *
+ *   2017-08-07T22:00:40+08:00
+ *   2017-08-07T14:00:40.291Z
+ *   2017-08-07T22:00:40.291123456+08:00
+ *
+ * Parsing accepts 'T', 't' or a space between date and time, '.' or ',' before 0 to 9 fraction digits
+ * (more digits are truncated), and 'Z', 'z' or a +hh:mm / -hh:mm offset, which is required.
+ * Offsets with seconds, +hh:mm:ss, are accepted and written for historical zones.
+ * A leap second 60 rolls to the next minute, strict parsing accepts it only at 23:59 UTC.
+ * Dates are proleptic Gregorian, years from 0000 to 9999.
+ *
+ * Values are epoch milliseconds, or epoch nanoseconds in a long which covers 1677 to 2262.
+ * Parsing and formatting into char arrays do not allocate, errors are recorded in ParseResult.
+ * </pre>
+ *
+ * @since 1.0
+ */
+public final class Iso8601
+{
+    /** maximum number of chars of a formatted timestamp */
+    public static final int MAX_LENGTH = 38;
+    public static final int MILLIS = 3;
+    public static final int MICROS = 6;
+    public static final int NANOS = 9;
+
+    private static final int ONE_SECOND_NANOS = 1000000000;
+    private static final int ONE_MILLI_NANOS = 1000000;
+    private static final int[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000, 1000000000};
+    /** epoch seconds of 0000-01-01T00:00:00Z and 10000-01-01T00:00:00Z */
+    private static final long MIN_SECOND = -62167219200L;
+    private static final long MAX_SECOND = 253402300800L;
+    /** second of day of 23:59:00, the only minute with a leap second */
+    private static final int LEAP_MINUTE = 23 * 3600 + 59 * 60;
+
+    private Iso8601()
+    {
+    }
+
+    /**
+     * Parse timestamp from offset to end of the text to epoch millisecond, fraction below millisecond is truncated.
+     *
+     * @param s                 text
+     * @param offset            index of first char
+     * @param result            result holder, value is epoch millisecond
+     * @return                  true if parsed
+     */
+    public static boolean parseEpoch(CharSequence s, int offset, ParseResult result)
+    {
+        return parse(s, offset, false, result);
+    }
+
+    /**
+     * Parse timestamp to epoch millisecond, strictly, out of range fields are malformed.
+     *
+     * @param s                 text
+     * @param invalidValue      value returned for malformed text
+     * @return                  epoch millisecond, or invalidValue
+     */
+    public static long parseEpoch(CharSequence s, long invalidValue)
+    {
+        ParseResult result = ThreadScratch.parseResult(true);
+        return parse(s, 0, false, result) ? result.getValue() : invalidValue;
+    }
+
+    /**
+     * Parse timestamp from offset to end of the text to epoch nanosecond.
+     *
+     * @param s                 text
+     * @param offset            index of first char
+     * @param result            result holder, value is epoch nanosecond
+     * @return                  true if parsed, FIELD_RANGE if out of 1677 to 2262
+     */
+    public static boolean parseEpochNano(CharSequence s, int offset, ParseResult result)
+    {
+        return parse(s, offset, true, result);
+    }
+
+    /**
+     * Parse timestamp to epoch nanosecond, strictly, out of range fields are malformed.
+     *
+     * @param s                 text
+     * @param invalidValue      value returned for malformed text
+     * @return                  epoch nanosecond, or invalidValue
+     */
+    public static long parseEpochNano(CharSequence s, long invalidValue)
+    {
+        ParseResult result = ThreadScratch.parseResult(true);
+        return parse(s, 0, true, result) ? result.getValue() : invalidValue;
+    }
+
+    private static boolean parse(CharSequence s, int offset, boolean nanos, ParseResult result)
+    {
+        int length = s.length();
+        if (offset < 0 || offset > length)
+        {
+            return result.fail(ParseResult.TOO_SHORT, offset);
+        }
+        int i = offset;
+        int year = Digits.parse(s, i, 4, result);
+        if (year < 0 || !Digits.literal(s, i + 4, '-', result))
+        {
+            return false;
+        }
+        int month = Digits.parse(s, i + 5, 2, result);
+        if (month < 0 || !Digits.literal(s, i + 7, '-', result))
+        {
+            return false;
+        }
+        int day = Digits.parse(s, i + 8, 2, result);
+        if (day < 0)
+        {
+            return false;
+        }
+        i += 10;
+        if (i >= length)
+        {
+            return result.fail(ParseResult.TOO_SHORT, length);
+        }
+        char c = s.charAt(i);
+        if (c != 'T' && c != 't' && c != ' ')
+        {
+            return result.fail(ParseResult.LITERAL_MISMATCH, i);
+        }
+        int hour = Digits.parse(s, i + 1, 2, result);
+        if (hour < 0 || !Digits.literal(s, i + 3, ':', result))
+        {
+            return false;
+        }
+        int minute = Digits.parse(s, i + 4, 2, result);
+        if (minute < 0 || !Digits.literal(s, i + 6, ':', result))
+        {
+            return false;
+        }
+        int second = Digits.parse(s, i + 7, 2, result);
+        if (second < 0)
+        {
+            return false;
+        }
+        i += 9;
+
+        int nano = 0;
+        if (i < length && (s.charAt(i) == '.' || s.charAt(i) == ','))
+        {
+            i++;
+            int start = i;
+            while (i < length && s.charAt(i) >= '0' && s.charAt(i) <= '9')
+            {
+                if (i - start < 9)
+                {
+                    nano = nano * 10 + (s.charAt(i) - '0');
+                }
+                i++;
+            }
+            int n = i - start;
+            if (n == 0)
+            {
+                return result.fail(i < length ? ParseResult.NOT_DIGIT : ParseResult.TOO_SHORT, i);
+            }
+            if (n < 9)
+            {
+                nano *= POWERS_OF_TEN[9 - n];
+            }
+        }
+
+        if (i >= length)
+        {
+            return result.fail(ParseResult.TOO_SHORT, length);
+        }
+        int offsetSeconds;
+        c = s.charAt(i);
+        if (c == 'Z' || c == 'z')
+        {
+            offsetSeconds = 0;
+            i++;
+        }
+        else if (c == '+' || c == '-')
+        {
+            int offsetHour = Digits.parse(s, i + 1, 2, result);
+            if (offsetHour < 0 || !Digits.literal(s, i + 3, ':', result))
+            {
+                return false;
+            }
+            int offsetMinute = Digits.parse(s, i + 4, 2, result);
+            if (offsetMinute < 0)
+            {
+                return false;
+            }
+            int offsetSecond = 0;
+            int start = i;
+            i += 6;
+            if (i < length && s.charAt(i) == ':')
+            {
+                offsetSecond = Digits.parse(s, i + 1, 2, result);
+                if (offsetSecond < 0)
+                {
+                    return false;
+                }
+                i += 3;
+            }
+            if (offsetHour > 23 || offsetMinute > 59 || offsetSecond > 59)
+            {
+                return result.fail(ParseResult.FIELD_RANGE, start + 1);
+            }
+            offsetSeconds = offsetHour * 3600 + offsetMinute * 60 + offsetSecond;
+            if (c == '-')
+            {
+                offsetSeconds = -offsetSeconds;
+            }
+        }
+        else
+        {
+            return result.fail(ParseResult.LITERAL_MISMATCH, i);
+        }
+        if (i != length)
+        {
+            return result.fail(ParseResult.TRAILING_TEXT, i);
+        }
+
+        if (result.isStrict())
+        {
+            if (month < 1 || month > 12)
+            {
+                return result.fail(ParseResult.FIELD_RANGE, offset + 5);
+            }
+            if (day < 1 || day > CivilCalendar.daysInMonth(year, month))
+            {
+                return result.fail(ParseResult.FIELD_RANGE, offset + 8);
+            }
+            if (hour > 23)
+            {
+                return result.fail(ParseResult.FIELD_RANGE, offset + 11);
+            }
+            if (minute > 59)
+            {
+                return result.fail(ParseResult.FIELD_RANGE, offset + 14);
+            }
+            // a leap second is the last second of a UTC day
+            if (second > 60 || (second == 60 && CivilCalendar.floorMod(hour * 3600 + minute * 60 - offsetSeconds, 86400) != LEAP_MINUTE))
+            {
+                return result.fail(ParseResult.FIELD_RANGE, offset + 17);
+            }
+        }
+        long epochSecond = CivilCalendar.epochSecond(year, month, day, hour, minute, second) - offsetSeconds;
+        if (!nanos)
+        {
+            return result.success(epochSecond * 1000 + nano / ONE_MILLI_NANOS);
+        }
+        if (epochSecond < Long.MIN_VALUE / ONE_SECOND_NANOS || epochSecond >= Long.MAX_VALUE / ONE_SECOND_NANOS)
+        {
+            return result.fail(ParseResult.FIELD_RANGE, offset);
+        }
+        return result.success(epochSecond * ONE_SECOND_NANOS + nano);
+    }
+
+    /**
+     * Format epoch as timestamp with millisecond fraction in the zone.
+     *
+     * @param epoch             epoch in millisecond
+     * @param zone              timezone of the offset
+     * @return                  timestamp
+     */
+    public static String format(long epoch, Zone zone)
+    {
+        char[] buf = ThreadScratch.chars();
+        int n = format(epoch, zone, MILLIS, buf, 0);
+        return new String(buf, 0, n);
+    }
+
+    /**
+     * Write epoch as timestamp in the zone into char array.
+     *
+     * @param epoch             epoch in millisecond
+     * @param zone              timezone of the offset, offset 0 is written as Z
+     * @param fractionDigits    number of fraction digits, 0 to 9, 0 writes no fraction
+     * @param buf               target
+     * @param offset            index of first char
+     * @return                  number of chars written
+     * @throws IllegalArgumentException         if the year is out of 0000 to 9999
+     * @throws ArrayIndexOutOfBoundsException   if buf has not enough room
+     */
+    public static int format(long epoch, Zone zone, int fractionDigits, char[] buf, int offset)
+    {
+        long epochSecond = CivilCalendar.floorDiv(epoch, 1000);
+        int nano = (int) CivilCalendar.floorMod(epoch, 1000) * ONE_MILLI_NANOS;
+        return write(epochSecond, nano, zone.getOffset(epoch), fractionDigits, buf, offset);
+    }
+
+    /**
+     * Append epoch as timestamp in the zone to StringBuilder.
+     *
+     * @param sb                target
+     * @param epoch             epoch in millisecond
+     * @param zone              timezone of the offset, offset 0 is written as Z
+     * @param fractionDigits    number of fraction digits, 0 to 9
+     * @return                  the StringBuilder
+     */
+    public static StringBuilder append(StringBuilder sb, long epoch, Zone zone, int fractionDigits)
+    {
+        char[] buf = ThreadScratch.chars();
+        return sb.append(buf, 0, format(epoch, zone, fractionDigits, buf, 0));
+    }
+
+    /**
+     * Write epoch nanosecond as timestamp in the zone into char array.
+     *
+     * @param epochNano         epoch in nanosecond
+     * @param zone              timezone of the offset, offset 0 is written as Z
+     * @param fractionDigits    number of fraction digits, 0 to 9
+     * @param buf               target
+     * @param offset            index of first char
+     * @return                  number of chars written
+     * @throws ArrayIndexOutOfBoundsException   if buf has not enough room
+     */
+    public static int formatNano(long epochNano, Zone zone, int fractionDigits, char[] buf, int offset)
+    {
+        long epochSecond = CivilCalendar.floorDiv(epochNano, ONE_SECOND_NANOS);
+        int nano = (int) CivilCalendar.floorMod(epochNano, ONE_SECOND_NANOS);
+        return write(epochSecond, nano, zone.getOffset(CivilCalendar.floorDiv(epochNano, ONE_MILLI_NANOS)), fractionDigits, buf, offset);
+    }
+
+    /**
+     * Append epoch nanosecond as timestamp in the zone to StringBuilder.
+     *
+     * @param sb                target
+     * @param epochNano         epoch in nanosecond
+     * @param zone              timezone of the offset, offset 0 is written as Z
+     * @param fractionDigits    number of fraction digits, 0 to 9
+     * @return                  the StringBuilder
+     */
+    public static StringBuilder appendNano(StringBuilder sb, long epochNano, Zone zone, int fractionDigits)
+    {
+        char[] buf = ThreadScratch.chars();
+        return sb.append(buf, 0, formatNano(epochNano, zone, fractionDigits, buf, 0));
+    }
+
+    private static int write(long epochSecond, int nano, int zoneOffset, int fractionDigits, char[] buf, int offset)
+    {
+        if (fractionDigits < 0 || fractionDigits > 9)
+        {
+            throw new IllegalArgumentException("fractionDigits must be 0 to 9: " + fractionDigits);
+        }
+        int offsetSeconds = (int) CivilCalendar.floorDiv(zoneOffset, 1000);
+        long local = epochSecond + offsetSeconds;
+        if (local < MIN_SECOND || local >= MAX_SECOND)
+        {
+            throw new IllegalArgumentException("year out of 0000 to 9999: " + epochSecond);
+        }
+        int length = 19 + (fractionDigits > 0 ? fractionDigits + 1 : 0) + (offsetSeconds == 0 ? 1 : offsetSeconds % 60 == 0 ? 6 : 9);
+        if (offset < 0 || buf.length - offset < length)
+        {
+            throw new ArrayIndexOutOfBoundsException("need " + length + " chars, " + (buf.length - offset) + " available");
+        }
+
+        long date = CivilCalendar.civilFromDays(CivilCalendar.floorDiv(local, CivilCalendar.ONE_DAY_SECONDS));
+        int secondOfDay = (int) CivilCalendar.floorMod(local, CivilCalendar.ONE_DAY_SECONDS);
+        int i = offset;
+        Digits.write4(buf, i, CivilCalendar.packedYear(date));
+        buf[i + 4] = '-';
+        Digits.write2(buf, i + 5, CivilCalendar.packedMonth(date));
+        buf[i + 7] = '-';
+        Digits.write2(buf, i + 8, CivilCalendar.packedDay(date));
+        buf[i + 10] = 'T';
+        Digits.write2(buf, i + 11, secondOfDay / 3600);
+        buf[i + 13] = ':';
+        Digits.write2(buf, i + 14, secondOfDay / 60 % 60);
+        buf[i + 16] = ':';
+        Digits.write2(buf, i + 17, secondOfDay % 60);
+        i += 19;
+
+        if (fractionDigits > 0)
+        {
+            buf[i++] = '.';
+            int fraction = nano / POWERS_OF_TEN[9 - fractionDigits];
+            for (int k = i + fractionDigits - 1; k >= i; k--)
+            {
+                buf[k] = (char) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            i += fractionDigits;
+        }
+
+        if (offsetSeconds == 0)
+        {
+            buf[i++] = 'Z';
+        }
+        else
+        {
+            buf[i] = offsetSeconds < 0 ? '-' : '+';
+            int abs = Math.abs(offsetSeconds);
+            Digits.write2(buf, i + 1, abs / 3600);
+            buf[i + 3] = ':';
+            Digits.write2(buf, i + 4, abs / 60 % 60);
+            i += 6;
+            if (abs % 60 != 0)
+            {
+                buf[i] = ':';
+                Digits.write2(buf, i + 1, abs % 60);
+                i += 3;
+            }
+        }
+        return i - offset;
+    }
+}
@@ -0,0 +1,178 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <pre>
+ * Lock free log linear histogram of latencies in nanosecond, in the style of HdrHistogram.
+ *
+ * Values below 2^SUB_BUCKET_BITS are counted exactly, above it every power of 2 range is split into
+ * 2^(SUB_BUCKET_BITS - 1) buckets, so a recorded value is known within 1/64 of it.
+ * Values above MAX_TRACKABLE_VALUE (about 68 seconds) are counted in the last bucket.
+ *
+ * Recording is one atomic increment of a bucket, reading while recording sees a consistent enough view
+ * for monitoring but not an atomic snapshot.
+ * </pre>
+ *
+ * @since 1.0
+ */
+public final class LatencyHistogram
+{
+    static final int SUB_BUCKET_BITS = 7;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+    static final int MAX_VALUE_BITS = 36;
+    static final long MAX_TRACKABLE_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    static final int BUCKET_COUNT = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 2) * SUB_BUCKET_HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalValue = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    LatencyHistogram()
+    {
+    }
+
+    /**
+     * Record a value.
+     *
+     * @param value         latency in nanosecond, negative values are recorded as 0
+     */
+    void record(long value)
+    {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(indexOf(Math.min(v, MAX_TRACKABLE_VALUE)));
+        totalCount.incrementAndGet();
+        totalValue.addAndGet(v);
+        long max = maxValue.get();
+        while (v > max && !maxValue.compareAndSet(max, v))
+        {
+            max = maxValue.get();
+        }
+    }
+
+    static int indexOf(long value)
+    {
+        int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return (shift << (SUB_BUCKET_BITS - 1)) + (int) (value >>> shift);
+    }
+
+    /**
+     * Get lowest value counted in the bucket.
+     */
+    static long lowestValueAt(int index)
+    {
+        if (index < SUB_BUCKET_COUNT)
+        {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_HALF - 1;
+        return (long) (index - shift * SUB_BUCKET_HALF) << shift;
+    }
+
+    /**
+     * Get highest value counted in the bucket.
+     */
+    static long highestValueAt(int index)
+    {
+        if (index < SUB_BUCKET_COUNT)
+        {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_HALF - 1;
+        return lowestValueAt(index) + (1L << shift) - 1;
+    }
+
+    /**
+     * @return          number of recorded values
+     */
+    public long getCount()
+    {
+        return totalCount.get();
+    }
+
+    /**
+     * @return          maximum recorded value, 0 if nothing recorded
+     */
+    public long getMax()
+    {
+        return maxValue.get();
+    }
+
+    /**
+     * @return          mean of recorded values, 0 if nothing recorded
+     */
+    public double getMean()
+    {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalValue.get() / count;
+    }
+
+    /**
+     * Get value at percentile, the highest value of the bucket which holds the percentile.
+     *
+     * @param percentile    percentile from 0 to 100
+     * @return              value at percentile, 0 if nothing recorded
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0)
+        {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            seen += snapshot[i];
+            if (seen >= rank)
+            {
+                return Math.min(highestValueAt(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Clear all recorded values.
+     */
+    void reset()
+    {
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalValue.set(0);
+        maxValue.set(0);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LatencyHistogram[count=" + getCount() + ", p50=" + getValueAtPercentile(50) + ", p99=" + getValueAtPercentile(99)
+            + ", max=" + getMax() + "]";
+    }
+}
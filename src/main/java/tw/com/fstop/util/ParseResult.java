@@ -0,0 +1,133 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+/**
+ * <pre>
+ * Reusable result holder of the non throwing parse methods.
+ *
+ * A failed parse records an error code and the index of the offending char instead of throwing
+ * ParseException or NumberFormatException, so dirty input costs no more than clean input.
+ * A holder is not thread safe, each thread reuses its own holder for every row.
+ *
+ * Strict holders also reject fields out of their normal range (month 13, second 61),
+ * other holders normalize them like a lenient Calendar does.
+ * </pre>
+ *
+ * @since 1.0
+ */
+public final class ParseResult
+{
+    /** parsed */
+    public static final int OK = 0;
+    /** text ends before the format */
+    public static final int TOO_SHORT = 1;
+    /** a numeric field has a non digit char */
+    public static final int NOT_DIGIT = 2;
+    /** a literal or offset of the format does not match */
+    public static final int LITERAL_MISMATCH = 3;
+    /** a field is out of range in strict mode */
+    public static final int FIELD_RANGE = 4;
+    /** text has chars after the format */
+    public static final int TRAILING_TEXT = 5;
+    /** general date format parse failed */
+    public static final int UNPARSEABLE = 6;
+    /** fast path can not decide, caller takes the general path, never returned to users */
+    static final int DECLINED = -1;
+
+    private final boolean strict;
+    private long value;
+    private int errorCode;
+    private int errorIndex = -1;
+
+    /**
+     * Create a lenient holder.
+     */
+    public ParseResult()
+    {
+        this(false);
+    }
+
+    /**
+     * Create a holder.
+     *
+     * @param strict        true to reject fields out of range
+     */
+    public ParseResult(boolean strict)
+    {
+        this.strict = strict;
+    }
+
+    public boolean isStrict()
+    {
+        return strict;
+    }
+
+    /**
+     * @return      true if last parse succeeded
+     */
+    public boolean isOk()
+    {
+        return errorCode == OK;
+    }
+
+    /**
+     * @return      parsed value of last successful parse
+     */
+    public long getValue()
+    {
+        return value;
+    }
+
+    /**
+     * @return      error code of last parse, OK if succeeded
+     */
+    public int getErrorCode()
+    {
+        return errorCode;
+    }
+
+    /**
+     * @return      index of the offending char of last failed parse, -1 if succeeded
+     */
+    public int getErrorIndex()
+    {
+        return errorIndex;
+    }
+
+    boolean success(long value)
+    {
+        this.value = value;
+        this.errorCode = OK;
+        this.errorIndex = -1;
+        return true;
+    }
+
+    boolean fail(int errorCode, int errorIndex)
+    {
+        this.errorCode = errorCode;
+        this.errorIndex = errorIndex;
+        return false;
+    }
+
+    @Override
+    public String toString()
+    {
+        if (errorCode == OK)
+        {
+            return "ParseResult[value=" + value + "]";
+        }
+        return "ParseResult[errorCode=" + errorCode + ", errorIndex=" + errorIndex + "]";
+    }
+}
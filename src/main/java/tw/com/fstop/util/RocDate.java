@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+/**
+ * <pre>
+ * Codec of ROC (Minguo) calendar dates, the ROC year is the Gregorian year minus 1911.
+ *
+ *   DATE               1060807             yyyMMdd
+ *   DATE_TIME          1060807220040       yyyMMddHHmmss
+ *   SLASH_DATE         106/08/07           yyy/MM/dd
+ *   SLASH_DATE_TIME    106/08/07 22:00:40  yyy/MM/dd HH:mm:ss
+ *
+ * Years are written with 3 digits, 99/12/31 with a 1 or 2 digit year is also accepted by the slash layouts.
+ * ROC years 1 to 999 are supported, dates before 1912 are rejected with FIELD_RANGE.
+ * Dates are local dates of the given zone, fields out of range are normalized unless the ParseResult is strict.
+ *
+ * Parsing and formatting into char arrays do not allocate, errors are recorded in ParseResult.
+ * DateTimeUtil and DateTimeBatch have ROC date conversions built on this codec.
+ * </pre>
+ *
+ * @since 1.0
+ */
+public final class RocDate
+{
+    public static final int DATE = 0;
+    public static final int DATE_TIME = 1;
+    public static final int SLASH_DATE = 2;
+    public static final int SLASH_DATE_TIME = 3;
+    /** maximum number of chars of a formatted date */
+    public static final int MAX_LENGTH = 18;
+    /** Gregorian year of ROC year 0 */
+    public static final int YEAR_OFFSET = 1911;
+
+    private static final int[] LENGTHS = {7, 13, 9, 18};
+
+    private RocDate()
+    {
+    }
+
+    /**
+     * Parse ROC date of any layout from offset to end of the text to epoch millisecond.
+     *
+     * @param s                 text
+     * @param offset            index of first char
+     * @param zone              timezone of the date
+     * @param result            result holder, value is epoch millisecond
+     * @return                  true if parsed
+     */
+    public static boolean parseEpoch(CharSequence s, int offset, Zone zone, ParseResult result)
+    {
+        return parse(s, offset, zone, false, result);
+    }
+
+    /**
+     * Parse ROC date of any layout to epoch millisecond.
+     *
+     * @param s                 text
+     * @param zone              timezone of the date
+     * @param invalidValue      value returned for malformed text
+     * @return                  epoch millisecond, or invalidValue
+     */
+    public static long parseEpoch(CharSequence s, Zone zone, long invalidValue)
+    {
+        ParseResult result = ThreadScratch.parseResult(false);
+        return parse(s, 0, zone, false, result) ? result.getValue() : invalidValue;
+    }
+
+    /**
+     * Parse ROC date of any layout from offset to end of the text to epoch second.
+     *
+     * @param s                 text
+     * @param offset            index of first char
+     * @param zone              timezone of the date
+     * @param result            result holder, value is epoch second
+     * @return                  true if parsed
+     */
+    public static boolean parseEpochSecond(CharSequence s, int offset, Zone zone, ParseResult result)
+    {
+        return parse(s, offset, zone, true, result);
+    }
+
+    /**
+     * Parse ROC date of any layout to epoch second.
+     *
+     * @param s                 text
+     * @param zone              timezone of the date
+     * @param invalidValue      value returned for malformed text
+     * @return                  epoch second, or invalidValue
+     */
+    public static long parseEpochSecond(CharSequence s, Zone zone, long invalidValue)
+    {
+        ParseResult result = ThreadScratch.parseResult(false);
+        return parse(s, 0, zone, true, result) ? result.getValue() : invalidValue;
+    }
+
+    private static boolean parse(CharSequence s, int offset, Zone zone, boolean seconds, ParseResult result)
+    {
+        int length = s.length();
+        if (offset < 0 || offset > length)
+        {
+            return result.fail(ParseResult.TOO_SHORT, offset);
+        }
+        int i = offset;
+        int year = 0;
+        while (i < length && i - offset < 3 && s.charAt(i) >= '0' && s.charAt(i) <= '9')
+        {
+            year = year * 10 + (s.charAt(i) - '0');
+            i++;
+        }
+        boolean slash = i < length && s.charAt(i) == '/' && i > offset;
+        if (!slash && i - offset < 3)
+        {
+            return result.fail(i < length ? ParseResult.NOT_DIGIT : ParseResult.TOO_SHORT, i);
+        }
+        // distance between time fields, HHmmss or HH:mm:ss
+        int step;
+        int monthAt;
+        int timeAt = -1;
+        int month;
+        int day;
+        if (slash)
+        {
+            step = 3;
+            monthAt = i + 1;
+            month = Digits.parse(s, monthAt, 2, result);
+            if (month < 0 || !Digits.literal(s, i + 3, '/', result))
+            {
+                return false;
+            }
+            day = Digits.parse(s, i + 4, 2, result);
+            if (day < 0)
+            {
+                return false;
+            }
+            i += 6;
+            if (i < length && s.charAt(i) == ' ')
+            {
+                timeAt = i + 1;
+            }
+        }
+        else
+        {
+            step = 2;
+            monthAt = i;
+            month = Digits.parse(s, monthAt, 2, result);
+            if (month < 0)
+            {
+                return false;
+            }
+            day = Digits.parse(s, i + 2, 2, result);
+            if (day < 0)
+            {
+                return false;
+            }
+            i += 4;
+            if (i < length && s.charAt(i) >= '0' && s.charAt(i) <= '9')
+            {
+                timeAt = i;
+            }
+        }
+
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        if (timeAt >= 0)
+        {
+            hour = Digits.parse(s, timeAt, 2, result);
+            if (hour < 0 || (slash && !Digits.literal(s, timeAt + 2, ':', result)))
+            {
+                return false;
+            }
+            minute = Digits.parse(s, timeAt + step, 2, result);
+            if (minute < 0 || (slash && !Digits.literal(s, timeAt + step + 2, ':', result)))
+            {
+                return false;
+            }
+            second = Digits.parse(s, timeAt + step * 2, 2, result);
+            if (second < 0)
+            {
+                return false;
+            }
+            i = timeAt + step * 2 + 2;
+        }
+        if (i != length)
+        {
+            return result.fail(ParseResult.TRAILING_TEXT, i);
+        }
+
+        if (year < 1)
+        {
+            return result.fail(ParseResult.FIELD_RANGE, offset);
+        }
+        if (result.isStrict())
+        {
+            if (month < 1 || month > 12)
+            {
+                return result.fail(ParseResult.FIELD_RANGE, monthAt);
+            }
+            if (day < 1 || day > CivilCalendar.daysInMonth(year + YEAR_OFFSET, month))
+            {
+                return result.fail(ParseResult.FIELD_RANGE, monthAt + step);
+            }
+            if (hour > 23)
+            {
+                return result.fail(ParseResult.FIELD_RANGE, timeAt);
+            }
+            if (minute > 59)
+            {
+                return result.fail(ParseResult.FIELD_RANGE, timeAt + step);
+            }
+            if (second > 59)
+            {
+                return result.fail(ParseResult.FIELD_RANGE, timeAt + step * 2);
+            }
+        }
+        long local = CivilCalendar.epochSecond(year + YEAR_OFFSET, month, day, hour, minute, second) * 1000;
+        // offset at the instant, the second lookup corrects a guess made across a transition
+        long epoch = local - zone.getOffset(local);
+        epoch = local - zone.getOffset(epoch);
+        return result.success(seconds ? CivilCalendar.floorDiv(epoch, 1000) : epoch);
+    }
+
+    /**
+     * Format epoch as ROC date of the zone.
+     *
+     * @param epoch             epoch in millisecond
+     * @param zone              timezone of the date
+     * @param layout            DATE, DATE_TIME, SLASH_DATE or SLASH_DATE_TIME
+     * @return                  ROC date
+     * @throws IllegalArgumentException         if the layout is unknown or the ROC year is out of 1 to 999
+     */
+    public static String format(long epoch, Zone zone, int layout)
+    {
+        char[] buf = ThreadScratch.chars();
+        int n = format(epoch, zone, layout, buf, 0);
+        return new String(buf, 0, n);
+    }
+
+    /**
+     * Write epoch as ROC date of the zone into char array.
+     *
+     * @param epoch             epoch in millisecond
+     * @param zone              timezone of the date
+     * @param layout            DATE, DATE_TIME, SLASH_DATE or SLASH_DATE_TIME
+     * @param buf               target
+     * @param offset            index of first char
+     * @return                  number of chars written
+     * @throws IllegalArgumentException         if the layout is unknown or the ROC year is out of 1 to 999
+     * @throws ArrayIndexOutOfBoundsException   if buf has not enough room
+     */
+    public static int format(long epoch, Zone zone, int layout, char[] buf, int offset)
+    {
+        int length = length(layout);
+        long local = CivilCalendar.floorDiv(epoch + zone.getOffset(epoch), 1000);
+        long date = CivilCalendar.civilFromDays(CivilCalendar.floorDiv(local, CivilCalendar.ONE_DAY_SECONDS));
+        int year = CivilCalendar.packedYear(date) - YEAR_OFFSET;
+        if (year < 1 || year > 999)
+        {
+            throw new IllegalArgumentException("ROC year out of 1 to 999: " + year);
+        }
+        if (offset < 0 || buf.length - offset < length)
+        {
+            throw new ArrayIndexOutOfBoundsException("need " + length + " chars, " + (buf.length - offset) + " available");
+        }
+
+        int secondOfDay = (int) CivilCalendar.floorMod(local, CivilCalendar.ONE_DAY_SECONDS);
+        int i = offset;
+        Digits.write3(buf, i, year);
+        if (layout == DATE || layout == DATE_TIME)
+        {
+            Digits.write2(buf, i + 3, CivilCalendar.packedMonth(date));
+            Digits.write2(buf, i + 5, CivilCalendar.packedDay(date));
+            if (layout == DATE_TIME)
+            {
+                Digits.write2(buf, i + 7, secondOfDay / 3600);
+                Digits.write2(buf, i + 9, secondOfDay / 60 % 60);
+                Digits.write2(buf, i + 11, secondOfDay % 60);
+            }
+        }
+        else
+        {
+            buf[i + 3] = '/';
+            Digits.write2(buf, i + 4, CivilCalendar.packedMonth(date));
+            buf[i + 6] = '/';
+            Digits.write2(buf, i + 7, CivilCalendar.packedDay(date));
+            if (layout == SLASH_DATE_TIME)
+            {
+                buf[i + 9] = ' ';
+                Digits.write2(buf, i + 10, secondOfDay / 3600);
+                buf[i + 12] = ':';
+                Digits.write2(buf, i + 13, secondOfDay / 60 % 60);
+                buf[i + 15] = ':';
+                Digits.write2(buf, i + 16, secondOfDay % 60);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Number of chars of the layout.
+     */
+    static int length(int layout)
+    {
+        if (layout < DATE || layout > SLASH_DATE_TIME)
+        {
+            throw new IllegalArgumentException("unknown layout: " + layout);
+        }
+        return LENGTHS[layout];
+    }
+
+    /**
+     * Append epoch as ROC date of the zone to StringBuilder.
+     *
+     * @param sb                target
+     * @param epoch             epoch in millisecond
+     * @param zone              timezone of the date
+     * @param layout            DATE, DATE_TIME, SLASH_DATE or SLASH_DATE_TIME
+     * @return                  the StringBuilder
+     */
+    public static StringBuilder append(StringBuilder sb, long epoch, Zone zone, int layout)
+    {
+        char[] buf = ThreadScratch.chars();
+        return sb.append(buf, 0, format(epoch, zone, layout, buf, 0));
+    }
+}
@@ -0,0 +1,69 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <pre>
+ * Counter for hot paths, increments of different threads go to different cache lines.
+ * Java 6 has no LongAdder, threads are striped by thread id.
+ * </pre>
+ *
+ * @since 1.0
+ */
+final class StripedCounter
+{
+    static final int STRIPES = 16;
+    /** longs between two stripes, keeps stripes on different 64 byte cache lines */
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    /**
+     * Add one.
+     *
+     * @return          new value of the calling thread's stripe
+     */
+    long increment()
+    {
+        return cells.incrementAndGet(stripe());
+    }
+
+    /**
+     * @return          sum of all stripes
+     */
+    long get()
+    {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++)
+        {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    void reset()
+    {
+        for (int i = 0; i < STRIPES; i++)
+        {
+            cells.set(i * PADDING, 0);
+        }
+    }
+
+    private static int stripe()
+    {
+        return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+/**
+ * <pre>
+ * Reusable objects of the calling thread for methods which return a value and must not allocate,
+ * e.g. the parse result behind parseEpoch(CharSequence, long) and the buffer behind format(long, Zone).
+ *
+ * A scratch object is used within one call and its value copied out before the call returns,
+ * so callers must not call another method using the same scratch object while holding it.
+ * </pre>
+ *
+ * @since 1.0
+ */
+final class ThreadScratch
+{
+    /** length of the char buffer, fits an Iso8601 timestamp or a RocDate */
+    static final int CHARS_LENGTH = 64;
+
+    private static final ThreadLocal<ThreadScratch> local = new ThreadLocal<ThreadScratch>()
+    {
+        @Override
+        protected ThreadScratch initialValue()
+        {
+            return new ThreadScratch();
+        }
+    };
+
+    private final ParseResult lenient = new ParseResult();
+    private final ParseResult strict = new ParseResult(true);
+    private final char[] chars = new char[CHARS_LENGTH];
+
+    private ThreadScratch()
+    {
+    }
+
+    /**
+     * @param strict        true for a strict result
+     * @return              parse result of the calling thread
+     */
+    static ParseResult parseResult(boolean strict)
+    {
+        ThreadScratch scratch = local.get();
+        return strict ? scratch.strict : scratch.lenient;
+    }
+
+    /**
+     * @return              char buffer of the calling thread, CHARS_LENGTH long
+     */
+    static char[] chars()
+    {
+        return local.get().chars;
+    }
+}
@@ -0,0 +1,124 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.util.TimeZone;
+
+/**
+ * <pre>
+ * Coarse clock, a daemon thread publishes a snapshot of current time once per resolution.
+ * Readers get the last published snapshot from a volatile field, they never compute fields themselves.
+ *
+ * Snapshot is at most one resolution old, and a change of default timezone is seen on next tick.
+ * </pre>
+ *
+ * @since 1.0
+ */
+final class TickingClock implements Runnable
+{
+    private final long resolution;
+    private volatile TimeSource source;
+    private volatile ClockSnapshot snapshot;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Create a clock, the first snapshot is published before this constructor returns.
+     *
+     * @param source            time source
+     * @param resolution        tick interval in millisecond
+     */
+    TickingClock(TimeSource source, long resolution)
+    {
+        if (resolution < 1)
+        {
+            throw new IllegalArgumentException("resolution must be positive: " + resolution);
+        }
+        this.source = source;
+        this.resolution = resolution;
+        tick();
+    }
+
+    /**
+     * Start the background thread.
+     */
+    synchronized void start()
+    {
+        if (thread != null)
+        {
+            return;
+        }
+        running = true;
+        thread = new Thread(this, "fstop-datetime-clock");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop the background thread, last snapshot is still readable.
+     */
+    synchronized void stop()
+    {
+        running = false;
+        if (thread != null)
+        {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        while (running)
+        {
+            try
+            {
+                Thread.sleep(resolution);
+            }
+            catch (InterruptedException e)
+            {
+                if (!running)
+                {
+                    return;
+                }
+            }
+            tick();
+        }
+    }
+
+    /**
+     * Publish snapshot of current time.
+     */
+    void tick()
+    {
+        snapshot = ClockSnapshot.of(source.currentTimeMillis(), TimeZone.getDefault());
+    }
+
+    ClockSnapshot snapshot()
+    {
+        return snapshot;
+    }
+
+    void setSource(TimeSource source)
+    {
+        this.source = source;
+        tick();
+    }
+
+    long getResolution()
+    {
+        return resolution;
+    }
+}
@@ -0,0 +1,44 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+/**
+ * <pre>
+ * Source of current time used by DateTimeUtil.
+ * Replace it with DateTimeUtil.setTimeSource, for example to inject a fixed time in tests.
+ * </pre>
+ *
+ * @since 1.0
+ */
+public interface TimeSource
+{
+    /**
+     * System clock.
+     */
+    TimeSource SYSTEM = new TimeSource()
+    {
+        @Override
+        public long currentTimeMillis()
+        {
+            return System.currentTimeMillis();
+        }
+    };
+    
+    /**
+     * Get current epoch millisecond.
+     * 
+     * @return      epoch millisecond
+     */
+    long currentTimeMillis();
+}
@@ -0,0 +1,567 @@
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <pre>
+ * Packed column of timestamps, delta of delta values in zigzag varints.
+ *
+ * Values are packed in blocks of blockSize values, each block starts over so it is decoded on its own:
+ *   first value    zigzag varint of the value
+ *   second value   zigzag varint of the delta to the first value
+ *   other values   zigzag varint of the delta minus the previous delta
+ * A zigzag varint takes 1 byte for -64 to 63, a column of epoch seconds taken at a steady rate
+ * takes about one byte per value instead of eight.
+ * Arithmetic wraps like long arithmetic, every long value round trips.
+ *
+ * The Encoder writes values into a ByteBuffer and records where each block starts in an Index,
+ * the Decoder reads them back in order, or from any value by seeking with the Index.
+ * Compact paths parse yyyyMMddhhmiss text straight to packed epoch seconds and format packed values
+ * straight to text, neither allocates.
+ *
+ * Encoders and decoders are not thread safe, a codec and an index are immutable.
+ * </pre>
+ *
+ * @since 1.0
+ */
+public final class TimestampCodec
+{
+    public static final int DEFAULT_BLOCK_SIZE = 128;
+
+    private final int blockSize;
+
+    /**
+     * Create a codec packs values in blocks of blockSize values.
+     *
+     * @param blockSize         number of values of a block
+     */
+    public TimestampCodec(int blockSize)
+    {
+        if (blockSize < 1)
+        {
+            throw new IllegalArgumentException("blockSize must be positive: " + blockSize);
+        }
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Create a codec packs values in blocks of DEFAULT_BLOCK_SIZE values.
+     */
+    public TimestampCodec()
+    {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    public int getBlockSize()
+    {
+        return blockSize;
+    }
+
+    /**
+     * Create an encoder writes from the buffer's position.
+     *
+     * @param out               target
+     * @return                  encoder
+     */
+    public Encoder encoder(ByteBuffer out)
+    {
+        return new Encoder(out, blockSize);
+    }
+
+    /**
+     * Create a decoder reads from the buffer's position to its limit,
+     * the position must be where the encoder started writing.
+     *
+     * @param in                packed values
+     * @return                  decoder
+     */
+    public Decoder decoder(ByteBuffer in)
+    {
+        return new Decoder(in, blockSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a decoder reads index.getCount() values from the buffer's position,
+     * for packed values followed by other data.
+     *
+     * @param in                packed values
+     * @param index             index of the packed values
+     * @return                  decoder
+     */
+    public Decoder decoder(ByteBuffer in, Index index)
+    {
+        if (index.blockSize != blockSize)
+        {
+            throw new IllegalArgumentException("index of block size " + index.blockSize + ", codec of " + blockSize);
+        }
+        return new Decoder(in, blockSize, index.count);
+    }
+
+    /**
+     * Pack values into buffer.
+     *
+     * @param src               values
+     * @param srcPos            start position of src
+     * @param length            number of values
+     * @param out               target, from its position
+     * @return                  index of packed values
+     * @throws BufferOverflowException  if out has not enough room
+     */
+    public Index encode(long[] src, int srcPos, int length, ByteBuffer out)
+    {
+        Encoder encoder = encoder(out);
+        encoder.add(src, srcPos, length);
+        return encoder.finish();
+    }
+
+    /**
+     * Unpack values from buffer.
+     *
+     * @param in                packed values, from its position
+     * @param dest              values
+     * @param destPos           start position of dest
+     * @param length            number of values
+     * @throws BufferUnderflowException if in has less values
+     */
+    public void decode(ByteBuffer in, long[] dest, int destPos, int length)
+    {
+        Decoder decoder = decoder(in);
+        if (decoder.next(dest, destPos, length) != length)
+        {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    static long zigzag(long n)
+    {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    static long unzigzag(long n)
+    {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    static int varintLength(long n)
+    {
+        int length = 1;
+        while ((n & ~0x7FL) != 0)
+        {
+            n >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    static void putVarint(ByteBuffer out, long n)
+    {
+        while ((n & ~0x7FL) != 0)
+        {
+            out.put((byte) ((n & 0x7F) | 0x80));
+            n >>>= 7;
+        }
+        out.put((byte) n);
+    }
+
+    static long getVarint(ByteBuffer in)
+    {
+        long n = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            byte b = in.get();
+            n |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+            {
+                return n;
+            }
+        }
+        throw new IllegalStateException("malformed varint at " + (in.position() - 1));
+    }
+
+    /**
+     * Writes packed values, a value is either written whole or not at all.
+     */
+    public static final class Encoder
+    {
+        private final ByteBuffer out;
+        private final int start;
+        private final int blockSize;
+        private int count;
+        private long previous;
+        private long delta;
+        /** position of each block relative to start */
+        private int[] blocks = new int[16];
+        private final ParseResult result = new ParseResult(true);
+
+        Encoder(ByteBuffer out, int blockSize)
+        {
+            this.out = out;
+            this.start = out.position();
+            this.blockSize = blockSize;
+        }
+
+        /**
+         * Pack a value.
+         *
+         * @param value         epoch second, epoch millisecond or any long
+         * @throws BufferOverflowException  if out has not enough room, nothing is written
+         */
+        public void add(long value)
+        {
+            int inBlock = count % blockSize;
+            long packed;
+            if (inBlock == 0)
+            {
+                packed = zigzag(value);
+            }
+            else if (inBlock == 1)
+            {
+                packed = zigzag(value - previous);
+            }
+            else
+            {
+                packed = zigzag(value - previous - delta);
+            }
+            if (out.remaining() < varintLength(packed))
+            {
+                throw new BufferOverflowException();
+            }
+            if (inBlock == 0)
+            {
+                int block = count / blockSize;
+                if (block == blocks.length)
+                {
+                    blocks = Arrays.copyOf(blocks, block * 2);
+                }
+                blocks[block] = out.position() - start;
+            }
+            putVarint(out, packed);
+            delta = inBlock == 0 ? 0 : value - previous;
+            previous = value;
+            count++;
+        }
+
+        /**
+         * Pack values.
+         *
+         * @param src           values
+         * @param srcPos        start position of src
+         * @param length        number of values
+         * @throws BufferOverflowException  if out has not enough room, values before are written
+         */
+        public void add(long[] src, int srcPos, int length)
+        {
+            for (int i = srcPos, end = srcPos + length; i < end; i++)
+            {
+                add(src[i]);
+            }
+        }
+
+        /**
+         * Parse yyyyMMddhhmiss at offset of the text and pack its UTC epoch second.
+         * Text is scanned in place like DateTimeUtil.parseEpochSecond, fields out of range are rejected.
+         *
+         * @param s             text contains yyyyMMddhhmiss
+         * @param offset        index of first digit
+         * @return              true if packed, false if the text is malformed and nothing is written
+         * @throws BufferOverflowException  if out has not enough room
+         */
+        public boolean add(CharSequence s, int offset)
+        {
+            if (!DateTimeUtil.parseEpochSecond(s, offset, result))
+            {
+                return false;
+            }
+            add(result.getValue());
+            return true;
+        }
+
+        /**
+         * Parse yyyyMMddhhmiss texts and pack their UTC epoch seconds.
+         *
+         * @param src           texts of yyyyMMddhhmiss
+         * @param srcPos        start position of src
+         * @param length        number of texts
+         * @return              index in src of first malformed text, -1 if all are packed
+         * @throws BufferOverflowException  if out has not enough room, values before are written
+         */
+        public int add(CharSequence[] src, int srcPos, int length)
+        {
+            for (int i = srcPos, end = srcPos + length; i < end; i++)
+            {
+                if (!add(src[i], 0))
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return              number of values packed
+         */
+        public int count()
+        {
+            return count;
+        }
+
+        /**
+         * Get index of values packed so far, more values may be added after.
+         *
+         * @return              index
+         */
+        public Index finish()
+        {
+            int blockCount = (count + blockSize - 1) / blockSize;
+            return new Index(blockSize, count, out.position() - start, Arrays.copyOf(blocks, blockCount));
+        }
+    }
+
+    /**
+     * Reads packed values in order, or from a value located by an Index.
+     */
+    public static final class Decoder
+    {
+        private final ByteBuffer in;
+        private final int start;
+        private final int blockSize;
+        /** number of values to read, Integer.MAX_VALUE to read up to limit of the buffer */
+        private final int limit;
+        private int count;
+        private long previous;
+        private long delta;
+
+        Decoder(ByteBuffer in, int blockSize, int limit)
+        {
+            this.in = in;
+            this.start = in.position();
+            this.blockSize = blockSize;
+            this.limit = limit;
+        }
+
+        /**
+         * @return              true if there are more values
+         */
+        public boolean hasNext()
+        {
+            return count < limit && in.hasRemaining();
+        }
+
+        /**
+         * Unpack next value.
+         *
+         * @return              value
+         * @throws BufferUnderflowException if there are no more values
+         */
+        public long next()
+        {
+            if (count >= limit)
+            {
+                throw new BufferUnderflowException();
+            }
+            long packed = unzigzag(getVarint(in));
+            int inBlock = count % blockSize;
+            long value;
+            if (inBlock == 0)
+            {
+                value = packed;
+                delta = 0;
+            }
+            else
+            {
+                delta = inBlock == 1 ? packed : delta + packed;
+                value = previous + delta;
+            }
+            previous = value;
+            count++;
+            return value;
+        }
+
+        /**
+         * Unpack next values.
+         *
+         * @param dest          values
+         * @param destPos       start position of dest
+         * @param length        maximum number of values
+         * @return              number of values unpacked, less than length at the end of values
+         */
+        public int next(long[] dest, int destPos, int length)
+        {
+            int n = 0;
+            while (n < length && hasNext())
+            {
+                dest[destPos + n] = next();
+                n++;
+            }
+            return n;
+        }
+
+        /**
+         * Unpack next epoch second and write it as UTC yyyyMMddHHmmss, 14 chars.
+         *
+         * @param buf           target
+         * @param offset        index of first char
+         * @return              number of chars written
+         * @throws BufferUnderflowException if there are no more values
+         */
+        public int nextCompact(char[] buf, int offset)
+        {
+            return DateTimeAppender.write(buf, offset, next() * DateTimeUtil.ONE_SECOND_MILLIS, DateTimeAppender.COMPACT, Zone.UTC);
+        }
+
+        /**
+         * Unpack next epoch second and append it as local datetime string of the zone.
+         *
+         * @param dtFormat      datetime format
+         * @param zone          timezone
+         * @param sb            target
+         * @return              the StringBuilder
+         * @throws BufferUnderflowException if there are no more values
+         */
+        public StringBuilder nextDateString(String dtFormat, Zone zone, StringBuilder sb)
+        {
+            return DateTimeAppender.append(sb, next() * DateTimeUtil.ONE_SECOND_MILLIS, dtFormat, zone);
+        }
+
+        /**
+         * Move to value at index, next() then returns that value.
+         * Reads at most blockSize - 1 values to reach it.
+         *
+         * @param index         index of the packed values
+         * @param valueIndex    index of the value
+         * @return              this decoder
+         */
+        public Decoder seek(Index index, int valueIndex)
+        {
+            if (index.blockSize != blockSize)
+            {
+                throw new IllegalArgumentException("index of block size " + index.blockSize + ", codec of " + blockSize);
+            }
+            if (valueIndex < 0 || valueIndex > index.count)
+            {
+                throw new IndexOutOfBoundsException("value " + valueIndex + " of " + index.count);
+            }
+            int block = valueIndex / blockSize;
+            if (block == index.blocks.length)
+            {
+                in.position(start + index.length);
+                count = valueIndex;
+                return this;
+            }
+            in.position(start + index.blocks[block]);
+            count = block * blockSize;
+            while (count < valueIndex)
+            {
+                next();
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Where blocks of packed values start, for random access.
+     * An index is written in a few bytes per block and read back with read().
+     */
+    public static final class Index
+    {
+        final int blockSize;
+        final int count;
+        /** number of bytes of packed values */
+        final int length;
+        /** position of each block relative to start of packed values */
+        final int[] blocks;
+
+        Index(int blockSize, int count, int length, int[] blocks)
+        {
+            this.blockSize = blockSize;
+            this.count = count;
+            this.length = length;
+            this.blocks = blocks;
+        }
+
+        /**
+         * @return          number of values
+         */
+        public int getCount()
+        {
+            return count;
+        }
+
+        /**
+         * @return          number of bytes of packed values
+         */
+        public int getLength()
+        {
+            return length;
+        }
+
+        public int getBlockSize()
+        {
+            return blockSize;
+        }
+
+        public int getBlockCount()
+        {
+            return blocks.length;
+        }
+
+        /**
+         * Write the index in varints from the buffer's position.
+         *
+         * @param out       target
+         * @throws BufferOverflowException  if out has not enough room
+         */
+        public void write(ByteBuffer out)
+        {
+            putVarint(out, blockSize);
+            putVarint(out, count);
+            putVarint(out, length);
+            int previous = 0;
+            for (int i = 0; i < blocks.length; i++)
+            {
+                putVarint(out, blocks[i] - previous);
+                previous = blocks[i];
+            }
+        }
+
+        /**
+         * Read an index written by write() from the buffer's position.
+         *
+         * @param in        source
+         * @return          index
+         */
+        public static Index read(ByteBuffer in)
+        {
+            int blockSize = (int) getVarint(in);
+            int count = (int) getVarint(in);
+            int length = (int) getVarint(in);
+            if (blockSize < 1 || count < 0 || length < 0)
+            {
+                throw new IllegalStateException("malformed index");
+            }
+            int[] blocks = new int[(count + blockSize - 1) / blockSize];
+            int previous = 0;
+            for (int i = 0; i < blocks.length; i++)
+            {
+                previous += (int) getVarint(in);
+                blocks[i] = previous;
+            }
+            return new Index(blockSize, count, length, blocks);
+        }
+    }
+}
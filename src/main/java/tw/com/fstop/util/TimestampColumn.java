@@ -0,0 +1,554 @@
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * <pre>
+ * Column of epoch milliseconds kept out of the Java heap, in a direct or memory mapped buffer, 8 bytes per row.
+ *
+ * Rows are read and written by absolute index, the column is sorted in place without copying to the heap.
+ * Range queries use binary search when the column is sorted and a scan otherwise.
+ * A View formats rows through DateTimeUtil.epochToLocalDateString only when a row is read,
+ * nothing is formatted or kept for rows which are never read.
+ *
+ * A column is not thread safe for writing, reads of a column which is not written are safe from any thread.
+ * </pre>
+ *
+ * @since 1.0
+ */
+public final class TimestampColumn
+{
+    static final int INSERTION_SORT_THRESHOLD = 32;
+
+    private static final int ORDER_UNKNOWN = 0;
+    private static final int ORDER_SORTED = 1;
+    private static final int ORDER_UNSORTED = 2;
+
+    private final LongBuffer rows;
+    private int size;
+    private int order;
+
+    private TimestampColumn(LongBuffer rows, int size)
+    {
+        this.rows = rows;
+        this.size = size;
+        this.order = size < 2 ? ORDER_SORTED : ORDER_UNKNOWN;
+    }
+
+    /**
+     * Allocate an empty column in a direct buffer of native byte order.
+     *
+     * @param capacity          maximum number of rows
+     * @return                  column
+     */
+    public static TimestampColumn allocateDirect(int capacity)
+    {
+        ByteBuffer buf = ByteBuffer.allocateDirect(checkCapacity(capacity) * 8).order(ByteOrder.nativeOrder());
+        return new TimestampColumn(buf.asLongBuffer(), 0);
+    }
+
+    /**
+     * Use remaining bytes of the buffer as a full column, in byte order of the buffer.
+     *
+     * @param buf               rows, 8 bytes per row
+     * @return                  column
+     */
+    public static TimestampColumn wrap(ByteBuffer buf)
+    {
+        LongBuffer rows = buf.asLongBuffer();
+        return new TimestampColumn(rows, rows.capacity());
+    }
+
+    /**
+     * Map a region of the file as a full column in big endian byte order.
+     * Rows written to a READ_WRITE mapping go to the file.
+     *
+     * @param channel           file channel
+     * @param mode              map mode
+     * @param position          position of first row in the file
+     * @param rowCount          number of rows
+     * @return                  column
+     * @throws IOException      if mapping fails
+     */
+    public static TimestampColumn map(FileChannel channel, FileChannel.MapMode mode, long position, int rowCount) throws IOException
+    {
+        return wrap(channel.map(mode, position, (long) checkCapacity(rowCount) * 8));
+    }
+
+    private static int checkCapacity(int capacity)
+    {
+        if (capacity < 0 || capacity > Integer.MAX_VALUE / 8)
+        {
+            throw new IllegalArgumentException("capacity out of range: " + capacity);
+        }
+        return capacity;
+    }
+
+    /**
+     * @return          number of rows
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return          maximum number of rows
+     */
+    public int capacity()
+    {
+        return rows.capacity();
+    }
+
+    /**
+     * Append a row.
+     *
+     * @param epoch             epoch in millisecond
+     * @throws IllegalStateException    if the column is full
+     */
+    public void add(long epoch)
+    {
+        if (size == rows.capacity())
+        {
+            throw new IllegalStateException("column is full: " + size);
+        }
+        if (order == ORDER_SORTED && size > 0 && rows.get(size - 1) > epoch)
+        {
+            order = ORDER_UNSORTED;
+        }
+        rows.put(size++, epoch);
+    }
+
+    /**
+     * Append rows.
+     *
+     * @param src               epoch in milliseconds
+     * @param srcPos            start position of src
+     * @param length            number of rows
+     * @throws IllegalStateException    if the column has not enough room, nothing is appended
+     */
+    public void add(long[] src, int srcPos, int length)
+    {
+        if (length > rows.capacity() - size)
+        {
+            throw new IllegalStateException("column has room for " + (rows.capacity() - size) + " rows, not " + length);
+        }
+        for (int i = srcPos, end = srcPos + length; i < end; i++)
+        {
+            add(src[i]);
+        }
+    }
+
+    /**
+     * Get a row.
+     *
+     * @param row               row index
+     * @return                  epoch in millisecond
+     */
+    public long get(int row)
+    {
+        checkRow(row);
+        return rows.get(row);
+    }
+
+    /**
+     * Copy rows to array.
+     *
+     * @param row               index of first row
+     * @param dest              epoch in milliseconds
+     * @param destPos           start position of dest
+     * @param length            number of rows
+     */
+    public void get(int row, long[] dest, int destPos, int length)
+    {
+        checkRange(row, length);
+        for (int i = 0; i < length; i++)
+        {
+            dest[destPos + i] = rows.get(row + i);
+        }
+    }
+
+    /**
+     * Replace a row.
+     *
+     * @param row               row index
+     * @param epoch             epoch in millisecond
+     */
+    public void set(int row, long epoch)
+    {
+        checkRow(row);
+        rows.put(row, epoch);
+        if (order == ORDER_SORTED && ((row > 0 && rows.get(row - 1) > epoch) || (row < size - 1 && epoch > rows.get(row + 1))))
+        {
+            order = ORDER_UNSORTED;
+        }
+    }
+
+    private void checkRow(int row)
+    {
+        if (row < 0 || row >= size)
+        {
+            throw new IndexOutOfBoundsException("row " + row + " of " + size);
+        }
+    }
+
+    private void checkRange(int row, int length)
+    {
+        if (row < 0 || length < 0 || row > size - length)
+        {
+            throw new IndexOutOfBoundsException("rows " + row + " to " + (row + length) + " of " + size);
+        }
+    }
+
+    /**
+     * Check if rows are in ascending order, the first call on a wrapped column scans it.
+     *
+     * @return          true if sorted
+     */
+    public boolean isSorted()
+    {
+        if (order == ORDER_UNKNOWN)
+        {
+            order = ORDER_SORTED;
+            for (int i = 1; i < size; i++)
+            {
+                if (rows.get(i - 1) > rows.get(i))
+                {
+                    order = ORDER_UNSORTED;
+                    break;
+                }
+            }
+        }
+        return order == ORDER_SORTED;
+    }
+
+    /**
+     * Sort rows in ascending order in place, O(n log n) and no heap copy of the rows.
+     */
+    public void sort()
+    {
+        if (isSorted())
+        {
+            return;
+        }
+        int depth = 2 * (32 - Integer.numberOfLeadingZeros(size));
+        quickSort(0, size, depth);
+        order = ORDER_SORTED;
+    }
+
+    /**
+     * Quick sort [lo, hi), heap sort a range when partitions go too deep.
+     */
+    private void quickSort(int lo, int hi, int depth)
+    {
+        while (hi - lo > INSERTION_SORT_THRESHOLD)
+        {
+            if (depth-- == 0)
+            {
+                heapSort(lo, hi);
+                return;
+            }
+            // median of three as pivot at lo, Hoare partition then splits [lo, hi) into two non empty ranges
+            int mid = (lo + hi) >>> 1;
+            if (rows.get(mid) < rows.get(lo))
+            {
+                swap(mid, lo);
+            }
+            if (rows.get(hi - 1) < rows.get(lo))
+            {
+                swap(hi - 1, lo);
+            }
+            if (rows.get(hi - 1) < rows.get(mid))
+            {
+                swap(hi - 1, mid);
+            }
+            swap(lo, mid);
+            long pivot = rows.get(lo);
+            int i = lo - 1;
+            int j = hi;
+            while (true)
+            {
+                do
+                {
+                    i++;
+                }
+                while (rows.get(i) < pivot);
+                do
+                {
+                    j--;
+                }
+                while (rows.get(j) > pivot);
+                if (i >= j)
+                {
+                    break;
+                }
+                swap(i, j);
+            }
+            // recurse into the smaller range, loop on the larger one
+            if (j + 1 - lo < hi - j - 1)
+            {
+                quickSort(lo, j + 1, depth);
+                lo = j + 1;
+            }
+            else
+            {
+                quickSort(j + 1, hi, depth);
+                hi = j + 1;
+            }
+        }
+        insertionSort(lo, hi);
+    }
+
+    private void insertionSort(int lo, int hi)
+    {
+        for (int i = lo + 1; i < hi; i++)
+        {
+            long v = rows.get(i);
+            int j = i - 1;
+            while (j >= lo && rows.get(j) > v)
+            {
+                rows.put(j + 1, rows.get(j));
+                j--;
+            }
+            rows.put(j + 1, v);
+        }
+    }
+
+    private void heapSort(int lo, int hi)
+    {
+        int n = hi - lo;
+        for (int i = n / 2 - 1; i >= 0; i--)
+        {
+            siftDown(lo, i, n);
+        }
+        for (int end = n - 1; end > 0; end--)
+        {
+            swap(lo, lo + end);
+            siftDown(lo, 0, end);
+        }
+    }
+
+    private void siftDown(int lo, int i, int n)
+    {
+        long v = rows.get(lo + i);
+        while (true)
+        {
+            int child = 2 * i + 1;
+            if (child >= n)
+            {
+                break;
+            }
+            if (child + 1 < n && rows.get(lo + child + 1) > rows.get(lo + child))
+            {
+                child++;
+            }
+            if (rows.get(lo + child) <= v)
+            {
+                break;
+            }
+            rows.put(lo + i, rows.get(lo + child));
+            i = child;
+        }
+        rows.put(lo + i, v);
+    }
+
+    private void swap(int i, int j)
+    {
+        long v = rows.get(i);
+        rows.put(i, rows.get(j));
+        rows.put(j, v);
+    }
+
+    /**
+     * Get index of first row not before the epoch, the column must be sorted.
+     *
+     * @param epoch             epoch in millisecond
+     * @return                  row index, size() if all rows are before the epoch
+     * @throws IllegalStateException    if the column is not sorted
+     */
+    public int lowerBound(long epoch)
+    {
+        if (!isSorted())
+        {
+            throw new IllegalStateException("column is not sorted");
+        }
+        int lo = 0;
+        int hi = size;
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (rows.get(mid) < epoch)
+            {
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Count rows in [from, to), by binary search on a sorted column.
+     *
+     * @param from              first epoch in millisecond
+     * @param to                end epoch in millisecond, exclusive
+     * @return                  number of rows
+     */
+    public int count(long from, long to)
+    {
+        if (from >= to)
+        {
+            return 0;
+        }
+        if (isSorted())
+        {
+            return lowerBound(to) - lowerBound(from);
+        }
+        int n = 0;
+        for (int i = 0; i < size; i++)
+        {
+            long v = rows.get(i);
+            if (v >= from && v < to)
+            {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Find rows in [from, to) from a row on, at most dest.length rows per call.
+     * On a sorted column matching rows are consecutive and found by binary search.
+     *
+     * @param from              first epoch in millisecond
+     * @param to                end epoch in millisecond, exclusive
+     * @param fromRow           first row to check, continue with last found row + 1
+     * @param dest              indexes of found rows
+     * @return                  number of rows found, less than dest.length if no more rows match
+     */
+    public int select(long from, long to, int fromRow, int[] dest)
+    {
+        if (fromRow < 0 || fromRow > size)
+        {
+            throw new IndexOutOfBoundsException("row " + fromRow + " of " + size);
+        }
+        int n = 0;
+        if (isSorted())
+        {
+            int end = from < to ? lowerBound(to) : 0;
+            for (int i = Math.max(fromRow, lowerBound(from)); i < end && n < dest.length; i++)
+            {
+                dest[n++] = i;
+            }
+            return n;
+        }
+        for (int i = fromRow; i < size && n < dest.length; i++)
+        {
+            long v = rows.get(i);
+            if (v >= from && v < to)
+            {
+                dest[n++] = i;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Get a view which formats rows as local datetime strings of the zone when read.
+     *
+     * @param dtFormat          datetime format
+     * @param zone              timezone
+     * @return                  view
+     */
+    public View view(String dtFormat, Zone zone)
+    {
+        return new View(this, dtFormat, zone);
+    }
+
+    /**
+     * Read only list of formatted rows, formats a row each time it is read and keeps nothing.
+     * Size of the view follows the column.
+     */
+    public static final class View extends AbstractList<String> implements RandomAccess
+    {
+        private final TimestampColumn column;
+        private final String dtFormat;
+        private final Zone zone;
+
+        View(TimestampColumn column, String dtFormat, Zone zone)
+        {
+            this.column = column;
+            this.dtFormat = dtFormat;
+            this.zone = zone;
+        }
+
+        @Override
+        public String get(int row)
+        {
+            return DateTimeUtil.epochToLocalDateString(column.get(row), dtFormat, zone);
+        }
+
+        @Override
+        public int size()
+        {
+            return column.size();
+        }
+
+        /**
+         * Append formatted row to StringBuilder, does not allocate for specialized patterns.
+         *
+         * @param row           row index
+         * @param sb            target
+         * @return              the StringBuilder
+         */
+        public StringBuilder append(int row, StringBuilder sb)
+        {
+            return DateTimeUtil.epochToLocalDateString(column.get(row), dtFormat, zone, sb);
+        }
+
+        /**
+         * Write formatted row into char array.
+         *
+         * @param row           row index
+         * @param buf           target
+         * @param offset        index of first char
+         * @return              number of chars written
+         */
+        public int write(int row, char[] buf, int offset)
+        {
+            return DateTimeUtil.epochToLocalDateString(column.get(row), dtFormat, zone, buf, offset);
+        }
+
+        /**
+         * Put formatted row into buffer as UTF-8 bytes, from the buffer's position.
+         *
+         * @param row           row index
+         * @param buf           target
+         * @return              number of bytes put
+         */
+        public int put(int row, ByteBuffer buf)
+        {
+            return DateTimeUtil.epochToLocalDateString(column.get(row), dtFormat, zone, buf);
+        }
+    }
+}
@@ -0,0 +1,598 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.text.ParsePosition;
+import java.util.Date;
+
+/**
+ * <pre>
+ * Streaming converter of the leading timestamp of each line.
+ *
+ * Input timestamp is either a UTC yyyyMMddhhmiss datetime or a fixed width datetime of specified format,
+ * both are parsed in place from the input bytes, see DatePattern.
+ * Output timestamp is either epoch seconds or a datetime string of specified format and timezone,
+ * which is put into the output buffer by DateTimeAppender.
+ * Formats which DatePattern does not compile fall back to SimpleDateFormat.
+ * Rest of the line is copied as is, lines without a valid leading timestamp are copied unchanged.
+ *
+ * A FileChannel is read through memory mapped windows of mapSize bytes, other channels through a direct buffer.
+ * Output is written through a direct buffer of bufferSize bytes, so memory in use does not grow with input size.
+ *
+ * Instances are immutable and can be shared, each rewrite call keeps its own state.
+ * Input must be ASCII compatible, lines are separated by '\n'.
+ * </pre>
+ *
+ * @since 1.0
+ */
+public final class TimestampRewriter
+{
+    static final String COMPACT_FORMAT = "yyyyMMddHHmmss";
+    static final int COMPACT_WIDTH = 14;
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final long DEFAULT_MAP_SIZE = 64L * 1024 * 1024;
+
+    private final String inFormat;
+    private final String inTimeZoneID;
+    private final int inWidth;
+    private final String outFormat;
+    private final String outTimeZoneID;
+    private final int bufferSize;
+    private final long mapSize;
+
+    /**
+     * Rewrite leading UTC yyyyMMddhhmiss timestamps.
+     *
+     * @param outFormat         format of output timestamp, null to write epoch seconds
+     * @param outTimeZoneID     timezone id of output timestamp
+     */
+    public TimestampRewriter(String outFormat, String outTimeZoneID)
+    {
+        this(null, null, outFormat, outTimeZoneID, DEFAULT_BUFFER_SIZE, DEFAULT_MAP_SIZE);
+    }
+
+    /**
+     * Rewrite leading timestamps of specified format.
+     *
+     * @param inFormat          fixed width format of input timestamp, null for UTC yyyyMMddhhmiss
+     * @param inTimeZoneID      timezone id of input timestamp
+     * @param outFormat         format of output timestamp, null to write epoch seconds
+     * @param outTimeZoneID     timezone id of output timestamp
+     */
+    public TimestampRewriter(String inFormat, String inTimeZoneID, String outFormat, String outTimeZoneID)
+    {
+        this(inFormat, inTimeZoneID, outFormat, outTimeZoneID, DEFAULT_BUFFER_SIZE, DEFAULT_MAP_SIZE);
+    }
+
+    /**
+     * Rewrite leading timestamps of specified format with specified buffer sizes.
+     *
+     * @param inFormat          fixed width format of input timestamp, null for UTC yyyyMMddhhmiss
+     * @param inTimeZoneID      timezone id of input timestamp
+     * @param outFormat         format of output timestamp, null to write epoch seconds
+     * @param outTimeZoneID     timezone id of output timestamp
+     * @param bufferSize        size of direct buffers in bytes
+     * @param mapSize           size of memory mapped input windows in bytes
+     */
+    public TimestampRewriter(String inFormat, String inTimeZoneID, String outFormat, String outTimeZoneID, int bufferSize, long mapSize)
+    {
+        if (bufferSize < 64)
+        {
+            throw new IllegalArgumentException("bufferSize is too small: " + bufferSize);
+        }
+        if (mapSize < bufferSize || mapSize > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("mapSize out of range: " + mapSize);
+        }
+        this.inFormat = inFormat;
+        this.inTimeZoneID = inTimeZoneID;
+        this.inWidth = inFormat == null ? COMPACT_WIDTH : fixedWidth(inFormat);
+        this.outFormat = outFormat;
+        this.outTimeZoneID = outTimeZoneID;
+        this.bufferSize = bufferSize;
+        this.mapSize = mapSize;
+    }
+
+    /**
+     * Width of formatted text of a fixed width format, quoted text counts as its content.
+     */
+    static int fixedWidth(String dtFormat)
+    {
+        int width = 0;
+        for (int i = 0; i < dtFormat.length(); i++)
+        {
+            char c = dtFormat.charAt(i);
+            if (c == '\'')
+            {
+                if (i + 1 < dtFormat.length() && dtFormat.charAt(i + 1) == '\'')
+                {
+                    width++;
+                    i++;
+                }
+            }
+            else
+            {
+                width++;
+            }
+        }
+        return width;
+    }
+
+    /**
+     * Rewrite input file to output file.
+     *
+     * @param in                input file
+     * @param out               output file, created or truncated
+     * @return                  statistics of the rewrite
+     * @throws IOException      I/O error
+     */
+    public Result rewrite(File in, File out) throws IOException
+    {
+        FileInputStream input = new FileInputStream(in);
+        try
+        {
+            FileOutputStream output = new FileOutputStream(out);
+            try
+            {
+                return rewrite(input.getChannel(), output.getChannel());
+            }
+            finally
+            {
+                output.close();
+            }
+        }
+        finally
+        {
+            input.close();
+        }
+    }
+
+    /**
+     * Rewrite input channel to output channel, input is read to the end.
+     * Neither channel is closed.
+     *
+     * @param in                input channel, a FileChannel is memory mapped from its current position
+     * @param out               output channel
+     * @return                  statistics of the rewrite
+     * @throws IOException      I/O error
+     */
+    public Result rewrite(ReadableByteChannel in, WritableByteChannel out) throws IOException
+    {
+        Pass pass = new Pass(out);
+        long start = System.nanoTime();
+        if (in instanceof FileChannel)
+        {
+            pass.mapped((FileChannel) in);
+        }
+        else
+        {
+            pass.streamed(in);
+        }
+        pass.flush();
+        return new Result(pass.lines, pass.converted, pass.bytesIn, pass.bytesOut, System.nanoTime() - start);
+    }
+
+    /**
+     * State of one rewrite.
+     */
+    private final class Pass
+    {
+        final WritableByteChannel channel;
+        final ByteBuffer out = ByteBuffer.allocateDirect(bufferSize);
+        final byte[] digits = new byte[20];
+        final Latin1Window text = new Latin1Window();
+        final ParseResult result = new ParseResult();
+        final ParsePosition position = new ParsePosition(0);
+        final DatePattern parser;
+        final DatePattern formatter;
+        /** resolved zones, null for current timezone */
+        final Zone inZone;
+        final Zone outZone;
+        /** rest of a line longer than input window is copied as is */
+        boolean continuation;
+        long lines;
+        long converted;
+        long bytesIn;
+        long bytesOut;
+
+        Pass(WritableByteChannel channel)
+        {
+            this.channel = channel;
+            this.parser = inFormat == null ? null : DatePattern.compile(inFormat);
+            this.formatter = outFormat == null ? null : DatePattern.compile(outFormat);
+            this.inZone = zoneOf(inTimeZoneID);
+            this.outZone = zoneOf(outTimeZoneID);
+        }
+
+        void mapped(FileChannel in) throws IOException
+        {
+            long position = in.position();
+            long size = in.size();
+            while (position < size)
+            {
+                long length = Math.min(mapSize, size - position);
+                ByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length == size;
+                int done = lines(window, 0, (int) length, last);
+                position += done;
+                bytesIn += done;
+            }
+            in.position(size);
+        }
+
+        void streamed(ReadableByteChannel in) throws IOException
+        {
+            ByteBuffer window = ByteBuffer.allocateDirect(bufferSize);
+            boolean eof = false;
+            while (!eof)
+            {
+                eof = in.read(window) < 0;
+                int end = window.position();
+                int done = lines(window, 0, end, eof);
+                bytesIn += done;
+                // move partial line to the front
+                window.limit(end);
+                window.position(done);
+                window.compact();
+            }
+        }
+
+        /**
+         * Rewrite lines of window[from, to), return index of first byte not consumed.
+         */
+        int lines(ByteBuffer in, int from, int to, boolean last) throws IOException
+        {
+            int lineStart = from;
+            while (lineStart < to)
+            {
+                int newline = indexOf(in, (byte) '\n', lineStart, to);
+                if (newline < 0)
+                {
+                    // read more unless the partial line fills the whole window
+                    if (!last && (lineStart > from || to < in.capacity()))
+                    {
+                        return lineStart;
+                    }
+                    // last line without '\n', or a line longer than the window
+                    line(in, lineStart, to, last);
+                    return to;
+                }
+                line(in, lineStart, newline + 1, true);
+                lineStart = newline + 1;
+            }
+            return to;
+        }
+
+        void line(ByteBuffer in, int start, int end, boolean complete) throws IOException
+        {
+            if (continuation)
+            {
+                copy(in, start, end);
+                continuation = !complete;
+                return;
+            }
+            lines++;
+            continuation = !complete;
+
+            long epoch = Long.MIN_VALUE;
+            if (end - start >= inWidth)
+            {
+                epoch = parse(in, start);
+            }
+            if (epoch == Long.MIN_VALUE)
+            {
+                copy(in, start, end);
+                return;
+            }
+            converted++;
+            if (formatter == null)
+            {
+                putDecimal(CivilCalendar.floorDiv(epoch, DateTimeUtil.ONE_SECOND_MILLIS));
+            }
+            else
+            {
+                putText(epoch);
+            }
+            copy(in, start + inWidth, end);
+        }
+
+        /**
+         * Parse leading timestamp, return epoch millisecond or Long.MIN_VALUE if it is not a valid timestamp.
+         */
+        long parse(ByteBuffer in, int start)
+        {
+            if (parser == null)
+            {
+                if (!Digits.isDigits(in, start, COMPACT_WIDTH))
+                {
+                    return Long.MIN_VALUE;
+                }
+                return DateTimeUtil.getEpochSecond(in, start) * DateTimeUtil.ONE_SECOND_MILLIS;
+            }
+            text.set(in, start, inWidth);
+            if (inZone != null ? parser.parse(text, inZone, result) : parser.parse(text, inTimeZoneID, result))
+            {
+                return result.getValue();
+            }
+            if (result.getErrorCode() != ParseResult.DECLINED)
+            {
+                return Long.MIN_VALUE;
+            }
+            position.setIndex(0);
+            position.setErrorIndex(-1);
+            Date date = DateTimeUtil.formatCache.get(inFormat, inTimeZoneID).format.parse(text.toString(), position);
+            if (date == null || position.getIndex() != inWidth)
+            {
+                return Long.MIN_VALUE;
+            }
+            return date.getTime();
+        }
+
+        void copy(ByteBuffer in, int start, int end) throws IOException
+        {
+            ByteBuffer src = in.duplicate();
+            int from = start;
+            while (from < end)
+            {
+                if (!out.hasRemaining())
+                {
+                    flush();
+                }
+                int n = Math.min(end - from, out.remaining());
+                src.limit(from + n);
+                src.position(from);
+                out.put(src);
+                from += n;
+            }
+        }
+
+        void putDecimal(long value) throws IOException
+        {
+            ensure(digits.length + 1);
+            long v = value;
+            if (v < 0)
+            {
+                out.put((byte) '-');
+                v = -v;
+            }
+            int i = digits.length;
+            do
+            {
+                digits[--i] = (byte) ('0' + (int) (v % 10));
+                v /= 10;
+            }
+            while (v != 0);
+            out.put(digits, i, digits.length - i);
+        }
+
+        void putText(long epoch) throws IOException
+        {
+            ensure(formatter.maxLength());
+            try
+            {
+                put(epoch);
+            }
+            catch (BufferOverflowException e)
+            {
+                // text of SimpleDateFormat is longer than maxLength, nothing was put
+                flush();
+                put(epoch);
+            }
+        }
+
+        void put(long epoch)
+        {
+            if (outZone != null)
+            {
+                DateTimeAppender.put(out, epoch, outFormat, outZone);
+            }
+            else
+            {
+                DateTimeAppender.put(out, epoch, outFormat, outTimeZoneID);
+            }
+        }
+
+        void ensure(int length) throws IOException
+        {
+            if (out.remaining() < length)
+            {
+                flush();
+            }
+        }
+
+        void flush() throws IOException
+        {
+            out.flip();
+            while (out.hasRemaining())
+            {
+                bytesOut += channel.write(out);
+            }
+            out.clear();
+        }
+    }
+
+    /**
+     * Resolve timezone id, null if id is null or empty for current timezone.
+     */
+    private static Zone zoneOf(String timezoneID)
+    {
+        return timezoneID == null || timezoneID.isEmpty() ? null : Zone.of(timezoneID);
+    }
+
+    static int indexOf(ByteBuffer buf, byte b, int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            if (buf.get(i) == b)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Chars of ASCII compatible bytes of a buffer, a view which is moved over the input without copying.
+     */
+    private static final class Latin1Window implements CharSequence
+    {
+        ByteBuffer buf;
+        int offset;
+        int length;
+
+        void set(ByteBuffer buf, int offset, int length)
+        {
+            this.buf = buf;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length()
+        {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index)
+        {
+            if (index < 0 || index >= length)
+            {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+            }
+            return (char) (buf.get(offset + index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end)
+        {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString()
+        {
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++)
+            {
+                chars[i] = charAt(i);
+            }
+            return new String(chars);
+        }
+    }
+
+    /**
+     * Statistics of a rewrite.
+     */
+    public static final class Result
+    {
+        private final long lines;
+        private final long converted;
+        private final long bytesIn;
+        private final long bytesOut;
+        private final long elapsedNanos;
+
+        Result(long lines, long converted, long bytesIn, long bytesOut, long elapsedNanos)
+        {
+            this.lines = lines;
+            this.converted = converted;
+            this.bytesIn = bytesIn;
+            this.bytesOut = bytesOut;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return      number of lines read
+         */
+        public long getLines()
+        {
+            return lines;
+        }
+
+        /**
+         * @return      number of lines whose timestamp is converted
+         */
+        public long getConverted()
+        {
+            return converted;
+        }
+
+        /**
+         * @return      number of lines copied unchanged
+         */
+        public long getSkipped()
+        {
+            return lines - converted;
+        }
+
+        /**
+         * @return      bytes read
+         */
+        public long getBytesIn()
+        {
+            return bytesIn;
+        }
+
+        /**
+         * @return      bytes written
+         */
+        public long getBytesOut()
+        {
+            return bytesOut;
+        }
+
+        /**
+         * @return      elapsed time in nanosecond
+         */
+        public long getElapsedNanos()
+        {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return      lines per second
+         */
+        public double getLinesPerSecond()
+        {
+            return elapsedNanos == 0 ? 0 : lines * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return      input megabytes per second
+         */
+        public double getMegabytesPerSecond()
+        {
+            return elapsedNanos == 0 ? 0 : bytesIn * 1e9 / elapsedNanos / (1024 * 1024);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "lines=" + lines + ", converted=" + converted + ", skipped=" + getSkipped()
+                + ", bytesIn=" + bytesIn + ", bytesOut=" + bytesOut
+                + ", elapsed=" + (elapsedNanos / 1000000) + "ms"
+                + ", lines/s=" + (long) getLinesPerSecond()
+                + ", MB/s=" + String.format("%.1f", getMegabytesPerSecond());
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <pre>
+ * Resolved timezone, an immutable handle to the precomputed offset table of a timezone id.
+ *
+ * Methods of DateTimeUtil which take a timezone id look up the zone by its id on every call,
+ * overloads which take a Zone use the resolved table directly.
+ * Zones are interned by id, at most MAX_INTERNED_ZONES ids, the least recently used zone is dropped when full,
+ * except UTC.
+ * Resolve a zone once and keep it in a static field:
+ *
+ *   static final Zone TAIPEI = Zone.of("Asia/Taipei");
+ *   String s = DateTimeUtil.epochToLocalDateString(epoch, "yyyy-MM-dd HH:mm:ss", TAIPEI);
+ *
+ * An unknown id resolves to GMT offsets like TimeZone.getTimeZone, the zone keeps the given id.
+ * </pre>
+ *
+ * @since 1.0
+ */
+public final class Zone
+{
+    static final int MAX_INTERNED_ZONES = 1024;
+
+    private static final ConcurrentHashMap<String, Zone> zones = new ConcurrentHashMap<String, Zone>();
+    /** advances when a zone is interned, see DateFormatCache */
+    private static final AtomicLong tick = new AtomicLong();
+    private static final AtomicBoolean evicting = new AtomicBoolean();
+
+    public static final Zone UTC = of(DateTimeUtil.TIMEZONE_ID_UTC);
+
+    private final String id;
+    final ZoneOffsetTable table;
+    /** tick of last use of an interned zone */
+    private volatile long lastAccess;
+
+    private Zone(String id, ZoneOffsetTable table)
+    {
+        this.id = id;
+        this.table = table;
+    }
+
+    /**
+     * Get zone of timezone id, the zone is resolved on first use and interned.
+     * Ids which resolve to the same timezone share its offset table, see ZoneOffsetTable.
+     *
+     * @param timezoneID        timezone id, for example Asia/Taipei
+     * @return                  zone
+     */
+    public static Zone of(String timezoneID)
+    {
+        if (timezoneID == null || timezoneID.isEmpty())
+        {
+            throw new IllegalArgumentException("timezone id is empty");
+        }
+        Zone zone = zones.get(timezoneID);
+        if (zone != null)
+        {
+            long now = tick.get();
+            if (zone.lastAccess != now)
+            {
+                zone.lastAccess = now;
+            }
+            return zone;
+        }
+        zone = new Zone(timezoneID, ZoneOffsetTable.forID(timezoneID));
+        // newer than zones used before, so the eviction below never picks the added zone
+        zone.lastAccess = tick.incrementAndGet();
+        Zone existing = zones.putIfAbsent(timezoneID, zone);
+        if (existing != null)
+        {
+            zone = existing;
+        }
+        else if (zones.size() > MAX_INTERNED_ZONES)
+        {
+            evict();
+        }
+        return zone;
+    }
+
+    /**
+     * Remove least recently used zones until size is back to MAX_INTERNED_ZONES.
+     * Only one thread evicts at a time, others just go on.
+     */
+    private static void evict()
+    {
+        if (!evicting.compareAndSet(false, true))
+        {
+            return;
+        }
+        try
+        {
+            while (zones.size() > MAX_INTERNED_ZONES)
+            {
+                String oldestKey = null;
+                long oldest = Long.MAX_VALUE;
+                for (Iterator<Map.Entry<String, Zone>> it = zones.entrySet().iterator(); it.hasNext();)
+                {
+                    Map.Entry<String, Zone> e = it.next();
+                    // UTC stays interned, Zone.of keeps returning the constant
+                    if (e.getValue() != UTC && e.getValue().lastAccess < oldest)
+                    {
+                        oldest = e.getValue().lastAccess;
+                        oldestKey = e.getKey();
+                    }
+                }
+                if (oldestKey == null || zones.remove(oldestKey) == null)
+                {
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * @return      number of interned zones
+     */
+    static int internedCount()
+    {
+        return zones.size();
+    }
+
+    /**
+     * Get zone of current system timezone id, resolved at the time of call.
+     *
+     * @return                  zone
+     */
+    public static Zone current()
+    {
+        return of(TimeZone.getDefault().getID());
+    }
+
+    /**
+     * @return      timezone id
+     */
+    public String getID()
+    {
+        return id;
+    }
+
+    /**
+     * @return      a new TimeZone of this zone
+     */
+    public TimeZone getTimeZone()
+    {
+        return table.getTimeZone();
+    }
+
+    /**
+     * Get raw offset at the instant, the same with Calendar.ZONE_OFFSET.
+     *
+     * @param epoch             epoch in millisecond
+     * @return                  raw offset in millisecond
+     */
+    public int getRawOffset(long epoch)
+    {
+        return table.getRawOffset(epoch);
+    }
+
+    /**
+     * Get daylight saving offset at the instant, the same with Calendar.DST_OFFSET.
+     *
+     * @param epoch             epoch in millisecond
+     * @return                  daylight saving offset in millisecond
+     */
+    public int getDaylightSavingOffset(long epoch)
+    {
+        return table.getDaylightSavingOffset(epoch);
+    }
+
+    /**
+     * Get total offset from UTC at the instant.
+     *
+     * @param epoch             epoch in millisecond
+     * @return                  raw offset plus daylight saving offset in millisecond
+     */
+    public int getOffset(long epoch)
+    {
+        return table.getOffset(epoch);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return id.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        return this == obj || (obj instanceof Zone && id.equals(((Zone) obj).id));
+    }
+
+    @Override
+    public String toString()
+    {
+        return id;
+    }
+}
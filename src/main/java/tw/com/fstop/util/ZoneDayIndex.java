@@ -0,0 +1,340 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <pre>
+ * Precomputed local midnights of a timezone, maps epochs to local dates without Calendar.
+ *
+ * For every local day of the covered years the index stores the difference between the first instant of the day
+ * and UTC midnight of the same date in an int, 4 bytes per day.
+ * A midnight skipped by a daylight saving gap starts the day at the end of the gap, like a lenient Calendar.
+ *
+ * Day numbers count local days since 1970-01-01, the same as CivilCalendar.
+ * The local day of an epoch is found from its UTC day by at most 3 comparisons, it does not allocate.
+ * Epochs and days out of the covered years fall back to the zone offset table and Calendar.
+ * </pre>
+ *
+ * @since 1.0
+ */
+public final class ZoneDayIndex
+{
+    public static final int DEFAULT_FIRST_YEAR = 1900;
+    public static final int DEFAULT_LAST_YEAR = 2100;
+    /** first year of Gregorian calendar in GregorianCalendar */
+    public static final int MIN_YEAR = 1583;
+    public static final int MAX_YEAR = 9999;
+    static final int MAX_CACHED_INDEXES = 1024;
+
+    private static final ConcurrentHashMap<String, Entry> indexes = new ConcurrentHashMap<String, Entry>();
+    /** advances when an index is cached, see DateFormatCache */
+    private static final AtomicLong tick = new AtomicLong();
+    private static final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final String id;
+    private final TimeZone zone;
+    private final int firstYear;
+    private final int lastYear;
+    /** day number of first covered day */
+    private final long firstDay;
+    /** start of day firstDay + i minus UTC midnight of the day, in millisecond, one more day than covered */
+    private final int[] deltas;
+
+    private ZoneDayIndex(String id, TimeZone zone, int firstYear, int lastYear, long firstDay, int[] deltas)
+    {
+        this.id = id;
+        this.zone = zone;
+        this.firstYear = firstYear;
+        this.lastYear = lastYear;
+        this.firstDay = firstDay;
+        this.deltas = deltas;
+    }
+
+    /**
+     * Get cached index of timezone for DEFAULT_FIRST_YEAR to DEFAULT_LAST_YEAR, built on first use.
+     * Ids which resolve to the same zone share an index, unknown ids share the index of GMT.
+     * At most MAX_CACHED_INDEXES ids are cached, the least recently used id is evicted when the cache is full.
+     *
+     * @param timezoneID        timezone id
+     * @return                  index
+     */
+    public static ZoneDayIndex forID(String timezoneID)
+    {
+        ZoneDayIndex index = cached(timezoneID);
+        if (index != null)
+        {
+            return index;
+        }
+        String resolvedID = TimeZone.getTimeZone(timezoneID).getID();
+        if (!resolvedID.equals(timezoneID))
+        {
+            index = cached(resolvedID);
+        }
+        if (index == null)
+        {
+            index = cache(resolvedID, build(resolvedID, DEFAULT_FIRST_YEAR, DEFAULT_LAST_YEAR));
+        }
+        if (!resolvedID.equals(timezoneID))
+        {
+            index = cache(timezoneID, index);
+        }
+        return index;
+    }
+
+    /**
+     * Get cached index of the id and mark it used, null if not cached.
+     */
+    private static ZoneDayIndex cached(String timezoneID)
+    {
+        Entry entry = indexes.get(timezoneID);
+        if (entry == null)
+        {
+            return null;
+        }
+        long now = tick.get();
+        if (entry.lastAccess != now)
+        {
+            entry.lastAccess = now;
+        }
+        return entry.index;
+    }
+
+    /**
+     * Cache the index under the id, ids which resolve to the same zone have their own entries of one index.
+     *
+     * @return                  the index already cached under the id, or the given index
+     */
+    private static ZoneDayIndex cache(String timezoneID, ZoneDayIndex index)
+    {
+        // newer than entries hit before, so the eviction below never picks the added entry
+        Entry existing = indexes.putIfAbsent(timezoneID, new Entry(index, tick.incrementAndGet()));
+        if (existing != null)
+        {
+            return existing.index;
+        }
+        if (indexes.size() > MAX_CACHED_INDEXES)
+        {
+            evict();
+        }
+        return index;
+    }
+
+    /**
+     * Remove least recently used ids until size is back to MAX_CACHED_INDEXES.
+     * Only one thread evicts at a time, others just go on.
+     */
+    private static void evict()
+    {
+        if (!evicting.compareAndSet(false, true))
+        {
+            return;
+        }
+        try
+        {
+            while (indexes.size() > MAX_CACHED_INDEXES)
+            {
+                String oldestKey = null;
+                long oldest = Long.MAX_VALUE;
+                for (Iterator<Map.Entry<String, Entry>> it = indexes.entrySet().iterator(); it.hasNext();)
+                {
+                    Map.Entry<String, Entry> e = it.next();
+                    if (e.getValue().lastAccess < oldest)
+                    {
+                        oldest = e.getValue().lastAccess;
+                        oldestKey = e.getKey();
+                    }
+                }
+                if (oldestKey == null || indexes.remove(oldestKey) == null)
+                {
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * @return      number of cached ids
+     */
+    static int cachedCount()
+    {
+        return indexes.size();
+    }
+
+    /**
+     * Build an index of timezone for the years, the index is not cached.
+     *
+     * @param timezoneID        timezone id
+     * @param firstYear         first covered year, MIN_YEAR or later
+     * @param lastYear          last covered year, inclusive, MAX_YEAR or earlier
+     * @return                  index
+     */
+    public static ZoneDayIndex build(String timezoneID, int firstYear, int lastYear)
+    {
+        if (firstYear > lastYear || firstYear < MIN_YEAR || lastYear > MAX_YEAR)
+        {
+            throw new IllegalArgumentException("invalid year range: " + firstYear + " to " + lastYear);
+        }
+        TimeZone zone = TimeZone.getTimeZone(timezoneID);
+        long firstDay = CivilCalendar.daysFromCivil(firstYear, 1, 1);
+        long endDay = CivilCalendar.daysFromCivil(lastYear + 1, 1, 1);
+        int[] deltas = new int[(int) (endDay - firstDay) + 1];
+        Calendar calendar = Calendar.getInstance(zone);
+        for (int i = 0; i < deltas.length; i++)
+        {
+            long day = firstDay + i;
+            deltas[i] = (int) (calendarDayStart(calendar, day) - day * CivilCalendar.ONE_DAY_MILLIS);
+        }
+        return new ZoneDayIndex(timezoneID, zone, firstYear, lastYear, firstDay, deltas);
+    }
+
+    private static long calendarDayStart(Calendar calendar, long day)
+    {
+        long date = CivilCalendar.civilFromDays(day);
+        calendar.clear();
+        calendar.set(CivilCalendar.packedYear(date), CivilCalendar.packedMonth(date) - 1, CivilCalendar.packedDay(date));
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Get local day number of epoch.
+     *
+     * @param epoch             epoch in millisecond
+     * @return                  local days since 1970-01-01
+     */
+    public long dayNumber(long epoch)
+    {
+        long utcDay = CivilCalendar.floorDiv(epoch, CivilCalendar.ONE_DAY_MILLIS);
+        long i = utcDay + 1 - firstDay;
+        if (i < 2 || i >= deltas.length)
+        {
+            return CivilCalendar.epochToDays(epoch + ZoneOffsetTable.forID(id).getOffset(epoch));
+        }
+        // offsets are less than one day, the local day is one of UTC day - 1 to UTC day + 1
+        int k = (int) i;
+        while ((firstDay + k) * CivilCalendar.ONE_DAY_MILLIS + deltas[k] > epoch)
+        {
+            k--;
+        }
+        return firstDay + k;
+    }
+
+    /**
+     * Get first instant of local day.
+     *
+     * @param dayNumber         local days since 1970-01-01
+     * @return                  epoch in millisecond
+     */
+    public long dayStart(long dayNumber)
+    {
+        long i = dayNumber - firstDay;
+        if (i < 0 || i >= deltas.length)
+        {
+            return calendarDayStart(Calendar.getInstance(zone), dayNumber);
+        }
+        return dayNumber * CivilCalendar.ONE_DAY_MILLIS + deltas[(int) i];
+    }
+
+    /**
+     * Get local date of epoch as a yyyyMMdd number, e.g. 20170807.
+     *
+     * @param epoch             epoch in millisecond
+     * @return                  local date
+     */
+    public int localDate(long epoch)
+    {
+        long date = CivilCalendar.civilFromDays(dayNumber(epoch));
+        return CivilCalendar.packedYear(date) * 10000 + CivilCalendar.packedMonth(date) * 100 + CivilCalendar.packedDay(date);
+    }
+
+    /**
+     * Get local dates of epochs as yyyyMMdd numbers.
+     *
+     * @param src               epochs in millisecond
+     * @param srcPos            start position of src
+     * @param dest              local dates
+     * @param destPos           start position of dest
+     * @param length            number of elements
+     */
+    public void localDate(long[] src, int srcPos, int[] dest, int destPos, int length)
+    {
+        DateTimeBatch.checkRange(src.length, srcPos, dest.length, destPos, length);
+        for (int i = 0; i < length; i++)
+        {
+            dest[destPos + i] = localDate(src[srcPos + i]);
+        }
+    }
+
+    /**
+     * Get local day numbers of epochs.
+     *
+     * @param src               epochs in millisecond
+     * @param srcPos            start position of src
+     * @param dest              local days since 1970-01-01, may be src
+     * @param destPos           start position of dest
+     * @param length            number of elements
+     */
+    public void dayNumber(long[] src, int srcPos, long[] dest, int destPos, int length)
+    {
+        DateTimeBatch.checkRange(src.length, srcPos, dest.length, destPos, length);
+        for (int i = 0; i < length; i++)
+        {
+            dest[destPos + i] = dayNumber(src[srcPos + i]);
+        }
+    }
+
+    /**
+     * @return      timezone id of the index, an index from forID has the resolved id, e.g. GMT for an unknown id
+     */
+    public String getID()
+    {
+        return id;
+    }
+
+    public int getFirstYear()
+    {
+        return firstYear;
+    }
+
+    public int getLastYear()
+    {
+        return lastYear;
+    }
+
+    /**
+     * Cache entry of an id, see DateFormatCache.
+     */
+    private static final class Entry
+    {
+        final ZoneDayIndex index;
+        volatile long lastAccess;
+
+        Entry(ZoneDayIndex index, long lastAccess)
+        {
+            this.index = index;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
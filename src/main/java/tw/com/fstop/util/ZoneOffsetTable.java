@@ -0,0 +1,474 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <pre>
+ * Precomputed offset transitions of a timezone.
+ *
+ * The table is built once per resolved timezone id by sampling a Calendar of the zone once a day over the covered range,
+ * every change of (ZONE_OFFSET, DST_OFFSET) is then located to the millisecond by bisection.
+ * Looking up offsets at an instant is a binary search over a sorted long[] of transition instants,
+ * it does not lock and does not allocate.
+ *
+ * When the runtime knows transitions of the zone (java.time ZoneRules on Java 9+, see ZoneTransitionHints)
+ * every hinted instant is sampled too and the regular samples are taken once a week instead of once a day,
+ * a hinted instant is taken as transition only if the Calendar agrees, otherwise it is located by bisection as usual.
+ *
+ * Instants outside of the covered range fall back to a Calendar of the zone.
+ * Two transitions less than one day apart (one week when hinted) which cancel each other are not detected,
+ * unless the hints have them.
+ * </pre>
+ *
+ * @since 1.0
+ */
+final class ZoneOffsetTable
+{
+    /** 1900-01-01T00:00:00Z */
+    static final long DEFAULT_RANGE_START = -2208988800000L;
+    /** 2100-01-01T00:00:00Z */
+    static final long DEFAULT_RANGE_END = 4102444800000L;
+    static final int MAX_CACHED_ZONES = 1024;
+    /** interval of regular samples when transitions of the zone are hinted */
+    static final long HINTED_SAMPLE_INTERVAL = 7 * CivilCalendar.ONE_DAY_MILLIS;
+
+    private static final ConcurrentHashMap<String, Entry> tables = new ConcurrentHashMap<String, Entry>();
+    /** advances when a table is cached, see DateFormatCache */
+    private static final AtomicLong tick = new AtomicLong();
+    private static final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final String id;
+    private final TimeZone zone;
+    private final long rangeStart;
+    private final long rangeEnd;
+    /** instants where offsets change, in millisecond */
+    private final long[] transitions;
+    /** raw offset of segment i, segment 0 is before transitions[0], segment i is from transitions[i - 1] */
+    private final int[] rawOffsets;
+    /** daylight saving offset of segment i */
+    private final int[] dstOffsets;
+
+    private ZoneOffsetTable(String id, TimeZone zone, long rangeStart, long rangeEnd, long[] transitions, int[] rawOffsets, int[] dstOffsets)
+    {
+        this.id = id;
+        this.zone = zone;
+        this.rangeStart = rangeStart;
+        this.rangeEnd = rangeEnd;
+        this.transitions = transitions;
+        this.rawOffsets = rawOffsets;
+        this.dstOffsets = dstOffsets;
+    }
+
+    /**
+     * Get cached offset table of timezone id, the table is built on first use.
+     * Ids which resolve to the same zone share a table, unknown ids share the table of GMT.
+     * At most MAX_CACHED_ZONES ids are cached, the least recently used id is evicted when the cache is full.
+     *
+     * @param timezoneID        timezone id
+     * @return                  offset table
+     */
+    static ZoneOffsetTable forID(String timezoneID)
+    {
+        ZoneOffsetTable table = cached(timezoneID);
+        if (table != null)
+        {
+            if (DateTimeMetrics.ENABLED)
+            {
+                DateTimeMetrics.zoneCacheHits.increment();
+            }
+            return table;
+        }
+        if (DateTimeMetrics.ENABLED)
+        {
+            DateTimeMetrics.zoneCacheMisses.increment();
+        }
+        TimeZone zone = TimeZone.getTimeZone(timezoneID);
+        String resolvedID = zone.getID();
+        if (!resolvedID.equals(timezoneID))
+        {
+            table = cached(resolvedID);
+        }
+        if (table == null)
+        {
+            table = cache(resolvedID, build(resolvedID, zone, DEFAULT_RANGE_START, DEFAULT_RANGE_END));
+        }
+        if (!resolvedID.equals(timezoneID))
+        {
+            table = cache(timezoneID, table);
+        }
+        return table;
+    }
+
+    /**
+     * Get offset table of timezone id, or of current timezone if id is null or empty.
+     *
+     * @param timezoneID        timezone id, if null or empty then use current timezone
+     * @return                  offset table, null if current timezone is a custom zone which is not found by its id
+     */
+    static ZoneOffsetTable forIDOrDefault(String timezoneID)
+    {
+        if (timezoneID != null && !timezoneID.isEmpty())
+        {
+            return forID(timezoneID);
+        }
+        String id = TimeZone.getDefault().getID();
+        ZoneOffsetTable table = cached(id);
+        if (table != null)
+        {
+            return table;
+        }
+        if (!TimeZone.getTimeZone(id).getID().equals(id))
+        {
+            return null;
+        }
+        return forID(id);
+    }
+
+    /**
+     * Get cached table of the id and mark it used, null if not cached.
+     */
+    private static ZoneOffsetTable cached(String timezoneID)
+    {
+        Entry entry = tables.get(timezoneID);
+        if (entry == null)
+        {
+            return null;
+        }
+        long now = tick.get();
+        if (entry.lastAccess != now)
+        {
+            entry.lastAccess = now;
+        }
+        return entry.table;
+    }
+
+    /**
+     * Cache the table under the id, ids which resolve to the same zone have their own entries of one table.
+     *
+     * @return                  the table already cached under the id, or the given table
+     */
+    private static ZoneOffsetTable cache(String timezoneID, ZoneOffsetTable table)
+    {
+        // newer than entries hit before, so the eviction below never picks the added entry
+        Entry existing = tables.putIfAbsent(timezoneID, new Entry(table, tick.incrementAndGet()));
+        if (existing != null)
+        {
+            return existing.table;
+        }
+        if (tables.size() > MAX_CACHED_ZONES)
+        {
+            evict();
+        }
+        return table;
+    }
+
+    /**
+     * Remove least recently used ids until size is back to MAX_CACHED_ZONES.
+     * Only one thread evicts at a time, others just go on.
+     */
+    private static void evict()
+    {
+        if (!evicting.compareAndSet(false, true))
+        {
+            return;
+        }
+        try
+        {
+            while (tables.size() > MAX_CACHED_ZONES)
+            {
+                String oldestKey = null;
+                long oldest = Long.MAX_VALUE;
+                for (Iterator<Map.Entry<String, Entry>> it = tables.entrySet().iterator(); it.hasNext();)
+                {
+                    Map.Entry<String, Entry> e = it.next();
+                    if (e.getValue().lastAccess < oldest)
+                    {
+                        oldest = e.getValue().lastAccess;
+                        oldestKey = e.getKey();
+                    }
+                }
+                if (oldestKey == null || tables.remove(oldestKey) == null)
+                {
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * @return      number of cached ids
+     */
+    static int cachedCount()
+    {
+        return tables.size();
+    }
+
+    /**
+     * Build offset table of the zone.
+     *
+     * @param id                timezone id
+     * @param zone              timezone
+     * @param rangeStart        first covered instant in millisecond
+     * @param rangeEnd          end of covered instants in millisecond, exclusive
+     * @return                  offset table
+     */
+    static ZoneOffsetTable build(String id, TimeZone zone, long rangeStart, long rangeEnd)
+    {
+        long[] hints = ZoneTransitionHints.get(zone, rangeStart, rangeEnd);
+        long step = CivilCalendar.ONE_DAY_MILLIS;
+        if (hints != null)
+        {
+            step = HINTED_SAMPLE_INTERVAL;
+        }
+        else
+        {
+            hints = new long[0];
+        }
+
+        Calendar calendar = Calendar.getInstance(zone);
+        long[] transitions = new long[64];
+        int[] rawOffsets = new int[65];
+        int[] dstOffsets = new int[65];
+        int count = 0;
+
+        calendar.setTimeInMillis(rangeStart);
+        int raw = calendar.get(Calendar.ZONE_OFFSET);
+        int dst = calendar.get(Calendar.DST_OFFSET);
+        rawOffsets[0] = raw;
+        dstOffsets[0] = dst;
+
+        int h = 0;
+        long prev = rangeStart;
+        while (prev < rangeEnd)
+        {
+            while (h < hints.length && hints[h] <= prev)
+            {
+                h++;
+            }
+            long next = Math.min(prev + step, rangeEnd - 1);
+            boolean hinted = false;
+            if (h < hints.length && hints[h] <= next)
+            {
+                next = hints[h];
+                hinted = true;
+            }
+            calendar.setTimeInMillis(next);
+            int nextRaw = calendar.get(Calendar.ZONE_OFFSET);
+            int nextDst = calendar.get(Calendar.DST_OFFSET);
+            if (nextRaw != raw || nextDst != dst)
+            {
+                long at;
+                if (hinted && hasOffsets(calendar, next - 1, raw, dst))
+                {
+                    at = next;
+                }
+                else
+                {
+                    // offsets of lo equal (raw, dst), offsets of hi do not
+                    long lo = prev;
+                    long hi = next;
+                    while (hi - lo > 1)
+                    {
+                        long mid = (lo + hi) >> 1;
+                        if (hasOffsets(calendar, mid, raw, dst))
+                        {
+                            lo = mid;
+                        }
+                        else
+                        {
+                            hi = mid;
+                        }
+                    }
+                    at = hi;
+                }
+                calendar.setTimeInMillis(at);
+                raw = calendar.get(Calendar.ZONE_OFFSET);
+                dst = calendar.get(Calendar.DST_OFFSET);
+
+                if (count == transitions.length)
+                {
+                    transitions = Arrays.copyOf(transitions, count * 2);
+                    rawOffsets = Arrays.copyOf(rawOffsets, count * 2 + 1);
+                    dstOffsets = Arrays.copyOf(dstOffsets, count * 2 + 1);
+                }
+                transitions[count] = at;
+                count++;
+                rawOffsets[count] = raw;
+                dstOffsets[count] = dst;
+                prev = at;
+            }
+            else
+            {
+                if (next == rangeEnd - 1)
+                {
+                    break;
+                }
+                prev = next;
+            }
+        }
+
+        return new ZoneOffsetTable(id, zone, rangeStart, rangeEnd,
+            Arrays.copyOf(transitions, count), Arrays.copyOf(rawOffsets, count + 1), Arrays.copyOf(dstOffsets, count + 1));
+    }
+
+    private static boolean hasOffsets(Calendar calendar, long epoch, int raw, int dst)
+    {
+        calendar.setTimeInMillis(epoch);
+        return calendar.get(Calendar.ZONE_OFFSET) == raw && calendar.get(Calendar.DST_OFFSET) == dst;
+    }
+
+    /**
+     * Get segment index of the instant, or -1 if the instant is not covered by this table.
+     */
+    private int segment(long epoch)
+    {
+        if (epoch < rangeStart || epoch >= rangeEnd)
+        {
+            return -1;
+        }
+        int i = Arrays.binarySearch(transitions, epoch);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    /**
+     * Check whether offsets may change between two instants.
+     *
+     * @param from              first instant in millisecond
+     * @param to                last instant in millisecond, inclusive
+     * @return                  true if a transition is in the range or the range is not covered by this table
+     */
+    boolean hasTransition(long from, long to)
+    {
+        if (from < rangeStart || to >= rangeEnd)
+        {
+            return true;
+        }
+        int i = segment(from);
+        return i < transitions.length && transitions[i] <= to;
+    }
+
+    /**
+     * Get raw offset of the zone at the instant, the same with Calendar.ZONE_OFFSET.
+     *
+     * @param epoch             epoch in millisecond
+     * @return                  raw offset in millisecond
+     */
+    int getRawOffset(long epoch)
+    {
+        int i = segment(epoch);
+        if (i < 0)
+        {
+            return calendarAt(epoch).get(Calendar.ZONE_OFFSET);
+        }
+        return rawOffsets[i];
+    }
+
+    /**
+     * Get daylight saving offset of the zone at the instant, the same with Calendar.DST_OFFSET.
+     *
+     * @param epoch             epoch in millisecond
+     * @return                  daylight saving offset in millisecond
+     */
+    int getDaylightSavingOffset(long epoch)
+    {
+        int i = segment(epoch);
+        if (i < 0)
+        {
+            return calendarAt(epoch).get(Calendar.DST_OFFSET);
+        }
+        return dstOffsets[i];
+    }
+
+    /**
+     * Get total offset from UTC of the zone at the instant.
+     *
+     * @param epoch             epoch in millisecond
+     * @return                  raw offset plus daylight saving offset in millisecond
+     */
+    int getOffset(long epoch)
+    {
+        int i = segment(epoch);
+        if (i < 0)
+        {
+            Calendar calendar = calendarAt(epoch);
+            return calendar.get(Calendar.ZONE_OFFSET) + calendar.get(Calendar.DST_OFFSET);
+        }
+        return rawOffsets[i] + dstOffsets[i];
+    }
+
+    private Calendar calendarAt(long epoch)
+    {
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(epoch);
+        return calendar;
+    }
+
+    String getID()
+    {
+        return id;
+    }
+
+    TimeZone getTimeZone()
+    {
+        return (TimeZone) zone.clone();
+    }
+
+    int getTransitionCount()
+    {
+        return transitions.length;
+    }
+
+    long getTransition(int index)
+    {
+        return transitions[index];
+    }
+
+    long getRangeStart()
+    {
+        return rangeStart;
+    }
+
+    long getRangeEnd()
+    {
+        return rangeEnd;
+    }
+
+    /**
+     * Cache entry of an id, see DateFormatCache.
+     */
+    private static final class Entry
+    {
+        final ZoneOffsetTable table;
+        volatile long lastAccess;
+
+        Entry(ZoneOffsetTable table, long lastAccess)
+        {
+            this.table = table;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
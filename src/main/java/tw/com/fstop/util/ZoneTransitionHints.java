@@ -0,0 +1,48 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.util.TimeZone;
+
+/**
+ * <pre>
+ * Offset transition instants of a timezone as known by the runtime, used by ZoneOffsetTable to build a table
+ * without sampling the zone every day.
+ *
+ * This is the Java 6 version, which knows no transitions.
+ * The multi-release jar carries a java.time ZoneRules based version under META-INF/versions/9.
+ * Hinted instants are only candidates, ZoneOffsetTable checks every one of them against a Calendar of the zone.
+ * </pre>
+ *
+ * @since 1.0
+ */
+final class ZoneTransitionHints
+{
+    private ZoneTransitionHints()
+    {
+    }
+
+    /**
+     * Get candidate transition instants of the zone.
+     *
+     * @param zone              timezone
+     * @param rangeStart        first instant in millisecond
+     * @param rangeEnd          end of instants in millisecond, exclusive
+     * @return                  ascending transition instants in the range, null if transitions of the zone are not known
+     */
+    static long[] get(TimeZone zone, long rangeStart, long rangeEnd)
+    {
+        return null;
+    }
+}
@@ -0,0 +1,99 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * <pre>
+ * Offset transition instants of a timezone as known by the runtime, used by ZoneOffsetTable to build a table
+ * without sampling the zone every day.
+ *
+ * This is the Java 9+ version of the multi-release jar, transitions are read from java.time ZoneRules of the zone.
+ * TimeZone and ZoneRules are compiled from the same tz database but do not agree everywhere,
+ * e.g. zones with negative daylight saving or rules after 2037, so hinted instants are only candidates,
+ * ZoneOffsetTable checks every one of them against a Calendar of the zone.
+ * </pre>
+ *
+ * @since 1.0
+ */
+final class ZoneTransitionHints
+{
+    private ZoneTransitionHints()
+    {
+    }
+
+    /**
+     * Get candidate transition instants of the zone.
+     *
+     * @param zone              timezone
+     * @param rangeStart        first instant in millisecond
+     * @param rangeEnd          end of instants in millisecond, exclusive
+     * @return                  ascending transition instants in the range, null if transitions of the zone are not known
+     */
+    static long[] get(TimeZone zone, long rangeStart, long rangeEnd)
+    {
+        ZoneRules rules = rulesOf(zone);
+        if (rules == null)
+        {
+            return null;
+        }
+
+        long[] transitions = new long[64];
+        int count = 0;
+        ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochMilli(rangeStart));
+        while (transition != null)
+        {
+            long at = transition.getInstant().toEpochMilli();
+            if (at >= rangeEnd)
+            {
+                break;
+            }
+            if (count == transitions.length)
+            {
+                transitions = Arrays.copyOf(transitions, count * 2);
+            }
+            transitions[count++] = at;
+            transition = rules.nextTransition(transition.getInstant());
+        }
+        return Arrays.copyOf(transitions, count);
+    }
+
+    /**
+     * Get rules of the zone, null if the zone is not a zone of the runtime, e.g. a SimpleTimeZone with custom rules.
+     */
+    private static ZoneRules rulesOf(TimeZone zone)
+    {
+        String id = zone.getID();
+        TimeZone runtimeZone = TimeZone.getTimeZone(id);
+        if (!runtimeZone.getID().equals(id) || !runtimeZone.hasSameRules(zone))
+        {
+            return null;
+        }
+        try
+        {
+            return ZoneId.of(id, ZoneId.SHORT_IDS).getRules();
+        }
+        catch (DateTimeException e)
+        {
+            return null;
+        }
+    }
+}
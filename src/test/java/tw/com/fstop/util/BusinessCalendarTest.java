@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class BusinessCalendarTest
+{
+    static final Zone TAIPEI = Zone.of("Asia/Taipei");
+    static final int[] HOLIDAYS_2017 = {20170101, 20170102, 20170127, 20170130, 20170131, 20170201, 20170227, 20170228, 20170403, 20170404,
+        20170501, 20170529, 20170530, 20171004, 20171009, 20171010};
+    static final int[] WORKDAYS_2017 = {20170218, 20170603, 20170930};
+    static final BusinessCalendar TW = BusinessCalendar.build(TAIPEI, 2017, 2017, BusinessCalendar.SATURDAY_SUNDAY, HOLIDAYS_2017, WORKDAYS_2017);
+
+    @Test
+    public void testTaiwan2017() throws ParseException
+    {
+        assertThat(TW.businessDaysBetween("20170101", "20180101", "yyyyMMdd")).isEqualTo(248);
+        assertThat(TW.businessDaysBetweenDates(20170101, 20180101)).isEqualTo(248);
+        assertThat(TW.isBusinessDate(20170218)).isTrue();
+        assertThat(TW.isBusinessDate(20170219)).isFalse();
+        assertThat(TW.isBusinessDate(20171010)).isFalse();
+        // Friday before lunar new year, next business day is the Thursday after
+        assertThat(TW.addBusinessDaysToDate(20170126, 1)).isEqualTo(20170202);
+        assertThat(TW.addBusinessDaysToDate(20170202, -1)).isEqualTo(20170126);
+        // adding from a holiday counts from the next business day
+        assertThat(TW.addBusinessDaysToDate(20170128, 1)).isEqualTo(20170202);
+        assertThat(TW.addBusinessDaysToDate(20170128, -1)).isEqualTo(20170126);
+        assertThat(TW.addBusinessDaysToDate(20170128, 0)).isEqualTo(20170128);
+        assertThat(TW.addBusinessDays("2017/09/29", "yyyy/MM/dd", 1)).isEqualTo("2017/09/30");
+        assertThat(TW.addBusinessDays("2017/10/03", "yyyy/MM/dd", 2)).isEqualTo("2017/10/06");
+    }
+
+    @Test
+    public void testEpoch() throws ParseException
+    {
+        // 2017-10-03 23:30 in Taipei is 2017-10-03 15:30 UTC
+        long epoch = DateTimeUtil.dateStringToEpoch("20171003233000", "yyyyMMddHHmmss", TAIPEI);
+        assertThat(TW.isBusinessDay(epoch)).isTrue();
+        long next = TW.addBusinessDays(epoch, 1);
+        assertThat(DateTimeUtil.epochToLocalDateString(next, "yyyyMMddHHmmss", TAIPEI)).isEqualTo("20171005233000");
+        assertThat(TW.businessDaysBetween(epoch, next)).isEqualTo(1);
+        assertThat(TW.businessDaysBetween(next, epoch)).isEqualTo(1);
+    }
+
+    @Test
+    public void testSameAsDayLoop()
+    {
+        Random random = new Random(1502114440291L);
+        Set<Integer> holidays = new HashSet<Integer>();
+        Set<Integer> workdays = new HashSet<Integer>();
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(1999, Calendar.JANUARY, 1);
+        while (calendar.get(Calendar.YEAR) <= 2031)
+        {
+            int date = date(calendar);
+            int r = random.nextInt(20);
+            if (r == 0)
+            {
+                holidays.add(date);
+            }
+            else if (r == 1)
+            {
+                workdays.add(date);
+            }
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        BusinessCalendar business = BusinessCalendar.build(Zone.UTC, 2000, 2030, BusinessCalendar.SATURDAY_SUNDAY, toArray(holidays), toArray(workdays));
+
+        // business days of 2000 to 2030 by walking days
+        calendar.clear();
+        calendar.set(2000, Calendar.JANUARY, 1);
+        int days = (int) (CivilCalendar.daysFromCivil(2031, 1, 1) - CivilCalendar.daysFromCivil(2000, 1, 1));
+        int[] dates = new int[days];
+        boolean[] open = new boolean[days];
+        int[] before = new int[days + 1];
+        for (int i = 0; i < days; i++)
+        {
+            int date = date(calendar);
+            int dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
+            dates[i] = date;
+            open[i] = workdays.contains(date) || (!holidays.contains(date) && dayOfWeek != Calendar.SATURDAY && dayOfWeek != Calendar.SUNDAY);
+            before[i + 1] = before[i] + (open[i] ? 1 : 0);
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+
+        for (int i = 0; i < days; i++)
+        {
+            assertThat(business.isBusinessDate(dates[i])).isEqualTo(open[i]);
+        }
+        for (int k = 0; k < 5000; k++)
+        {
+            int i = random.nextInt(days);
+            int j = random.nextInt(days);
+            assertThat(business.businessDaysBetweenDates(dates[i], dates[j])).isEqualTo(Math.abs(before[j] - before[i]));
+            assertThat(business.businessDaysBetween(epoch(dates[i]), epoch(dates[j]))).isEqualTo(Math.abs(before[j] - before[i]));
+
+            int n = random.nextInt(200) - 100;
+            int expected = i;
+            for (int step = n; step != 0; )
+            {
+                expected += step > 0 ? 1 : -1;
+                if (expected < 0 || expected >= days)
+                {
+                    break;
+                }
+                if (open[expected])
+                {
+                    step += step > 0 ? -1 : 1;
+                }
+            }
+            if (expected < 0 || expected >= days)
+            {
+                try
+                {
+                    business.addBusinessDaysToDate(dates[i], n);
+                    fail("out of calendar");
+                }
+                catch (IllegalArgumentException e)
+                {
+                }
+            }
+            else
+            {
+                assertThat(business.addBusinessDaysToDate(dates[i], n)).isEqualTo(dates[expected]);
+            }
+        }
+    }
+
+    @Test
+    public void testInvalid()
+    {
+        try
+        {
+            TW.isBusinessDate(20180101);
+            fail("out of calendar");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+        try
+        {
+            TW.isBusinessDate(20170230);
+            fail("invalid date");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+        try
+        {
+            BusinessCalendar.build(TAIPEI, 2018, 2017, BusinessCalendar.SUNDAY, null, null);
+            fail("reversed years");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+    }
+
+    static int date(Calendar calendar)
+    {
+        return calendar.get(Calendar.YEAR) * 10000 + (calendar.get(Calendar.MONTH) + 1) * 100 + calendar.get(Calendar.DAY_OF_MONTH);
+    }
+
+    static long epoch(int date)
+    {
+        return CivilCalendar.daysFromCivil(date / 10000, date / 100 % 100, date % 100) * CivilCalendar.ONE_DAY_MILLIS + 43200000L;
+    }
+
+    static int[] toArray(Set<Integer> set)
+    {
+        int[] array = new int[set.size()];
+        int i = 0;
+        for (Integer value : set)
+        {
+            array[i++] = value;
+        }
+        return array;
+    }
+}
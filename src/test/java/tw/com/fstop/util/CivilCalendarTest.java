@@ -0,0 +1,124 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class CivilCalendarTest
+{
+    static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    
+    /**
+     * Compare every day of years 1600 to 2400 with the Calendar path, both directions.
+     */
+    @Test
+    public void testSameAsCalendar()
+    {
+        Calendar calendar = Calendar.getInstance(UTC);
+        calendar.clear();
+        calendar.set(1600, Calendar.JANUARY, 1, 0, 0, 0);
+        Random random = new Random(20170807L);
+        
+        while (calendar.get(Calendar.YEAR) < 2400)
+        {
+            int y = calendar.get(Calendar.YEAR);
+            int m = calendar.get(Calendar.MONTH) + 1;
+            int d = calendar.get(Calendar.DAY_OF_MONTH);
+            long epochDay = calendar.getTimeInMillis() / CivilCalendar.ONE_DAY_MILLIS;
+            
+            assertThat(CivilCalendar.daysFromCivil(y, m, d)).isEqualTo(epochDay);
+            long packed = CivilCalendar.civilFromDays(epochDay);
+            assertThat(CivilCalendar.packedYear(packed)).isEqualTo(y);
+            assertThat(CivilCalendar.packedMonth(packed)).isEqualTo(m);
+            assertThat(CivilCalendar.packedDay(packed)).isEqualTo(d);
+            assertThat(CivilCalendar.isLeapYear(y)).isEqualTo(((GregorianCalendar) calendar).isLeapYear(y));
+            
+            int hh = random.nextInt(24);
+            int mi = random.nextInt(60);
+            int ss = random.nextInt(60);
+            assertThat(DateTimeUtil.getEpochSecond(y, m, d, hh, mi, ss)).isEqualTo(calendarEpochSecond(y, m, d, hh, mi, ss));
+            
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+    }
+    
+    /**
+     * Before 1582 GregorianCalendar is Julian, so compare with a pure Gregorian calendar.
+     */
+    @Test
+    public void testProlepticGregorian()
+    {
+        GregorianCalendar calendar = new GregorianCalendar(UTC);
+        calendar.setGregorianChange(new Date(Long.MIN_VALUE));
+        calendar.clear();
+        calendar.set(-4000, Calendar.JANUARY, 1, 0, 0, 0);
+        
+        for (int i = 0; i < 4000 * 366; i += 7)
+        {
+            long epochDay = CivilCalendar.floorDiv(calendar.getTimeInMillis(), CivilCalendar.ONE_DAY_MILLIS);
+            int y = calendar.get(Calendar.ERA) == GregorianCalendar.AD ? calendar.get(Calendar.YEAR) : 1 - calendar.get(Calendar.YEAR);
+            int m = calendar.get(Calendar.MONTH) + 1;
+            int d = calendar.get(Calendar.DAY_OF_MONTH);
+            
+            assertThat(CivilCalendar.daysFromCivil(y, m, d)).isEqualTo(epochDay);
+            long packed = CivilCalendar.civilFromDays(epochDay);
+            assertThat(CivilCalendar.packedYear(packed)).isEqualTo(y);
+            assertThat(CivilCalendar.packedMonth(packed)).isEqualTo(m);
+            assertThat(CivilCalendar.packedDay(packed)).isEqualTo(d);
+            
+            calendar.add(Calendar.DAY_OF_MONTH, 7);
+        }
+    }
+    
+    @Test
+    public void testLenientFields()
+    {
+        long[][] cases = {
+            {2016, 13, 1, 2017, 1, 1},
+            {2017, 0, 1, 2016, 12, 1},
+            {2017, -11, 1, 2016, 1, 1},
+            {2017, -12, 1, 2015, 12, 1},
+            {2017, 2, 29, 2017, 3, 1},
+            {2017, 3, 0, 2017, 2, 28},
+            {2016, 1, 366, 2016, 12, 31},
+        };
+        for (long[] c : cases)
+        {
+            assertThat(CivilCalendar.daysFromCivil(c[0], (int) c[1], (int) c[2])).isEqualTo(CivilCalendar.daysFromCivil(c[3], (int) c[4], (int) c[5]));
+            assertThat(DateTimeUtil.getEpochSecond((int) c[0], (int) c[1], (int) c[2], 25, 61, -1))
+                .isEqualTo(calendarEpochSecond((int) c[0], (int) c[1], (int) c[2], 25, 61, -1));
+        }
+        
+        assertThat(CivilCalendar.floorDiv(-1, 86400)).isEqualTo(-1);
+        assertThat(CivilCalendar.floorMod(-1, 86400)).isEqualTo(86399);
+        assertThat(CivilCalendar.epochSecondToDays(-86400)).isEqualTo(-1);
+        assertThat(CivilCalendar.epochToDays(86399999)).isEqualTo(0);
+    }
+    
+    static long calendarEpochSecond(int year, int month, int day, int hour, int minute, int second)
+    {
+        Calendar calendar = Calendar.getInstance(UTC);
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute, second);
+        return calendar.getTimeInMillis() / 1000;
+    }
+}
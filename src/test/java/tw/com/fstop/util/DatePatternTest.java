@@ -0,0 +1,170 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class DatePatternTest
+{
+    static final String[] PATTERNS = {"yyyyMMddHHmmss", "yyyy-MM-dd", "yyyy/MM/dd HH:mm:ss.SSS", "HH:mm:ss",
+        "yyyy-MM-dd'T'HH:mm:ss.SSSXXX", "yyyyMMddHHmmssSSSZ", "'at' HH 'o''clock' yyyy.MM.dd", "dd/MM/yyyy''HH"};
+    static final String[] ZONES = {"UTC", "Asia/Taipei", "America/New_York", "Europe/Berlin", "Australia/Lord_Howe",
+        "Asia/Kathmandu", "America/Sao_Paulo"};
+
+    static SimpleDateFormat simple(String pattern, String zone)
+    {
+        SimpleDateFormat format = new SimpleDateFormat(pattern);
+        format.setTimeZone(TimeZone.getTimeZone(zone));
+        return format;
+    }
+
+    @Test
+    public void testAnalyse()
+    {
+        for (String pattern : PATTERNS)
+        {
+            assertThat(DatePattern.compile(pattern).isSpecialized()).as(pattern).isTrue();
+        }
+        for (String pattern : new String[] {"yy-MM-dd", "yyyy-M-d", "yyyy-MMM-dd", "HH:mm a", "yyyy-MM-dd z", "EEE", "'open"})
+        {
+            assertThat(DatePattern.compile(pattern).isSpecialized()).as(pattern).isFalse();
+        }
+        assertThat(DatePattern.compile("yyyy-MM-dd")).isSameAs(DatePattern.compile("yyyy-MM-dd"));
+        assertThat(DatePattern.compile("yyyyMMddHHmmssSSSZ").maxLength()).isEqualTo(22);
+    }
+
+    @Test
+    public void testCacheEviction()
+    {
+        DatePattern hot = DatePattern.compile("yyyy-MM-dd");
+        for (int i = 0; i < DatePattern.MAX_CACHED_PATTERNS * 2; i++)
+        {
+            DatePattern.compile("'p" + i + "'yyyy");
+            assertThat(DatePattern.compile("yyyy-MM-dd")).isSameAs(hot);
+        }
+        assertThat(DatePattern.cachedCount()).isEqualTo(DatePattern.MAX_CACHED_PATTERNS);
+        // evicted patterns are cached again
+        DatePattern plan = DatePattern.compile("'p0'yyyy");
+        assertThat(DatePattern.compile("'p0'yyyy")).isSameAs(plan);
+        assertThat(DatePattern.cachedCount()).isEqualTo(DatePattern.MAX_CACHED_PATTERNS);
+    }
+
+    @Test
+    public void testSameAsSimpleDateFormat() throws ParseException
+    {
+        Random random = new Random(12);
+        char[] buf = new char[64];
+        int parsed = 0;
+        for (int i = 0; i < 20000; i++)
+        {
+            // zone offset tables cover 1900 to 2100, parsing out of it is declined
+            long from = i % 4 == 0 ? DatePattern.MIN_EPOCH : ZoneOffsetTable.DEFAULT_RANGE_START;
+            long to = i % 4 == 0 ? DatePattern.MAX_EPOCH : ZoneOffsetTable.DEFAULT_RANGE_END;
+            long epoch = from + (long) (random.nextDouble() * (to - from));
+            String pattern = PATTERNS[i % PATTERNS.length];
+            String zone = ZONES[random.nextInt(ZONES.length)];
+            SimpleDateFormat format = simple(pattern, zone);
+            DatePattern plan = DatePattern.compile(pattern);
+
+            String expected = format.format(new Date(epoch));
+            int n = plan.format(epoch, zone, buf, 0);
+            assertThat(new String(buf, 0, n)).as("%d %s %s", epoch, pattern, zone).isEqualTo(expected);
+
+            long value = plan.parse(expected, zone);
+            if (value != DatePattern.NO_VALUE)
+            {
+                parsed++;
+                assertThat(value).as("%s %s %s", expected, pattern, zone).isEqualTo(format.parse(expected).getTime());
+            }
+            assertThat(DateTimeUtil.dateStringToEpoch(expected, pattern, zone)).isEqualTo(format.parse(expected).getTime());
+        }
+        assertThat(parsed).isGreaterThan(12000);
+    }
+
+    @Test
+    public void testDecline() throws ParseException
+    {
+        DatePattern plan = DatePattern.compile("yyyy-MM-dd HH:mm:ss");
+        assertThat(plan.parse("2017-07-14 10:40:00", "Asia/Taipei")).isEqualTo(1500000000000L);
+        // not exact widths, lenient values, trailing text and Julian dates are left to SimpleDateFormat
+        String[] texts = {"2017-7-14 10:40:00", "2017-13-01 00:00:00", "2017-02-29 00:00:00", "2017-07-14 10:40:00 tail",
+            "1200-01-01 00:00:00", "2017-07-14 24:00:00"};
+        for (String text : texts)
+        {
+            assertThat(plan.parse(text, "UTC")).as(text).isEqualTo(DatePattern.NO_VALUE);
+            assertThat(DateTimeUtil.dateStringToEpoch(text, plan.getPattern(), "UTC"))
+                .isEqualTo(simple(plan.getPattern(), "UTC").parse(text).getTime());
+        }
+        // within 2 days of a daylight saving transition
+        String gap = "2017-03-12 02:30:00";
+        assertThat(plan.parse(gap, "America/New_York")).isEqualTo(DatePattern.NO_VALUE);
+        assertThat(DateTimeUtil.dateStringToEpoch(gap, plan.getPattern(), "America/New_York"))
+            .isEqualTo(simple(plan.getPattern(), "America/New_York").parse(gap).getTime());
+
+        try
+        {
+            DateTimeUtil.dateStringToEpoch("2017/07/14", "yyyy-MM-dd", "UTC");
+            fail("parse error");
+        }
+        catch (ParseException e)
+        {
+            assertThat(e.getMessage()).contains("2017/07/14");
+        }
+    }
+
+    @Test
+    public void testDefaultLocale() throws ParseException, UnsupportedEncodingException
+    {
+        Locale saved = Locale.getDefault();
+        try
+        {
+            // Buddhist years, Arabic-Indic digits and Thai digits are written by SimpleDateFormat
+            for (Locale locale : new Locale[] {new Locale("th", "TH"), new Locale("ar", "SA"), new Locale("th", "TH", "TH")})
+            {
+                Locale.setDefault(locale);
+                assertThat(DatePattern.isPlainLocale()).as(locale.toString()).isFalse();
+                for (String pattern : new String[] {"yyyy-MM-dd HH:mm:ss", "yyyyMMddHHmmss"})
+                {
+                    String expected = simple(pattern, "Asia/Taipei").format(new Date(1502114440291L));
+                    assertThat(DateTimeUtil.epochToLocalDateString(1502114440291L, pattern, "Asia/Taipei")).as(locale.toString()).isEqualTo(expected);
+                    char[] buf = new char[64];
+                    int n = DateTimeUtil.epochToLocalDateString(1502114440291L, pattern, "Asia/Taipei", buf, 0);
+                    assertThat(new String(buf, 0, n)).isEqualTo(expected);
+                    ByteBuffer bytes = ByteBuffer.allocate(64);
+                    n = DateTimeUtil.epochToLocalDateString(1502114440291L, pattern, "Asia/Taipei", bytes);
+                    assertThat(new String(bytes.array(), 0, n, "UTF-8")).isEqualTo(expected);
+                    assertThat(DateTimeUtil.dateStringToEpoch(expected, pattern, "Asia/Taipei")).isEqualTo(simple(pattern, "Asia/Taipei").parse(expected).getTime());
+                }
+            }
+            Locale.setDefault(Locale.US);
+            assertThat(DatePattern.isPlainLocale()).isTrue();
+            assertThat(DateTimeUtil.epochToLocalDateString(1502114440291L, "yyyy-MM-dd HH:mm:ss", "Asia/Taipei")).isEqualTo("2017-08-07 22:00:40");
+        }
+        finally
+        {
+            Locale.setDefault(saved);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class DateTimeAppenderTest
+{
+    static final String[] PATTERNS = {DateTimeAppender.COMPACT, DateTimeAppender.COMPACT_DATE, DateTimeAppender.DATE,
+        DateTimeAppender.DATE_TIME, DateTimeAppender.ISO_8601};
+    static final String[] ZONES = {"UTC", "Asia/Taipei", "America/New_York", "Europe/London", "Australia/Lord_Howe",
+        "Asia/Kolkata", "America/St_Johns", "Pacific/Chatham", "Africa/Monrovia"};
+
+    static String expected(long epoch, String pattern, String zone)
+    {
+        SimpleDateFormat format = new SimpleDateFormat(pattern);
+        format.setTimeZone(TimeZone.getTimeZone(zone));
+        return format.format(new Date(epoch));
+    }
+
+    @Test
+    public void testSameAsSimpleDateFormat()
+    {
+        Random random = new Random(11);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++)
+        {
+            long epoch = DatePattern.MIN_EPOCH + (long) (random.nextDouble() * (DatePattern.MAX_EPOCH - DatePattern.MIN_EPOCH));
+            String pattern = PATTERNS[i % PATTERNS.length];
+            String zone = ZONES[random.nextInt(ZONES.length)];
+            sb.setLength(0);
+            assertThat(DateTimeAppender.append(sb, epoch, pattern, zone).toString()).as("%d %s %s", epoch, pattern, zone).isEqualTo(expected(epoch, pattern, zone));
+        }
+    }
+
+    @Test
+    public void testTargets() throws IOException
+    {
+        long epoch = 1500000000123L;
+        String iso = "2017-07-14T10:40:00.123+08:00";
+
+        StringBuilder sb = new StringBuilder("t=");
+        assertThat(DateTimeUtil.epochToLocalDateString(epoch, DateTimeAppender.ISO_8601, "Asia/Taipei", sb).toString()).isEqualTo("t=" + iso);
+        assertThat(DateTimeUtil.epochToDateString(epoch, DateTimeAppender.ISO_8601, new StringBuilder()).toString()).isEqualTo("2017-07-14T02:40:00.123Z");
+
+        Appendable out = new StringBuffer();
+        DateTimeUtil.epochToLocalDateString(epoch, DateTimeAppender.ISO_8601, "Asia/Taipei", out);
+        assertThat(out.toString()).isEqualTo(iso);
+
+        char[] chars = new char[32];
+        assertThat(DateTimeUtil.epochToLocalDateString(epoch, DateTimeAppender.COMPACT, "Asia/Taipei", chars, 2)).isEqualTo(14);
+        assertThat(new String(chars, 2, 14)).isEqualTo("20170714104000");
+        try
+        {
+            DateTimeUtil.epochToDateString(epoch, DateTimeAppender.COMPACT, new char[16], 3);
+            fail("no room");
+        }
+        catch (ArrayIndexOutOfBoundsException e)
+        {
+            // expected
+        }
+
+        ByteBuffer bytes = ByteBuffer.allocateDirect(64);
+        bytes.put((byte) '[');
+        assertThat(DateTimeUtil.epochToLocalDateString(epoch, DateTimeAppender.DATE, "Asia/Taipei", bytes)).isEqualTo(10);
+        assertThat(bytes.position()).isEqualTo(11);
+        byte[] written = new byte[10];
+        bytes.flip().position(1);
+        bytes.get(written);
+        assertThat(new String(written)).isEqualTo("2017-07-14");
+    }
+
+    @Test
+    public void testFallback()
+    {
+        // not specialized pattern and instants before 1583 go through SimpleDateFormat
+        String pattern = "yyyy/MM/dd HH:mm:ss.SSS z";
+        long epoch = 1500000000123L;
+        assertThat(DateTimeUtil.epochToLocalDateString(epoch, pattern, "Asia/Taipei", new StringBuilder()).toString())
+            .isEqualTo(expected(epoch, pattern, "Asia/Taipei"));
+
+        long julian = -30000000000000L;
+        assertThat(DateTimeUtil.epochToDateString(julian, DateTimeAppender.DATE_TIME, new StringBuilder()).toString())
+            .isEqualTo(expected(julian, DateTimeAppender.DATE_TIME, "UTC"));
+        assertThat(DateTimeUtil.epochToDateString(julian, DateTimeAppender.DATE_TIME)).isEqualTo(expected(julian, DateTimeAppender.DATE_TIME, "UTC"));
+    }
+
+    @Test
+    public void testNonAsciiLiteral() throws IOException
+    {
+        String pattern = "yyyy'年'MM'月'dd'日'";
+        long epoch = 1502114440291L;
+        assertThat(DatePattern.compile(pattern).isSpecialized()).isTrue();
+        assertThat(DatePattern.compile(pattern).isAscii()).isFalse();
+        assertThat(DateTimeUtil.epochToLocalDateString(epoch, pattern, "Asia/Taipei", new StringBuilder()).toString()).isEqualTo("2017年08月07日");
+
+        ByteBuffer bytes = ByteBuffer.allocate(64);
+        assertThat(DateTimeUtil.epochToLocalDateString(epoch, pattern, "Asia/Taipei", bytes)).isEqualTo(17);
+        assertThat(new String(bytes.array(), 0, bytes.position(), "UTF-8")).isEqualTo("2017年08月07日");
+        bytes.clear();
+        assertThat(DateTimeUtil.epochToLocalDateString(epoch, pattern, Zone.of("Asia/Taipei"), bytes)).isEqualTo(17);
+        assertThat(new String(bytes.array(), 0, bytes.position(), "UTF-8")).isEqualTo("2017年08月07日");
+    }
+}
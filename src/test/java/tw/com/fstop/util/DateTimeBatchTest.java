@@ -0,0 +1,159 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.text.ParseException;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DateTimeBatchTest
+{
+    static final int SIZE = DateTimeBatch.PARALLEL_THRESHOLD * 4 + 17;
+    
+    ExecutorService executor;
+    long[] epochSeconds;
+    TimeZone defaultZone;
+    
+    @Before    
+    public void setup() 
+    {
+        // null timezone id formats in the default zone
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Taipei"));
+        executor = Executors.newFixedThreadPool(4);
+        epochSeconds = new long[SIZE];
+        Random random = new Random(1502115795L);
+        for (int i = 0; i < SIZE; i++)
+        {
+            epochSeconds[i] = 631152000L + (long) (random.nextDouble() * 1262304000L);
+        }
+    }
+    
+    @After
+    public void tearDown() 
+    {
+        executor.shutdown();
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    public void testFormatAndParse() throws ParseException
+    {
+        String[] local = new String[SIZE + 2];
+        DateTimeBatch.epochSecondToDateString(epochSeconds, 0, local, 2, SIZE, "yyyy-MM-dd HH:mm:ss", "Pacific/Tarawa");
+        String[] parallel = new String[SIZE];
+        DateTimeBatch.epochSecondToDateString(epochSeconds, 0, parallel, 0, SIZE, "yyyy-MM-dd HH:mm:ss", "Pacific/Tarawa", executor);
+        String[] compact = new String[SIZE];
+        DateTimeBatch.epochSecondToDateString(epochSeconds, 0, compact, 0, SIZE, "yyyyMMddHHmmss", "UTC", executor);
+        
+        for (int i = 0; i < SIZE; i += 101)
+        {
+            String expected = DateTimeUtil.epochSecondToLocalDateString(epochSeconds[i], "yyyy-MM-dd HH:mm:ss", "Pacific/Tarawa");
+            assertThat(local[i + 2]).isEqualTo(expected);
+            assertThat(parallel[i]).isEqualTo(expected);
+            assertThat(compact[i]).isEqualTo(DateTimeUtil.epochSecondToDateString(epochSeconds[i], "yyyyMMddHHmmss"));
+        }
+        
+        long[] parsed = new long[SIZE];
+        DateTimeBatch.getEpochSecond(compact, 0, parsed, 0, SIZE);
+        assertThat(parsed).isEqualTo(epochSeconds);
+        parsed = new long[SIZE];
+        DateTimeBatch.getEpochSecond(compact, 0, parsed, 0, SIZE, executor);
+        assertThat(parsed).isEqualTo(epochSeconds);
+        
+        long[] epochs = new long[SIZE];
+        DateTimeBatch.dateStringToEpoch(parallel, 0, epochs, 0, SIZE, "yyyy-MM-dd HH:mm:ss", "Pacific/Tarawa", executor);
+        for (int i = 0; i < SIZE; i++)
+        {
+            assertThat(epochs[i]).isEqualTo(epochSeconds[i] * 1000);
+        }
+        
+        String[] formatted = new String[3];
+        DateTimeBatch.epochToDateString(new long[] {0L, 1502114440291L, -1L}, 0, formatted, 0, 3, "yyyy-MM-dd HH:mm:ss.SSS", null);
+        assertThat(formatted).containsExactly("1970-01-01 08:00:00.000", "2017-08-07 22:00:40.291", "1970-01-01 07:59:59.999");
+        // two digit years are not compiled, formatted by SimpleDateFormat
+        DateTimeBatch.epochSecondToDateString(new long[] {0L, 1502114440L, -1L}, 0, formatted, 0, 3, "yy/MM/dd HH:mm", "UTC");
+        assertThat(formatted).containsExactly("70/01/01 00:00", "17/08/07 14:00", "69/12/31 23:59");
+    }
+
+    @Test
+    public void testErrors()
+    {
+        parallelFailure(SIZE - 1);
+        parallelFailure(3);
+        
+        try
+        {
+            DateTimeBatch.getEpochSecond(new String[] {"19700101000000", "1970010100000X"}, 0, new long[2], 0, 2);
+            fail("NumberFormatException expected");
+        }
+        catch (NumberFormatException e)
+        {
+            assertThat(e).isNotNull();
+        }
+        
+        try
+        {
+            DateTimeBatch.epochToDateString(new long[2], 1, new String[2], 0, 2, "yyyy", "UTC");
+            fail("ArrayIndexOutOfBoundsException expected");
+        }
+        catch (ArrayIndexOutOfBoundsException e)
+        {
+            assertThat(e).isNotNull();
+        }
+    }
+    
+    @Test
+    public void testParseWithoutException()
+    {
+        String[] rows = {"20170807220040", "2017080722004x", "20171307220040", "2017"};
+        long[] parsed = new long[rows.length];
+        assertThat(DateTimeBatch.parseEpochSecond(rows, 0, parsed, 0, rows.length, false, -1L)).isEqualTo(2);
+        assertThat(parsed).containsExactly(1502143240L, -1L, DateTimeUtil.getEpochSecond("20180107220040"), -1L);
+        assertThat(DateTimeBatch.parseEpochSecond(rows, 0, parsed, 0, rows.length, true, -1L)).isEqualTo(3);
+        assertThat(parsed[2]).isEqualTo(-1L);
+        
+        String[] dates = {"2017-08-07 22:00:40", "2017-08-07 22:00", "2017-08-07 24:00:00"};
+        parsed = new long[dates.length];
+        assertThat(DateTimeBatch.parseEpoch(dates, 0, parsed, 0, dates.length, "yyyy-MM-dd HH:mm:ss", "Asia/Taipei", true, 0L)).isEqualTo(2);
+        assertThat(parsed).containsExactly(1502114440000L, 0L, 0L);
+    }
+    
+    void parallelFailure(int index)
+    {
+        String[] dates = new String[SIZE];
+        for (int i = 0; i < SIZE; i++)
+        {
+            dates[i] = "20170807";
+        }
+        dates[index] = "2017/08/07";
+        try
+        {
+            DateTimeBatch.dateStringToEpoch(dates, 0, new long[SIZE], 0, SIZE, "yyyyMMdd", "UTC", executor);
+            fail("ParseException expected");
+        }
+        catch (ParseException e)
+        {
+            assertThat(e.getErrorOffset()).isEqualTo(index);
+        }
+    }
+}
@@ -0,0 +1,456 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package tw.com.fstop.util;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <pre>
+ * High contention checks of every format and parse entry point against a per call SimpleDateFormat reference,
+ * so caching of shared formats can not bring back the "DateFormat is not thread safe" corruption.
+ *
+ * Many threads start together and run the same cases in different orders, every result is compared with the reference.
+ * testThroughputScaling prints sustained throughput from 1 to N threads, N is the number of cores (at least 2).
+ *
+ *   -Dtw.com.fstop.util.concurrency.threads=16       threads of the contention tests
+ *   -Dtw.com.fstop.util.concurrency.millis=200       measured time of each thread count in testThroughputScaling
+ * </pre>
+ */
+public class DateTimeConcurrencyTest
+{
+    static final String[] FORMATS = {"yyyy-MM-dd HH:mm:ss", "yyyyMMddHHmmss", "yyyy-MM-dd'T'HH:mm:ss.SSSXXX", "yyyy/MM/dd HH:mm:ss.SSS Z",
+        "EEE, dd MMM yyyy HH:mm:ss z"};
+    static final String[] ZONES = {"UTC", "Asia/Taipei", "America/New_York", "Europe/London", "Australia/Lord_Howe", "Asia/Kolkata"};
+    static final String COMPACT = "yyyyMMddHHmmss";
+    static final int GROUPS = FORMATS.length * ZONES.length;
+    static final int CASES = GROUPS * 100;
+    static final int THREADS = Integer.getInteger("tw.com.fstop.util.concurrency.threads",
+        Math.max(8, Runtime.getRuntime().availableProcessors() * 2));
+    static final int ITERATIONS = 20000;
+    static final long SCALING_MILLIS = Long.getLong("tw.com.fstop.util.concurrency.millis", 200L);
+    /** 1950-01-01T00:00:00Z */
+    static final long FROM = -631152000000L;
+    /** 2050-01-01T00:00:00Z */
+    static final long TO = 2524608000000L;
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Epoch, format and zone with the results of a new SimpleDateFormat.
+     */
+    static final class Case
+    {
+        final long epoch;
+        final String format;
+        final String zone;
+        final String text;
+        final long parsed;
+        final String compactUtc;
+        final long compactUtcSecond;
+        final String currentText;
+
+        Case(long epoch, String format, String zone) throws ParseException
+        {
+            this.epoch = epoch;
+            this.format = format;
+            this.zone = zone;
+            this.text = reference(format, zone).format(new Date(epoch));
+            this.parsed = reference(format, zone).parse(text).getTime();
+            this.compactUtc = reference(COMPACT, "UTC").format(new Date(epoch));
+            this.compactUtcSecond = reference(COMPACT, "UTC").parse(compactUtc).getTime() / 1000L;
+            this.currentText = reference(format, null).format(new Date(epoch));
+        }
+
+        static SimpleDateFormat reference(String format, String zone)
+        {
+            SimpleDateFormat f = new SimpleDateFormat(format);
+            f.setTimeZone(zone != null ? TimeZone.getTimeZone(zone) : TimeZone.getDefault());
+            return f;
+        }
+    }
+
+    /**
+     * Check of one case, returns description of the wrong result or null.
+     */
+    interface Check
+    {
+        String check(Case c, int iteration) throws Exception;
+    }
+
+    Case[] cases;
+
+    @Before
+    public void setup() throws ParseException
+    {
+        cases = new Case[CASES];
+        Random random = new Random(18);
+        for (int i = 0; i < CASES; i++)
+        {
+            long epoch = FROM + (long) (random.nextDouble() * (TO - FROM));
+            cases[i] = new Case(epoch, FORMATS[i % FORMATS.length], ZONES[(i / FORMATS.length) % ZONES.length]);
+        }
+    }
+
+    @After
+    public void tearDown()
+    {
+        DateTimeUtil.setTimeSource(null);
+        DateTimeUtil.setCurrentDateStringCaching(true);
+    }
+
+    @Test
+    public void testFormatUnderContention() throws InterruptedException
+    {
+        assertNoFailure(run(THREADS, ITERATIONS, new Check()
+        {
+            @Override
+            public String check(Case c, int iteration) throws Exception
+            {
+                String actual;
+                switch (iteration % 5)
+                {
+                    case 0:
+                        actual = DateTimeUtil.epochToLocalDateString(c.epoch, c.format, c.zone);
+                        break;
+                    case 1:
+                        actual = DateTimeUtil.epochToLocalDateString(c.epoch, c.format, c.zone, new StringBuilder("#")).substring(1);
+                        break;
+                    case 2:
+                        StringWriter out = new StringWriter();
+                        DateTimeUtil.epochToLocalDateString(c.epoch, c.format, c.zone, out);
+                        actual = out.toString();
+                        break;
+                    case 3:
+                        char[] buf = new char[80];
+                        int n = DateTimeUtil.epochToLocalDateString(c.epoch, c.format, c.zone, buf, 3);
+                        actual = new String(buf, 3, n);
+                        break;
+                    default:
+                        ByteBuffer bytes = ByteBuffer.allocate(80);
+                        bytes.position(2);
+                        n = DateTimeUtil.epochToLocalDateString(c.epoch, c.format, c.zone, bytes);
+                        actual = new String(bytes.array(), 2, n, UTF_8);
+                        break;
+                }
+                if ("UTC".equals(c.zone) && iteration % 2 == 0)
+                {
+                    String utc = DateTimeUtil.epochToDateString(c.epoch, c.format);
+                    if (!utc.equals(c.text))
+                    {
+                        return "epochToDateString " + utc;
+                    }
+                }
+                return c.text.equals(actual) ? null : "format " + (iteration % 5) + " " + actual;
+            }
+        }));
+    }
+
+    @Test
+    public void testParseUnderContention() throws InterruptedException
+    {
+        assertNoFailure(run(THREADS, ITERATIONS, new Check()
+        {
+            @Override
+            public String check(Case c, int iteration) throws Exception
+            {
+                long actual;
+                switch (iteration % 4)
+                {
+                    case 0:
+                        actual = DateTimeUtil.dateStringToEpoch(c.text, c.format, c.zone);
+                        break;
+                    case 1:
+                        ParseResult lenient = new ParseResult();
+                        actual = DateTimeUtil.parseEpoch(c.text, c.format, c.zone, lenient) ? lenient.getValue() : -1L;
+                        break;
+                    case 2:
+                        ParseResult strict = new ParseResult(true);
+                        actual = DateTimeUtil.parseEpoch(c.text, c.format, c.zone, strict) ? strict.getValue() : -1L;
+                        break;
+                    default:
+                        actual = DateTimeUtil.parseEpoch(c.text, c.format, c.zone, Long.MIN_VALUE);
+                        break;
+                }
+                if (actual != c.parsed)
+                {
+                    return "parse " + (iteration % 4) + " " + actual;
+                }
+
+                long second = iteration % 2 == 0
+                    ? DateTimeUtil.getEpochSecond(c.compactUtc)
+                    : DateTimeUtil.parseEpochSecond(c.compactUtc, 0, Long.MIN_VALUE);
+                return second == c.compactUtcSecond ? null : "epoch second " + second;
+            }
+        }));
+    }
+
+    @Test
+    public void testCurrentDateStringUnderContention() throws InterruptedException
+    {
+        // every thread has its own current time, so the current date string cache is hit with different seconds at once
+        final ThreadLocal<Long> now = new ThreadLocal<Long>();
+        DateTimeUtil.setTimeSource(new TimeSource()
+        {
+            @Override
+            public long currentTimeMillis()
+            {
+                return now.get();
+            }
+        });
+        Check check = new Check()
+        {
+            @Override
+            public String check(Case c, int iteration) throws Exception
+            {
+                now.set(c.epoch);
+                String actual = DateTimeUtil.getCurrentDateString(c.format);
+                return c.currentText.equals(actual) ? null : "current " + actual;
+            }
+        };
+        assertNoFailure(run(THREADS, ITERATIONS, check));
+        DateTimeUtil.setCurrentDateStringCaching(false);
+        assertNoFailure(run(THREADS, ITERATIONS / 4, check));
+    }
+
+    @Test
+    public void testBatchUnderContention() throws InterruptedException
+    {
+        assertNoFailure(run(THREADS, ITERATIONS / 20, new Check()
+        {
+            @Override
+            public String check(Case c, int iteration) throws Exception
+            {
+                // cases of the same format and zone as c
+                int first = indexOf(c) % GROUPS;
+                int length = (CASES - first + GROUPS - 1) / GROUPS;
+                long[] epochs = new long[length];
+                for (int i = 0; i < length; i++)
+                {
+                    epochs[i] = cases[first + i * GROUPS].epoch;
+                }
+
+                String[] texts = new String[length];
+                DateTimeBatch.epochToDateString(epochs, 0, texts, 0, length, c.format, c.zone);
+                long[] parsed = new long[length];
+                if (iteration % 2 == 0)
+                {
+                    DateTimeBatch.dateStringToEpoch(texts, 0, parsed, 0, length, c.format, c.zone);
+                }
+                else
+                {
+                    int invalid = DateTimeBatch.parseEpoch(texts, 0, parsed, 0, length, c.format, c.zone, false, Long.MIN_VALUE);
+                    if (invalid != 0)
+                    {
+                        return "batch invalid " + invalid;
+                    }
+                }
+                for (int i = 0; i < length; i++)
+                {
+                    Case expected = cases[first + i * GROUPS];
+                    if (!expected.text.equals(texts[i]) || expected.parsed != parsed[i])
+                    {
+                        return "batch " + i + " " + texts[i] + " " + parsed[i];
+                    }
+                }
+                return null;
+            }
+        }));
+    }
+
+    @Test
+    public void testThroughputScaling() throws InterruptedException
+    {
+        Check check = new Check()
+        {
+            @Override
+            public String check(Case c, int iteration) throws Exception
+            {
+                String text = DateTimeUtil.epochToLocalDateString(c.epoch, c.format, c.zone);
+                long parsed = DateTimeUtil.parseEpoch(text, c.format, c.zone, Long.MIN_VALUE);
+                return c.text.equals(text) && parsed == c.parsed ? null : "mixed " + text + " " + parsed;
+            }
+        };
+        int cores = Math.max(2, Runtime.getRuntime().availableProcessors());
+        List<Integer> threadCounts = new ArrayList<Integer>();
+        for (int n = 1; n < cores; n *= 2)
+        {
+            threadCounts.add(n);
+        }
+        threadCounts.add(cores);
+
+        // warm up
+        timed(cores, SCALING_MILLIS, check);
+
+        System.out.println("threads      ops/s  speedup");
+        double single = 0;
+        for (int n : threadCounts)
+        {
+            Queue<String> failures = new ConcurrentLinkedQueue<String>();
+            long ops = timed(n, SCALING_MILLIS, check, failures);
+            assertNoFailure(failures);
+            assertThat(ops).isPositive();
+            double rate = ops * 1000.0 / SCALING_MILLIS;
+            if (n == 1)
+            {
+                single = rate;
+            }
+            System.out.println(String.format("%7d %10.0f %8.2f", n, rate, rate / single));
+        }
+    }
+
+    int indexOf(Case c)
+    {
+        for (int i = 0; i < CASES; i++)
+        {
+            if (cases[i] == c)
+            {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException();
+    }
+
+    /**
+     * Start threads together, each runs the check over the cases in its own order.
+     */
+    Queue<String> run(int threads, final int iterations, final Check check) throws InterruptedException
+    {
+        final Queue<String> failures = new ConcurrentLinkedQueue<String>();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++)
+        {
+            final int seed = t;
+            workers[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    await(start);
+                    int step = 2 * seed + 1;
+                    for (int i = 0; i < iterations && failures.size() < 10; i++)
+                    {
+                        Case c = cases[(int) ((seed * 7919L + (long) i * step) % CASES)];
+                        verify(c, i, check, failures);
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers)
+        {
+            worker.join();
+        }
+        return failures;
+    }
+
+    long timed(int threads, long millis, Check check) throws InterruptedException
+    {
+        return timed(threads, millis, check, new ConcurrentLinkedQueue<String>());
+    }
+
+    /**
+     * Run the check on threads for the time, returns number of checks done.
+     */
+    long timed(int threads, long millis, final Check check, final Queue<String> failures) throws InterruptedException
+    {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean stop = new AtomicBoolean();
+        final long[] counts = new long[threads];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++)
+        {
+            final int seed = t;
+            workers[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    await(start);
+                    long i = 0;
+                    while (!stop.get())
+                    {
+                        Case c = cases[(int) ((seed * 7919L + i * 31) % CASES)];
+                        verify(c, (int) i, check, failures);
+                        i++;
+                    }
+                    counts[seed] = i;
+                }
+            };
+            workers[t].start();
+        }
+        start.countDown();
+        Thread.sleep(millis);
+        stop.set(true);
+        long total = 0;
+        for (int t = 0; t < threads; t++)
+        {
+            workers[t].join();
+            total += counts[t];
+        }
+        return total;
+    }
+
+    static void verify(Case c, int iteration, Check check, Queue<String> failures)
+    {
+        String failure;
+        try
+        {
+            failure = check.check(c, iteration);
+        }
+        catch (Exception e)
+        {
+            failure = e.toString();
+        }
+        if (failure != null)
+        {
+            failures.add(c.format + " " + c.zone + " " + c.epoch + " expected " + c.text + ": " + failure);
+        }
+    }
+
+    static void await(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static void assertNoFailure(Queue<String> failures)
+    {
+        assertThat(failures).isEmpty();
+    }
+}
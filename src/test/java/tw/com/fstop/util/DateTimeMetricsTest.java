@@ -0,0 +1,246 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class DateTimeMetricsTest
+{
+    @After
+    public void tearDown()
+    {
+        DateTimeMetrics.reset();
+    }
+
+    @Test
+    public void testHistogram()
+    {
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++)
+        {
+            long low = LatencyHistogram.lowestValueAt(i);
+            long high = LatencyHistogram.highestValueAt(i);
+            assertThat(LatencyHistogram.indexOf(low)).isEqualTo(i);
+            assertThat(LatencyHistogram.indexOf(high)).isEqualTo(i);
+            if (i > 0)
+            {
+                assertThat(LatencyHistogram.highestValueAt(i - 1) + 1).isEqualTo(low);
+            }
+            // relative error is bounded by the sub bucket resolution
+            assertThat((double) (high - low)).isLessThanOrEqualTo(low / 64.0);
+        }
+        assertThat(LatencyHistogram.highestValueAt(LatencyHistogram.BUCKET_COUNT - 1)).isEqualTo(LatencyHistogram.MAX_TRACKABLE_VALUE);
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getValueAtPercentile(99)).isZero();
+        Random random = new Random(14);
+        for (int i = 1; i <= 100000; i++)
+        {
+            histogram.record(random.nextInt(1000000));
+        }
+        histogram.record(Long.MAX_VALUE);
+        assertThat(histogram.getCount()).isEqualTo(100001);
+        assertThat(histogram.getMax()).isEqualTo(Long.MAX_VALUE);
+        assertThat((double) histogram.getValueAtPercentile(50)).isCloseTo(500000, within(10000.0));
+        assertThat((double) histogram.getValueAtPercentile(99)).isCloseTo(990000, within(20000.0));
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(LatencyHistogram.MAX_TRACKABLE_VALUE);
+    }
+
+    @Test
+    public void testRecordAndListener()
+    {
+        final AtomicInteger sampled = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        DateTimeMetricsListener listener = new DateTimeMetricsListener()
+        {
+            @Override
+            public void sampled(DateTimeMetrics.Operation operation, long nanos)
+            {
+                sampled.incrementAndGet();
+            }
+
+            @Override
+            public void failed(DateTimeMetrics.Operation operation)
+            {
+                failed.incrementAndGet();
+            }
+        };
+        DateTimeMetrics.addListener(listener);
+        try
+        {
+            int calls = DateTimeMetrics.SAMPLE_INTERVAL * 10;
+            for (int i = 0; i < calls; i++)
+            {
+                long start = DateTimeMetrics.start(DateTimeMetrics.Operation.FORMAT);
+                DateTimeMetrics.end(DateTimeMetrics.Operation.FORMAT, start);
+            }
+            DateTimeMetrics.failed(DateTimeMetrics.Operation.PARSE);
+            assertThat(DateTimeMetrics.getCallCount(DateTimeMetrics.Operation.FORMAT)).isEqualTo(calls);
+            assertThat(DateTimeMetrics.getLatency(DateTimeMetrics.Operation.FORMAT).getCount()).isEqualTo(10);
+            assertThat(DateTimeMetrics.getFailureCount(DateTimeMetrics.Operation.PARSE)).isEqualTo(1);
+            assertThat(sampled.get()).isEqualTo(10);
+            assertThat(failed.get()).isEqualTo(1);
+        }
+        finally
+        {
+            DateTimeMetrics.removeListener(listener);
+        }
+        DateTimeMetrics.failed(DateTimeMetrics.Operation.PARSE);
+        assertThat(failed.get()).isEqualTo(1);
+
+        DateTimeMetrics.zoneCacheHits.increment();
+        DateTimeMetrics.zoneCacheHits.increment();
+        DateTimeMetrics.zoneCacheHits.increment();
+        DateTimeMetrics.zoneCacheMisses.increment();
+        assertThat(DateTimeMetrics.getZoneCacheHitRatio()).isEqualTo(0.75);
+        assertThat(DateTimeMetrics.getPatternCacheHitRatio()).isNaN();
+    }
+
+    @Test
+    public void testBrokenListener()
+    {
+        DateTimeMetricsListener broken = new DateTimeMetricsListener()
+        {
+            @Override
+            public void sampled(DateTimeMetrics.Operation operation, long nanos)
+            {
+                throw new IllegalStateException("sampled");
+            }
+
+            @Override
+            public void failed(DateTimeMetrics.Operation operation)
+            {
+                throw new IllegalStateException("failed");
+            }
+        };
+        CountingListener counting = new CountingListener();
+        DateTimeMetrics.addListener(broken);
+        DateTimeMetrics.addListener(counting);
+        try
+        {
+            for (int i = 0; i < DateTimeMetrics.SAMPLE_INTERVAL; i++)
+            {
+                long start = DateTimeMetrics.start(DateTimeMetrics.Operation.FORMAT);
+                DateTimeMetrics.end(DateTimeMetrics.Operation.FORMAT, start);
+            }
+            DateTimeMetrics.failed(DateTimeMetrics.Operation.PARSE);
+            assertThat(counting.sampled.get()).isEqualTo(1);
+            assertThat(counting.failed.get()).isEqualTo(1);
+        }
+        finally
+        {
+            DateTimeMetrics.removeListener(broken);
+            DateTimeMetrics.removeListener(counting);
+        }
+    }
+
+    @Test
+    public void testLoadListeners() throws IOException
+    {
+        assertThat(DateTimeMetrics.loadListeners(serviceLoader("no.such.Listener\n" + CountingListener.class.getName() + "\n")))
+            .isZero();
+        assertThat(DateTimeMetrics.loadListeners(serviceLoader("not a class name\n"))).isZero();
+        assertThat(DateTimeMetrics.loadListeners(serviceLoader(CountingListener.class.getName() + "\n"))).isEqualTo(1);
+        assertThat(CountingListener.instance).isNotNull();
+        DateTimeMetrics.removeListener(CountingListener.instance);
+    }
+
+    /**
+     * Class loader which finds the given provider configuration file of DateTimeMetricsListener.
+     */
+    static ClassLoader serviceLoader(String config) throws IOException
+    {
+        final File file = File.createTempFile("listeners", ".txt");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(config.getBytes("UTF-8"));
+        }
+        finally
+        {
+            out.close();
+        }
+        return new ClassLoader(DateTimeMetricsTest.class.getClassLoader())
+        {
+            @Override
+            public Enumeration<URL> getResources(String name) throws IOException
+            {
+                if (name.equals("META-INF/services/" + DateTimeMetricsListener.class.getName()))
+                {
+                    return Collections.enumeration(Collections.singletonList(file.toURI().toURL()));
+                }
+                return super.getResources(name);
+            }
+        };
+    }
+
+    public static class CountingListener implements DateTimeMetricsListener
+    {
+        static volatile CountingListener instance;
+        final AtomicInteger sampled = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+
+        public CountingListener()
+        {
+            instance = this;
+        }
+
+        @Override
+        public void sampled(DateTimeMetrics.Operation operation, long nanos)
+        {
+            sampled.incrementAndGet();
+        }
+
+        @Override
+        public void failed(DateTimeMetrics.Operation operation)
+        {
+            failed.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void testMBean() throws Exception
+    {
+        DateTimeMetrics.registerMBean();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(DateTimeMetrics.OBJECT_NAME);
+        assertThat(server.isRegistered(name)).isTrue();
+        assertThat(DateTimeMetrics.registerMBean()).isFalse();
+
+        DateTimeMetrics.start(DateTimeMetrics.Operation.APPEND);
+        TabularData counts = (TabularData) server.getAttribute(name, "CallCounts");
+        assertThat(counts.get(new Object[] {"APPEND"}).get("value")).isEqualTo(1L);
+        assertThat(server.getAttribute(name, "SampleInterval")).isEqualTo(DateTimeMetrics.SAMPLE_INTERVAL);
+        server.invoke(name, "reset", null, null);
+        assertThat(DateTimeMetrics.getCallCount(DateTimeMetrics.Operation.APPEND)).isZero();
+    }
+}
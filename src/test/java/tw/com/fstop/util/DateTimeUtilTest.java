@@ -16,6 +16,12 @@ package tw.com.fstop.util;
 import static org.junit.Assert.assertNotNull;
 
 import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.After;
 import org.junit.Before;
@@ -25,14 +31,20 @@ import static org.assertj.core.api.Assertions.*;
 
 public class DateTimeUtilTest
 {
+    TimeZone defaultZone;
+    
     @Before    
     public void setup() 
     {
+        // current time tests expect Asia/Taipei as the default zone
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Taipei"));
     }
     
     @After
     public void tearDown() 
     {
+        TimeZone.setDefault(defaultZone);
     }
 
     @Test
@@ -211,4 +223,336 @@ public class DateTimeUtilTest
         
     }
     
+    @Test
+    public void testFormatCache()
+    {
+        String[] patterns = {"yyyy-MM-dd HH:mm:ss", "yyyyMMddHHmmss", "yyyy-MM-dd'T'HH:mm:ss.SSSZ", "EEE, d MMM yyyy HH:mm:ss z"};
+        String[] zones = {"UTC", "Asia/Taipei", "Pacific/Tarawa", "America/New_York", "No/SuchZone"};
+        long[] epochs = {0L, 1502114440291L, -1000L, 1478415600000L, 253402300799000L};
+        
+        for (String pattern : patterns)
+        {
+            for (String zone : zones)
+            {
+                for (long epoch : epochs)
+                {
+                    SimpleDateFormat sdf = new SimpleDateFormat(pattern);
+                    sdf.setTimeZone(TimeZone.getTimeZone(zone));
+                    assertThat(DateTimeUtil.epochToLocalDateString(epoch, pattern, zone)).isEqualTo(sdf.format(new Date(epoch)));
+                    
+                    sdf = new SimpleDateFormat(pattern);
+                    assertThat(DateTimeUtil.epochToCurrentDateString(epoch, pattern)).isEqualTo(sdf.format(new Date(epoch)));
+                }
+            }
+        }
+        
+        DateFormatCache cache = new DateFormatCache(2);
+        assertThat(cache.format(0L, "yyyyMMdd", "UTC")).isEqualTo("19700101");
+        assertThat(cache.missCount()).isEqualTo(1);
+        assertThat(cache.format(0L, "yyyyMMdd", "UTC")).isEqualTo("19700101");
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(cache.format(0L, "yyyyMMddHH", "Asia/Taipei")).isEqualTo("1970010108");
+        assertThat(cache.format(0L, "yyyyMMdd", "UTC")).isEqualTo("19700101");
+        assertThat(cache.format(0L, "HH", "Asia/Taipei")).isEqualTo("08");
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.evictionCount()).isEqualTo(1);
+        // least recently used entry was evicted
+        long misses = cache.missCount();
+        cache.format(0L, "yyyyMMdd", "UTC");
+        assertThat(cache.missCount()).isEqualTo(misses);
+        cache.format(0L, "yyyyMMddHH", "Asia/Taipei");
+        assertThat(cache.missCount()).isEqualTo(misses + 1);
+    }
+    
+    @Test
+    public void testGetEpochSecondFixedLayout()
+    {
+        String[] dates = {"19700101000000", "20170807220040", "20160229235959", "20000301000000", "19691231235959", "99991231235959", "16000101000000"};
+        for (String date : dates)
+        {
+            int y = Integer.parseInt(date.substring(0, 4));
+            int mo = Integer.parseInt(date.substring(4, 6));
+            int d = Integer.parseInt(date.substring(6, 8));
+            int h = Integer.parseInt(date.substring(8, 10));
+            int mi = Integer.parseInt(date.substring(10, 12));
+            int s = Integer.parseInt(date.substring(12, 14));
+            long expected = DateTimeUtil.getEpochSecond(y, mo, d, h, mi, s);
+            
+            assertThat(DateTimeUtil.getEpochSecond(date)).isEqualTo(expected);
+            assertThat(DateTimeUtil.getEpochSecond(new StringBuilder(date))).isEqualTo(expected);
+            assertThat(DateTimeUtil.getEpochSecond("ts=" + date + ";", 3)).isEqualTo(expected);
+            assertThat(DateTimeUtil.getEpochSecond(("ts=" + date).toCharArray(), 3)).isEqualTo(expected);
+            assertThat(DateTimeUtil.getEpochSecond(("ts=" + date).getBytes(), 3)).isEqualTo(expected);
+        }
+        
+        assertThat(DateTimeUtil.getEpochSecond("20170807220040")).isEqualTo(1502143240L);
+        // lenient month and day like Calendar
+        assertThat(DateTimeUtil.getEpochSecond("20161301000000")).isEqualTo(DateTimeUtil.getEpochSecond("20170101000000"));
+        assertThat(DateTimeUtil.getEpochSecond("20170230000000")).isEqualTo(DateTimeUtil.getEpochSecond("20170302000000"));
+        
+        try
+        {
+            DateTimeUtil.getEpochSecond("2017080722004X");
+            fail("NumberFormatException expected");
+        }
+        catch (NumberFormatException e)
+        {
+            assertThat(e.getMessage()).contains("13");
+        }
+        try
+        {
+            DateTimeUtil.getEpochSecond("20170807");
+            fail("IndexOutOfBoundsException expected");
+        }
+        catch (IndexOutOfBoundsException e)
+        {
+            assertNotNull(e);
+        }
+    }
+    
+    @Test
+    public void testDaysBetweenEpoch() throws ParseException
+    {
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        Random random = new Random(1502035200000L);
+        for (int i = 0; i < 10000; i++)
+        {
+            long epoch1 = (long) (random.nextDouble() * 200 * 365 * 86400000L) - 100 * 365 * 86400000L;
+            long epoch2 = epoch1 + (long) (random.nextDouble() * 100 * 365 * 86400000L) - 50 * 365 * 86400000L;
+            Calendar calendar1 = Calendar.getInstance(utc);
+            calendar1.setTimeInMillis(epoch1);
+            Calendar calendar2 = Calendar.getInstance(utc);
+            calendar2.setTimeInMillis(epoch2);
+            int expected = DateTimeUtil.daysBetween(calendar1, calendar2);
+            
+            assertThat(DateTimeUtil.daysBetween(epoch1, epoch2)).isEqualTo(expected);
+            assertThat(DateTimeUtil.daysBetween(epoch2, epoch1)).isEqualTo(expected);
+            
+            long epochSecond1 = Math.round(epoch1 / 1000.0);
+            long epochSecond2 = Math.round(epoch2 / 1000.0);
+            assertThat(DateTimeUtil.daysBetweenEpochSecond(epochSecond1, epochSecond2))
+                .isEqualTo(DateTimeUtil.daysBetween(epochSecond1 * 1000, epochSecond2 * 1000));
+        }
+        
+        assertThat(DateTimeUtil.daysBetween(-1L, 0L)).isEqualTo(1);
+        assertThat(DateTimeUtil.daysBetween(86399999L, 0L)).isEqualTo(0);
+        assertThat(DateTimeUtil.daysBetweenEpochSecond(1502035200L, 1470499200L)).isEqualTo(365);
+    }
+    
+    @Test
+    public void testTickingClock()
+    {
+        final AtomicLong now = new AtomicLong(1502114440291L);
+        DateTimeUtil.setTimeSource(new TimeSource()
+        {
+            @Override
+            public long currentTimeMillis()
+            {
+                return now.get();
+            }
+        });
+        try
+        {
+            assertThat(DateTimeUtil.getCurrentEpoch()).isEqualTo(1502114440291L);
+            assertThat(DateTimeUtil.getCurrentEpochSecond()).isEqualTo(1502114440L);
+            assertThat(DateTimeUtil.getEpochSecond()).isEqualTo(1502114440L);
+            assertThat(DateTimeUtil.getCurrentDateString("yyyy-MM-dd HH:mm:ss")).isEqualTo("2017-08-07 22:00:40");
+            assertThat(DateTimeUtil.getCurrentYear()).isEqualTo(2017);
+            assertThat(DateTimeUtil.getCurrentMonth()).isEqualTo(8);
+            assertThat(DateTimeUtil.getCurrentDay()).isEqualTo(7);
+            assertThat(DateTimeUtil.getLocalDay("Pacific/Tarawa")).isEqualTo(8);
+            
+            DateTimeUtil.startTickingClock(3600000L);
+            assertThat(DateTimeUtil.isTickingClock()).isTrue();
+            assertThat(DateTimeUtil.getCurrentDay()).isEqualTo(7);
+            
+            // 2017-08-07T16:00:00Z is 2017-08-08 00:00:00 in Asia/Taipei, not seen until next tick
+            now.set(1502121600000L);
+            assertThat(DateTimeUtil.getCurrentEpoch()).isEqualTo(1502114440291L);
+            assertThat(DateTimeUtil.getCurrentDay()).isEqualTo(7);
+            DateTimeUtil.tickingClock.tick();
+            assertThat(DateTimeUtil.getCurrentEpoch()).isEqualTo(1502121600000L);
+            assertThat(DateTimeUtil.getCurrentDay()).isEqualTo(8);
+            assertThat(DateTimeUtil.getCurrentTimeZoneOffsetHour()).isEqualTo(8);
+            assertThat(DateTimeUtil.getCurrentDaylightSavingOffset()).isZero();
+            
+            // Taiwan daylight saving time of 1979-07-01
+            now.set(299635200000L);
+            DateTimeUtil.tickingClock.tick();
+            assertThat(DateTimeUtil.getCurrentYear()).isEqualTo(1979);
+            assertThat(DateTimeUtil.getCurrentDaylightSavingOffsetHour()).isEqualTo(1);
+            
+            DateTimeUtil.stopTickingClock();
+            assertThat(DateTimeUtil.isTickingClock()).isFalse();
+            now.set(0L);
+            assertThat(DateTimeUtil.getCurrentYear()).isEqualTo(1970);
+        }
+        finally
+        {
+            DateTimeUtil.stopTickingClock();
+            DateTimeUtil.setTimeSource(null);
+        }
+        
+        DateTimeUtil.startTickingClock(5L);
+        try
+        {
+            long epoch = DateTimeUtil.getCurrentEpoch();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (DateTimeUtil.getCurrentEpoch() == epoch && System.currentTimeMillis() < deadline)
+            {
+                Thread.yield();
+            }
+            assertThat(DateTimeUtil.getCurrentEpoch()).isGreaterThan(epoch);
+        }
+        finally
+        {
+            DateTimeUtil.stopTickingClock();
+        }
+    }
+    
+    @Test
+    public void testCurrentDateStringCache()
+    {
+        final AtomicLong now = new AtomicLong(1502114440291L);
+        DateTimeUtil.setTimeSource(new TimeSource()
+        {
+            @Override
+            public long currentTimeMillis()
+            {
+                return now.get();
+            }
+        });
+        TimeZone defaultZone = TimeZone.getDefault();
+        try
+        {
+            String first = DateTimeUtil.getCurrentDateString("yyyy-MM-dd HH:mm:ss");
+            assertThat(first).isEqualTo("2017-08-07 22:00:40");
+            now.set(1502114440999L);
+            assertThat(DateTimeUtil.getCurrentDateString("yyyy-MM-dd HH:mm:ss")).isSameAs(first);
+            assertThat(DateTimeUtil.getCurrentDateString("HH:mm:ss.SSS")).isEqualTo("22:00:40.999");
+            now.set(1502114440998L);
+            assertThat(DateTimeUtil.getCurrentDateString("HH:mm:ss.SSS")).isEqualTo("22:00:40.998");
+            assertThat(DateTimeUtil.getCurrentDateString("HH:mm:ss'S'")).isEqualTo("22:00:40S");
+            
+            // second rollover
+            now.set(1502114441000L);
+            assertThat(DateTimeUtil.getCurrentDateString("yyyy-MM-dd HH:mm:ss")).isEqualTo("2017-08-07 22:00:41");
+            // going back in time still gets the right text
+            now.set(1502114440000L);
+            assertThat(DateTimeUtil.getCurrentDateString("yyyy-MM-dd HH:mm:ss")).isEqualTo("2017-08-07 22:00:40");
+            
+            // default timezone change is seen from the next second
+            now.set(1502114441500L);
+            assertThat(DateTimeUtil.getCurrentDateString("yyyy-MM-dd HH:mm:ss")).isEqualTo("2017-08-07 22:00:41");
+            TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+            assertThat(DateTimeUtil.getCurrentDateString("yyyy-MM-dd HH:mm:ss")).isEqualTo("2017-08-07 22:00:41");
+            now.set(1502114442000L);
+            assertThat(DateTimeUtil.getCurrentDateString("yyyy-MM-dd HH:mm:ss")).isEqualTo("2017-08-07 14:00:42");
+            
+            // daylight saving change, 2017-03-12T07:00:00Z is 03:00 EDT, one second before is 01:59:59 EST
+            TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+            now.set(1489301999000L);
+            assertThat(DateTimeUtil.getCurrentDateString("HH:mm:ss z")).isEqualTo("01:59:59 EST");
+            now.set(1489302000000L);
+            assertThat(DateTimeUtil.getCurrentDateString("HH:mm:ss z")).isEqualTo("03:00:00 EDT");
+            
+            DateTimeUtil.setCurrentDateStringCaching(false);
+            assertThat(DateTimeUtil.getCurrentDateString("HH:mm:ss z")).isEqualTo("03:00:00 EDT");
+        }
+        finally
+        {
+            TimeZone.setDefault(defaultZone);
+            DateTimeUtil.setCurrentDateStringCaching(true);
+            DateTimeUtil.setTimeSource(null);
+        }
+    }
+
+    @Test
+    public void testParseWithoutException()
+    {
+        ParseResult lenient = new ParseResult();
+        ParseResult strict = new ParseResult(true);
+        
+        assertThat(DateTimeUtil.parseEpochSecond("x20170807220040", 1, strict)).isTrue();
+        assertThat(strict.getValue()).isEqualTo(1502143240L);
+        assertThat(DateTimeUtil.parseEpochSecond("2017080722004", 0, lenient)).isFalse();
+        assertThat(lenient.getErrorCode()).isEqualTo(ParseResult.TOO_SHORT);
+        assertThat(lenient.getErrorIndex()).isEqualTo(13);
+        assertThat(DateTimeUtil.parseEpochSecond("2017O807220040", 0, lenient)).isFalse();
+        assertThat(lenient.getErrorCode()).isEqualTo(ParseResult.NOT_DIGIT);
+        assertThat(lenient.getErrorIndex()).isEqualTo(4);
+        
+        // month 13 and second 61 are normalized by lenient parse, rejected by strict parse
+        assertThat(DateTimeUtil.parseEpochSecond("20171307220061", 0, lenient)).isTrue();
+        assertThat(lenient.getValue()).isEqualTo(DateTimeUtil.getEpochSecond("20180107220101"));
+        assertThat(DateTimeUtil.parseEpochSecond("20171307220061", 0, strict)).isFalse();
+        assertThat(strict.getErrorCode()).isEqualTo(ParseResult.FIELD_RANGE);
+        assertThat(strict.getErrorIndex()).isEqualTo(4);
+        assertThat(DateTimeUtil.parseEpochSecond("20170229000000", 0, strict)).isFalse();
+        assertThat(strict.getErrorIndex()).isEqualTo(6);
+        assertThat(DateTimeUtil.parseEpochSecond("20170807220061", 0, -1L)).isEqualTo(1502143261L);
+        assertThat(DateTimeUtil.parseEpochSecond("2017", 0, -1L)).isEqualTo(-1L);
+        
+        String format = "yyyy-MM-dd HH:mm:ss";
+        assertThat(DateTimeUtil.parseEpoch("2017-08-07 22:00:40", format, "Asia/Taipei", strict)).isTrue();
+        assertThat(strict.getValue()).isEqualTo(1502114440000L);
+        assertThat(DateTimeUtil.parseEpoch("2017-08-07T22:00:40", format, "Asia/Taipei", strict)).isFalse();
+        assertThat(strict.getErrorCode()).isEqualTo(ParseResult.LITERAL_MISMATCH);
+        assertThat(strict.getErrorIndex()).isEqualTo(10);
+        assertThat(DateTimeUtil.parseEpoch("2017-08-07 22:00:40 ", format, "Asia/Taipei", strict)).isFalse();
+        assertThat(strict.getErrorCode()).isEqualTo(ParseResult.TRAILING_TEXT);
+        assertThat(DateTimeUtil.parseEpoch("2017-08-07 22:61:40", format, "Asia/Taipei", strict)).isFalse();
+        assertThat(strict.getErrorCode()).isEqualTo(ParseResult.FIELD_RANGE);
+        assertThat(strict.getErrorIndex()).isEqualTo(14);
+        assertThat(DateTimeUtil.parseEpoch("2017-08-07 22:61:40", format, "Asia/Taipei", lenient)).isTrue();
+        assertThat(lenient.getValue()).isEqualTo(1502114440000L + 61 * 60000L);
+        
+        // near daylight saving transition and not compiled formats take the general path
+        assertThat(DateTimeUtil.parseEpoch("2017-03-12 03:30:00", format, "America/New_York", strict)).isTrue();
+        assertThat(strict.getValue()).isEqualTo(1489303800000L);
+        assertThat(DateTimeUtil.parseEpoch("2017-03-12 02:30:00", format, "America/New_York", strict)).isFalse();
+        assertThat(strict.getErrorCode()).isEqualTo(ParseResult.UNPARSEABLE);
+        assertThat(DateTimeUtil.parseEpoch("Aug 7, 2017", "MMM d, yyyy", "UTC", -1L)).isEqualTo(1502064000000L);
+        assertThat(DateTimeUtil.parseEpoch("Agu 7, 2017", "MMM d, yyyy", "UTC", -1L)).isEqualTo(-1L);
+    }
+
+    @Test
+    public void testParseWithoutAllocation()
+    {
+        java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+        {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long tid = Thread.currentThread().getId();
+        ParseResult result = new ParseResult(true);
+        String[] rows = {"2017-08-07 22:00:40", "2017-08-07 22:00:4x", "2017-13-07 22:00:40", "2017-08-07", "20170807220040"};
+        long sum = 0;
+        // early rounds allocate while the JIT compiles the parse path, the last round is measured
+        for (int round = 0; round < 5; round++)
+        {
+            long before = threads.getThreadAllocatedBytes(tid);
+            for (int i = 0; i < 10000; i++)
+            {
+                String row = rows[i % rows.length];
+                if (DateTimeUtil.parseEpoch(row, "yyyy-MM-dd HH:mm:ss", "Asia/Taipei", result))
+                {
+                    sum += result.getValue();
+                }
+                else
+                {
+                    sum += result.getErrorIndex();
+                }
+                sum += DateTimeUtil.parseEpochSecond(row, 0, -1L);
+            }
+            long allocated = threads.getThreadAllocatedBytes(tid) - before;
+            if (round == 4)
+            {
+                // a few bytes may come from the measurement itself
+                assertThat(allocated).as("allocated bytes").isLessThan(1024);
+            }
+        }
+        assertThat(sum).isNotZero();
+    }
 }
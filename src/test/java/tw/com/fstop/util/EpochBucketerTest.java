@@ -0,0 +1,161 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+public class EpochBucketerTest
+{
+    static final String[] ZONES = {"UTC", "Asia/Taipei", "America/New_York", "America/Sao_Paulo", "Australia/Lord_Howe", "Asia/Tehran"};
+    /** 1850-01-01T00:00:00Z */
+    static final long FROM = -3786825600000L;
+    /** 2150-01-01T00:00:00Z */
+    static final long TO = 5680281600000L;
+
+    /**
+     * Bucket start by local date of the epoch and Calendar.
+     */
+    static long expected(long epoch, EpochBucketer.Unit unit, TimeZone zone)
+    {
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(epoch);
+        long day = CivilCalendar.daysFromCivil(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+        long date = CivilCalendar.civilFromDays(day);
+        switch (unit)
+        {
+            case WEEK:
+                date = CivilCalendar.civilFromDays(day - CivilCalendar.floorMod(day + 3, 7));
+                break;
+            case MONTH:
+                date = CivilCalendar.civilFromDays(CivilCalendar.daysFromCivil(CivilCalendar.packedYear(date), CivilCalendar.packedMonth(date), 1));
+                break;
+            case YEAR:
+                date = CivilCalendar.civilFromDays(CivilCalendar.daysFromCivil(CivilCalendar.packedYear(date), 1, 1));
+                break;
+            default:
+                break;
+        }
+        calendar.clear();
+        calendar.set(CivilCalendar.packedYear(date), CivilCalendar.packedMonth(date) - 1, CivilCalendar.packedDay(date));
+        return calendar.getTimeInMillis();
+    }
+
+    @Test
+    public void testCalendarBuckets()
+    {
+        Random random = new Random(15);
+        for (String id : ZONES)
+        {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            for (EpochBucketer.Unit unit : EpochBucketer.Unit.values())
+            {
+                EpochBucketer bucketer = EpochBucketer.of(unit, id);
+                assertThat(bucketer.getTimeZoneID()).isEqualTo(id);
+                EpochBucketer.Cursor cursor = bucketer.cursor();
+                for (int i = 0; i < 3000; i++)
+                {
+                    long epoch = FROM + (long) (random.nextDouble() * (TO - FROM));
+                    long expected = expected(epoch, unit, zone);
+                    assertThat(bucketer.floor(epoch)).as("%s %s %d", id, unit, epoch).isEqualTo(expected);
+                    assertThat(cursor.floor(epoch)).isEqualTo(expected);
+                    assertThat(cursor.getEnd()).isGreaterThan(epoch);
+                    assertThat(cursor.floor(cursor.getEnd())).isEqualTo(cursor.getStart());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDaylightSavingDays()
+    {
+        // 2016-10-16 starts at 01:00 in Sao Paulo, midnight is skipped
+        EpochBucketer days = EpochBucketer.of(EpochBucketer.Unit.DAY, "America/Sao_Paulo");
+        EpochBucketer.Cursor cursor = days.cursor();
+        assertThat(cursor.floor(1476626400000L)).isEqualTo(1476586800000L);
+        assertThat(cursor.getEnd() - cursor.getStart()).isEqualTo(23 * EpochBucketer.ONE_HOUR_MILLIS);
+        // 2017-11-05 is 25 hours long in New York
+        cursor = EpochBucketer.of(EpochBucketer.Unit.DAY, "America/New_York").cursor();
+        cursor.floor(1509883200000L);
+        assertThat(cursor.getEnd() - cursor.getStart()).isEqualTo(25 * EpochBucketer.ONE_HOUR_MILLIS);
+    }
+
+    @Test
+    public void testFixedBuckets()
+    {
+        EpochBucketer fiveMinutes = EpochBucketer.ofMillis(5 * EpochBucketer.ONE_MINUTE_MILLIS);
+        assertThat(fiveMinutes.floor(1502114440291L)).isEqualTo(1502114400000L);
+        assertThat(fiveMinutes.floor(-1L)).isEqualTo(-300000L);
+        EpochBucketer.Cursor cursor = fiveMinutes.cursor();
+        assertThat(cursor.floor(299999L)).isZero();
+        assertThat(cursor.getEnd()).isEqualTo(300000L);
+        try
+        {
+            EpochBucketer.ofMillis(0);
+            fail("IllegalArgumentException expected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            assertThat(e).isNotNull();
+        }
+        try
+        {
+            EpochBucketer.of(EpochBucketer.Unit.DAY, (ZoneDayIndex) null);
+            fail("IllegalArgumentException expected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            assertThat(e).isNotNull();
+        }
+    }
+
+    @Test
+    public void testBulk()
+    {
+        int size = DateTimeBatch.PARALLEL_THRESHOLD * 4;
+        long[] epochs = new long[size];
+        Random random = new Random(16);
+        for (int i = 0; i < size; i++)
+        {
+            epochs[i] = 1262304000000L + (long) (random.nextDouble() * 315360000000L);
+        }
+        Arrays.sort(epochs);
+        EpochBucketer months = EpochBucketer.of(EpochBucketer.Unit.MONTH, "Asia/Taipei");
+        long[] sequential = new long[size];
+        months.floor(epochs, 0, sequential, 0, size);
+        long[] parallel = epochs.clone();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            months.floor(parallel, 0, parallel, 0, size, executor);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        assertThat(parallel).isEqualTo(sequential);
+        for (int i = 0; i < size; i += 97)
+        {
+            assertThat(sequential[i]).isEqualTo(months.floor(epochs[i]));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.text.ParseException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class Iso8601Test
+{
+    // 2017-08-07T14:00:40.291Z
+    static final long EPOCH = 1502114440291L;
+
+    @Test
+    public void testParse()
+    {
+        assertThat(Iso8601.parseEpoch("2017-08-07T14:00:40.291Z", -1L)).isEqualTo(EPOCH);
+        assertThat(Iso8601.parseEpoch("2017-08-07T22:00:40.291+08:00", -1L)).isEqualTo(EPOCH);
+        assertThat(Iso8601.parseEpoch("2017-08-07t22:00:40,291999+08:00", -1L)).isEqualTo(EPOCH);
+        assertThat(Iso8601.parseEpoch("2017-08-07 10:00:40.2910-04:00", -1L)).isEqualTo(EPOCH);
+        assertThat(Iso8601.parseEpoch("2017-08-07T14:00:40z", -1L)).isEqualTo(EPOCH - 291);
+        assertThat(Iso8601.parseEpoch("2017-08-07T14:00:40.2Z", -1L)).isEqualTo(EPOCH - 91);
+        assertThat(Iso8601.parseEpoch("1969-12-31T23:59:59.999Z", 0L)).isEqualTo(-1L);
+        // historical offset with seconds
+        assertThat(Iso8601.parseEpoch("1969-12-31T23:15:30-00:44:30", -1L)).isZero();
+        // leap second rolls to next minute
+        assertThat(Iso8601.parseEpoch("2016-12-31T23:59:60Z", -1L)).isEqualTo(1483228800000L);
+
+        assertThat(Iso8601.parseEpochNano("2017-08-07T14:00:40.291123456Z", -1L)).isEqualTo(EPOCH * 1000000 + 123456);
+        assertThat(Iso8601.parseEpochNano("2017-08-07T14:00:40.2911234567891Z", -1L)).isEqualTo(EPOCH * 1000000 + 123456);
+        assertThat(Iso8601.parseEpochNano("1969-12-31T23:59:59.999999999Z", 0L)).isEqualTo(-1L);
+        ParseResult result = new ParseResult();
+        assertThat(Iso8601.parseEpochNano("2263-01-01T00:00:00Z", 0, result)).isFalse();
+        assertThat(result.getErrorCode()).isEqualTo(ParseResult.FIELD_RANGE);
+
+        // at offset
+        assertThat(Iso8601.parseEpoch("ts=2017-08-07T14:00:40.291Z", 3, result)).isTrue();
+        assertThat(result.getValue()).isEqualTo(EPOCH);
+    }
+
+    @Test
+    public void testParseErrors()
+    {
+        assertError("2017-08-07T14:00:40", ParseResult.TOO_SHORT, 19);
+        assertError("2017-08-07T14:00", ParseResult.TOO_SHORT, 16);
+        assertError("2017-08-07", ParseResult.TOO_SHORT, 10);
+        assertError("2017-08-07T14:00:40.Z", ParseResult.NOT_DIGIT, 20);
+        assertError("2017-08-07T14:00:40.", ParseResult.TOO_SHORT, 20);
+        assertError("2017/08/07T14:00:40Z", ParseResult.LITERAL_MISMATCH, 4);
+        assertError("2017-08-07X14:00:40Z", ParseResult.LITERAL_MISMATCH, 10);
+        assertError("2017-08-07T14:00:40 Z", ParseResult.LITERAL_MISMATCH, 19);
+        assertError("2017-08-07T14:0a:40Z", ParseResult.NOT_DIGIT, 15);
+        assertError("2017-08-07T14:00:40+0800", ParseResult.LITERAL_MISMATCH, 22);
+        assertError("2017-08-07T14:00:40+08:00 ", ParseResult.TRAILING_TEXT, 25);
+        assertError("2017-08-07T14:00:40+24:00", ParseResult.FIELD_RANGE, 20);
+
+        ParseResult lenient = new ParseResult();
+        assertThat(Iso8601.parseEpoch("2017-13-01T00:00:00Z", 0, lenient)).isTrue();
+        assertThat(lenient.getValue()).isEqualTo(Iso8601.parseEpoch("2018-01-01T00:00:00Z", -1L));
+        ParseResult strict = new ParseResult(true);
+        assertThat(Iso8601.parseEpoch("2017-13-01T00:00:00Z", 0, strict)).isFalse();
+        assertThat(strict.getErrorCode()).isEqualTo(ParseResult.FIELD_RANGE);
+        assertThat(strict.getErrorIndex()).isEqualTo(5);
+        assertThat(Iso8601.parseEpoch("2017-02-29T00:00:00Z", 0, strict)).isFalse();
+        assertThat(strict.getErrorIndex()).isEqualTo(8);
+        assertThat(Iso8601.parseEpoch("2016-12-31T23:59:60Z", 0, strict)).isTrue();
+        assertThat(Iso8601.parseEpoch("2016-12-31T23:59:61Z", 0, strict)).isFalse();
+        // a leap second is only at 23:59 UTC
+        assertThat(Iso8601.parseEpoch("2017-01-01T07:59:60+08:00", 0, strict)).isTrue();
+        assertThat(strict.getValue()).isEqualTo(1483228800000L);
+        assertThat(Iso8601.parseEpoch("2016-12-31T18:59:60-05:00", 0, strict)).isTrue();
+        assertThat(Iso8601.parseEpoch("2017-08-07T12:00:60Z", 0, strict)).isFalse();
+        assertThat(strict.getErrorCode()).isEqualTo(ParseResult.FIELD_RANGE);
+        assertThat(strict.getErrorIndex()).isEqualTo(17);
+        assertThat(Iso8601.parseEpoch("2016-12-31T23:59:60+08:00", 0, strict)).isFalse();
+        assertThat(Iso8601.parseEpoch("2017-08-07T12:00:60Z", -1L)).isEqualTo(-1L);
+        assertThat(Iso8601.parseEpoch("2017-08-07T12:00:60Z", 0, lenient)).isTrue();
+        assertThat(lenient.getValue()).isEqualTo(Iso8601.parseEpoch("2017-08-07T12:01:00Z", -1L));
+
+        // convenience methods are strict
+        assertThat(Iso8601.parseEpoch("2017-13-45T99:99:99Z", -1L)).isEqualTo(-1L);
+        assertThat(Iso8601.parseEpochNano("2017-13-45T99:99:99Z", -1L)).isEqualTo(-1L);
+        assertThat(Iso8601.parseEpoch("2017-02-29T00:00:00Z", -1L)).isEqualTo(-1L);
+    }
+
+    static void assertError(String s, int errorCode, int errorIndex)
+    {
+        ParseResult result = new ParseResult();
+        assertThat(Iso8601.parseEpoch(s, 0, result)).as(s).isFalse();
+        assertThat(result.getErrorCode()).as(s).isEqualTo(errorCode);
+        assertThat(result.getErrorIndex()).as(s).isEqualTo(errorIndex);
+        assertThat(Iso8601.parseEpoch(s, Long.MIN_VALUE)).isEqualTo(Long.MIN_VALUE);
+    }
+
+    @Test
+    public void testFormat()
+    {
+        Zone taipei = Zone.of("Asia/Taipei");
+        assertThat(Iso8601.format(EPOCH, Zone.UTC)).isEqualTo("2017-08-07T14:00:40.291Z");
+        assertThat(Iso8601.format(EPOCH, taipei)).isEqualTo("2017-08-07T22:00:40.291+08:00");
+        assertThat(Iso8601.append(new StringBuilder(), EPOCH, Zone.of("America/New_York"), 0).toString())
+            .isEqualTo("2017-08-07T10:00:40-04:00");
+        assertThat(Iso8601.append(new StringBuilder(), -1L, Zone.UTC, Iso8601.MICROS).toString())
+            .isEqualTo("1969-12-31T23:59:59.999000Z");
+        assertThat(Iso8601.appendNano(new StringBuilder(), EPOCH * 1000000 + 123456, taipei, Iso8601.NANOS).toString())
+            .isEqualTo("2017-08-07T22:00:40.291123456+08:00");
+        assertThat(Iso8601.appendNano(new StringBuilder(), -1L, Zone.UTC, Iso8601.NANOS).toString())
+            .isEqualTo("1969-12-31T23:59:59.999999999Z");
+        // Liberia used -00:44:30 until 1972
+        assertThat(Iso8601.format(0L, Zone.of("Africa/Monrovia"))).isEqualTo("1969-12-31T23:15:30.000-00:44:30");
+
+        char[] buf = new char[Iso8601.MAX_LENGTH];
+        try
+        {
+            Iso8601.format(EPOCH, taipei, Iso8601.NANOS, buf, 10);
+            fail("no room");
+        }
+        catch (ArrayIndexOutOfBoundsException e)
+        {
+        }
+        try
+        {
+            Iso8601.format(Long.MAX_VALUE, Zone.UTC, 3, buf, 0);
+            fail("year 10000+");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+    }
+
+    @Test
+    public void testSameAsDateFormat() throws ParseException
+    {
+        Random random = new Random(23);
+        String[] zones = {"UTC", "Asia/Taipei", "America/New_York", "Australia/Lord_Howe", "Asia/Kolkata"};
+        char[] buf = new char[Iso8601.MAX_LENGTH];
+        for (int i = 0; i < 20000; i++)
+        {
+            // 1900 to 2100
+            long epoch = -2208988800000L + (long) (random.nextDouble() * 6311433600000L);
+            String id = zones[i % zones.length];
+            Zone zone = Zone.of(id);
+            String expected = DateTimeUtil.epochToLocalDateString(epoch, "yyyy-MM-dd'T'HH:mm:ss.SSSXXX", id);
+            int n = Iso8601.format(epoch, zone, Iso8601.MILLIS, buf, 0);
+            String text = new String(buf, 0, n);
+            if (zone.getOffset(epoch) % 60000 == 0)
+            {
+                assertThat(text).isEqualTo(expected);
+            }
+            assertThat(Iso8601.parseEpoch(text, Long.MIN_VALUE)).isEqualTo(epoch);
+            assertThat(Iso8601.parseEpoch(expected, Long.MIN_VALUE)).isEqualTo(DateTimeUtil.dateStringToEpoch(expected, "yyyy-MM-dd'T'HH:mm:ss.SSSXXX", id));
+
+            long nano = epoch * 1000000 + random.nextInt(1000000);
+            n = Iso8601.formatNano(nano, zone, Iso8601.NANOS, buf, 0);
+            assertThat(Iso8601.parseEpochNano(new String(buf, 0, n), Long.MIN_VALUE)).isEqualTo(nano);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.text.ParseException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RocDateTest
+{
+    static final Zone TAIPEI = Zone.of("Asia/Taipei");
+
+    @Test
+    public void testParse() throws ParseException
+    {
+        long epoch = DateTimeUtil.dateStringToEpoch("20170807220040", "yyyyMMddHHmmss", TAIPEI);
+        long midnight = DateTimeUtil.dateStringToEpoch("20170807", "yyyyMMdd", TAIPEI);
+        assertThat(RocDate.parseEpoch("1060807", TAIPEI, -1L)).isEqualTo(midnight);
+        assertThat(RocDate.parseEpoch("106/08/07", TAIPEI, -1L)).isEqualTo(midnight);
+        assertThat(RocDate.parseEpoch("1060807220040", TAIPEI, -1L)).isEqualTo(epoch);
+        assertThat(RocDate.parseEpoch("106/08/07 22:00:40", TAIPEI, -1L)).isEqualTo(epoch);
+        assertThat(RocDate.parseEpochSecond("1060807220040", TAIPEI, -1L)).isEqualTo(1502114440L);
+        assertThat(RocDate.parseEpoch("99/12/31", TAIPEI, -1L)).isEqualTo(DateTimeUtil.dateStringToEpoch("20101231", "yyyyMMdd", TAIPEI));
+        assertThat(RocDate.parseEpoch("0991231", TAIPEI, -1L)).isEqualTo(DateTimeUtil.dateStringToEpoch("20101231", "yyyyMMdd", TAIPEI));
+        assertThat(RocDate.parseEpoch("1/01/01", Zone.UTC, -1L)).isEqualTo(DateTimeUtil.dateStringToEpoch("19120101", "yyyyMMdd", Zone.UTC));
+
+        ParseResult result = new ParseResult();
+        assertThat(RocDate.parseEpoch("x1060807", 1, TAIPEI, result)).isTrue();
+        assertThat(result.getValue()).isEqualTo(midnight);
+        // lenient, month 13 rolls to next year
+        assertThat(RocDate.parseEpoch("1061301", 0, TAIPEI, result)).isTrue();
+        assertThat(result.getValue()).isEqualTo(DateTimeUtil.dateStringToEpoch("20180101", "yyyyMMdd", TAIPEI));
+
+        assertThat(DateTimeUtil.rocDateStringToEpoch("106/08/07 22:00:40", TAIPEI)).isEqualTo(epoch);
+        assertThat(DateTimeUtil.rocDateStringToEpochSecond("1060807220040", TAIPEI)).isEqualTo(1502114440L);
+        assertThat(DateTimeUtil.rocDateStringToEpoch("106/08/07 22:00:40", "Asia/Taipei")).isEqualTo(epoch);
+        assertThat(DateTimeUtil.rocDateStringToEpochSecond("1060807140040", "UTC")).isEqualTo(1502114440L);
+        assertThat(DateTimeUtil.rocDateStringToEpochSecond("1060807220040", (String) null))
+            .isEqualTo(DateTimeUtil.rocDateStringToEpochSecond("1060807220040", Zone.current()));
+        try
+        {
+            DateTimeUtil.rocDateStringToEpoch("106/08/7", TAIPEI);
+            fail("malformed");
+        }
+        catch (ParseException e)
+        {
+            assertThat(e.getErrorOffset()).isEqualTo(8);
+        }
+    }
+
+    @Test
+    public void testErrors()
+    {
+        ParseResult strict = new ParseResult(true);
+        assertError("106080", strict, ParseResult.TOO_SHORT, 6);
+        assertError("10608a7", strict, ParseResult.NOT_DIGIT, 5);
+        assertError("10a0807", strict, ParseResult.NOT_DIGIT, 2);
+        assertError("106-08-07", strict, ParseResult.NOT_DIGIT, 3);
+        assertError("106/08-07", strict, ParseResult.LITERAL_MISMATCH, 6);
+        assertError("106/08/07T22:00:40", strict, ParseResult.TRAILING_TEXT, 9);
+        assertError("1060807 ", strict, ParseResult.TRAILING_TEXT, 7);
+        assertError("106080722004", strict, ParseResult.TOO_SHORT, 12);
+        assertError("0000101", strict, ParseResult.FIELD_RANGE, 0);
+        assertError("1061301", strict, ParseResult.FIELD_RANGE, 3);
+        assertError("1050230", strict, ParseResult.FIELD_RANGE, 5);
+        assertError("106/08/07 24:00:00", strict, ParseResult.FIELD_RANGE, 10);
+        assertError("1060807226000", strict, ParseResult.FIELD_RANGE, 9);
+        assertError("", strict, ParseResult.TOO_SHORT, 0);
+        assertThat(RocDate.parseEpoch("1050229", 0, Zone.UTC, strict)).isTrue();
+    }
+
+    static void assertError(String s, ParseResult result, int errorCode, int errorIndex)
+    {
+        assertThat(RocDate.parseEpoch(s, 0, TAIPEI, result)).as(s).isFalse();
+        assertThat(result.getErrorCode()).as(s).isEqualTo(errorCode);
+        assertThat(result.getErrorIndex()).as(s).isEqualTo(errorIndex);
+    }
+
+    @Test
+    public void testFormat()
+    {
+        long epoch = 1502114440291L;
+        assertThat(RocDate.format(epoch, TAIPEI, RocDate.DATE)).isEqualTo("1060807");
+        assertThat(RocDate.format(epoch, TAIPEI, RocDate.DATE_TIME)).isEqualTo("1060807220040");
+        assertThat(RocDate.format(epoch, TAIPEI, RocDate.SLASH_DATE)).isEqualTo("106/08/07");
+        assertThat(RocDate.format(epoch, TAIPEI, RocDate.SLASH_DATE_TIME)).isEqualTo("106/08/07 22:00:40");
+        assertThat(RocDate.append(new StringBuilder("d="), epoch, Zone.UTC, RocDate.SLASH_DATE_TIME).toString()).isEqualTo("d=106/08/07 14:00:40");
+        assertThat(DateTimeUtil.epochToRocDateString(epoch, RocDate.DATE, TAIPEI)).isEqualTo("1060807");
+        assertThat(DateTimeUtil.epochSecondToRocDateString(1502114440L, RocDate.SLASH_DATE_TIME, TAIPEI)).isEqualTo("106/08/07 22:00:40");
+        assertThat(DateTimeUtil.epochToRocDateString(epoch, RocDate.DATE_TIME, "UTC")).isEqualTo("1060807140040");
+        assertThat(DateTimeUtil.epochSecondToRocDateString(1502114440L, RocDate.SLASH_DATE, "Pacific/Tarawa")).isEqualTo("106/08/08");
+        assertThat(DateTimeUtil.epochToRocDateString(epoch, RocDate.DATE_TIME, ""))
+            .isEqualTo(DateTimeUtil.epochToRocDateString(epoch, RocDate.DATE_TIME, Zone.current()));
+
+        char[] buf = new char[RocDate.MAX_LENGTH + 2];
+        assertThat(RocDate.format(epoch, TAIPEI, RocDate.SLASH_DATE_TIME, buf, 2)).isEqualTo(RocDate.MAX_LENGTH);
+        assertThat(new String(buf, 2, RocDate.MAX_LENGTH)).isEqualTo("106/08/07 22:00:40");
+        try
+        {
+            RocDate.format(epoch, TAIPEI, RocDate.SLASH_DATE_TIME, buf, 3);
+            fail("no room");
+        }
+        catch (ArrayIndexOutOfBoundsException e)
+        {
+        }
+        try
+        {
+            RocDate.format(-2000000000000L, TAIPEI, RocDate.DATE);
+            fail("before ROC year 1");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+        try
+        {
+            RocDate.format(epoch, TAIPEI, 4);
+            fail("unknown layout");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+    }
+
+    @Test
+    public void testSameAsGregorian() throws ParseException
+    {
+        // Taipei has no offset transitions after 1980
+        Random random = new Random(1502114440291L);
+        long from = 315504000000L;
+        long range = 3786825600000L;
+        ParseResult strict = new ParseResult(true);
+        for (int i = 0; i < 5000; i++)
+        {
+            long epoch = (from + (long) (random.nextDouble() * range)) / 1000 * 1000;
+            String gregorian = DateTimeUtil.epochToLocalDateString(epoch, "yyyyMMddHHmmss", TAIPEI);
+            String roc = RocDate.format(epoch, TAIPEI, RocDate.DATE_TIME);
+            int year = Integer.parseInt(gregorian.substring(0, 4)) - RocDate.YEAR_OFFSET;
+            assertThat(roc).isEqualTo(String.format("%03d", year) + gregorian.substring(4));
+            assertThat(RocDate.parseEpoch(roc, 0, TAIPEI, strict)).isTrue();
+            assertThat(strict.getValue()).isEqualTo(epoch);
+            String slash = RocDate.format(epoch, TAIPEI, RocDate.SLASH_DATE_TIME);
+            assertThat(RocDate.parseEpoch(slash, TAIPEI, -1L)).isEqualTo(epoch);
+            assertThat(RocDate.parseEpoch(RocDate.format(epoch, TAIPEI, RocDate.SLASH_DATE), TAIPEI, -1L))
+                .isEqualTo(DateTimeUtil.dateStringToEpoch(gregorian.substring(0, 8), "yyyyMMdd", TAIPEI));
+        }
+    }
+
+    @Test
+    public void testBatch()
+    {
+        long[] epochs = {1502114440000L, 1293724800000L, 1483228799000L};
+        String[] dates = new String[epochs.length];
+        DateTimeBatch.epochToRocDateString(epochs, 0, dates, 0, epochs.length, RocDate.DATE_TIME, TAIPEI);
+        assertThat(dates).containsExactly("1060807220040", "0991231000000", "1060101075959");
+
+        char[] record = new char[7 * 3 + 1];
+        assertThat(DateTimeBatch.epochToRocDate(epochs, 0, record, 1, 3, RocDate.DATE, TAIPEI)).isEqualTo(21);
+        assertThat(new String(record, 1, 21)).isEqualTo("106080709912311060101");
+        try
+        {
+            DateTimeBatch.epochToRocDate(epochs, 0, record, 2, 3, RocDate.DATE, TAIPEI);
+            fail("no room");
+        }
+        catch (ArrayIndexOutOfBoundsException e)
+        {
+        }
+
+        CharSequence[] src = {"1060807220040", "bad", "106/08/07 22:00:40", "1061301"};
+        long[] parsed = new long[src.length];
+        assertThat(DateTimeBatch.parseRocEpochSecond(src, 0, parsed, 0, src.length, TAIPEI, true, -1L)).isEqualTo(2);
+        assertThat(parsed).containsExactly(1502114440L, -1L, 1502114440L, -1L);
+        assertThat(DateTimeBatch.parseRocEpoch(src, 0, parsed, 0, src.length, TAIPEI, false, -1L)).isEqualTo(1);
+        assertThat(parsed[0]).isEqualTo(1502114440000L);
+        assertThat(parsed[1]).isEqualTo(-1L);
+    }
+}
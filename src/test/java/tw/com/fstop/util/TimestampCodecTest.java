@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TimestampCodecTest
+{
+    /**
+     * Nearly sorted epoch seconds from 2017-08-07T14:00:40Z, one value about every 10 seconds.
+     */
+    static long[] nearlySorted(int n, long seed)
+    {
+        Random random = new Random(seed);
+        long[] values = new long[n];
+        long t = 1502114440L;
+        for (int i = 0; i < n; i++)
+        {
+            t += 10;
+            values[i] = t + random.nextInt(5) - 2;
+        }
+        return values;
+    }
+
+    @Test
+    public void testRoundTrip()
+    {
+        Random random = new Random(21);
+        long[] extremes = {0L, -1L, Long.MIN_VALUE, Long.MAX_VALUE, 1L, Long.MIN_VALUE, Long.MAX_VALUE, -1502114440291L};
+        long[] randoms = new long[1000];
+        for (int i = 0; i < randoms.length; i++)
+        {
+            randoms[i] = random.nextLong();
+        }
+        for (long[] values : new long[][] {extremes, randoms, nearlySorted(10000, 21), new long[0]})
+        {
+            for (int blockSize : new int[] {1, 2, 3, 128})
+            {
+                TimestampCodec codec = new TimestampCodec(blockSize);
+                ByteBuffer buf = ByteBuffer.allocate(values.length * 10 + 16);
+                TimestampCodec.Index index = codec.encode(values, 0, values.length, buf);
+                assertThat(index.getCount()).isEqualTo(values.length);
+                assertThat(index.getLength()).isEqualTo(buf.position());
+                buf.flip();
+
+                long[] decoded = new long[values.length];
+                codec.decode(buf.duplicate(), decoded, 0, values.length);
+                assertThat(decoded).isEqualTo(values);
+
+                // streaming
+                TimestampCodec.Decoder decoder = codec.decoder(buf.duplicate());
+                for (int i = 0; i < values.length; i++)
+                {
+                    assertThat(decoder.hasNext()).isTrue();
+                    assertThat(decoder.next()).isEqualTo(values[i]);
+                }
+                assertThat(decoder.hasNext()).isFalse();
+            }
+        }
+    }
+
+    @Test
+    public void testSize()
+    {
+        long[] values = nearlySorted(100000, 7);
+        ByteBuffer buf = ByteBuffer.allocate(values.length * 10);
+        new TimestampCodec().encode(values, 0, values.length, buf);
+        // 8 bytes per value unpacked
+        assertThat(buf.position()).isLessThan(values.length * 8 / 6);
+    }
+
+    @Test
+    public void testSeekAndIndex()
+    {
+        long[] values = nearlySorted(5000, 9);
+        TimestampCodec codec = new TimestampCodec(64);
+        ByteBuffer buf = ByteBuffer.allocate(values.length * 10 + 1024);
+        buf.put((byte) 42);
+        TimestampCodec.Index index = codec.encode(values, 0, values.length, buf);
+        assertThat(index.getBlockCount()).isEqualTo((5000 + 63) / 64);
+        // index written after packed values
+        index.write(buf);
+        buf.flip();
+        buf.get();
+
+        ByteBuffer in = buf.slice();
+        in.position(index.getLength());
+        TimestampCodec.Index read = TimestampCodec.Index.read(in);
+        assertThat(read.getCount()).isEqualTo(index.getCount());
+        assertThat(read.getBlockCount()).isEqualTo(index.getBlockCount());
+        in.position(0);
+
+        TimestampCodec.Decoder decoder = codec.decoder(in, read);
+        Random random = new Random(9);
+        for (int i = 0; i < 1000; i++)
+        {
+            int at = random.nextInt(values.length);
+            assertThat(decoder.seek(read, at).next()).isEqualTo(values[at]);
+        }
+        decoder.seek(read, values.length - 2);
+        assertThat(decoder.next()).isEqualTo(values[values.length - 2]);
+        assertThat(decoder.next()).isEqualTo(values[values.length - 1]);
+        // index follows the values, decoder stops at count of the index
+        assertThat(decoder.hasNext()).isFalse();
+        assertThat(decoder.seek(read, values.length).hasNext()).isFalse();
+    }
+
+    @Test
+    public void testCompact()
+    {
+        String[] texts = {"20170807220040", "20170807220050", "20170807220100", "20000229235959", "19700101000000"};
+        TimestampCodec codec = new TimestampCodec(2);
+        ByteBuffer buf = ByteBuffer.allocate(256);
+        TimestampCodec.Encoder encoder = codec.encoder(buf);
+        assertThat(encoder.add(texts, 0, texts.length)).isEqualTo(-1);
+        assertThat(encoder.add("20171301000000", 0)).isFalse();
+        assertThat(encoder.add(new CharSequence[] {"2017080722", "20170807220040"}, 0, 2)).isEqualTo(0);
+        assertThat(encoder.count()).isEqualTo(texts.length);
+        buf.flip();
+
+        TimestampCodec.Decoder decoder = codec.decoder(buf.duplicate());
+        char[] chars = new char[14];
+        for (String text : texts)
+        {
+            assertThat(decoder.nextCompact(chars, 0)).isEqualTo(14);
+            assertThat(new String(chars)).isEqualTo(text);
+        }
+        decoder = codec.decoder(buf.duplicate());
+        assertThat(decoder.nextDateString("yyyy-MM-dd HH:mm:ss", Zone.of("Asia/Taipei"), new StringBuilder()).toString())
+            .isEqualTo("2017-08-08 06:00:40");
+    }
+
+    @Test
+    public void testOverflow()
+    {
+        TimestampCodec codec = new TimestampCodec();
+        ByteBuffer buf = ByteBuffer.allocate(3);
+        TimestampCodec.Encoder encoder = codec.encoder(buf);
+        encoder.add(1L);
+        try
+        {
+            encoder.add(Long.MAX_VALUE);
+            fail("buffer full");
+        }
+        catch (BufferOverflowException e)
+        {
+        }
+        // nothing of the failed value is written
+        assertThat(buf.position()).isEqualTo(1);
+        assertThat(encoder.count()).isEqualTo(1);
+    }
+}
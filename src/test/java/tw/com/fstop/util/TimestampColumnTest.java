@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TimestampColumnTest
+{
+    static long[] randomEpochs(int n, long seed)
+    {
+        Random random = new Random(seed);
+        long[] values = new long[n];
+        for (int i = 0; i < n; i++)
+        {
+            // many duplicates and a wide range
+            values[i] = i % 3 == 0 ? 1502114440000L + random.nextInt(100) * 1000L : 946684800000L + (long) (random.nextDouble() * 1262304000000L);
+        }
+        return values;
+    }
+
+    @Test
+    public void testSort()
+    {
+        for (int n : new int[] {0, 1, 2, 31, 33, 1000, 100000})
+        {
+            long[] values = randomEpochs(n, n);
+            TimestampColumn column = TimestampColumn.allocateDirect(n);
+            column.add(values, 0, n);
+            assertThat(column.size()).isEqualTo(n);
+            column.sort();
+            assertThat(column.isSorted()).isTrue();
+            Arrays.sort(values);
+            long[] sorted = new long[n];
+            column.get(0, sorted, 0, n);
+            assertThat(sorted).isEqualTo(values);
+        }
+
+        // already sorted, reversed and constant columns
+        long[][] cases = new long[3][5000];
+        for (int i = 0; i < 5000; i++)
+        {
+            cases[0][i] = i;
+            cases[1][i] = 5000 - i;
+            cases[2][i] = 7;
+        }
+        for (long[] values : cases)
+        {
+            TimestampColumn column = TimestampColumn.allocateDirect(values.length);
+            column.add(values, 0, values.length);
+            column.sort();
+            long[] sorted = new long[values.length];
+            column.get(0, sorted, 0, values.length);
+            long[] expected = values.clone();
+            Arrays.sort(expected);
+            assertThat(sorted).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void testRange()
+    {
+        long[] values = randomEpochs(20000, 22);
+        TimestampColumn column = TimestampColumn.allocateDirect(values.length);
+        column.add(values, 0, values.length);
+        assertThat(column.isSorted()).isFalse();
+
+        long from = 1502114440000L;
+        long to = 1502114440000L + 50000L;
+        int expected = 0;
+        for (long v : values)
+        {
+            if (v >= from && v < to)
+            {
+                expected++;
+            }
+        }
+        assertThat(expected).isGreaterThan(1000);
+        assertThat(column.count(from, to)).isEqualTo(expected);
+        assertThat(select(column, from, to)).isEqualTo(expected);
+
+        column.sort();
+        assertThat(column.count(from, to)).isEqualTo(expected);
+        assertThat(select(column, from, to)).isEqualTo(expected);
+        assertThat(column.count(to, from)).isZero();
+        int first = column.lowerBound(from);
+        assertThat(column.get(first)).isGreaterThanOrEqualTo(from);
+        assertThat(column.get(first - 1)).isLessThan(from);
+        assertThat(column.lowerBound(Long.MAX_VALUE)).isEqualTo(column.size());
+
+        column.set(0, Long.MAX_VALUE);
+        assertThat(column.isSorted()).isFalse();
+        try
+        {
+            column.lowerBound(from);
+            fail("not sorted");
+        }
+        catch (IllegalStateException e)
+        {
+        }
+    }
+
+    /**
+     * Select in pages of 100 rows, check every row and return total.
+     */
+    static int select(TimestampColumn column, long from, long to)
+    {
+        int[] rows = new int[100];
+        int total = 0;
+        int next = 0;
+        int n;
+        do
+        {
+            n = column.select(from, to, next, rows);
+            for (int i = 0; i < n; i++)
+            {
+                assertThat(column.get(rows[i])).isBetween(from, to - 1);
+                assertThat(rows[i]).isGreaterThanOrEqualTo(next);
+                next = rows[i] + 1;
+            }
+            total += n;
+        }
+        while (n == rows.length);
+        return total;
+    }
+
+    @Test
+    public void testView()
+    {
+        TimestampColumn column = TimestampColumn.allocateDirect(4);
+        column.add(1502114440291L);
+        column.add(0L);
+        List<String> view = column.view("yyyy-MM-dd HH:mm:ss", Zone.of("Asia/Taipei"));
+        assertThat(view).containsExactly("2017-08-07 22:00:40", "1970-01-01 08:00:00");
+        column.add(-1L);
+        assertThat(view).hasSize(3);
+        assertThat(view.get(2)).isEqualTo("1970-01-01 07:59:59");
+
+        TimestampColumn.View compact = column.view("yyyyMMddHHmmss", Zone.UTC);
+        assertThat(compact.append(0, new StringBuilder()).toString()).isEqualTo("20170807140040");
+        char[] chars = new char[14];
+        assertThat(compact.write(0, chars, 0)).isEqualTo(14);
+        assertThat(new String(chars)).isEqualTo("20170807140040");
+        ByteBuffer bytes = ByteBuffer.allocate(14);
+        assertThat(compact.put(1, bytes)).isEqualTo(14);
+        assertThat(new String(bytes.array())).isEqualTo("19700101000000");
+        try
+        {
+            view.get(3);
+            fail("out of column");
+        }
+        catch (IndexOutOfBoundsException e)
+        {
+        }
+    }
+
+    @Test
+    public void testMap() throws IOException
+    {
+        File file = File.createTempFile("column", ".bin");
+        file.deleteOnExit();
+        long[] values = randomEpochs(1000, 5);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            TimestampColumn column = TimestampColumn.map(channel, FileChannel.MapMode.READ_WRITE, 16, values.length);
+            assertThat(column.size()).isEqualTo(values.length);
+            for (int i = 0; i < values.length; i++)
+            {
+                column.set(i, values[i]);
+            }
+            column.sort();
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        raf = new RandomAccessFile(file, "r");
+        try
+        {
+            TimestampColumn column = TimestampColumn.map(raf.getChannel(), FileChannel.MapMode.READ_ONLY, 16, values.length);
+            assertThat(column.isSorted()).isTrue();
+            Arrays.sort(values);
+            assertThat(column.get(0)).isEqualTo(values[0]);
+            assertThat(column.get(values.length - 1)).isEqualTo(values[values.length - 1]);
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+}
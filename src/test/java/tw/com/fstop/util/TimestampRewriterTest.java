@@ -0,0 +1,181 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TimestampRewriterTest
+{
+    @Test
+    public void testToEpochSecond() throws IOException
+    {
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        Random random = new Random(1502115795L);
+        int valid = 0;
+        for (int i = 0; i < 2000; i++)
+        {
+            long epochSecond = 631152000L + (long) (random.nextDouble() * 1262304000L);
+            String rest = " line " + i + " " + repeat('x', random.nextInt(i % 100 == 0 ? 400 : 40)) + "\n";
+            if (i % 50 == 7)
+            {
+                input.append("not a timestamp").append(rest);
+                expected.append("not a timestamp").append(rest);
+                continue;
+            }
+            input.append(DateTimeUtil.epochSecondToDateString(epochSecond, "yyyyMMddHHmmss")).append(rest);
+            expected.append(epochSecond).append(rest);
+            valid++;
+        }
+        input.append("20170807220040 no newline");
+        expected.append("1502143240 no newline");
+        valid++;
+        
+        TimestampRewriter rewriter = new TimestampRewriter(null, null, null, null, 64, 256);
+        assertThat(rewriteFile(rewriter, input.toString())).isEqualTo(expected.toString());
+        assertThat(rewriteStream(rewriter, input.toString())).isEqualTo(expected.toString());
+        
+        rewriter = new TimestampRewriter(null, null);
+        assertThat(rewriteFile(rewriter, input.toString())).isEqualTo(expected.toString());
+        
+        TimestampRewriter.Result result = rewriter.rewrite(Channels.newChannel(new ByteArrayInputStream(input.toString().getBytes("US-ASCII"))),
+            Channels.newChannel(new ByteArrayOutputStream()));
+        System.out.println(result);
+        assertThat(result.getLines()).isEqualTo(2001);
+        assertThat(result.getConverted()).isEqualTo(valid);
+        assertThat(result.getSkipped()).isEqualTo(2001 - valid);
+        assertThat(result.getBytesIn()).isEqualTo(input.length());
+        assertThat(result.getBytesOut()).isEqualTo(expected.length());
+    }
+    
+    @Test
+    public void testToLocalDateString() throws IOException
+    {
+        String input = "20170807140040|a\n19700101000000|b\n\n2017|c\n";
+        String expected = "2017-08-07 22:00:40|a\n1970-01-01 08:00:00|b\n\n2017|c\n";
+        TimestampRewriter rewriter = new TimestampRewriter("yyyy-MM-dd HH:mm:ss", "Asia/Taipei");
+        assertThat(rewriteFile(rewriter, input)).isEqualTo(expected);
+        
+        // pattern formatted input back to epoch seconds
+        rewriter = new TimestampRewriter("yyyy-MM-dd HH:mm:ss", "Asia/Taipei", null, null);
+        assertThat(rewriteStream(rewriter, expected)).isEqualTo("1502114440|a\n0|b\n\n2017|c\n");
+        
+        // quoted literal in input format
+        rewriter = new TimestampRewriter("yyyy-MM-dd'T'HH:mm:ss", "UTC", "yyyyMMddHHmmss", "UTC");
+        assertThat(rewriteStream(rewriter, "2017-08-07T14:00:40 x\n")).isEqualTo("20170807140040 x\n");
+
+        // two digit years are not compiled by DatePattern, parsed and formatted by SimpleDateFormat
+        rewriter = new TimestampRewriter("yyMMddHHmmss", "UTC", "yyMMdd HH:mm", "Asia/Taipei");
+        assertThat(rewriteStream(rewriter, "170807140040 x\n17080714004x y\n")).isEqualTo("170807 22:00 x\n17080714004x y\n");
+        assertThat(TimestampRewriter.fixedWidth("yyyy-MM-dd'T'HH:mm:ss")).isEqualTo(19);
+        assertThat(TimestampRewriter.fixedWidth("HH'h'''")).isEqualTo(4);
+    }
+    
+    @Test
+    public void testShortReads() throws IOException
+    {
+        // a socket or pipe returns fewer bytes than the window has room for
+        final byte[] input = "20170807140040|a\n19700101000000|b\n20170807140040 no newline".getBytes("US-ASCII");
+        ReadableByteChannel in = new ReadableByteChannel()
+        {
+            int position;
+
+            public int read(ByteBuffer dst)
+            {
+                if (position == input.length)
+                {
+                    return -1;
+                }
+                int n = Math.min(Math.min(5, dst.remaining()), input.length - position);
+                dst.put(input, position, n);
+                position += n;
+                return n;
+            }
+
+            public boolean isOpen()
+            {
+                return true;
+            }
+
+            public void close()
+            {
+            }
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TimestampRewriter rewriter = new TimestampRewriter(null, null, null, null, 64, 256);
+        TimestampRewriter.Result result = rewriter.rewrite(in, Channels.newChannel(out));
+        assertThat(new String(out.toByteArray(), "US-ASCII")).isEqualTo("1502114440|a\n0|b\n1502114440 no newline");
+        assertThat(result.getConverted()).isEqualTo(3);
+        assertThat(result.getSkipped()).isZero();
+    }
+    
+    static String rewriteFile(TimestampRewriter rewriter, String input) throws IOException
+    {
+        File in = File.createTempFile("rewriter", ".in");
+        File out = File.createTempFile("rewriter", ".out");
+        try
+        {
+            FileOutputStream stream = new FileOutputStream(in);
+            stream.write(input.getBytes("US-ASCII"));
+            stream.close();
+            
+            rewriter.rewrite(in, out);
+            
+            FileInputStream result = new FileInputStream(out);
+            byte[] bytes = new byte[(int) out.length()];
+            int n = 0;
+            while (n < bytes.length)
+            {
+                n += result.read(bytes, n, bytes.length - n);
+            }
+            result.close();
+            return new String(bytes, "US-ASCII");
+        }
+        finally
+        {
+            in.delete();
+            out.delete();
+        }
+    }
+    
+    static String rewriteStream(TimestampRewriter rewriter, String input) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rewriter.rewrite(Channels.newChannel(new ByteArrayInputStream(input.getBytes("US-ASCII"))), Channels.newChannel(out));
+        return new String(out.toByteArray(), "US-ASCII");
+    }
+    
+    static String repeat(char c, int n)
+    {
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++)
+        {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,129 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class ZoneDayIndexTest
+{
+    static final String[] ZONES = {"UTC", "Asia/Taipei", "America/Sao_Paulo", "Pacific/Kiritimati", "Pacific/Apia", "America/St_Johns"};
+    /** 1850-01-01T00:00:00Z */
+    static final long FROM = -3786825600000L;
+    /** 2150-01-01T00:00:00Z */
+    static final long TO = 5680281600000L;
+
+    @Test
+    public void testSameAsCalendar()
+    {
+        Random random = new Random(16);
+        for (String id : ZONES)
+        {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd");
+            format.setTimeZone(zone);
+            Calendar calendar = Calendar.getInstance(zone);
+            ZoneDayIndex index = ZoneDayIndex.forID(id);
+            assertThat(ZoneDayIndex.forID(id)).isSameAs(index);
+            ZoneDayIndex small = ZoneDayIndex.build(id, 2000, 2009);
+            for (int i = 0; i < 20000; i++)
+            {
+                long epoch = FROM + (long) (random.nextDouble() * (TO - FROM));
+                int expected = Integer.parseInt(format.format(new Date(epoch)));
+                assertThat(index.localDate(epoch)).as("%s %d", id, epoch).isEqualTo(expected);
+                assertThat(small.localDate(epoch)).as("%s %d", id, epoch).isEqualTo(expected);
+
+                long day = index.dayNumber(epoch);
+                calendar.clear();
+                calendar.set(expected / 10000, expected / 100 % 100 - 1, expected % 100);
+                assertThat(index.dayStart(day)).isEqualTo(calendar.getTimeInMillis());
+                assertThat(small.dayStart(day)).isEqualTo(calendar.getTimeInMillis());
+                assertThat(index.dayStart(day)).isLessThanOrEqualTo(epoch);
+                assertThat(index.dayStart(day + 1)).isGreaterThan(epoch);
+            }
+        }
+    }
+
+    @Test
+    public void testCacheEviction()
+    {
+        ZoneDayIndex hot = ZoneDayIndex.forID("Asia/Taipei");
+        ZoneDayIndex gmt = ZoneDayIndex.forID("GMT");
+        for (int i = 0; i < ZoneDayIndex.MAX_CACHED_INDEXES * 2; i++)
+        {
+            // unknown ids share the index of GMT
+            assertThat(ZoneDayIndex.forID("No/SuchZone" + i)).isSameAs(gmt);
+            assertThat(ZoneDayIndex.forID("Asia/Taipei")).isSameAs(hot);
+            assertThat(ZoneDayIndex.forID("GMT")).isSameAs(gmt);
+        }
+        assertThat(ZoneDayIndex.cachedCount()).isEqualTo(ZoneDayIndex.MAX_CACHED_INDEXES);
+        assertThat(ZoneDayIndex.forID("No/SuchZone0")).isSameAs(gmt);
+        assertThat(ZoneDayIndex.forID("No/SuchZone0").getID()).isEqualTo("GMT");
+        assertThat(ZoneDayIndex.cachedCount()).isEqualTo(ZoneDayIndex.MAX_CACHED_INDEXES);
+    }
+
+    @Test
+    public void testSkippedDay()
+    {
+        // Samoa skipped 2011-12-30
+        ZoneDayIndex index = ZoneDayIndex.forID("Pacific/Apia");
+        long lastOf29 = 1325239199999L;
+        assertThat(index.localDate(lastOf29)).isEqualTo(20111229);
+        assertThat(index.localDate(lastOf29 + 1)).isEqualTo(20111231);
+
+        long[] epochs = {lastOf29, lastOf29 + 1};
+        int[] dates = new int[3];
+        index.localDate(epochs, 0, dates, 1, 2);
+        assertThat(dates).containsExactly(0, 20111229, 20111231);
+    }
+
+    @Test
+    public void testInvalidRange()
+    {
+        try
+        {
+            ZoneDayIndex.build("UTC", 2010, 2000);
+            fail("IllegalArgumentException expected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            assertThat(e).isNotNull();
+        }
+        try
+        {
+            ZoneDayIndex.build("UTC", 2000, Integer.MAX_VALUE);
+            fail("IllegalArgumentException expected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            assertThat(e).isNotNull();
+        }
+        try
+        {
+            ZoneDayIndex.build("UTC", 1582, 2000);
+            fail("IllegalArgumentException expected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            assertThat(e).isNotNull();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.Calendar;
+import java.util.Random;
+import java.util.SimpleTimeZone;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class ZoneOffsetTableTest
+{
+    static final String[] ZONES = {
+        "UTC", "Asia/Taipei", "America/New_York", "Europe/London", "Australia/Lord_Howe", "Pacific/Apia",
+        "America/Sao_Paulo", "Africa/Casablanca", "Europe/Moscow", "Asia/Kolkata", "No/SuchZone"
+    };
+    
+    @Test
+    public void testSameAsCalendar()
+    {
+        Random random = new Random(1502114440291L);
+        for (String id : ZONES)
+        {
+            ZoneOffsetTable table = ZoneOffsetTable.forID(id);
+            assertThat(ZoneOffsetTable.forID(id)).isSameAs(table);
+            
+            for (int i = 0; i < table.getTransitionCount(); i++)
+            {
+                long at = table.getTransition(i);
+                assertSameAsCalendar(table, id, at - 1000);
+                assertSameAsCalendar(table, id, at - 1);
+                assertSameAsCalendar(table, id, at);
+                assertSameAsCalendar(table, id, at + 1000);
+            }
+            for (int i = 0; i < 20000; i++)
+            {
+                long epoch = table.getRangeStart() + (long) (random.nextDouble() * (table.getRangeEnd() - table.getRangeStart()));
+                assertSameAsCalendar(table, id, epoch);
+            }
+            // out of range falls back to Calendar
+            assertSameAsCalendar(table, id, table.getRangeStart() - 1);
+            assertSameAsCalendar(table, id, table.getRangeEnd());
+            assertSameAsCalendar(table, id, 253402300799000L);
+        }
+        
+        assertThat(ZoneOffsetTable.forID("UTC").getTransitionCount()).isZero();
+        assertThat(ZoneOffsetTable.forID("America/New_York").getTransitionCount()).isGreaterThan(300);
+    }
+    
+    @Test
+    public void testCacheEviction()
+    {
+        ZoneOffsetTable hot = ZoneOffsetTable.forID("Asia/Taipei");
+        ZoneOffsetTable gmt = ZoneOffsetTable.forID("GMT");
+        for (int i = 0; i < ZoneOffsetTable.MAX_CACHED_ZONES * 2; i++)
+        {
+            // unknown ids share the table of GMT
+            assertThat(ZoneOffsetTable.forID("No/SuchZone" + i)).isSameAs(gmt);
+            assertThat(ZoneOffsetTable.forID("Asia/Taipei")).isSameAs(hot);
+            assertThat(ZoneOffsetTable.forID("GMT")).isSameAs(gmt);
+        }
+        assertThat(ZoneOffsetTable.cachedCount()).isEqualTo(ZoneOffsetTable.MAX_CACHED_ZONES);
+        assertThat(ZoneOffsetTable.forID("No/SuchZone0")).isSameAs(gmt);
+        assertThat(ZoneOffsetTable.cachedCount()).isEqualTo(ZoneOffsetTable.MAX_CACHED_ZONES);
+    }
+
+    @Test
+    public void testTransitionHints()
+    {
+        // set by the test-java9 run of the java9-multi-release profile, which puts META-INF/versions/9 first
+        boolean java9 = "9".equals(System.getProperty("multiRelease.versions"));
+        long[] hints = ZoneTransitionHints.get(TimeZone.getTimeZone("America/New_York"), 0L, 1502114440291L);
+        if (java9)
+        {
+            assertThat(hints).isNotNull().hasSize(2 * 47 + 1);
+            assertThat(ZoneTransitionHints.get(TimeZone.getTimeZone("UTC"), 0L, 1502114440291L)).isEmpty();
+            assertThat(ZoneTransitionHints.get(new SimpleTimeZone(3600000, "America/New_York"), 0L, 1502114440291L)).isNull();
+        }
+        else
+        {
+            assertThat(hints).isNull();
+        }
+    }
+
+    @Test
+    public void testLocalAtEpoch()
+    {
+        // 2017-08-07T14:00:40Z
+        long epoch = 1502114440291L;
+        assertThat(DateTimeUtil.getLocalDay("Asia/Taipei", epoch)).isEqualTo(7);
+        assertThat(DateTimeUtil.getLocalDay("Pacific/Tarawa", epoch)).isEqualTo(8);
+        assertThat(DateTimeUtil.getLocalDay("America/New_York", epoch)).isEqualTo(7);
+        assertThat(DateTimeUtil.getLocalDay("UTC", -1L)).isEqualTo(31);
+        
+        assertThat(DateTimeUtil.getLocalTimeZoneOffset("America/New_York", epoch)).isEqualTo(-5 * 3600000);
+        assertThat(DateTimeUtil.getLocalDaylightSavingOffset("America/New_York", epoch)).isEqualTo(3600000);
+        // 2017-01-01T00:00:00Z, no daylight saving in winter
+        assertThat(DateTimeUtil.getLocalDaylightSavingOffset("America/New_York", 1483228800000L)).isZero();
+        // Taiwan used daylight saving time in 1979
+        assertThat(DateTimeUtil.getLocalDaylightSavingOffset("Asia/Taipei", 299635200000L)).isEqualTo(3600000);
+        assertThat(DateTimeUtil.getLocalTimeZoneOffset("Asia/Taipei", epoch)).isEqualTo(8 * 3600000);
+    }
+    
+    static void assertSameAsCalendar(ZoneOffsetTable table, String id, long epoch)
+    {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone(id));
+        calendar.setTimeInMillis(epoch);
+        int raw = calendar.get(Calendar.ZONE_OFFSET);
+        int dst = calendar.get(Calendar.DST_OFFSET);
+        assertThat(table.getRawOffset(epoch)).as(id + " raw offset at " + epoch).isEqualTo(raw);
+        assertThat(table.getDaylightSavingOffset(epoch)).as(id + " dst offset at " + epoch).isEqualTo(dst);
+        assertThat(table.getOffset(epoch)).isEqualTo(raw + dst);
+        assertThat(DateTimeUtil.getLocalDay(id, epoch)).isEqualTo(calendar.get(Calendar.DAY_OF_MONTH));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2017, FSTOP, Inc. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tw.com.fstop.util;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ZoneTest
+{
+    static final String[] ZONES = {"UTC", "Asia/Taipei", "America/New_York", "Europe/London", "Australia/Lord_Howe", "No/SuchZone"};
+    static final String[] PATTERNS = {"yyyyMMddHHmmss", "yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd'T'HH:mm:ss.SSSXXX", "EEE, d MMM yyyy HH:mm:ss Z"};
+
+    @Test
+    public void testIntern()
+    {
+        assertThat(Zone.of("Asia/Taipei")).isSameAs(Zone.of("Asia/Taipei"));
+        assertThat(Zone.of("UTC")).isSameAs(Zone.UTC);
+        assertThat(Zone.of("Asia/Taipei").getID()).isEqualTo("Asia/Taipei");
+        assertThat(Zone.of("Asia/Taipei").getTimeZone().getID()).isEqualTo("Asia/Taipei");
+        assertThat(Zone.current().getID()).isEqualTo(DateTimeUtil.getCurrentTimeZoneID());
+        // unknown id has GMT offsets
+        assertThat(Zone.of("No/SuchZone").getOffset(0L)).isZero();
+        try
+        {
+            Zone.of("");
+            fail("empty id");
+        }
+        catch (IllegalArgumentException e)
+        {
+        }
+    }
+
+    @Test
+    public void testInternEviction()
+    {
+        Zone hot = Zone.of("Asia/Taipei");
+        for (int i = 0; i < Zone.MAX_INTERNED_ZONES * 2; i++)
+        {
+            Zone zone = Zone.of("No/SuchZone" + i);
+            assertThat(Zone.of("No/SuchZone" + i)).isSameAs(zone);
+            assertThat(zone.getID()).isEqualTo("No/SuchZone" + i);
+            // unknown ids share the offset table of GMT
+            assertThat(zone.table).isSameAs(Zone.of("GMT").table);
+            assertThat(Zone.of("Asia/Taipei")).isSameAs(hot);
+        }
+        assertThat(Zone.internedCount()).isEqualTo(Zone.MAX_INTERNED_ZONES);
+        Zone zone = Zone.of("No/SuchZone0");
+        assertThat(Zone.of("No/SuchZone0")).isSameAs(zone);
+        assertThat(Zone.internedCount()).isEqualTo(Zone.MAX_INTERNED_ZONES);
+    }
+
+    @Test
+    public void testSameAsTimezoneID() throws ParseException
+    {
+        Random random = new Random(1502114440291L);
+        for (String id : ZONES)
+        {
+            Zone zone = Zone.of(id);
+            for (int i = 0; i < 2000; i++)
+            {
+                long epoch = -2208988800000L + (long) (random.nextDouble() * 6311433600000L);
+                assertThat(DateTimeUtil.getLocalDay(zone, epoch)).isEqualTo(DateTimeUtil.getLocalDay(id, epoch));
+                assertThat(DateTimeUtil.getLocalTimeZoneOffset(zone, epoch)).isEqualTo(DateTimeUtil.getLocalTimeZoneOffset(id, epoch));
+                assertThat(DateTimeUtil.getLocalDaylightSavingOffset(zone, epoch)).isEqualTo(DateTimeUtil.getLocalDaylightSavingOffset(id, epoch));
+
+                String pattern = PATTERNS[i % PATTERNS.length];
+                String text = DateTimeUtil.epochToLocalDateString(epoch, pattern, id);
+                assertThat(DateTimeUtil.epochToLocalDateString(epoch, pattern, zone)).isEqualTo(text);
+                assertThat(DateTimeUtil.epochToLocalDateString(epoch, pattern, zone, new StringBuilder()).toString()).isEqualTo(text);
+                char[] chars = new char[64];
+                int n = DateTimeUtil.epochToLocalDateString(epoch, pattern, zone, chars, 0);
+                assertThat(new String(chars, 0, n)).isEqualTo(text);
+                ByteBuffer bytes = ByteBuffer.allocate(64);
+                n = DateTimeUtil.epochToLocalDateString(epoch, pattern, zone, bytes);
+                assertThat(new String(bytes.array(), 0, n)).isEqualTo(text);
+
+                assertThat(DateTimeUtil.dateStringToEpoch(text, pattern, zone)).isEqualTo(DateTimeUtil.dateStringToEpoch(text, pattern, id));
+                assertThat(DateTimeUtil.parseEpoch(text, pattern, zone, -1L)).isEqualTo(DateTimeUtil.parseEpoch(text, pattern, id, -1L));
+            }
+        }
+    }
+
+    @Test
+    public void testParseAndDaysBetween() throws ParseException
+    {
+        Zone taipei = Zone.of("Asia/Taipei");
+        assertThat(DateTimeUtil.dateStringToEpochSecond("20170807220040", "yyyyMMddHHmmss", taipei)).isEqualTo(1502114440L);
+        assertThat(DateTimeUtil.epochSecondToLocalDateString(1502114440L, "yyyy-MM-dd HH:mm:ss", taipei)).isEqualTo("2017-08-07 22:00:40");
+        assertThat(DateTimeUtil.parseEpoch("2017-08-07 22:00", "yyyy-MM-dd HH:mm:ss", taipei, -1L)).isEqualTo(-1L);
+
+        ParseResult result = new ParseResult(true);
+        assertThat(DateTimeUtil.parseEpoch("20171307220040", "yyyyMMddHHmmss", taipei, result)).isFalse();
+        assertThat(result.getErrorCode()).isEqualTo(ParseResult.FIELD_RANGE);
+
+        assertThat(DateTimeUtil.daysBetween("20170101", "20171231", "yyyyMMdd", taipei)).isEqualTo(364);
+        // 2017-08-07T23:30+08:00 and 2017-08-08T00:30+08:00 are on the same UTC day but on different local days
+        assertThat(DateTimeUtil.daysBetween(1502119800000L, 1502123400000L, taipei)).isEqualTo(1);
+        assertThat(DateTimeUtil.daysBetween(1502119800000L, 1502123400000L, Zone.UTC)).isZero();
+    }
+}